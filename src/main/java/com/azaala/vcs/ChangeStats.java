@@ -0,0 +1,157 @@
+package com.azaala.vcs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line and byte counts of a commit's changes, per changed file in the
+ * order of {@link Commit#getChangedFiles()}. They are computed once when
+ * the commit is made, against each file's previous committed version, so
+ * history views and churn reports never diff snapshots again.
+ *
+ * Binary files have no line counts. Bytes changed are the bytes of the
+ * added and deleted lines, or of the changed ranges of a binary file.
+ */
+public final class ChangeStats {
+    private final int[] additions;
+    private final int[] deletions;
+    private final long[] bytesChanged;
+    private final boolean[] binary;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param fileCount Number of changed files
+     */
+    public ChangeStats(int fileCount) {
+        this.additions = new int[fileCount];
+        this.deletions = new int[fileCount];
+        this.bytesChanged = new long[fileCount];
+        this.binary = new boolean[fileCount];
+    }
+
+    /**
+     * Sets the counts of a text file.
+     *
+     * @param index Position in the commit's changed files
+     * @param added Lines added
+     * @param deleted Lines deleted
+     * @param bytes Bytes of the added and deleted lines
+     */
+    public void setFile(int index, int added, int deleted, long bytes) {
+        additions[index] = added;
+        deletions[index] = deleted;
+        bytesChanged[index] = bytes;
+        binary[index] = false;
+    }
+
+    /**
+     * Sets the counts of a binary file.
+     *
+     * @param index Position in the commit's changed files
+     * @param bytes Bytes in the changed ranges
+     */
+    public void setBinaryFile(int index, long bytes) {
+        additions[index] = 0;
+        deletions[index] = 0;
+        bytesChanged[index] = bytes;
+        binary[index] = true;
+    }
+
+    public int getFileCount() { return additions.length; }
+    public int getAdditions(int index) { return additions[index]; }
+    public int getDeletions(int index) { return deletions[index]; }
+    public long getBytesChanged(int index) { return bytesChanged[index]; }
+    public boolean isBinary(int index) { return binary[index]; }
+
+    /**
+     * @return Lines added across all files
+     */
+    public int getAdditions() {
+        int total = 0;
+        for (int added : additions) {
+            total += added;
+        }
+        return total;
+    }
+
+    /**
+     * @return Lines deleted across all files
+     */
+    public int getDeletions() {
+        int total = 0;
+        for (int deleted : deletions) {
+            total += deleted;
+        }
+        return total;
+    }
+
+    /**
+     * @return Bytes changed across all files
+     */
+    public long getBytesChanged() {
+        long total = 0;
+        for (long bytes : bytesChanged) {
+            total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Encodes the counts as "added/deleted/bytes" per file, with "-" for
+     * the line counts of binary files.
+     *
+     * @param separator Separator between files
+     * @return Encoded counts
+     */
+    public String encode(String separator) {
+        List<String> files = new ArrayList<>(additions.length);
+        for (int i = 0; i < additions.length; i++) {
+            files.add(binary[i] ? "-/-/" + bytesChanged[i]
+                      : additions[i] + "/" + deletions[i] + "/" + bytesChanged[i]);
+        }
+        return String.join(separator, files);
+    }
+
+    /**
+     * Parses counts written by {@link #encode(String)}.
+     *
+     * @param encoded Encoded counts
+     * @param separator Separator between files
+     * @param fileCount Number of changed files the counts must cover
+     * @return The statistics, or null if the text is invalid or covers a
+     *         different number of files
+     */
+    public static ChangeStats parse(String encoded, String separator, int fileCount) {
+        String[] files = encoded.isEmpty() ? new String[0] : encoded.split(separator);
+        if (files.length != fileCount) {
+            return null;
+        }
+        ChangeStats stats = new ChangeStats(fileCount);
+        try {
+            for (int i = 0; i < files.length; i++) {
+                String[] counts = files[i].trim().split("/");
+                if (counts.length != 3) {
+                    return null;
+                }
+                long bytes = Long.parseLong(counts[2]);
+                if (counts[0].equals("-")) {
+                    stats.setBinaryFile(i, bytes);
+                } else {
+                    stats.setFile(i, Integer.parseInt(counts[0]), Integer.parseInt(counts[1]), bytes);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return stats;
+    }
+
+    /**
+     * @return Totals such as "+12 -3, 450 bytes"
+     */
+    @Override
+    public String toString() {
+        return "+" + getAdditions() + " -" + getDeletions() + ", " + getBytesChanged() + " bytes";
+    }
+}
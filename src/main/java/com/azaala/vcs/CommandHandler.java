@@ -1,5 +1,8 @@
 package com.azaala.vcs;
 
+import com.azaala.vcs.diff.DiffAlgorithm;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -126,11 +129,20 @@ public class CommandHandler {
     }
 
     /**
-     * Handles the log command.
+     * Handles the log command, printing commits as they are read.
      */
     private boolean handleLog(String[] args) {
-        List<String> log = vcs.log();
-        log.forEach(System.out::println);
+        LogQuery query = new LogQuery();
+        if (args.length > 0) {
+            query.setRevision(args[0]);
+        }
+        LogCursor cursor = vcs.queryLog(query);
+        if (cursor == null) {
+            return false;
+        }
+        while (cursor.hasNext()) {
+            vcs.formatLogEntry(cursor.next()).forEach(System.out::println);
+        }
         return true;
     }
 
@@ -138,12 +150,25 @@ public class CommandHandler {
      * Handles the diff command.
      */
     private boolean handleDiff(String[] args) {
-        if (args.length < 2) {
-            System.err.println("Usage: diff <commit-id1> <commit-id2>");
+        DiffAlgorithm algorithm = null;
+        List<String> commitIds = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--algorithm=")) {
+                algorithm = DiffAlgorithm.fromName(arg.substring("--algorithm=".length()));
+                if (algorithm == null) {
+                    System.err.println("Unknown diff algorithm: " + arg);
+                    return false;
+                }
+            } else {
+                commitIds.add(arg);
+            }
+        }
+        if (commitIds.size() != 2) {
+            System.err.println("Usage: diff <commit-id1> <commit-id2> [--algorithm=myers|histogram]");
             return false;
         }
 
-        List<String> diff = vcs.diff(args[0], args[1]);
+        List<String> diff = vcs.diff(commitIds.get(0), commitIds.get(1), algorithm);
         diff.forEach(System.out::println);
         return true;
     }
@@ -175,6 +200,7 @@ public class CommandHandler {
         System.out.println("  status                   Show status");
         System.out.println("  log                      Show commit history");
         System.out.println("  diff <id1> <id2>         Compare commits");
+        System.out.println("    [--algorithm=<name>]   Line diff with myers or histogram");
         System.out.println("  help                     Show this help");
         System.out.println("  version                  Show version");
     }
@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -16,9 +17,15 @@ import java.util.UUID;
 public class Commit {
     private String commitId;
     private String message;
+    /** Free-form summary, or null when structured or not set */
     private String summary;
+    private CommitSummary summaryFields;
+    private String author;
     private LocalDateTime timestamp;
     private List<String> changedFiles;
+    private Map<String, String> fileHashes = new LinkedHashMap<>();
+    private List<String> parentIds = new ArrayList<>();
+    private ChangeStats changeStats;
 
     /**
      * Creates a new Commit with the given message and files.
@@ -35,9 +42,6 @@ public class Commit {
         this.timestamp = LocalDateTime.now();
         this.changedFiles = new ArrayList<>(changedFiles);
 
-        // Generate a default summary
-        this.summary = generateDefaultSummary(changedFiles.size());
-
         // Auto-generate ID upon creation for consistency
         this.commitId = generateUniqueId();
     }
@@ -66,9 +70,6 @@ public class Commit {
         this.message = message.trim();
         this.timestamp = timestamp;
         this.changedFiles = new ArrayList<>(changedFiles);
-
-        // Generate a default summary
-        this.summary = generateDefaultSummary(changedFiles.size());
     }
 
     /**
@@ -81,8 +82,7 @@ public class Commit {
      */
     public Commit(String message, List<String> changedFiles, String summary) {
         this(message, changedFiles);
-        validateSummary(summary);
-        this.summary = summary.trim();
+        setSummary(summary);
     }
 
     /**
@@ -195,23 +195,75 @@ public class Commit {
     }
 
     /**
-     * Gets the commit summary.
+     * Gets the commit summary as stored: the encoded structured summary,
+     * a free-form summary, or a default based on the number of files.
      *
      * @return The summary of changes (never null)
      */
     public String getSummary() {
-        return summary;
+        if (summaryFields != null) {
+            return summaryFields.toString();
+        }
+        return summary != null ? summary : generateDefaultSummary(changedFiles.size());
     }
 
     /**
-     * Sets the commit summary.
+     * Sets the commit summary. A summary in the structured encoding is
+     * kept as its fields.
      *
      * @param summary The new summary
      * @throws IllegalArgumentException if summary is null
      */
     public void setSummary(String summary) {
         validateSummary(summary);
-        this.summary = summary.trim();
+        this.summaryFields = CommitSummary.parse(summary);
+        this.summary = summaryFields == null ? summary.trim() : null;
+    }
+
+    /**
+     * Gets the structured summary.
+     *
+     * @return The summary fields, or null if the summary is free-form
+     */
+    public CommitSummary getSummaryFields() {
+        return summaryFields;
+    }
+
+    /**
+     * Sets the structured summary, replacing any free-form summary.
+     *
+     * @param summaryFields The summary fields (null for the default summary)
+     */
+    public void setSummaryFields(CommitSummary summaryFields) {
+        this.summaryFields = summaryFields;
+        this.summary = null;
+    }
+
+    /**
+     * Describes the summary in one readable line.
+     *
+     * @return The structured summary described, or the free-form summary
+     */
+    public String describeSummary() {
+        return summaryFields != null ? summaryFields.describe() : getSummary();
+    }
+
+    /**
+     * Gets the commit author.
+     *
+     * @return The author, such as "Name &lt;email&gt;", or null if not recorded
+     */
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Sets the commit author.
+     *
+     * @param author The author (null or empty if unknown)
+     */
+    public void setAuthor(String author) {
+        this.author = author != null && !author.trim().isEmpty() ? author.trim() : null;
     }
 
     /**
@@ -256,8 +308,116 @@ public class Commit {
         validateChangedFiles(changedFiles);
         this.changedFiles = new ArrayList<>(changedFiles);
 
-        // Update summary when files change
-        this.summary = generateDefaultSummary(changedFiles.size());
+        // Fall back to the default summary for the new files
+        this.summary = null;
+        this.summaryFields = null;
+        this.changeStats = null;
+    }
+
+    /**
+     * Gets the recorded content hash of a file in this commit.
+     *
+     * @param filePath The file path as listed in the changed files
+     * @return SHA-256 hex hash, or null if no hash was recorded (older commits)
+     */
+    public String getFileHash(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        return fileHashes.get(filePath.trim());
+    }
+
+    /**
+     * Records the content hash of a file in this commit.
+     *
+     * @param filePath The file path as listed in the changed files
+     * @param hash SHA-256 hex hash of the committed content (null removes it)
+     */
+    public void setFileHash(String filePath, String hash) {
+        if (filePath == null) {
+            return;
+        }
+        if (hash == null || hash.trim().isEmpty()) {
+            fileHashes.remove(filePath.trim());
+        } else {
+            fileHashes.put(filePath.trim(), hash.trim());
+        }
+    }
+
+    /**
+     * Gets all recorded content hashes.
+     *
+     * @return Copy of the file path to hash map (never null)
+     */
+    public Map<String, String> getFileHashes() {
+        return new LinkedHashMap<>(fileHashes);
+    }
+
+    /**
+     * Checks whether every changed file has a recorded content hash.
+     *
+     * @return true if hashes are available for all files
+     */
+    public boolean hasFileHashes() {
+        return fileHashes.keySet().containsAll(changedFiles);
+    }
+
+    /**
+     * Gets the line and byte counts of this commit's changes.
+     *
+     * @return Counts per changed file, or null if not recorded (older commits)
+     */
+    public ChangeStats getChangeStats() {
+        return changeStats;
+    }
+
+    /**
+     * Records the line and byte counts of this commit's changes.
+     *
+     * @param changeStats Counts per changed file, in changed file order (null removes them)
+     * @throws IllegalArgumentException if the counts cover a different number of files
+     */
+    public void setChangeStats(ChangeStats changeStats) {
+        if (changeStats != null && changeStats.getFileCount() != changedFiles.size()) {
+            throw new IllegalArgumentException("Change stats must cover every changed file");
+        }
+        this.changeStats = changeStats;
+    }
+
+    /**
+     * Gets the IDs of the commits this one was made on top of: none for a
+     * root commit, one normally, two or more for a merge.
+     *
+     * @return Copy of the parent IDs, first parent first (never null)
+     */
+    public List<String> getParentIds() {
+        return new ArrayList<>(parentIds);
+    }
+
+    /**
+     * Sets the parent commit IDs.
+     *
+     * @param parentIds Parent IDs, first parent first (null for none)
+     */
+    public void setParentIds(List<String> parentIds) {
+        this.parentIds = new ArrayList<>();
+        if (parentIds == null) {
+            return;
+        }
+        for (String parentId : parentIds) {
+            if (parentId != null && !parentId.trim().isEmpty() && !this.parentIds.contains(parentId.trim())) {
+                this.parentIds.add(parentId.trim());
+            }
+        }
+    }
+
+    /**
+     * Checks whether this commit joins two or more lines of history.
+     *
+     * @return true if the commit has more than one parent
+     */
+    public boolean isMerge() {
+        return parentIds.size() > 1;
     }
 
     /**
@@ -325,7 +485,7 @@ public class Commit {
         return "Commit " + commitId +
                 " (" + timestamp.format(formatter) + ")\n" +
                 "Message: " + message + "\n" +
-                "Summary: " + summary + "\n" +
+                "Summary: " + describeSummary() + "\n" +
                 "Files: " + changedFiles.size();
     }
 
@@ -364,10 +524,16 @@ public class Commit {
         StringBuilder info = new StringBuilder();
 
         info.append("Commit: ").append(commitId).append("\n");
+        if (author != null) {
+            info.append("Author: ").append(author).append("\n");
+        }
         info.append("Date: ").append(timestamp.format(formatter)).append("\n");
         info.append("Message: ").append(message).append("\n");
-        info.append("Summary: ").append(summary).append("\n");
+        info.append("Summary: ").append(describeSummary()).append("\n");
         info.append("Files: ").append(changedFiles.size());
+        if (changeStats != null) {
+            info.append(" (").append(changeStats).append(")");
+        }
 
         if (detailed && !changedFiles.isEmpty()) {
             info.append("\n\nChanged files:");
@@ -389,10 +555,14 @@ public class Commit {
         Map<String, Object> map = new HashMap<>();
         map.put("commitId", commitId);
         map.put("message", message);
-        map.put("summary", summary);
+        map.put("summary", getSummary());
+        map.put("author", author);
         map.put("timestamp", timestamp);
         map.put("changedFiles", new ArrayList<>(changedFiles));
+        map.put("fileHashes", new LinkedHashMap<>(fileHashes));
+        map.put("parentIds", new ArrayList<>(parentIds));
         map.put("fileCount", changedFiles.size());
+        map.put("changeStats", changeStats != null ? changeStats.toString() : null);
         return map;
     }
 }
@@ -0,0 +1,155 @@
+package com.azaala.vcs;
+
+/**
+ * The structured part of a commit summary: file counts by type and the
+ * changes found in file contents. Only these numbers are stored with a
+ * commit, as one short line; the readable summary is rendered from them
+ * when shown (see {@link SummaryGenerator#renderSummary(Commit)}).
+ *
+ * Encoded form, space separated, keys in this order:
+ * <pre>
+ *   [initial] files:+2 code:1 docs:1 config:0 functions:+3/-1 notes:+2/-0
+ * </pre>
+ * "files" is the change in file count from the previous commit.
+ */
+public final class CommitSummary {
+    private final boolean initial;
+    private final int fileDelta;
+    private final int codeFiles;
+    private final int docFiles;
+    private final int configFiles;
+    private final int functionsAdded;
+    private final int functionsRemoved;
+    private final int notesAdded;
+    private final int notesResolved;
+
+    /**
+     * Creates a summary.
+     *
+     * @param initial Whether the commit has no previous commit
+     * @param fileDelta Change in file count from the previous commit
+     * @param codeFiles Number of source files changed
+     * @param docFiles Number of documentation files changed
+     * @param configFiles Number of configuration files changed
+     * @param functionsAdded Functions declared only in the new versions
+     * @param functionsRemoved Functions declared only in the previous versions
+     * @param notesAdded TODO/FIXME notes only in the new versions
+     * @param notesResolved TODO/FIXME notes only in the previous versions
+     */
+    public CommitSummary(boolean initial, int fileDelta, int codeFiles, int docFiles, int configFiles,
+                         int functionsAdded, int functionsRemoved, int notesAdded, int notesResolved) {
+        this.initial = initial;
+        this.fileDelta = fileDelta;
+        this.codeFiles = codeFiles;
+        this.docFiles = docFiles;
+        this.configFiles = configFiles;
+        this.functionsAdded = functionsAdded;
+        this.functionsRemoved = functionsRemoved;
+        this.notesAdded = notesAdded;
+        this.notesResolved = notesResolved;
+    }
+
+    /**
+     * Parses the encoded form.
+     *
+     * @param text Stored summary
+     * @return The summary, or null if the text is not in the encoded form
+     *         (such as a free-form summary written by an older version)
+     */
+    public static CommitSummary parse(String text) {
+        if (text == null || text.indexOf('\n') >= 0) {
+            return null;
+        }
+        String[] tokens = text.trim().split(" ");
+        int position = 0;
+        boolean initial = position < tokens.length && tokens[position].equals("initial");
+        if (initial) {
+            position++;
+        }
+        if (tokens.length - position != 6) {
+            return null;
+        }
+        try {
+            int fileDelta = Integer.parseInt(value(tokens[position++], "files:"));
+            int codeFiles = Integer.parseInt(value(tokens[position++], "code:"));
+            int docFiles = Integer.parseInt(value(tokens[position++], "docs:"));
+            int configFiles = Integer.parseInt(value(tokens[position++], "config:"));
+            int[] functions = pair(value(tokens[position++], "functions:"));
+            int[] notes = pair(value(tokens[position], "notes:"));
+            return new CommitSummary(initial, fileDelta, codeFiles, docFiles, configFiles,
+                                     functions[0], functions[1], notes[0], notes[1]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String value(String token, String key) {
+        if (!token.startsWith(key)) {
+            throw new IllegalArgumentException("Expected " + key);
+        }
+        return token.substring(key.length());
+    }
+
+    /**
+     * @return Added and removed counts of "+a/-b"
+     */
+    private static int[] pair(String value) {
+        int slash = value.indexOf("/-");
+        if (!value.startsWith("+") || slash < 0) {
+            throw new IllegalArgumentException("Expected +a/-b");
+        }
+        return new int[]{Integer.parseInt(value.substring(1, slash)), Integer.parseInt(value.substring(slash + 2))};
+    }
+
+    public boolean isInitial() { return initial; }
+    public int getFileDelta() { return fileDelta; }
+    public int getCodeFiles() { return codeFiles; }
+    public int getDocFiles() { return docFiles; }
+    public int getConfigFiles() { return configFiles; }
+    public int getFunctionsAdded() { return functionsAdded; }
+    public int getFunctionsRemoved() { return functionsRemoved; }
+    public int getNotesAdded() { return notesAdded; }
+    public int getNotesResolved() { return notesResolved; }
+
+    /**
+     * @return true if any function or TODO/FIXME note was added or removed
+     */
+    public boolean hasContentChanges() {
+        return functionsAdded != 0 || functionsRemoved != 0 || notesAdded != 0 || notesResolved != 0;
+    }
+
+    /**
+     * Describes the summary in one readable line, for logs and lists.
+     *
+     * @return Description such as "Initial commit; 2 code, 1 docs; functions +3 -1"
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        if (initial) {
+            text.append("Initial commit; ");
+        } else if (fileDelta != 0) {
+            text.append(fileDelta > 0 ? "+" : "").append(fileDelta).append(" files; ");
+        }
+        text.append(codeFiles).append(" code, ").append(docFiles).append(" docs, ")
+            .append(configFiles).append(" config");
+        if (functionsAdded != 0 || functionsRemoved != 0) {
+            text.append("; functions +").append(functionsAdded).append(" -").append(functionsRemoved);
+        }
+        if (notesAdded != 0 || notesResolved != 0) {
+            text.append("; TODO/FIXME +").append(notesAdded).append(" -").append(notesResolved);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return The encoded form, as stored with the commit
+     */
+    @Override
+    public String toString() {
+        return (initial ? "initial " : "")
+            + "files:" + (fileDelta >= 0 ? "+" : "") + fileDelta
+            + " code:" + codeFiles + " docs:" + docFiles + " config:" + configFiles
+            + " functions:+" + functionsAdded + "/-" + functionsRemoved
+            + " notes:+" + notesAdded + "/-" + notesResolved;
+    }
+}
@@ -1,14 +1,162 @@
 package com.azaala.vcs;
 
+import com.azaala.vcs.diff.BinaryDetector;
+import com.azaala.vcs.diff.BinaryDiff;
+import com.azaala.vcs.diff.Deadline;
+import com.azaala.vcs.diff.DiffAlgorithm;
+import com.azaala.vcs.diff.DiffCache;
+import com.azaala.vcs.diff.DiffFormatter;
+import com.azaala.vcs.diff.DiffSummary;
+import com.azaala.vcs.diff.Edit;
+import com.azaala.vcs.diff.FileDiff;
+import com.azaala.vcs.diff.Hunk;
+import com.azaala.vcs.diff.LargeFileDiff;
+import com.azaala.vcs.diff.LineHasher;
+import com.azaala.vcs.diff.LineListWriter;
+import com.azaala.vcs.diff.PrettyDiffFormatter;
+import com.azaala.vcs.diff.RenameDetector;
+
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Advanced Diff Utility - Provides robust line-by-line and file-level comparison
  * Uses proper diff algorithms to show exact changes between file versions
  */
 public class DiffUtil {
+    private static final int CONTEXT_LINES = 3;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    private static final long DEFAULT_LARGE_FILE_THRESHOLD = 8L * 1024 * 1024;
+    private static final int DIFF_WINDOW_PER_THREAD = 4;
+
+    /** Shared pool for per-file diffs; its worker threads are daemons. */
+    private static final ForkJoinPool DIFF_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private long largeFileThreshold = DEFAULT_LARGE_FILE_THRESHOLD;
+    private long memoryBudget = LargeFileDiff.DEFAULT_MEMORY_BUDGET;
+    private int inlineLineLimit = PrettyDiffFormatter.DEFAULT_INLINE_LINE_LIMIT;
+    private DiffCache cache = DiffCache.getInstance();
+    private RenameDetector renameDetector = new RenameDetector();
+    private final Object largeFileLock = new Object();
+
+    /**
+     * Sets the per-file time limit for line diffs. Files that take longer are
+     * shown with a coarse diff (remaining regions as whole replacements).
+     *
+     * @param timeoutMillis Time limit in milliseconds (0 or less for none)
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Gets the per-file time limit for line diffs.
+     *
+     * @return Time limit in milliseconds (0 or less means none)
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Sets the file size from which modified files are diffed by streaming
+     * from memory-mapped buffers instead of being loaded as lines.
+     *
+     * @param largeFileThreshold Size in bytes
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    /**
+     * Gets the file size from which the streaming diff is used.
+     *
+     * @return Size in bytes
+     */
+    public long getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    /**
+     * Sets the most heap memory a streaming diff may spend on the changed
+     * part of a large file. Larger changed regions are summarized.
+     *
+     * @param memoryBudget Budget in bytes
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Gets the memory budget for streaming diffs.
+     *
+     * @return Budget in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Sets how many hunk lines a file's diff may have before it is shown
+     * summarized (hunk headers only) instead of inline.
+     *
+     * @param inlineLineLimit Maximum number of inline hunk lines per file
+     */
+    public void setInlineLineLimit(int inlineLineLimit) {
+        this.inlineLineLimit = inlineLineLimit;
+    }
+
+    /**
+     * Gets the per-file inline hunk line limit.
+     *
+     * @return Maximum number of inline hunk lines per file
+     */
+    public int getInlineLineLimit() {
+        return inlineLineLimit;
+    }
+
+    /**
+     * Sets the cache for per-file diff results (null disables caching).
+     * By default the process-wide shared cache is used.
+     *
+     * @param cache Diff result cache
+     */
+    public void setCache(DiffCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Gets the cache for per-file diff results.
+     *
+     * @return Diff result cache, or null if caching is disabled
+     */
+    public DiffCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the detector that pairs removed and added files into renames
+     * and copies (null reports every move as a delete plus an add).
+     *
+     * @param renameDetector Rename and copy detector
+     */
+    public void setRenameDetector(RenameDetector renameDetector) {
+        this.renameDetector = renameDetector;
+    }
+
+    /**
+     * Gets the rename and copy detector.
+     *
+     * @return Rename detector, or null if detection is disabled
+     */
+    public RenameDetector getRenameDetector() {
+        return renameDetector;
+    }
 
     /**
      * Compares two commits and generates detailed line-by-line diff
@@ -19,219 +167,369 @@ public class DiffUtil {
      * @return Detailed diff output
      */
     public List<String> generateDetailedDiff(Commit commit1, Commit commit2, String repoPath) {
-        List<String> diffOutput = new ArrayList<>();
+        return generateDetailedDiff(commit1, commit2, repoPath, DiffAlgorithm.MYERS);
+    }
 
+    /**
+     * Compares two commits and generates detailed line-by-line diff
+     * using the selected diff algorithm. Collects the pretty format into
+     * a list; use writeDiff to stream large diffs instead.
+     *
+     * @param commit1 First commit
+     * @param commit2 Second commit
+     * @param repoPath Repository path to access commit files
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return Detailed diff output
+     */
+    public List<String> generateDetailedDiff(Commit commit1, Commit commit2, String repoPath, DiffAlgorithm algorithm) {
         if (commit1 == null || commit2 == null) {
+            List<String> diffOutput = new ArrayList<>();
             diffOutput.add("ERROR: Cannot compare null commits");
             return diffOutput;
         }
 
-        // Get file lists
-        Set<String> files1 = new HashSet<>(commit1.getChangedFiles());
-        Set<String> files2 = new HashSet<>(commit2.getChangedFiles());
-
-        // Categorize files
-        Set<String> addedFiles = new HashSet<>(files2);
-        addedFiles.removeAll(files1);
-
-        Set<String> removedFiles = new HashSet<>(files1);
-        removedFiles.removeAll(files2);
-
-        Set<String> modifiedFiles = new HashSet<>(files1);
-        modifiedFiles.retainAll(files2);
-
-        // Header
-        diffOutput.add("╔════════════════════════════════════════════════════════════════════════╗");
-        diffOutput.add("║                    DETAILED COMMIT COMPARISON                          ║");
-        diffOutput.add("╚════════════════════════════════════════════════════════════════════════╝");
-        diffOutput.add("");
-
-        // Commit info
-        diffOutput.add("FROM COMMIT: " + commit1.getCommitId().substring(0, 8));
-        diffOutput.add("  Message: " + commit1.getMessage());
-        diffOutput.add("  Date: " + commit1.getTimestamp());
-        diffOutput.add("");
-        diffOutput.add("TO COMMIT: " + commit2.getCommitId().substring(0, 8));
-        diffOutput.add("  Message: " + commit2.getMessage());
-        diffOutput.add("  Date: " + commit2.getTimestamp());
-        diffOutput.add("");
-
-        // Summary statistics
-        diffOutput.add("┌────────────────────────────────────────────────────────────────────────┐");
-        diffOutput.add("│ SUMMARY                                                                │");
-        diffOutput.add("├────────────────────────────────────────────────────────────────────────┤");
-        diffOutput.add(String.format("│ Files Added:     %3d                                                 │", addedFiles.size()));
-        diffOutput.add(String.format("│ Files Removed:   %3d                                                 │", removedFiles.size()));
-        diffOutput.add(String.format("│ Files Modified:  %3d                                                 │", modifiedFiles.size()));
-        diffOutput.add(String.format("│ Files Unchanged: %3d                                                 │", files1.size() - removedFiles.size() - modifiedFiles.size()));
-        diffOutput.add("└────────────────────────────────────────────────────────────────────────┘");
-        diffOutput.add("");
-
-        // Added files
-        if (!addedFiles.isEmpty()) {
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            diffOutput.add("✨ NEW FILES (" + addedFiles.size() + ")");
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            addedFiles.stream().sorted().forEach(file -> {
-                diffOutput.add("  ➕ " + file);
-                // Show file contents
-                String filePath = repoPath + File.separator + "data" + File.separator + "commits" +
-                                 File.separator + "commit_" + commit2.getCommitId() + File.separator +
-                                 new File(file).getName();
-                List<String> contents = readFileContents(filePath);
-                if (!contents.isEmpty()) {
-                    diffOutput.add("     Lines: " + contents.size());
-                    for (int i = 0; i < Math.min(3, contents.size()); i++) {
-                        diffOutput.add("     >>> " + contents.get(i));
-                    }
-                    if (contents.size() > 3) {
-                        diffOutput.add("     ... and " + (contents.size() - 3) + " more lines");
-                    }
-                }
-            });
-            diffOutput.add("");
-        }
+        return generateDetailedDiff(Snapshot.ofCommit(commit1, repoPath), Snapshot.ofCommit(commit2, repoPath),
+                                    algorithm);
+    }
 
-        // Removed files
-        if (!removedFiles.isEmpty()) {
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            diffOutput.add("❌ DELETED FILES (" + removedFiles.size() + ")");
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            removedFiles.stream().sorted().forEach(file -> {
-                diffOutput.add("  ➖ " + file);
-                // Show old file contents
-                String filePath = repoPath + File.separator + "data" + File.separator + "commits" +
-                                 File.separator + "commit_" + commit1.getCommitId() + File.separator +
-                                 new File(file).getName();
-                List<String> contents = readFileContents(filePath);
-                if (!contents.isEmpty()) {
-                    diffOutput.add("     Lines: " + contents.size());
-                    for (int i = 0; i < Math.min(3, contents.size()); i++) {
-                        diffOutput.add("     <<< " + contents.get(i));
-                    }
-                    if (contents.size() > 3) {
-                        diffOutput.add("     ... and " + (contents.size() - 3) + " more lines");
-                    }
-                }
-            });
-            diffOutput.add("");
+    /**
+     * Compares two snapshots and generates detailed line-by-line diff
+     * using the selected diff algorithm.
+     *
+     * @param oldSide Old side of the comparison
+     * @param newSide New side of the comparison
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return Detailed diff output
+     */
+    public List<String> generateDetailedDiff(Snapshot oldSide, Snapshot newSide, DiffAlgorithm algorithm) {
+        LineListWriter lines = new LineListWriter();
+        PrettyDiffFormatter formatter = new PrettyDiffFormatter(lines);
+        formatter.setInlineLineLimit(inlineLineLimit);
+        writeDiff(oldSide, newSide, algorithm, formatter);
+        lines.close();
+        return lines.getLines();
+    }
+
+    /**
+     * Compares two commits and streams the result to a formatter, one file
+     * at a time. Files are diffed in parallel a few at a time ahead of the
+     * one being written, so memory use does not grow with the number or
+     * size of the files.
+     *
+     * @param commit1 First commit
+     * @param commit2 Second commit
+     * @param repoPath Repository path to access commit files
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @param formatter Output format and sink
+     * @return true if the whole diff was written, false on a write error
+     */
+    public boolean writeDiff(Commit commit1, Commit commit2, String repoPath, DiffAlgorithm algorithm,
+                             DiffFormatter formatter) {
+        if (commit1 == null || commit2 == null) {
+            System.err.println("Cannot compare null commits");
+            return false;
         }
+        return writeDiff(Snapshot.ofCommit(commit1, repoPath), Snapshot.ofCommit(commit2, repoPath),
+                         algorithm, formatter);
+    }
 
-        // Modified files - DETAILED LINE BY LINE DIFF
-        if (!modifiedFiles.isEmpty()) {
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            diffOutput.add("🔄 MODIFIED FILES (" + modifiedFiles.size() + ")");
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
+    /**
+     * Compares two snapshots (stored commits, the index or the working
+     * tree) and streams the result to a formatter, one file at a time.
+     *
+     * @param oldSide Old side of the comparison
+     * @param newSide New side of the comparison
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @param formatter Output format and sink
+     * @return true if the whole diff was written, false on a write error
+     */
+    public boolean writeDiff(Snapshot oldSide, Snapshot newSide, DiffAlgorithm algorithm, DiffFormatter formatter) {
+        if (oldSide == null || newSide == null || formatter == null) {
+            System.err.println("Cannot compare null commits");
+            return false;
+        }
+        DiffAlgorithm selectedAlgorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
 
-            for (String file : modifiedFiles.stream().sorted().collect(java.util.stream.Collectors.toList())) {
-                diffOutput.add("");
-                diffOutput.add("  📝 " + file);
-                diffOutput.add("  " + "─".repeat(70));
+        // Categorize files; identical content is recognized from the recorded hashes
+        FileChanges changes = classifyFiles(oldSide, newSide);
+        DiffSummary summary = new DiffSummary(changes.added.size(), changes.removed.size(), changes.modified.size(),
+            changes.countRenames(false), changes.countRenames(true), changes.unchanged.size());
 
-                // Get file contents from both commits
-                String oldPath = repoPath + File.separator + "data" + File.separator + "commits" +
-                                File.separator + "commit_" + commit1.getCommitId() + File.separator +
-                                new File(file).getName();
-                String newPath = repoPath + File.separator + "data" + File.separator + "commits" +
-                                File.separator + "commit_" + commit2.getCommitId() + File.separator +
-                                new File(file).getName();
+        try {
+            formatter.begin(oldSide.getCommit(), newSide.getCommit(), selectedAlgorithm, summary);
 
-                List<String> oldLines = readFileContents(oldPath);
-                List<String> newLines = readFileContents(newPath);
+            for (String file : changes.added) {
+                File snapshot = newSide.getFile(file);
+                formatter.addedFile(file, snapshot, BinaryDetector.isBinary(snapshot, newSide.getHash(file)));
+            }
+            for (String file : changes.removed) {
+                File snapshot = oldSide.getFile(file);
+                formatter.removedFile(file, snapshot, BinaryDetector.isBinary(snapshot, oldSide.getHash(file)));
+            }
 
-                // Generate line-by-line diff
-                List<String> diffLines = generateLineDiff(oldLines, newLines);
+            forEachFileDiff(changes.modified, changes.modified, oldSide, newSide,
+                selectedAlgorithm, formatter::modifiedFile);
 
-                if (diffLines.isEmpty()) {
-                    diffOutput.add("  (No differences found)");
-                } else {
-                    for (String diffLine : diffLines) {
-                        diffOutput.add(diffLine);
-                    }
+            // Renames keep path order; only pairs with changed content are diffed
+            List<String> oldPaths = new ArrayList<>();
+            List<String> newPaths = new ArrayList<>();
+            for (RenameDetector.Match match : changes.renamed) {
+                if (match.getSimilarity() < 100) {
+                    oldPaths.add(match.getOldPath());
+                    newPaths.add(match.getNewPath());
+                }
+            }
+            Iterator<RenameDetector.Match> renames = changes.renamed.iterator();
+            forEachFileDiff(oldPaths, newPaths, oldSide, newSide, selectedAlgorithm, fileDiff -> {
+                RenameDetector.Match match = renames.next();
+                while (match.getSimilarity() == 100) {
+                    formatter.renamedFile(match, null);
+                    match = renames.next();
                 }
+                formatter.renamedFile(match, fileDiff);
+            });
+            while (renames.hasNext()) {
+                formatter.renamedFile(renames.next(), null);
+            }
 
-                // Statistics for this file
-                int additions = (int) diffLines.stream().filter(l -> l.contains("  ➕")).count();
-                int deletions = (int) diffLines.stream().filter(l -> l.contains("  ➖")).count();
-                diffOutput.add("");
-                diffOutput.add(String.format("  Changes: +%d -%d | Old: %d lines, New: %d lines",
-                    additions, deletions, oldLines.size(), newLines.size()));
+            for (String file : changes.unchanged) {
+                formatter.unchangedFile(file);
             }
-            diffOutput.add("");
+            formatter.end();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing diff: " + e.getMessage());
+            return false;
         }
+    }
 
-        // Unchanged files summary
-        int unchangedCount = files1.size() - removedFiles.size() - modifiedFiles.size();
-        if (unchangedCount > 0) {
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            diffOutput.add("✅ UNCHANGED FILES (" + unchangedCount + ")");
-            diffOutput.add("───────────────────────────────────────────────────────────────────────────");
-            files1.stream()
-                .filter(f -> !removedFiles.contains(f) && !modifiedFiles.contains(f))
-                .sorted()
-                .forEach(file -> diffOutput.add("  ➜ " + file));
-            diffOutput.add("");
+    /**
+     * Gets the content path of a file in a snapshot. A snapshot without
+     * readable content yields an empty path, which reads as a missing file.
+     */
+    private String contentPath(Snapshot snapshot, String file) {
+        File content = snapshot.getFile(file);
+        return content != null ? content.getPath() : "";
+    }
+
+    /**
+     * Diffs each file on the shared fork/join pool and collects the results
+     * in the given order.
+     */
+    private List<FileDiff> diffFiles(List<String> oldFiles, List<String> newFiles, Snapshot oldSide, Snapshot newSide,
+                                     DiffAlgorithm algorithm) {
+        List<FileDiff> results = new ArrayList<>(newFiles.size());
+        try {
+            forEachFileDiff(oldFiles, newFiles, oldSide, newSide, algorithm, results::add);
+        } catch (IOException e) {
+            // Collecting into a list cannot fail
         }
+        return results;
+    }
 
-        // Final summary
-        diffOutput.add("╔════════════════════════════════════════════════════════════════════════╗");
-        int totalAdded = addedFiles.size();
-        int totalRemoved = removedFiles.size();
-        int totalModified = modifiedFiles.size();
-        diffOutput.add(String.format("║ Total: %d file(s) added, %d removed, %d modified, %d unchanged        ║",
-            totalAdded, totalRemoved, totalModified, unchangedCount));
-        diffOutput.add("╚════════════════════════════════════════════════════════════════════════╝");
+    /**
+     * Diffs each file on the shared fork/join pool and hands the results to
+     * the consumer in the given order, whatever order the tasks finish in.
+     * The old version of newFiles[i] is oldFiles[i], which differs for
+     * renames and copies. Only a bounded window of files is in flight, so
+     * finished results can be dropped as soon as they are consumed. Files
+     * whose content hash pair is already in the cache are not read at all.
+     */
+    private void forEachFileDiff(List<String> oldFiles, List<String> newFiles, Snapshot oldSide, Snapshot newSide,
+                                 DiffAlgorithm algorithm, FileDiffConsumer consumer) throws IOException {
+        int window = DIFF_WINDOW_PER_THREAD * DIFF_POOL.getParallelism();
+        Deque<ForkJoinTask<FileDiff>> pending = new ArrayDeque<>();
+        int submitted = 0;
 
-        return diffOutput;
+        try {
+            for (int i = 0; i < newFiles.size(); i++) {
+                while (submitted < newFiles.size() && submitted - i < window) {
+                    pending.addLast(submitFileDiff(oldFiles.get(submitted), newFiles.get(submitted),
+                        oldSide, newSide, algorithm));
+                    submitted++;
+                }
+                consumer.accept(pending.removeFirst().join());
+            }
+        } finally {
+            // A failing consumer leaves tasks that nobody will read
+            for (ForkJoinTask<FileDiff> task : pending) {
+                task.cancel(false);
+            }
+        }
     }
 
     /**
-     * Generate line-by-line diff using simple algorithm
-     * Shows added, removed, and context lines
+     * Starts the diff of one file, or completes it at once from the cache.
      */
-    private List<String> generateLineDiff(List<String> oldLines, List<String> newLines) {
-        List<String> diffLines = new ArrayList<>();
+    private ForkJoinTask<FileDiff> submitFileDiff(String oldFile, String file, Snapshot oldSide, Snapshot newSide,
+                                                  DiffAlgorithm algorithm) {
+        String oldHash = oldSide.getHash(oldFile);
+        String newHash = newSide.getHash(file);
+        boolean cacheable = cache != null && oldHash != null && newHash != null;
 
-        if (oldLines.isEmpty() && newLines.isEmpty()) {
-            return diffLines;
+        FileDiff cached = cacheable ? cache.get(oldHash, newHash, algorithm) : null;
+        if (cached != null) {
+            FileDiff result = cached.withPath(file);
+            result.setOldPath(oldFile);
+            ForkJoinTask<FileDiff> done = ForkJoinTask.adapt(() -> result);
+            done.complete(result);
+            return done;
         }
 
-        if (oldLines.isEmpty()) {
-            // All lines added
-            for (int i = 0; i < newLines.size(); i++) {
-                diffLines.add(String.format("  ➕ [%3d] %s", i + 1, newLines.get(i)));
+        return DIFF_POOL.submit(() -> {
+            FileDiff fileDiff = computeFileDiff(file, contentPath(oldSide, oldFile), oldHash,
+                contentPath(newSide, file), newHash, algorithm);
+            // Coarse or failed results depend on limits, not only on content
+            if (cacheable && fileDiff.getError() == null && !fileDiff.isTimedOut() && !fileDiff.isOverBudget()) {
+                cache.put(oldHash, newHash, algorithm, fileDiff);
             }
-            return diffLines;
+            if (!oldFile.equals(file)) {
+                // The cached instance is shared, so the old path goes on a copy
+                fileDiff = fileDiff.withPath(file);
+                fileDiff.setOldPath(oldFile);
+            }
+            return fileDiff;
+        });
+    }
+
+    /**
+     * Receives per-file diff results in order.
+     */
+    private interface FileDiffConsumer {
+        void accept(FileDiff fileDiff) throws IOException;
+    }
+
+    /**
+     * Diffs one file between two snapshot paths. Binary content goes to the
+     * block diff and is never split into lines.
+     */
+    private FileDiff computeFileDiff(String file, String oldPath, String oldHash,
+                                     String newPath, String newHash, DiffAlgorithm algorithm) {
+        if (BinaryDetector.isBinary(new File(oldPath), oldHash) || BinaryDetector.isBinary(new File(newPath), newHash)) {
+            return computeBinaryDiff(file, oldPath, newPath);
+        }
+        if (isLargeFile(oldPath) || isLargeFile(newPath)) {
+            return computeLargeFileDiff(file, oldPath, newPath, algorithm);
         }
 
-        if (newLines.isEmpty()) {
-            // All lines removed
-            for (int i = 0; i < oldLines.size(); i++) {
-                diffLines.add(String.format("  ➖ [%3d] %s", i + 1, oldLines.get(i)));
-            }
-            return diffLines;
+        FileDiff fileDiff = new FileDiff(file);
+        List<String> oldLines = readFileContents(oldPath);
+        List<String> newLines = readFileContents(newPath);
+        boolean oldMissingNewline = FileDiff.endsWithoutNewline(new File(oldPath));
+        boolean newMissingNewline = FileDiff.endsWithoutNewline(new File(newPath));
+
+        Deadline deadline = Deadline.after(timeoutMillis);
+        List<Edit> edits = oldMissingNewline == newMissingNewline
+            ? computeEdits(oldLines, newLines, algorithm, deadline)
+            // The last lines differ in their terminator, so they must not match
+            : computeEdits(markLastLine(oldLines, oldMissingNewline), markLastLine(newLines, newMissingNewline),
+                           algorithm, deadline);
+        fileDiff.setTimedOut(deadline.isReached());
+
+        int additions = 0;
+        int deletions = 0;
+        for (Edit edit : edits) {
+            additions += edit.getLengthB();
+            deletions += edit.getLengthA();
         }
+        fileDiff.setHunks(Hunk.fromEdits(edits, oldLines, newLines, CONTEXT_LINES));
+        fileDiff.setAdditions(additions);
+        fileDiff.setDeletions(deletions);
+        fileDiff.setOldLineCount(oldLines.size());
+        fileDiff.setNewLineCount(newLines.size());
+        fileDiff.setOldMissingNewline(oldMissingNewline);
+        fileDiff.setNewMissingNewline(newMissingNewline);
+        return fileDiff;
+    }
 
-        // Use simple diff algorithm (line-by-line comparison)
-        Set<String> oldSet = new HashSet<>(oldLines);
-        Set<String> newSet = new HashSet<>(newLines);
+    /**
+     * Copies the lines with the last one made unequal to any real line,
+     * for diffing against a version whose last line is terminated.
+     */
+    private static List<String> markLastLine(List<String> lines, boolean missingNewline) {
+        if (!missingNewline || lines.isEmpty()) {
+            return lines;
+        }
+        List<String> marked = new ArrayList<>(lines);
+        marked.set(marked.size() - 1, marked.get(marked.size() - 1) + '\0');
+        return marked;
+    }
 
-        // Show all lines with indicators
-        for (int i = 0; i < oldLines.size(); i++) {
-            String line = oldLines.get(i);
-            if (!newSet.contains(line)) {
-                diffLines.add(String.format("  ➖ [%3d] %s", i + 1, line));
-            }
+    /**
+     * Diffs two binary snapshots into changed byte ranges.
+     */
+    private FileDiff computeBinaryDiff(String file, String oldPath, String newPath) {
+        FileDiff fileDiff = new FileDiff(file);
+        fileDiff.setBinary(true);
+        File oldFile = new File(oldPath);
+        File newFile = new File(newPath);
+        if (!oldFile.exists() || !newFile.exists()) {
+            fileDiff.setError("File snapshot missing - cannot compare");
+            return fileDiff;
+        }
+
+        try {
+            BinaryDiff.Result result = new BinaryDiff().diff(oldFile, newFile);
+            fileDiff.setOldSize(result.getOldSize());
+            fileDiff.setNewSize(result.getNewSize());
+            fileDiff.setByteRanges(result.getRanges());
+        } catch (IOException e) {
+            System.err.println("Error comparing binary files: " + e.getMessage());
+            fileDiff.setError("Error reading file: " + e.getMessage());
+        }
+        return fileDiff;
+    }
+
+    /**
+     * Checks whether a file should be diffed with the streaming large file path.
+     */
+    private boolean isLargeFile(String filePath) {
+        return new File(filePath).length() >= largeFileThreshold;
+    }
+
+    /**
+     * Diffs two large files from memory-mapped buffers. Only one large file
+     * is diffed at a time so the memory budget holds across parallel tasks.
+     */
+    private FileDiff computeLargeFileDiff(String file, String oldPath, String newPath, DiffAlgorithm algorithm) {
+        FileDiff fileDiff = new FileDiff(file);
+        File oldFile = new File(oldPath);
+        File newFile = new File(newPath);
+        if (!oldFile.exists() || !newFile.exists()) {
+            fileDiff.setError("File snapshot missing - cannot compare");
+            return fileDiff;
         }
 
-        for (int i = 0; i < newLines.size(); i++) {
-            String line = newLines.get(i);
-            if (!oldSet.contains(line)) {
-                diffLines.add(String.format("  ➕ [%3d] %s", i + 1, line));
+        LargeFileDiff.Result result;
+        synchronized (largeFileLock) {
+            try {
+                result = new LargeFileDiff(algorithm, timeoutMillis, memoryBudget).diff(oldFile, newFile, CONTEXT_LINES);
+            } catch (IOException e) {
+                System.err.println("Error comparing large files: " + e.getMessage());
+                fileDiff.setError("Error reading file: " + e.getMessage());
+                return fileDiff;
             }
         }
 
-        return diffLines;
+        fileDiff.setTimedOut(result.isTimedOut());
+        fileDiff.setHunks(result.getHunks());
+        fileDiff.setAdditions(result.getAdditions());
+        fileDiff.setDeletions(result.getDeletions());
+        fileDiff.setOldLineCount(result.getOldLineCount());
+        fileDiff.setNewLineCount(result.getNewLineCount());
+        fileDiff.setOldMissingNewline(result.isOldMissingNewline());
+        fileDiff.setNewMissingNewline(result.isNewMissingNewline());
+        fileDiff.setOverBudget(result.isOverBudget());
+        return fileDiff;
+    }
+
+    /**
+     * Computes the edit script between two line lists.
+     */
+    private List<Edit> computeEdits(List<String> oldLines, List<String> newLines, DiffAlgorithm algorithm,
+                                    Deadline deadline) {
+        int[][] hashed = LineHasher.hashLines(oldLines, newLines);
+        return algorithm.diff(hashed[0], hashed[1], deadline);
     }
 
     /**
@@ -245,12 +543,12 @@ public class DiffUtil {
                 return lines;
             }
 
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lines.add(line);
+            try (BufferedReader reader = newReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
             }
-            reader.close();
         } catch (IOException e) {
             System.err.println("Error reading file: " + filePath);
         }
@@ -268,40 +566,27 @@ public class DiffUtil {
             return diffLines;
         }
 
-        Set<String> files1 = new HashSet<>(commit1.getChangedFiles());
-        Set<String> files2 = new HashSet<>(commit2.getChangedFiles());
-
-        Set<String> allFiles = new HashSet<>(files1);
-        allFiles.addAll(files2);
-
-        if (allFiles.isEmpty()) {
+        if (commit1.getChangedFiles().isEmpty() && commit2.getChangedFiles().isEmpty()) {
             diffLines.add("No files in either commit");
             return diffLines;
         }
 
-        List<String> addedFiles = new ArrayList<>();
-        List<String> removedFiles = new ArrayList<>();
-        List<String> commonFiles = new ArrayList<>();
-
-        for (String file : allFiles) {
-            if (files1.contains(file) && files2.contains(file)) {
-                commonFiles.add(file);
-            } else if (files2.contains(file) && !files1.contains(file)) {
-                addedFiles.add(file);
-            } else if (files1.contains(file) && !files2.contains(file)) {
-                removedFiles.add(file);
-            }
-        }
+        // No snapshot access here, so only renames with identical content are found
+        FileChanges changes = classifyFiles(Snapshot.ofCommit(commit1, null), Snapshot.ofCommit(commit2, null));
+        List<String> addedFiles = changes.added;
+        List<String> removedFiles = changes.removed;
+        List<String> commonFiles = changes.modified;
 
         diffLines.add("=== File Changes Summary ===");
         diffLines.add("Added files: " + addedFiles.size());
         diffLines.add("Removed files: " + removedFiles.size());
         diffLines.add("Modified files: " + commonFiles.size());
+        diffLines.add("Renamed/copied files: " + changes.renamed.size());
+        diffLines.add("Unchanged files: " + changes.unchanged.size());
         diffLines.add("");
 
         if (!addedFiles.isEmpty()) {
             diffLines.add("Added Files:");
-            Collections.sort(addedFiles);
             for (String file : addedFiles) {
                 diffLines.add("  + " + file);
             }
@@ -310,7 +595,6 @@ public class DiffUtil {
 
         if (!removedFiles.isEmpty()) {
             diffLines.add("Removed Files:");
-            Collections.sort(removedFiles);
             for (String file : removedFiles) {
                 diffLines.add("  - " + file);
             }
@@ -319,15 +603,346 @@ public class DiffUtil {
 
         if (!commonFiles.isEmpty()) {
             diffLines.add("Modified Files:");
-            Collections.sort(commonFiles);
             for (String file : commonFiles) {
                 diffLines.add("  ~ " + file);
             }
         }
 
+        if (!changes.renamed.isEmpty()) {
+            if (!commonFiles.isEmpty()) {
+                diffLines.add("");
+            }
+            diffLines.add("Renamed/Copied Files:");
+            for (RenameDetector.Match match : changes.renamed) {
+                diffLines.add("  " + (match.isCopy() ? "c " : "> ") + match.getOldPath() + " -> " + match.getNewPath());
+            }
+        }
+
         return diffLines;
     }
 
+    /**
+     * Lists each changed path with a status letter (A added, D deleted,
+     * M modified), like git diff --name-status. Uses only the recorded
+     * content hashes, so no file is read; only exact renames are found.
+     *
+     * @param commit1 First commit
+     * @param commit2 Second commit
+     * @return One "status<TAB>path" line per changed file, sorted by path
+     */
+    public List<String> generateNameStatus(Commit commit1, Commit commit2) {
+        return generateNameStatus(commit1, commit2, null);
+    }
+
+    /**
+     * Lists each changed path with a status letter (A added, D deleted,
+     * M modified, R renamed, C copied), like git diff --name-status.
+     * Renames and copies carry their similarity ("R087") and both paths.
+     * Snapshots are only read to sketch added and removed files whose
+     * content has no exact match.
+     *
+     * @param commit1 First commit
+     * @param commit2 Second commit
+     * @param repoPath Repository path to access commit files (null for exact renames only)
+     * @return One "status<TAB>path" line per changed file, sorted by (new) path
+     */
+    public List<String> generateNameStatus(Commit commit1, Commit commit2, String repoPath) {
+        if (commit1 == null || commit2 == null) {
+            List<String> lines = new ArrayList<>();
+            lines.add("ERROR: Cannot compare null commits");
+            return lines;
+        }
+        return generateNameStatus(Snapshot.ofCommit(commit1, repoPath), Snapshot.ofCommit(commit2, repoPath));
+    }
+
+    /**
+     * Lists each changed path between two snapshots with a status letter,
+     * like git diff --name-status.
+     *
+     * @param oldSide Old side of the comparison
+     * @param newSide New side of the comparison
+     * @return One "status<TAB>path" line per changed file, sorted by (new) path
+     */
+    public List<String> generateNameStatus(Snapshot oldSide, Snapshot newSide) {
+        List<String> lines = new ArrayList<>();
+        FileChanges changes = classifyFiles(oldSide, newSide);
+        SortedMap<String, String> entries = new TreeMap<>();
+        changes.added.forEach(file -> entries.put(file, "A\t" + file));
+        changes.removed.forEach(file -> entries.put(file, "D\t" + file));
+        changes.modified.forEach(file -> entries.put(file, "M\t" + file));
+        for (RenameDetector.Match match : changes.renamed) {
+            entries.put(match.getNewPath(), String.format("%s%03d\t%s\t%s", match.isCopy() ? "C" : "R",
+                match.getSimilarity(), match.getOldPath(), match.getNewPath()));
+        }
+        lines.addAll(entries.values());
+        return lines;
+    }
+
+    /**
+     * Lists added and deleted line counts per changed path, like git diff
+     * --numstat. Files with equal content hashes are skipped without being
+     * read; only modified files are diffed, in parallel.
+     *
+     * @param commit1 First commit
+     * @param commit2 Second commit
+     * @param repoPath Repository path to access commit files
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return One "added<TAB>deleted<TAB>path" line per changed file, sorted by path
+     */
+    public List<String> generateNumStat(Commit commit1, Commit commit2, String repoPath, DiffAlgorithm algorithm) {
+        if (commit1 == null || commit2 == null) {
+            List<String> lines = new ArrayList<>();
+            lines.add("ERROR: Cannot compare null commits");
+            return lines;
+        }
+        return generateNumStat(Snapshot.ofCommit(commit1, repoPath), Snapshot.ofCommit(commit2, repoPath), algorithm);
+    }
+
+    /**
+     * Lists added and deleted line counts per changed path between two
+     * snapshots, like git diff --numstat.
+     *
+     * @param oldSide Old side of the comparison
+     * @param newSide New side of the comparison
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return One "added<TAB>deleted<TAB>path" line per changed file, sorted by path
+     */
+    public List<String> generateNumStat(Snapshot oldSide, Snapshot newSide, DiffAlgorithm algorithm) {
+        List<String> lines = new ArrayList<>();
+        FileChanges changes = classifyFiles(oldSide, newSide);
+        SortedMap<String, String> entries = new TreeMap<>();
+
+        // Binary files have no line counts and show as "-", like git
+        for (String file : changes.added) {
+            String snapshot = contentPath(newSide, file);
+            entries.put(file, (BinaryDetector.isBinary(new File(snapshot), newSide.getHash(file))
+                    ? "-\t-" : countLines(snapshot) + "\t0") + "\t" + file);
+        }
+        for (String file : changes.removed) {
+            String snapshot = contentPath(oldSide, file);
+            entries.put(file, (BinaryDetector.isBinary(new File(snapshot), oldSide.getHash(file))
+                    ? "-\t-" : "0\t" + countLines(snapshot)) + "\t" + file);
+        }
+
+        // Renames and copies are diffed against their source like modified files
+        List<String> oldPaths = new ArrayList<>(changes.modified);
+        List<String> newPaths = new ArrayList<>(changes.modified);
+        for (RenameDetector.Match match : changes.renamed) {
+            if (match.getSimilarity() < 100) {
+                oldPaths.add(match.getOldPath());
+                newPaths.add(match.getNewPath());
+            } else {
+                entries.put(match.getNewPath(), "0\t0\t" + match.getOldPath() + " => " + match.getNewPath());
+            }
+        }
+        DiffAlgorithm selectedAlgorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
+        for (FileDiff fileDiff : diffFiles(oldPaths, newPaths, oldSide, newSide, selectedAlgorithm)) {
+            String counts = fileDiff.getError() != null || fileDiff.isBinary()
+                    ? "-\t-" : fileDiff.getAdditions() + "\t" + fileDiff.getDeletions();
+            String path = fileDiff.isRenamed() ? fileDiff.getOldPath() + " => " + fileDiff.getPath() : fileDiff.getPath();
+            entries.put(fileDiff.getPath(), counts + "\t" + path);
+        }
+
+        lines.addAll(entries.values());
+        return lines;
+    }
+
+    /**
+     * Counts the lines and bytes changed in each file of a snapshot against
+     * its version in another, such as a new commit against the previous
+     * versions of its files. Files with equal content hashes are not read,
+     * and modified files are diffed in parallel.
+     *
+     * @param oldSide Previous versions; files missing here count as added
+     * @param newSide New versions; the counts follow its file order
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return The statistics
+     */
+    public ChangeStats computeChangeStats(Snapshot oldSide, Snapshot newSide, DiffAlgorithm algorithm) {
+        List<String> files = newSide.getFiles();
+        Set<String> previous = oldSide != null ? new HashSet<>(oldSide.getFiles()) : Collections.emptySet();
+        ChangeStats stats = new ChangeStats(files.size());
+        List<String> modified = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            String file = files.get(i);
+            String newHash = newSide.getHash(file);
+            if (!previous.contains(file)) {
+                File content = new File(contentPath(newSide, file));
+                if (BinaryDetector.isBinary(content, newHash)) {
+                    stats.setBinaryFile(i, content.length());
+                } else {
+                    stats.setFile(i, (int) countLines(content.getPath()), 0, content.length());
+                }
+            } else if (newHash == null || !newHash.equals(oldSide.getHash(file))) {
+                modified.add(file);
+                positions.add(i);
+            }
+        }
+
+        DiffAlgorithm selectedAlgorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
+        int next = 0;
+        for (FileDiff fileDiff : diffFiles(modified, modified, oldSide, newSide, selectedAlgorithm)) {
+            int index = positions.get(next++);
+            if (fileDiff.getError() != null) {
+                continue;
+            }
+            if (fileDiff.isBinary()) {
+                long bytes = 0;
+                for (BinaryDiff.Range range : fileDiff.getByteRanges()) {
+                    bytes += range.getOldLength() + range.getNewLength();
+                }
+                stats.setBinaryFile(index, bytes);
+            } else {
+                stats.setFile(index, fileDiff.getAdditions(), fileDiff.getDeletions(), changedBytes(fileDiff));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Counts the UTF-8 bytes of the added and deleted lines of a diff,
+     * one newline included per line.
+     */
+    private static long changedBytes(FileDiff fileDiff) {
+        long bytes = 0;
+        for (Hunk hunk : fileDiff.getHunks()) {
+            for (String line : hunk.getLines()) {
+                if (line.startsWith("+") || line.startsWith("-")) {
+                    bytes += line.substring(1).getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Sorts the files of two snapshots into added, removed, modified,
+     * unchanged and renamed/copied. A file present in both is unchanged when
+     * both sides recorded the same content hash; without hashes it counts
+     * as modified. Added files matching a removed file become renames, and
+     * added files matching a file present in both become copies. Without
+     * readable content only identical content is matched.
+     */
+    private FileChanges classifyFiles(Snapshot oldSide, Snapshot newSide) {
+        Set<String> files1 = new HashSet<>(oldSide.getFiles());
+        Set<String> files2 = new HashSet<>(newSide.getFiles());
+        FileChanges changes = new FileChanges();
+
+        for (String file : files2) {
+            if (!files1.contains(file)) {
+                changes.added.add(file);
+            }
+        }
+        for (String file : files1) {
+            if (!files2.contains(file)) {
+                changes.removed.add(file);
+                continue;
+            }
+            String oldHash = oldSide.getHash(file);
+            if (oldHash != null && oldHash.equals(newSide.getHash(file))) {
+                changes.unchanged.add(file);
+            } else {
+                changes.modified.add(file);
+            }
+        }
+
+        Collections.sort(changes.added);
+        Collections.sort(changes.removed);
+        Collections.sort(changes.modified);
+        Collections.sort(changes.unchanged);
+
+        if (renameDetector != null && !changes.added.isEmpty()) {
+            detectRenames(changes, oldSide, newSide);
+        }
+        return changes;
+    }
+
+    /**
+     * Moves rename and copy pairs out of the added and removed lists.
+     * Unchanged files are offered as copy sources without a snapshot, so
+     * they only match identical content (or an already cached sketch).
+     */
+    private void detectRenames(FileChanges changes, Snapshot oldSide, Snapshot newSide) {
+        List<RenameDetector.Candidate> removed = new ArrayList<>();
+        for (String file : changes.removed) {
+            removed.add(candidate(file, oldSide, true));
+        }
+        List<RenameDetector.Candidate> added = new ArrayList<>();
+        for (String file : changes.added) {
+            added.add(candidate(file, newSide, true));
+        }
+        List<RenameDetector.Candidate> copySources = new ArrayList<>();
+        for (String file : changes.modified) {
+            copySources.add(candidate(file, oldSide, true));
+        }
+        for (String file : changes.unchanged) {
+            copySources.add(candidate(file, oldSide, false));
+        }
+
+        List<RenameDetector.Match> matches = renameDetector.detect(removed, added, copySources);
+        if (matches.isEmpty()) {
+            return;
+        }
+        Set<String> matchedNew = new HashSet<>();
+        Set<String> renamedOld = new HashSet<>();
+        for (RenameDetector.Match match : matches) {
+            matchedNew.add(match.getNewPath());
+            if (!match.isCopy()) {
+                renamedOld.add(match.getOldPath());
+            }
+        }
+        changes.added.removeIf(matchedNew::contains);
+        changes.removed.removeIf(renamedOld::contains);
+        changes.renamed.addAll(matches);
+        changes.renamed.sort(Comparator.comparing(RenameDetector.Match::getNewPath));
+    }
+
+    /**
+     * Describes a snapshot's file for rename detection.
+     */
+    private RenameDetector.Candidate candidate(String file, Snapshot snapshot, boolean withContent) {
+        File content = withContent ? snapshot.getFile(file) : null;
+        return new RenameDetector.Candidate(file, snapshot.getHash(file), content);
+    }
+
+    /**
+     * Paths of a snapshot pair by change category, each sorted (renames by new path).
+     */
+    private static class FileChanges {
+        private final List<String> added = new ArrayList<>();
+        private final List<String> removed = new ArrayList<>();
+        private final List<String> modified = new ArrayList<>();
+        private final List<String> unchanged = new ArrayList<>();
+        private final List<RenameDetector.Match> renamed = new ArrayList<>();
+
+        private int countRenames(boolean copies) {
+            int count = 0;
+            for (RenameDetector.Match match : renamed) {
+                if (match.isCopy() == copies) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Counts the lines of a file without keeping them in memory.
+     */
+    private long countLines(String filePath) {
+        long count = 0;
+        try (BufferedReader reader = newReader(new File(filePath))) {
+            while (reader.readLine() != null) {
+                count++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + filePath);
+        }
+        return count;
+    }
+
     /**
      * Get added lines between two files
      */
@@ -342,14 +957,16 @@ public class DiffUtil {
             return addedLines;
         }
 
+        if (BinaryDetector.isBinary(oldFile, null) || BinaryDetector.isBinary(newFile, null)) {
+            return addedLines;
+        }
+
         try {
-            Set<String> oldLines = new HashSet<>(readLines(oldFile));
+            List<String> oldLines = readLines(oldFile);
             List<String> newLines = readLines(newFile);
 
-            for (String line : newLines) {
-                if (!oldLines.contains(line)) {
-                    addedLines.add(line);
-                }
+            for (Edit edit : computeEdits(oldLines, newLines, DiffAlgorithm.MYERS, Deadline.after(timeoutMillis))) {
+                addedLines.addAll(newLines.subList(edit.getBeginB(), edit.getEndB()));
             }
 
         } catch (IOException e) {
@@ -373,14 +990,16 @@ public class DiffUtil {
             return removedLines;
         }
 
+        if (BinaryDetector.isBinary(oldFile, null) || BinaryDetector.isBinary(newFile, null)) {
+            return removedLines;
+        }
+
         try {
             List<String> oldLines = readLines(oldFile);
-            Set<String> newLines = new HashSet<>(readLines(newFile));
+            List<String> newLines = readLines(newFile);
 
-            for (String line : oldLines) {
-                if (!newLines.contains(line)) {
-                    removedLines.add(line);
-                }
+            for (Edit edit : computeEdits(oldLines, newLines, DiffAlgorithm.MYERS, Deadline.after(timeoutMillis))) {
+                removedLines.addAll(oldLines.subList(edit.getBeginA(), edit.getEndA()));
             }
 
         } catch (IOException e) {
@@ -395,7 +1014,7 @@ public class DiffUtil {
      */
     private List<String> readLines(File file) throws IOException {
         List<String> lines = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        try (BufferedReader reader = newReader(file)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 lines.add(line);
@@ -403,5 +1022,13 @@ public class DiffUtil {
         }
         return lines;
     }
+
+    /**
+     * Opens a UTF-8 reader; malformed bytes are replaced rather than failing,
+     * so the result does not depend on the platform default charset.
+     */
+    private BufferedReader newReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
 }
 
@@ -165,6 +165,13 @@ public class FileHandler {
             metadata.append("SUMMARY=").append(commit.getSummary()).append("\n");
             metadata.append("FILE_COUNT=").append(commit.getFileCount()).append("\n");
             metadata.append("FILES=").append(String.join(",", commit.getChangedFiles())).append("\n");
+            metadata.append("PARENTS=").append(String.join(",", commit.getParentIds())).append("\n");
+            if (!commit.getFileHashes().isEmpty()) {
+                metadata.append("HASHES=").append(Repository.joinHashes(commit, ",")).append("\n");
+            }
+            if (commit.getChangeStats() != null) {
+                metadata.append("STATS=").append(commit.getChangeStats().encode(",")).append("\n");
+            }
 
             return writeFile(metadataFile.toString(), metadata.toString());
         } catch (Exception e) {
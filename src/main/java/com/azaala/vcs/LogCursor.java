@@ -0,0 +1,103 @@
+package com.azaala.vcs;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The commits of a {@link LogQuery}, produced one at a time. History is
+ * walked only as far as the commits taken so far need, and a commit's
+ * details are looked up only once it passes the query's filters, so the
+ * first page costs the same however long the history is.
+ *
+ * A cursor can be kept to fetch further pages with {@link #nextPage(int)};
+ * a new process can continue from {@link #getLastCommitId()} with
+ * {@link LogQuery#setAfter(String)}. Cursors are not thread-safe.
+ */
+public class LogCursor implements Iterator<Commit> {
+    private final Repository repository;
+    private final Iterator<String> commitIds;
+    private final LogQuery query;
+    private String after;
+    private int toSkip;
+    private int remaining;
+    private Commit next;
+    private String lastCommitId;
+
+    /**
+     * Creates a cursor over commit IDs in log order.
+     *
+     * @param repository Repository to look commits up in
+     * @param commitIds Commit IDs in log order, read lazily
+     * @param query Filters and page bounds
+     */
+    LogCursor(Repository repository, Iterator<String> commitIds, LogQuery query) {
+        this.repository = repository;
+        this.commitIds = commitIds;
+        this.query = query;
+        this.after = query.getAfter();
+        this.toSkip = query.getSkip();
+        this.remaining = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (remaining <= 0) {
+            return false;
+        }
+        while (next == null && commitIds.hasNext()) {
+            String commitId = commitIds.next();
+            if (after != null) {
+                // Skipping is done on IDs alone; no commit is looked up
+                if (after.equals(commitId)) {
+                    after = null;
+                }
+                continue;
+            }
+            Commit commit = repository.getCommitById(commitId);
+            if (commit == null || !query.matches(commit)) {
+                continue;
+            }
+            if (toSkip > 0) {
+                toSkip--;
+                continue;
+            }
+            next = commit;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Commit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Commit commit = next;
+        next = null;
+        remaining--;
+        lastCommitId = commit.getCommitId();
+        return commit;
+    }
+
+    /**
+     * Takes the next commits from the cursor.
+     *
+     * @param size Most commits to take
+     * @return Up to size commits, fewer at the end of the log (never null)
+     */
+    public List<Commit> nextPage(int size) {
+        List<Commit> page = new ArrayList<>();
+        while (page.size() < size && hasNext()) {
+            page.add(next());
+        }
+        return page;
+    }
+
+    /**
+     * @return ID of the last commit taken, to continue from (null if none yet)
+     */
+    public String getLastCommitId() {
+        return lastCommitId;
+    }
+}
@@ -0,0 +1,143 @@
+package com.azaala.vcs;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Which commits a log should list. A query starts from a revision and can
+ * be narrowed by path, date and author; limit, skip and after select one page of
+ * the result. Pass it to {@link VCS#queryLog(LogQuery)} to get a cursor.
+ */
+public class LogQuery {
+    private String revision = "HEAD";
+    private String path;
+    private LocalDateTime since;
+    private LocalDateTime until;
+    private String author;
+    private int limit;
+    private int skip;
+    private String after;
+
+    public String getRevision() {
+        return revision;
+    }
+
+    /**
+     * Sets where the log starts.
+     *
+     * @param revision Commit ID, branch, tag or HEAD (null for HEAD)
+     */
+    public void setRevision(String revision) {
+        this.revision = revision != null && !revision.trim().isEmpty() ? revision.trim() : "HEAD";
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Limits the log to commits that changed a file or anything under a
+     * directory.
+     *
+     * @param path File or directory, absolute or relative to the repository
+     *             root (null for all commits)
+     */
+    public void setPath(String path) {
+        this.path = path != null && !path.trim().isEmpty() ? path.trim() : null;
+    }
+
+    public LocalDateTime getSince() {
+        return since;
+    }
+
+    /**
+     * @param since Earliest commit time to list, inclusive (null for no bound)
+     */
+    public void setSince(LocalDateTime since) {
+        this.since = since;
+    }
+
+    public LocalDateTime getUntil() {
+        return until;
+    }
+
+    /**
+     * @param until Latest commit time to list, inclusive (null for no bound)
+     */
+    public void setUntil(LocalDateTime until) {
+        this.until = until;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    /**
+     * Limits the log to commits whose author contains some text, ignoring
+     * case, such as a name or an email address.
+     *
+     * @param author Text to look for (null for all authors)
+     */
+    public void setAuthor(String author) {
+        this.author = author != null && !author.trim().isEmpty() ? author.trim() : null;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit Most commits to list (0 or less for all)
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(0, limit);
+    }
+
+    public int getSkip() {
+        return skip;
+    }
+
+    /**
+     * @param skip Number of matching commits to leave out before listing
+     */
+    public void setSkip(int skip) {
+        this.skip = Math.max(0, skip);
+    }
+
+    public String getAfter() {
+        return after;
+    }
+
+    /**
+     * Continues an earlier log: only commits that come after this one in
+     * log order are listed. Use the last commit of the previous page.
+     *
+     * @param after Commit ID (null to start at the beginning)
+     */
+    public void setAfter(String after) {
+        this.after = after != null && !after.trim().isEmpty() ? after.trim() : null;
+    }
+
+    /**
+     * Checks the date and author bounds of the query.
+     *
+     * @param commit Commit to check
+     * @return true if the commit's time is within since and until, and its
+     *         author matches
+     */
+    boolean matches(Commit commit) {
+        LocalDateTime time = commit.getTimestamp();
+        return (since == null || !time.isBefore(since)) && (until == null || !time.isAfter(until))
+            && (author == null || matchesAuthor(commit.getAuthor(), author));
+    }
+
+    /**
+     * @param commitAuthor Author recorded on a commit (may be null)
+     * @param author Text to look for
+     * @return true if the commit's author contains the text, ignoring case
+     */
+    public static boolean matchesAuthor(String commitAuthor, String author) {
+        return commitAuthor != null
+            && commitAuthor.toLowerCase(Locale.ROOT).contains(author.toLowerCase(Locale.ROOT));
+    }
+}
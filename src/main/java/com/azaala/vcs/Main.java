@@ -1,9 +1,27 @@
 package com.azaala.vcs;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import javax.swing.SwingUtilities;
+import com.azaala.vcs.diff.DiffAlgorithm;
+import com.azaala.vcs.diff.DiffFormatter;
+import com.azaala.vcs.diff.PrettyDiffFormatter;
+import com.azaala.vcs.diff.UnifiedDiffFormatter;
 import com.azaala.vcs.gui.Dashboard;
+import com.azaala.vcs.patch.PatchApplier;
 
 /**
  * Main entry point for the Azaala Version Control System.
@@ -119,9 +137,40 @@ public class Main {
                 case "history":
                     handleLogCommand(commandArgs);
                     break;
+                case "search":
+                    handleSearchCommand(commandArgs);
+                    break;
+                case "grep":
+                    handleGrepCommand(commandArgs);
+                    break;
+                case "blame":
+                case "annotate":
+                    handleBlameCommand(commandArgs);
+                    break;
+                case "show":
+                    handleShowCommand(commandArgs);
+                    break;
                 case "diff":
                     handleDiffCommand(commandArgs);
                     break;
+                case "apply":
+                    handleApplyCommand(commandArgs);
+                    break;
+                case "merge":
+                    handleMergeCommand(commandArgs);
+                    break;
+                case "branch":
+                    handleBranchCommand(commandArgs);
+                    break;
+                case "tag":
+                    handleTagCommand(commandArgs);
+                    break;
+                case "switch":
+                    handleSwitchCommand(commandArgs);
+                    break;
+                case "pack-refs":
+                    handlePackRefsCommand();
+                    break;
                 case "activity":
                 case "summary":
                     handleActivityCommand(commandArgs);
@@ -189,12 +238,19 @@ public class Main {
      * Handles commit command from console arguments.
      */
     private static void handleCommitCommand(String[] args) {
-        if (args.length == 0) {
-            System.err.println("Usage: commit \"<commit-message>\"");
+        String message = null;
+        for (String arg : args) {
+            if (arg.startsWith("--author=")) {
+                commandHandler.getVCS().setAuthor(arg.substring("--author=".length()));
+            } else if (message == null) {
+                message = arg;
+            }
+        }
+        if (message == null) {
+            System.err.println("Usage: commit \"<commit-message>\" [--author=\"<name> <email>\"]");
             System.err.println("Example: commit \"Initial commit\"");
             return;
         }
-        String message = args[0];
         System.out.println("Committing with message: " + message);
         executeCommitCommand(message);
     }
@@ -210,34 +266,470 @@ public class Main {
     }
 
     /**
-     * Handles log command from console arguments.
+     * Handles log command from console arguments:
+     * log [<rev>] [-n <count>] [--skip=<n>] [--after=<id>] [--since=<date>]
+     * [--until=<date>] [--author=<name>] [--stat] [-- <path>]. Commits are printed as they are read,
+     * so a limited log costs the same however long the history is.
      */
     private static void handleLogCommand(String[] args) {
+        LogQuery query = new LogQuery();
+        int count = 0;
+        boolean stat = false;
+        String revision = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--") && i + 2 == args.length) {
+                    query.setPath(args[++i]);
+                } else if ((arg.equals("-n") || arg.equals("--max-count")) && i + 1 < args.length) {
+                    count = Integer.parseInt(args[++i]);
+                } else if (arg.startsWith("--max-count=")) {
+                    count = Integer.parseInt(arg.substring("--max-count=".length()));
+                } else if (arg.startsWith("--skip=")) {
+                    query.setSkip(Integer.parseInt(arg.substring("--skip=".length())));
+                } else if (arg.startsWith("--after=")) {
+                    query.setAfter(arg.substring("--after=".length()));
+                } else if (arg.startsWith("--since=")) {
+                    query.setSince(parseLogDate(arg.substring("--since=".length()), false));
+                } else if (arg.startsWith("--until=")) {
+                    query.setUntil(parseLogDate(arg.substring("--until=".length()), true));
+                } else if (arg.startsWith("--author=")) {
+                    query.setAuthor(arg.substring("--author=".length()));
+                } else if (arg.equals("--stat")) {
+                    stat = true;
+                } else if (revision == null && !arg.startsWith("-")) {
+                    revision = arg;
+                } else {
+                    printLogUsage();
+                    return;
+                }
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            System.err.println("Invalid log option: " + e.getMessage());
+            printLogUsage();
+            return;
+        }
+        query.setRevision(revision);
+
         System.out.println("Retrieving commit history...");
         System.out.println("========================================");
-        executeLogCommand();
+        executeLogCommand(query, count, stat);
         System.out.println("========================================");
     }
 
+    private static void printLogUsage() {
+        System.err.println("Usage: log [<commit|branch|tag>] [-n <count>] [--skip=<n>] [--after=<commit>]");
+        System.err.println("           [--since=<date>] [--until=<date>] [--author=<name>] [--stat] [-- <path>]");
+        System.err.println("Dates are yyyy-MM-dd or \"yyyy-MM-dd HH:mm:ss\"");
+    }
+
+    /**
+     * Parses a log date bound. A date without a time means the start of
+     * the day for --since and the end of the day for --until.
+     */
+    private static LocalDateTime parseLogDate(String value, boolean endOfDay) {
+        String text = value.trim();
+        if (text.length() == 10) {
+            LocalDate date = LocalDate.parse(text);
+            return endOfDay ? date.atTime(LocalTime.MAX) : date.atStartOfDay();
+        }
+        return LocalDateTime.parse(text.replace(' ', 'T'));
+    }
+
+    /**
+     * Handles search command from console arguments: search <words...> [-n <count>].
+     */
+    private static void handleSearchCommand(String[] args) {
+        int count = 50;
+        StringBuilder query = new StringBuilder();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ((args[i].equals("-n") || args[i].equals("--max-count")) && i + 1 < args.length) {
+                    count = Integer.parseInt(args[++i]);
+                } else {
+                    query.append(query.length() > 0 ? " " : "").append(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid count: " + e.getMessage());
+            return;
+        }
+        if (query.length() == 0) {
+            System.err.println("Usage: search <words...> [-n <count>]");
+            System.err.println("Example: search fix login*");
+            return;
+        }
+
+        try {
+            List<String> matches = commandHandler.getVCS().search(query.toString(), count > 0 ? count + 1 : 0);
+            System.out.println("=== Search: " + query + " ===");
+            for (int i = 0; i < matches.size() && (count <= 0 || i < count); i++) {
+                System.out.println(matches.get(i));
+            }
+            if (matches.isEmpty()) {
+                System.out.println("No matching commits.");
+            } else if (count > 0 && matches.size() > count) {
+                System.out.println("(first " + count + " matches; use -n to show more)");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error searching commits: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles grep command from console arguments:
+     * grep [-i] [-n <count>] [--all] <pattern> [<rev>].
+     */
+    private static void handleGrepCommand(String[] args) {
+        int count = 100;
+        boolean ignoreCase = false;
+        boolean allHistory = false;
+        List<String> operands = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-i") || args[i].equals("--ignore-case")) {
+                    ignoreCase = true;
+                } else if (args[i].equals("--all")) {
+                    allHistory = true;
+                } else if ((args[i].equals("-n") || args[i].equals("--max-count")) && i + 1 < args.length) {
+                    count = Integer.parseInt(args[++i]);
+                } else {
+                    operands.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid count: " + e.getMessage());
+            return;
+        }
+        if (operands.isEmpty() || operands.size() > 2 || (allHistory && operands.size() > 1)) {
+            System.err.println("Usage: grep [-i] [-n <count>] <pattern> [<commit|branch|tag>]");
+            System.err.println("       grep [-i] [-n <count>] --all <pattern>");
+            System.err.println("Example: grep -i \"todo|fixme\"");
+            return;
+        }
+        String pattern = operands.get(0);
+        String revision = allHistory ? null : operands.size() == 2 ? operands.get(1) : "HEAD";
+
+        try {
+            List<String> matches = commandHandler.getVCS().grep(pattern, ignoreCase, revision,
+                                                                 count > 0 ? count + 1 : 0);
+            System.out.println("=== Grep: " + pattern + (allHistory ? " (all history)" : " @ " + revision) + " ===");
+            for (int i = 0; i < matches.size() && (count <= 0 || i < count); i++) {
+                System.out.println(matches.get(i));
+            }
+            if (matches.isEmpty()) {
+                System.out.println("No matching lines.");
+            } else if (count > 0 && matches.size() > count) {
+                System.out.println("(first " + count + " lines; use -n to show more)");
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error searching files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles blame command from console arguments: blame [<rev>] <file>.
+     */
+    private static void handleBlameCommand(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: blame [<commit|branch|tag>] <file>");
+            return;
+        }
+        String revision = args.length == 2 ? args[0] : "HEAD";
+        String path = args[args.length - 1];
+        try {
+            for (String line : commandHandler.getVCS().blame(revision, path)) {
+                System.out.println(line);
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error running blame: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles show command from console arguments: show [<rev>] <file>.
+     * Writes the file as it was at the commit to standard output.
+     */
+    private static void handleShowCommand(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: show [<commit|branch|tag>] <file>");
+            return;
+        }
+        String revision = args.length == 2 ? args[0] : "HEAD";
+        String path = args[args.length - 1];
+        try {
+            if (!commandHandler.getVCS().showFile(revision, path, System.out)) {
+                System.out.println("✗ Could not show " + path + " at " + revision);
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error showing file: " + e.getMessage());
+        }
+    }
+
     /**
      * Handles diff command from console arguments.
+     * Accepts an optional --algorithm=myers|histogram for a line-by-line diff,
+     * --format=pretty|unified and --output=<file> to stream it, or
+     * --name-status / --numstat for a compact per-file listing. With one
+     * commit ID (or HEAD) the working tree is compared against it; with none,
+     * against the index. --cached compares the index against HEAD or the
+     * given commit instead.
      */
     private static void handleDiffCommand(String[] args) {
-        if (args.length < 2) {
-            System.err.println("Usage: diff <commit-id-1> <commit-id-2>");
+        List<String> commitIds = new java.util.ArrayList<>();
+        DiffAlgorithm algorithm = null;
+        String statMode = null;
+        String format = null;
+        String outputFile = null;
+        boolean cached = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String algorithmName = null;
+            if (arg.equals("--cached") || arg.equals("--staged")) {
+                cached = true;
+                continue;
+            } else if (arg.equals("--name-status") || arg.equals("--numstat")) {
+                statMode = arg;
+                continue;
+            } else if (arg.startsWith("--format=")) {
+                format = arg.substring("--format=".length());
+                if (!format.equals("pretty") && !format.equals("unified")) {
+                    System.err.println("Unknown diff format: " + format);
+                    System.err.println("Available formats: pretty, unified");
+                    return;
+                }
+                continue;
+            } else if (arg.startsWith("--output=")) {
+                outputFile = arg.substring("--output=".length());
+                continue;
+            } else if ((arg.equals("--output") || arg.equals("-o")) && i + 1 < args.length) {
+                outputFile = args[++i];
+                continue;
+            } else if (arg.startsWith("--algorithm=")) {
+                algorithmName = arg.substring("--algorithm=".length());
+            } else if ((arg.equals("--algorithm") || arg.equals("-a")) && i + 1 < args.length) {
+                algorithmName = args[++i];
+            } else {
+                commitIds.add(arg);
+                continue;
+            }
+
+            algorithm = DiffAlgorithm.fromName(algorithmName);
+            if (algorithm == null) {
+                System.err.println("Unknown diff algorithm: " + algorithmName);
+                System.err.println("Available algorithms: myers, histogram");
+                return;
+            }
+        }
+
+        if (commitIds.size() > 2 || (cached && commitIds.size() > 1)) {
+            System.err.println("Usage: diff <commit-id-1> <commit-id-2> [--algorithm=myers|histogram] [--name-status|--numstat]");
+            System.err.println("                                    [--format=pretty|unified] [--output=<file>]");
+            System.err.println("       diff [<commit-id>|HEAD]      Working tree vs the index, or vs a commit");
+            System.err.println("       diff --cached [<commit-id>]  Staged changes vs HEAD, or vs a commit");
             System.err.println("Example: diff abc123 def456");
             System.err.println("");
             System.err.println("Use 'log' to see available commit IDs");
             return;
         }
-        String commitId1 = args[0];
-        String commitId2 = args[1];
+        if (commitIds.size() < 2 || cached) {
+            if (statMode != null) {
+                System.err.println(statMode + " compares two commits: diff <commit-id-1> <commit-id-2> " + statMode);
+                return;
+            }
+            executeDiffStreamCommand(commitIds.isEmpty() ? null : commitIds.get(0), null, cached, algorithm,
+                format != null ? format : "pretty", outputFile);
+            return;
+        }
+        String commitId1 = commitIds.get(0);
+        String commitId2 = commitIds.get(1);
+        if (statMode != null) {
+            executeDiffStatCommand(commitId1, commitId2, statMode, algorithm);
+            return;
+        }
+        if (format != null || outputFile != null) {
+            executeDiffStreamCommand(commitId1, commitId2, false, algorithm, format != null ? format : "pretty", outputFile);
+            return;
+        }
         System.out.println("Comparing commits: " + commitId1 + " vs " + commitId2);
         System.out.println("========================================");
-        executeDiffCommand(commitId1, commitId2);
+        executeDiffCommand(commitId1, commitId2, algorithm);
         System.out.println("========================================");
     }
 
+    /**
+     * Handles apply command from console arguments.
+     * Accepts --check to test the patch without writing, --fuzz=<n> and
+     * -p <n> (or -p<n>) to strip leading path components.
+     */
+    private static void handleApplyCommand(String[] args) {
+        String patchFile = null;
+        boolean check = false;
+        int fuzz = PatchApplier.DEFAULT_FUZZ;
+        int strip = PatchApplier.DEFAULT_STRIP;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--check") || arg.equals("--dry-run")) {
+                    check = true;
+                } else if (arg.startsWith("--fuzz=")) {
+                    fuzz = Integer.parseInt(arg.substring("--fuzz=".length()));
+                } else if (arg.equals("-p") && i + 1 < args.length) {
+                    strip = Integer.parseInt(args[++i]);
+                } else if (arg.startsWith("-p") && arg.length() > 2) {
+                    strip = Integer.parseInt(arg.substring(2));
+                } else {
+                    patchFile = arg;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number: " + e.getMessage());
+            return;
+        }
+
+        if (patchFile == null) {
+            System.err.println("Usage: apply <patch-file> [--check] [--fuzz=<n>] [-p <n>]");
+            System.err.println("Example: diff abc123 def456 --format=unified --output=changes.patch");
+            System.err.println("         apply changes.patch");
+            return;
+        }
+        executeApplyCommand(patchFile, strip, fuzz, check);
+    }
+
+    /**
+     * Handles merge command from console arguments.
+     * Accepts --algorithm=myers|histogram and --check to report without
+     * writing files.
+     */
+    private static void handleMergeCommand(String[] args) {
+        List<String> commitIds = new java.util.ArrayList<>();
+        DiffAlgorithm algorithm = null;
+        boolean check = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String algorithmName = null;
+            if (arg.equals("--check") || arg.equals("--dry-run")) {
+                check = true;
+                continue;
+            } else if (arg.startsWith("--algorithm=")) {
+                algorithmName = arg.substring("--algorithm=".length());
+            } else if ((arg.equals("--algorithm") || arg.equals("-a")) && i + 1 < args.length) {
+                algorithmName = args[++i];
+            } else {
+                commitIds.add(arg);
+                continue;
+            }
+
+            algorithm = DiffAlgorithm.fromName(algorithmName);
+            if (algorithm == null) {
+                System.err.println("Unknown diff algorithm: " + algorithmName);
+                System.err.println("Available algorithms: myers, histogram");
+                return;
+            }
+        }
+
+        if (commitIds.isEmpty() || commitIds.size() > 2) {
+            System.err.println("Usage: merge [<base-commit-id>] <their-commit> [--check] [--algorithm=myers|histogram]");
+            System.err.println("Merges the changes from <base> (default: the merge base with HEAD) to <their>");
+            System.err.println("into the working tree");
+            System.err.println("Example: merge feature/login");
+            return;
+        }
+        if (commitIds.size() == 1) {
+            executeMergeCommand(null, commitIds.get(0), algorithm, check);
+        } else {
+            executeMergeCommand(commitIds.get(0), commitIds.get(1), algorithm, check);
+        }
+    }
+
+    /**
+     * Handles branch command from console arguments: list, create or delete.
+     */
+    private static void handleBranchCommand(String[] args) {
+        VCS vcs = commandHandler.getVCS();
+        if (args.length == 0) {
+            String current = vcs.getCurrentBranch();
+            Map<String, String> branches = vcs.listBranches();
+            if (branches.isEmpty()) {
+                System.out.println("No branches yet" + (current != null ? " (HEAD is on unborn branch '" + current + "')" : ""));
+            }
+            for (Map.Entry<String, String> branch : branches.entrySet()) {
+                System.out.println((branch.getKey().equals(current) ? "* " : "  ") + branch.getKey()
+                    + "  " + shortId(branch.getValue()));
+            }
+        } else if (args[0].equals("-d") || args[0].equals("--delete")) {
+            if (args.length != 2) {
+                System.err.println("Usage: branch -d <name>");
+                return;
+            }
+            if (vcs.deleteBranch(args[1])) {
+                System.out.println("✓ Deleted branch " + args[1]);
+            }
+        } else if (args.length <= 2) {
+            if (vcs.createBranch(args[0], args.length == 2 ? args[1] : null)) {
+                System.out.println("✓ Created branch " + args[0]);
+            }
+        } else {
+            System.err.println("Usage: branch [<name> [<start-point>] | -d <name>]");
+        }
+    }
+
+    /**
+     * Handles tag command from console arguments: list, create or delete.
+     */
+    private static void handleTagCommand(String[] args) {
+        VCS vcs = commandHandler.getVCS();
+        if (args.length == 0) {
+            for (Map.Entry<String, String> tag : vcs.listTags().entrySet()) {
+                System.out.println(tag.getKey() + "  " + shortId(tag.getValue()));
+            }
+        } else if (args[0].equals("-d") || args[0].equals("--delete")) {
+            if (args.length != 2) {
+                System.err.println("Usage: tag -d <name>");
+                return;
+            }
+            if (vcs.deleteTag(args[1])) {
+                System.out.println("✓ Deleted tag " + args[1]);
+            }
+        } else if (args.length <= 2) {
+            if (vcs.createTag(args[0], args.length == 2 ? args[1] : null)) {
+                System.out.println("✓ Created tag " + args[0]);
+            }
+        } else {
+            System.err.println("Usage: tag [<name> [<commit>] | -d <name>]");
+        }
+    }
+
+    /**
+     * Handles switch command from console arguments.
+     */
+    private static void handleSwitchCommand(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: switch <branch>");
+            return;
+        }
+        if (commandHandler.getVCS().switchBranch(args[0])) {
+            System.out.println("✓ HEAD is now on branch " + args[0]);
+        }
+    }
+
+    /**
+     * Handles pack-refs command.
+     */
+    private static void handlePackRefsCommand() {
+        int packed = commandHandler.getVCS().packRefs();
+        if (packed >= 0) {
+            System.out.println("✓ Packed " + packed + " ref(s)");
+        }
+    }
+
+    private static String shortId(String commitId) {
+        return commitId.length() > 8 ? commitId.substring(0, 8) : commitId;
+    }
+
     /**
      * Handles activity command from console arguments.
      */
@@ -509,22 +1001,52 @@ public class Main {
      * Displays the commit log with error handling.
      */
     private static void showLog() {
-        executeLogCommand();
+        executeLogCommand(new LogQuery(), 0, false);
     }
 
     /**
-     * Executes the log command.
+     * Executes the log command, printing commits as the cursor yields them.
+     *
+     * @param query Commits to list
+     * @param count Most commits to print (0 or less for all)
+     * @param stat Whether to print each commit's recorded change statistics
      */
-    private static void executeLogCommand() {
+    private static void executeLogCommand(LogQuery query, int count, boolean stat) {
         try {
-            List<String> logEntries = commandHandler.getVCS().log();
+            VCS vcs = commandHandler.getVCS();
+            LogCursor cursor = vcs.queryLog(query);
+            if (cursor == null) {
+                System.out.println("✗ Cannot read log of " + query.getRevision());
+                return;
+            }
+
+            System.out.println("=== Commit Log (" + query.getRevision()
+                               + (query.getPath() != null ? " -- " + query.getPath() : "") + ") ===");
+            System.out.println();
+            int shown = 0;
+            while ((count <= 0 || shown < count) && cursor.hasNext()) {
+                Commit commit = cursor.next();
+                for (String line : vcs.formatLogEntry(commit)) {
+                    System.out.println(line);
+                }
+                if (stat) {
+                    for (String line : vcs.formatStat(commit)) {
+                        System.out.println(line);
+                    }
+                    System.out.println();
+                }
+                shown++;
+            }
 
-            if (logEntries == null || logEntries.isEmpty()) {
+            if (shown == 0 && query.getPath() == null && query.getAfter() == null) {
                 System.out.println("No commits found in repository.");
                 System.out.println("Use 'init' to initialize a repository and 'add' + 'commit' to create commits.");
             } else {
-                for (String entry : logEntries) {
-                    System.out.println(entry);
+                System.out.println("Commits shown: " + shown);
+                if (cursor.hasNext()) {
+                    System.out.println("More commits: log " + query.getRevision() + " -n " + count
+                                       + " --after=" + cursor.getLastCommitId()
+                                       + (query.getPath() != null ? " -- " + query.getPath() : ""));
                 }
             }
         } catch (Exception e) {
@@ -564,8 +1086,19 @@ public class Main {
      * @param commitId2 Second commit ID
      */
     private static void executeDiffCommand(String commitId1, String commitId2) {
+        executeDiffCommand(commitId1, commitId2, null);
+    }
+
+    /**
+     * Executes the diff command with an optional line diff algorithm.
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @param algorithm Line diff algorithm (null for Myers)
+     */
+    private static void executeDiffCommand(String commitId1, String commitId2, DiffAlgorithm algorithm) {
         try {
-            List<String> differences = commandHandler.getVCS().diff(commitId1, commitId2);
+            List<String> differences = commandHandler.getVCS().diff(commitId1, commitId2, algorithm);
 
             if (differences == null || differences.isEmpty()) {
                 System.out.println("No differences found between commits.");
@@ -581,6 +1114,143 @@ public class Main {
         }
     }
 
+    /**
+     * Streams a line-by-line diff to the console or a file in the given
+     * format, without collecting it in memory first. Without a second
+     * commit ID the working tree (or, if cached, the index) is the new side.
+     *
+     * @param commitId1 First commit ID, or null for the index (HEAD if cached)
+     * @param commitId2 Second commit ID, or null to compare the working tree or index
+     * @param cached Whether to compare the index rather than the working tree
+     * @param algorithm Line diff algorithm, or null for Myers
+     * @param format "pretty" or "unified"
+     * @param outputFile File to write, or null for the console
+     */
+    private static void executeDiffStreamCommand(String commitId1, String commitId2, boolean cached,
+                                                 DiffAlgorithm algorithm, String format, String outputFile) {
+        VCS vcs = commandHandler.getVCS();
+        if (vcs.getRepository() == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return;
+        }
+
+        try {
+            Writer writer = outputFile != null
+                    ? Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(System.out));
+            boolean written;
+            try {
+                DiffFormatter formatter = format.equals("unified")
+                        ? new UnifiedDiffFormatter(writer, vcs.getRepository().getPath())
+                        : new PrettyDiffFormatter(writer);
+                if (commitId2 != null) {
+                    written = vcs.writeDiff(commitId1, commitId2, algorithm, formatter);
+                } else if (cached) {
+                    written = vcs.writeCachedDiff(commitId1, algorithm, formatter);
+                } else {
+                    written = vcs.writeWorkingTreeDiff(commitId1, algorithm, formatter);
+                }
+            } finally {
+                // The console stream stays open for later output
+                if (outputFile != null) {
+                    writer.close();
+                } else {
+                    writer.flush();
+                }
+            }
+
+            if (written && outputFile != null) {
+                System.out.println("✓ Diff written to " + outputFile);
+            }
+        } catch (IOException e) {
+            System.err.println("✗ Error writing diff: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("✗ " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a patch to the working tree and reports each file.
+     *
+     * @param patchFile Patch file path
+     * @param strip Leading path components to strip
+     * @param fuzz Maximum fuzz per hunk
+     * @param check true to test without writing
+     */
+    private static void executeApplyCommand(String patchFile, int strip, int fuzz, boolean check) {
+        try {
+            PatchApplier.Result result = commandHandler.getVCS().applyPatch(patchFile, strip, fuzz, check);
+            if (result == null) {
+                return;
+            }
+
+            for (PatchApplier.FileResult file : result.getFiles()) {
+                System.out.println((file.isApplied() ? "✓ " : "✗ ") + file.getPath());
+                for (String message : file.getMessages()) {
+                    System.out.println("    " + message);
+                }
+            }
+            if (result.getError() != null) {
+                System.err.println("✗ " + result.getError());
+            }
+
+            String verb = check ? "would apply" : "applied";
+            System.out.println(String.format("%s: %d file(s) %s, %d failed",
+                result.isSuccess() ? "✓ Patch " + (check ? "applies cleanly" : "applied") : "✗ Patch incomplete",
+                result.getAppliedCount(), verb, result.getFailedCount()));
+        } catch (IllegalArgumentException e) {
+            System.err.println("✗ " + e.getMessage());
+        }
+    }
+
+    /**
+     * Merges a commit's changes into the working tree and prints the outcome.
+     *
+     * @param baseId Common ancestor commit ID
+     * @param theirsId Commit whose changes are merged in
+     * @param algorithm Line diff algorithm, or null for Myers
+     * @param check true to report without writing files
+     */
+    private static void executeMergeCommand(String baseId, String theirsId, DiffAlgorithm algorithm, boolean check) {
+        try {
+            List<String> report = commandHandler.getVCS().merge(baseId, theirsId, algorithm, check);
+            for (String line : report) {
+                System.out.println(line);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("✗ " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executes a compact diff listing: --name-status (status letters, with
+     * R/C for renames and copies) or --numstat (line counts of files whose
+     * content changed).
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @param statMode "--name-status" or "--numstat"
+     * @param algorithm Line diff algorithm for --numstat, or null for Myers
+     */
+    private static void executeDiffStatCommand(String commitId1, String commitId2, String statMode, DiffAlgorithm algorithm) {
+        try {
+            VCS vcs = commandHandler.getVCS();
+            List<String> lines = statMode.equals("--name-status")
+                    ? vcs.diffNameStatus(commitId1, commitId2)
+                    : vcs.diffNumStat(commitId1, commitId2, algorithm);
+
+            if (lines == null || lines.isEmpty()) {
+                System.out.println("No differences found between commits.");
+            } else {
+                for (String line : lines) {
+                    System.out.println(line);
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("✗ Error comparing commits: " + e.getMessage());
+        }
+    }
+
     /**
      * Shows activity summary.
      */
@@ -654,6 +1324,8 @@ public class Main {
 
         System.out.println("COMMITTING:");
         System.out.println("  commit \"<message>\"       Commit staged changes");
+        System.out.println("  commit \"<message>\" --author=\"<name> <email>\"");
+        System.out.println("                           Record an author (default: the system user name)");
         System.out.println("                           Example: commit \"Initial commit\"");
         System.out.println();
 
@@ -663,14 +1335,67 @@ public class Main {
         System.out.println("                           Example: status");
         System.out.println();
         System.out.println("  log                      Display commit history");
+        System.out.println("  log <commit|branch>      History reachable from a commit, newest first,");
+        System.out.println("                           each commit before its parents");
+        System.out.println("  log [<commit>] -- <path> Only commits that changed a file or directory");
+        System.out.println("                           (path relative to the repository root)");
+        System.out.println("  log -n <count>           Only the newest commits; the last line tells how");
+        System.out.println("                           to continue with --after=<commit>");
+        System.out.println("  log --since=<date> --until=<date>");
+        System.out.println("                           Only commits made in a date range (yyyy-MM-dd)");
+        System.out.println("  log --author=<name>      Only commits whose author contains the text");
+        System.out.println("  log --skip=<n>           Leave out the first n matching commits");
+        System.out.println("  log --stat               Also list lines added and deleted per file,");
+        System.out.println("                           as recorded when each commit was made");
         System.out.println("  history                  (Same as log)");
         System.out.println("                           Example: log");
+        System.out.println("  search <words...>        Find commits whose message or summary has every word");
+        System.out.println("                           (word* matches a prefix; -n <count> limits results)");
+        System.out.println("                           Example: search fix login*");
+        System.out.println("  grep <pattern> [<commit>]");
+        System.out.println("                           Find lines matching a regular expression in the");
+        System.out.println("                           committed files (-i ignores case, -n <count> limits)");
+        System.out.println("  grep --all <pattern>     Search every file version in history");
+        System.out.println("                           Example: grep -i \"todo|fixme\"");
+        System.out.println("  blame [<commit>] <file>  Show the commit that last changed each line");
+        System.out.println("  annotate                 (Same as blame)");
+        System.out.println("                           Example: blame config/app.properties");
+        System.out.println("  show [<commit>] <file>   Print a file as it was at a commit");
+        System.out.println("                           Example: show v1.0 src/Main.java");
         System.out.println();
 
         System.out.println("COMPARISON:");
         System.out.println("  diff <id1> <id2>         Show differences between commits");
         System.out.println("                           Example: diff abc123 def456");
+        System.out.println("  diff <id1> <id2> --algorithm=<myers|histogram>");
+        System.out.println("                           Line-by-line diff with the given algorithm");
+        System.out.println("  diff <id1> <id2> --name-status | --numstat");
+        System.out.println("                           Changed paths with status letters, or line counts");
+        System.out.println("  diff <id1> <id2> --format=<pretty|unified> [--output=<file>]");
+        System.out.println("                           Stream the diff (unified suits patch tools)");
+        System.out.println("  diff [<id>|HEAD]         Working tree vs the index, or vs a commit");
+        System.out.println("  diff --cached [<id>]     Staged changes vs HEAD, or vs a commit");
+        System.out.println("                           (renames and copies show as R<similarity>/C<similarity>)");
+        System.out.println("                           (histogram suits large, repetitive files)");
         System.out.println("                           Use 'log' to see commit IDs");
+        System.out.println("  apply <patch-file> [--check] [--fuzz=<n>] [-p <n>]");
+        System.out.println("                           Apply a unified diff to the working tree");
+        System.out.println("                           (--check only tests it; default fuzz 2, -p 1)");
+        System.out.println("  merge [<base-id>] <their> [--check]");
+        System.out.println("                           Three-way merge the changes from base to their");
+        System.out.println("                           commit into the working tree (conflicts marked);");
+        System.out.println("                           the base defaults to the merge base with HEAD");
+        System.out.println();
+
+        System.out.println("BRANCHES AND TAGS:");
+        System.out.println("  branch [<name> [<start>]] List branches, or create one (default: HEAD)");
+        System.out.println("  branch -d <name>         Delete a branch");
+        System.out.println("  switch <branch>          Make new commits advance the given branch");
+        System.out.println("                           (the working tree is left as it is)");
+        System.out.println("  tag [<name> [<commit>]]  List tags, or tag a commit (default: HEAD)");
+        System.out.println("  tag -d <name>            Delete a tag");
+        System.out.println("  pack-refs                Pack branches and tags into one file");
+        System.out.println("                           Branch and tag names work wherever a commit ID does");
         System.out.println();
 
         System.out.println("ACTIVITY:");
@@ -720,7 +1445,10 @@ public class Main {
         System.out.println("7. Compare two commits:");
         System.out.println("   java -jar azaala-vcs.jar diff abc123def def456ghi");
         System.out.println();
-        System.out.println("8. Show activity summary:");
+        System.out.println("8. Apply a patch:");
+        System.out.println("   java -jar azaala-vcs.jar apply changes.patch");
+        System.out.println();
+        System.out.println("9. Show activity summary:");
         System.out.println("   java -jar azaala-vcs.jar activity 10");
         System.out.println();
         System.out.println("==================================================================");
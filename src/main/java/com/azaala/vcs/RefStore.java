@@ -0,0 +1,613 @@
+package com.azaala.vcs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Branches, tags and HEAD, stored as references to commit IDs. A branch
+ * or tag is one small file, so creating one copies nothing.
+ *
+ * Layout under the repository's data directory:
+ * <pre>
+ *   HEAD                  "ref: refs/heads/main", or a commit ID when detached
+ *   MERGE_HEAD            commit being merged, until the merge is committed
+ *   refs/heads/&lt;name&gt;     loose branch, holding a commit ID
+ *   refs/tags/&lt;name&gt;      loose tag
+ *   packed-refs           "&lt;commit id&gt; &lt;ref name&gt;" lines, sorted by name
+ * </pre>
+ * A loose ref overrides a packed one of the same name. packed-refs holds
+ * any number of refs in one file, so listing thousands of tags is a single
+ * read; its parsed form is reused while the file is unchanged.
+ *
+ * Every update first creates "&lt;file&gt;.lock" exclusively, checks the
+ * ref still has the expected value, writes the lock and renames it over
+ * the ref. Concurrent writers therefore fail instead of losing updates.
+ */
+public class RefStore {
+    public static final String HEAD = "HEAD";
+    public static final String MERGE_HEAD = "MERGE_HEAD";
+    public static final String HEADS_PREFIX = "refs/heads/";
+    public static final String TAGS_PREFIX = "refs/tags/";
+    public static final String DEFAULT_BRANCH = "main";
+
+    private static final String DATA_DIR = "data";
+    private static final String PACKED_REFS = "packed-refs";
+    private static final String PACKED_HEADER = "# pack-refs";
+    private static final String SYMREF_PREFIX = "ref: ";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final int MAX_SYMREF_DEPTH = 5;
+
+    private final File dataDir;
+    private final File packedFile;
+    private PackedRefs packedCache;
+
+    /**
+     * Opens the refs of a repository.
+     *
+     * @param repositoryPath Repository path
+     */
+    public RefStore(String repositoryPath) {
+        this.dataDir = new File(repositoryPath, DATA_DIR);
+        this.packedFile = new File(dataDir, PACKED_REFS);
+    }
+
+    /**
+     * Checks whether HEAD exists, i.e. whether the refs were set up.
+     *
+     * @return true if HEAD is present
+     */
+    public boolean hasHead() {
+        return new File(dataDir, HEAD).isFile();
+    }
+
+    /**
+     * Creates the refs directories and points HEAD at the default branch,
+     * unless HEAD already exists.
+     *
+     * @param startCommitId Commit the default branch starts at, or null for
+     *                      an unborn branch
+     * @return true if successful, false otherwise
+     */
+    public synchronized boolean initialize(String startCommitId) {
+        if (!new File(dataDir, HEADS_PREFIX).isDirectory() && !new File(dataDir, HEADS_PREFIX).mkdirs()) {
+            System.err.println("Failed to create refs directory");
+            return false;
+        }
+        if (!new File(dataDir, TAGS_PREFIX).isDirectory() && !new File(dataDir, TAGS_PREFIX).mkdirs()) {
+            System.err.println("Failed to create tags directory");
+            return false;
+        }
+        if (hasHead()) {
+            return true;
+        }
+        String branch = HEADS_PREFIX + DEFAULT_BRANCH;
+        if (startCommitId != null && resolveRef(branch) == null && !compareAndSwap(branch, null, startCommitId)) {
+            return false;
+        }
+        return setHead(branch);
+    }
+
+    /**
+     * Resolves a name to a commit ID. Accepts HEAD, full ref names
+     * ("refs/tags/v1") and short names, which are looked up as a branch
+     * first and then as a tag.
+     *
+     * @param name Ref name
+     * @return Commit ID, or null if no such ref exists
+     */
+    public String resolve(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = name.trim();
+        if (isSpecial(trimmed) || trimmed.startsWith("refs/")) {
+            return resolveRef(trimmed);
+        }
+        String branch = resolveRef(HEADS_PREFIX + trimmed);
+        return branch != null ? branch : resolveRef(TAGS_PREFIX + trimmed);
+    }
+
+    /**
+     * Gets the branch HEAD points at.
+     *
+     * @return Full ref name such as "refs/heads/main", or null if HEAD is
+     *         detached or missing
+     */
+    public String getHeadTarget() {
+        String value = readRaw(HEAD);
+        return value != null && value.startsWith(SYMREF_PREFIX) ? value.substring(SYMREF_PREFIX.length()) : null;
+    }
+
+    /**
+     * Points HEAD at a branch. The branch need not exist yet; the next
+     * commit creates it.
+     *
+     * @param refName Full ref name of the branch
+     * @return true if successful, false otherwise
+     */
+    public boolean setHead(String refName) {
+        if (!isValidRefName(refName)) {
+            System.err.println("Invalid ref name: " + refName);
+            return false;
+        }
+        return writeLocked(HEAD, null, false, SYMREF_PREFIX + refName);
+    }
+
+    /**
+     * Points HEAD directly at a commit, away from any branch.
+     *
+     * @param commitId Commit ID
+     * @return true if successful, false otherwise
+     */
+    public boolean detachHead(String commitId) {
+        if (commitId == null || commitId.trim().isEmpty()) {
+            return false;
+        }
+        return writeLocked(HEAD, null, false, commitId.trim());
+    }
+
+    /**
+     * Atomically changes a ref from one commit to another. Fails if the ref
+     * no longer holds the expected commit, or another update holds its lock.
+     *
+     * @param refName Full ref name, HEAD when detached, or MERGE_HEAD
+     * @param expectedId Commit the ref must hold now, or null if it must not exist
+     * @param newId New commit ID, or null to delete the ref
+     * @return true if the ref was changed, false otherwise
+     */
+    public boolean compareAndSwap(String refName, String expectedId, String newId) {
+        if (!isSpecial(refName) && !isValidRefName(refName)) {
+            System.err.println("Invalid ref name: " + refName);
+            return false;
+        }
+        return writeLocked(refName, expectedId, true, newId);
+    }
+
+    /**
+     * Locks a ref for an update that must do other work before the ref
+     * moves, such as a commit writing its snapshot. The ref is checked
+     * now, and no other update can change it until the lock is committed
+     * or released.
+     *
+     * @param refName Full ref name, or HEAD when detached
+     * @param expectedId Commit the ref must hold now, or null if it must not exist
+     * @return The held lock, or null if the ref no longer holds the
+     *         expected commit or another update holds its lock
+     */
+    public synchronized RefLock lockRef(String refName, String expectedId) {
+        if (!isSpecial(refName) && !isValidRefName(refName)) {
+            System.err.println("Invalid ref name: " + refName);
+            return null;
+        }
+        File refFile = new File(dataDir, refName);
+        File refLock = new File(refFile.getPath() + LOCK_SUFFIX);
+        if (refFile.getParentFile() != null && !refFile.getParentFile().isDirectory()
+                && !refFile.getParentFile().mkdirs()) {
+            System.err.println("Cannot create directory for ref: " + refName);
+            return null;
+        }
+        if (!lock(refLock, refName)) {
+            return null;
+        }
+        if (!holds(refName, expectedId)) {
+            refLock.delete();
+            return null;
+        }
+        return new RefLock(refName, refFile, refLock);
+    }
+
+    /**
+     * A ref locked by {@link #lockRef}. Commit or release it exactly once.
+     */
+    public final class RefLock {
+        private final String refName;
+        private final File refFile;
+        private final File lockFile;
+        private boolean held = true;
+
+        private RefLock(String refName, File refFile, File lockFile) {
+            this.refName = refName;
+            this.refFile = refFile;
+            this.lockFile = lockFile;
+        }
+
+        /**
+         * Moves the ref to a commit and releases the lock.
+         *
+         * @param newId New commit ID
+         * @return true if the ref was changed, false otherwise
+         */
+        public boolean commit(String newId) {
+            synchronized (RefStore.this) {
+                if (!held) {
+                    return false;
+                }
+                held = false;
+                try {
+                    try (BufferedWriter writer = Files.newBufferedWriter(lockFile.toPath(), StandardCharsets.UTF_8)) {
+                        writer.write(newId.trim());
+                        writer.newLine();
+                    }
+                    moveOver(lockFile, refFile);
+                    return true;
+                } catch (IOException e) {
+                    lockFile.delete();
+                    System.err.println("Error updating ref " + refName + ": " + e.getMessage());
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Releases the lock without changing the ref. Does nothing once
+         * the lock was committed.
+         */
+        public void release() {
+            synchronized (RefStore.this) {
+                if (held) {
+                    held = false;
+                    lockFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists refs under a prefix with their commit IDs, sorted by name.
+     * Packed refs come from one read of packed-refs; loose refs under the
+     * prefix override them.
+     *
+     * @param prefix Ref name prefix, e.g. {@link #TAGS_PREFIX}
+     * @return Map from full ref name to commit ID (never null)
+     */
+    public SortedMap<String, String> list(String prefix) {
+        SortedMap<String, String> refs = new TreeMap<>(loadPacked().refs.subMap(prefix, prefix + Character.MAX_VALUE));
+        File dir = new File(dataDir, prefix);
+        if (!dir.isDirectory()) {
+            return refs;
+        }
+        for (File file : looseRefFiles(dir)) {
+            String name = refName(file);
+            String value = readRaw(name);
+            if (value != null && !value.startsWith(SYMREF_PREFIX)) {
+                refs.put(name, value);
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Moves all loose refs into packed-refs, so later lookups and listings
+     * read a single file. A loose ref changed while packing is kept.
+     *
+     * @return Number of refs packed, or -1 on failure
+     */
+    public synchronized int packRefs() {
+        File packedLock = new File(packedFile.getPath() + LOCK_SUFFIX);
+        if (!lock(packedLock, PACKED_REFS)) {
+            return -1;
+        }
+        List<File> loose = looseRefFiles(new File(dataDir, "refs"));
+        SortedMap<String, String> refs = new TreeMap<>(loadPacked().refs);
+        try {
+            for (File file : loose) {
+                String value = readRaw(refName(file));
+                if (value != null && !value.startsWith(SYMREF_PREFIX)) {
+                    refs.put(refName(file), value);
+                }
+            }
+            writePacked(packedLock, refs);
+        } catch (IOException e) {
+            packedLock.delete();
+            System.err.println("Error packing refs: " + e.getMessage());
+            return -1;
+        }
+
+        int packed = 0;
+        for (File file : loose) {
+            File refLock = new File(file.getPath() + LOCK_SUFFIX);
+            if (!lock(refLock, refName(file))) {
+                continue;
+            }
+            try {
+                String value = readRaw(refName(file));
+                if (value != null && value.equals(refs.get(refName(file))) && file.delete()) {
+                    packed++;
+                }
+            } finally {
+                refLock.delete();
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Checks a full ref name: "refs/" followed by non-empty components
+     * without "..", control characters, spaces or any of ~^:?*[\, none
+     * starting with '.' or ending with ".lock".
+     *
+     * @param refName Full ref name
+     * @return true if the name can be used for a ref
+     */
+    public static boolean isValidRefName(String refName) {
+        if (refName == null || !refName.startsWith("refs/") || refName.endsWith("/") || refName.contains("..")) {
+            return false;
+        }
+        for (String component : refName.split("/", -1)) {
+            if (component.isEmpty() || component.startsWith(".") || component.endsWith(LOCK_SUFFIX)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < refName.length(); i++) {
+            char c = refName.charAt(i);
+            if (c <= ' ' || c == 0x7f || "~^:?*[\\".indexOf(c) >= 0) {
+                return false;
+            }
+        }
+        return !refName.contains("@{");
+    }
+
+    /**
+     * Follows symbolic refs to a commit ID.
+     */
+    private String resolveRef(String refName) {
+        String name = refName;
+        for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++) {
+            String value = readRaw(name);
+            if (value == null || !value.startsWith(SYMREF_PREFIX)) {
+                return value;
+            }
+            name = value.substring(SYMREF_PREFIX.length());
+        }
+        System.err.println("Symbolic ref loop at: " + refName);
+        return null;
+    }
+
+    /**
+     * Reads a ref's own value, loose first and then packed, without
+     * following symbolic refs.
+     */
+    private String readRaw(String refName) {
+        File file = new File(dataDir, refName);
+        if (file.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                if (line != null && !line.trim().isEmpty()) {
+                    return line.trim();
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading ref " + refName + ": " + e.getMessage());
+            }
+            return null;
+        }
+        return isSpecial(refName) ? null : loadPacked().refs.get(refName);
+    }
+
+    /**
+     * HEAD and MERGE_HEAD live directly in the data directory and are
+     * never packed.
+     */
+    private static boolean isSpecial(String refName) {
+        return HEAD.equals(refName) || MERGE_HEAD.equals(refName);
+    }
+
+    /**
+     * Writes a ref under its lock, optionally checking its current value.
+     * Deleting a packed ref also rewrites packed-refs, under its own lock.
+     */
+    private synchronized boolean writeLocked(String refName, String expectedId, boolean check, String newValue) {
+        File refFile = new File(dataDir, refName);
+        File refLock = new File(refFile.getPath() + LOCK_SUFFIX);
+        if (refFile.getParentFile() != null && !refFile.getParentFile().isDirectory()
+                && !refFile.getParentFile().mkdirs()) {
+            System.err.println("Cannot create directory for ref: " + refName);
+            return false;
+        }
+        if (!lock(refLock, refName)) {
+            return false;
+        }
+
+        boolean moved = false;
+        try {
+            if (check && !holds(refName, expectedId)) {
+                return false;
+            }
+
+            if (newValue == null) {
+                if (loadPacked().refs.containsKey(refName) && !removePacked(refName)) {
+                    return false;
+                }
+                if (refFile.exists() && !refFile.delete()) {
+                    System.err.println("Cannot delete ref: " + refName);
+                    return false;
+                }
+                if (!isSpecial(refName)) {
+                    pruneEmptyParents(refFile.getParentFile());
+                }
+                return true;
+            }
+
+            try (BufferedWriter writer = Files.newBufferedWriter(refLock.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(newValue);
+                writer.newLine();
+            }
+            moveOver(refLock, refFile);
+            moved = true;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error updating ref " + refName + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (!moved) {
+                refLock.delete();
+            }
+        }
+    }
+
+    /**
+     * Checks that a ref (whose lock is held) has the expected value.
+     */
+    private boolean holds(String refName, String expectedId) {
+        String current = readRaw(refName);
+        if (current != null && current.startsWith(SYMREF_PREFIX)) {
+            System.err.println("Ref is symbolic: " + refName);
+            return false;
+        }
+        if (expectedId == null ? current != null : !expectedId.equals(current)) {
+            System.err.println("Ref " + refName + " is at " + (current != null ? current : "nothing")
+                + ", expected " + (expectedId != null ? expectedId : "nothing"));
+            return false;
+        }
+        return true;
+    }
+
+    private boolean removePacked(String refName) {
+        File packedLock = new File(packedFile.getPath() + LOCK_SUFFIX);
+        if (!lock(packedLock, PACKED_REFS)) {
+            return false;
+        }
+        try {
+            SortedMap<String, String> refs = new TreeMap<>(loadPacked().refs);
+            refs.remove(refName);
+            writePacked(packedLock, refs);
+            return true;
+        } catch (IOException e) {
+            packedLock.delete();
+            System.err.println("Error rewriting packed refs: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes packed-refs through its (already held) lock file.
+     */
+    private void writePacked(File packedLock, SortedMap<String, String> refs) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(packedLock.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(PACKED_HEADER);
+            writer.newLine();
+            for (Map.Entry<String, String> entry : refs.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey());
+                writer.newLine();
+            }
+        }
+        moveOver(packedLock, packedFile);
+        packedCache = null;
+    }
+
+    /**
+     * Parses packed-refs, or returns the previous parse if the file's size
+     * and modification time are unchanged.
+     */
+    private synchronized PackedRefs loadPacked() {
+        long size = packedFile.length();
+        long modified = packedFile.lastModified();
+        if (packedCache != null && packedCache.size == size && packedCache.modified == modified) {
+            return packedCache;
+        }
+
+        SortedMap<String, String> refs = new TreeMap<>();
+        if (packedFile.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(packedFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    if (line.isEmpty() || line.startsWith("#") || space <= 0) {
+                        continue;
+                    }
+                    refs.put(line.substring(space + 1).trim(), line.substring(0, space));
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading packed refs: " + e.getMessage());
+            }
+        }
+        packedCache = new PackedRefs(size, modified, Collections.unmodifiableSortedMap(refs));
+        return packedCache;
+    }
+
+    private boolean lock(File lockFile, String refName) {
+        try {
+            Files.createFile(lockFile.toPath());
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            System.err.println("Ref " + refName + " is locked by another update (" + lockFile.getName() + ")");
+            return false;
+        } catch (IOException e) {
+            System.err.println("Cannot lock ref " + refName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void moveOver(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (java.nio.file.AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Removes directories left empty by a deleted ref, up to refs/heads or
+     * refs/tags.
+     */
+    private void pruneEmptyParents(File dir) {
+        File stop = new File(dataDir, "refs");
+        File current = dir;
+        while (current != null && !current.equals(stop) && current.getParentFile() != null
+                && !current.getParentFile().equals(stop)) {
+            String[] children = current.list();
+            if (children == null || children.length > 0 || !current.delete()) {
+                return;
+            }
+            current = current.getParentFile();
+        }
+    }
+
+    private List<File> looseRefFiles(File dir) {
+        List<File> files = new ArrayList<>();
+        if (!dir.isDirectory()) {
+            return files;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.filter(Files::isRegularFile)
+                 .filter(path -> !path.getFileName().toString().endsWith(LOCK_SUFFIX))
+                 .forEach(path -> files.add(path.toFile()));
+        } catch (IOException e) {
+            System.err.println("Error listing refs: " + e.getMessage());
+        }
+        return files;
+    }
+
+    private String refName(File file) {
+        return dataDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * Parsed packed-refs with the file state it was read from.
+     */
+    private static final class PackedRefs {
+        private final long size;
+        private final long modified;
+        private final SortedMap<String, String> refs;
+
+        PackedRefs(long size, long modified, SortedMap<String, String> refs) {
+            this.size = size;
+            this.modified = modified;
+            this.refs = refs;
+        }
+    }
+}
@@ -1,10 +1,22 @@
 package com.azaala.vcs;
 
+import com.azaala.vcs.analytics.Rollups;
+import com.azaala.vcs.blame.BlameCache;
+import com.azaala.vcs.graph.CommitGraph;
+import com.azaala.vcs.search.ContentIndex;
+import com.azaala.vcs.search.HistoryIndex;
+import com.azaala.vcs.search.MessageIndex;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Represents a repository in the version control system.
@@ -15,13 +27,46 @@ public class Repository {
     private String name;
     private LocalDateTime createdAt;
     private List<Commit> commits;
+    private Map<String, Commit> commitsById;
     private Long repoId;  // Database ID for this repository
+    private RefStore refs;
+    private CommitGraph commitGraph;
+    private BlameCache blameCache;
+    private MessageIndex messageIndex;
+    private ContentIndex contentIndex;
+    private HistoryIndex historyIndex;
+    private Rollups rollups;
+    private Path rootPath;
+
+    /** Stored files by commit ID and path key (LRU). */
+    private final Map<String, File> fileLocations = new LinkedHashMap<String, File>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, File> eldest) {
+            return size() > MAX_CACHED_LOCATIONS;
+        }
+    };
 
     private static final String DATA_DIR = "data";
     private static final String COMMITS_DIR = "data/commits";
     private static final String INDEX_DIR = "data/index";
     private static final String STAGED_FILES = "data/index/staged_files.txt";
     private static final String COMMITS_LOG = "data/commits.log";
+    private static final String COMMIT_GRAPH = "data/commit-graph";
+    private static final String BLAME_CACHE_DIR = "data/cache/blame";
+    private static final String SEARCH_DIR = "data/search";
+    private static final String CONTENT_INDEX_DIR = "data/search/content";
+    private static final String HISTORY_INDEX = "data/search/history.idx";
+    private static final String ROLLUPS = "data/analytics/rollups.dat";
+    private static final int MAX_CACHED_LOCATIONS = 4096;
+    private static final int MIN_GRAPH_APPENDS = 256;
+    private static final int MIN_HISTORY_APPENDS = 256;
+
+    /** Indexes file contents after commits, one repository update at a time. */
+    private static final ExecutorService CONTENT_INDEXER = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "content-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Creates a new Repository instance.
@@ -38,6 +83,9 @@ public class Repository {
         this.name = new File(this.repositoryPath).getName();
         this.createdAt = LocalDateTime.now();
         this.commits = new ArrayList<>();
+        // Read by the background content indexer while commits are added
+        this.commitsById = new ConcurrentHashMap<>();
+        this.refs = new RefStore(this.repositoryPath);
 
         // Load existing commits if repository already exists
         loadExistingCommits();
@@ -64,6 +112,17 @@ public class Repository {
         }
         this.repositoryPath = repositoryPath.trim();
         this.name = new File(this.repositoryPath).getName();
+        this.refs = new RefStore(this.repositoryPath);
+        this.rootPath = null;
+        this.commitGraph = null;
+        this.blameCache = null;
+        this.messageIndex = null;
+        this.contentIndex = null;
+        this.historyIndex = null;
+        this.rollups = null;
+        synchronized (fileLocations) {
+            fileLocations.clear();
+        }
     }
 
     /**
@@ -158,15 +217,25 @@ public class Repository {
 
         try {
             // Add commit to in-memory list
-            commits.add(commit);
+            synchronized (this) {
+                commits.add(commit);
+            }
+            commitsById.putIfAbsent(commit.getCommitId(), commit);
 
             // Save commit to persistent storage
             if (saveCommitToFile(commit)) {
+                updateCommitGraph();
+                getMessageIndex(); // indexes the new commit's message
+                getHistoryIndex(); // adds its time and author
+                getRollups(); // adds its churn to the analytics totals
                 System.out.println("Commit saved successfully: " + commit.getCommitId());
                 return commit.getCommitId();
             } else {
                 // Remove from memory if save failed
-                commits.remove(commit);
+                synchronized (this) {
+                    commits.remove(commit);
+                }
+                commitsById.remove(commit.getCommitId(), commit);
                 System.err.println("Failed to save commit to file");
                 return null;
             }
@@ -218,8 +287,18 @@ public class Repository {
                 printWriter.println("=== COMMIT " + commit.getCommitId() + " ===");
                 printWriter.println("Message: " + commit.getMessage());
                 printWriter.println("Timestamp: " + commit.getTimestamp().format(formatter));
+                if (commit.getAuthor() != null) {
+                    printWriter.println("Author: " + commit.getAuthor());
+                }
                 printWriter.println("Summary: " + commit.getSummary());
                 printWriter.println("Files: " + String.join(", ", commit.getChangedFiles()));
+                printWriter.println("Parents: " + String.join(", ", commit.getParentIds()));
+                if (!commit.getFileHashes().isEmpty()) {
+                    printWriter.println("Hashes: " + joinHashes(commit, ", "));
+                }
+                if (commit.getChangeStats() != null) {
+                    printWriter.println("Stats: " + commit.getChangeStats().encode(", "));
+                }
                 printWriter.println("File Count: " + commit.getFileCount());
                 printWriter.println("=== END COMMIT ===");
                 printWriter.println();
@@ -257,6 +336,7 @@ public class Repository {
                         Commit commit = parseCommitFromLog(reader, line);
                         if (commit != null) {
                             commits.add(commit);
+                            commitsById.putIfAbsent(commit.getCommitId(), commit);
                         }
                     }
                 }
@@ -282,6 +362,10 @@ public class Repository {
             LocalDateTime timestamp = null;
             List<String> files = new ArrayList<>();
             String summary = null;
+            String author = null;
+            String hashes = null;
+            String stats = null;
+            String parents = null;
 
             String line;
             while ((line = reader.readLine()) != null && !line.equals("=== END COMMIT ===")) {
@@ -291,6 +375,8 @@ public class Repository {
                     String timestampStr = line.substring(11);
                     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
                     timestamp = LocalDateTime.parse(timestampStr, formatter);
+                } else if (line.startsWith("Author: ")) {
+                    author = line.substring(8);
                 } else if (line.startsWith("Summary: ")) {
                     summary = line.substring(9);
                 } else if (line.startsWith("Files: ")) {
@@ -298,6 +384,12 @@ public class Repository {
                     if (!filesStr.trim().isEmpty()) {
                         files = Arrays.asList(filesStr.split(", "));
                     }
+                } else if (line.startsWith("Hashes: ")) {
+                    hashes = line.substring(8);
+                } else if (line.startsWith("Stats: ")) {
+                    stats = line.substring(7);
+                } else if (line.startsWith("Parents:")) {
+                    parents = line.substring(8).trim();
                 }
             }
 
@@ -306,6 +398,20 @@ public class Repository {
                 if (summary != null) {
                     commit.setSummary(summary);
                 }
+                commit.setAuthor(author);
+                if (hashes != null) {
+                    applyHashes(commit, hashes.split(", "));
+                }
+                if (stats != null) {
+                    commit.setChangeStats(ChangeStats.parse(stats, ", ", commit.getFileCount()));
+                }
+                if (parents == null) {
+                    // Written before parents were recorded: history was the log order
+                    commit.setParentIds(commits.isEmpty() ? null
+                        : Collections.singletonList(commits.get(commits.size() - 1).getCommitId()));
+                } else if (!parents.isEmpty()) {
+                    commit.setParentIds(Arrays.asList(parents.split(", ")));
+                }
                 return commit;
             }
         } catch (Exception e) {
@@ -314,15 +420,288 @@ public class Repository {
         return null;
     }
 
+    /**
+     * Joins a commit's file hashes in the same order as its changed files.
+     * Files without a recorded hash are written as "-".
+     *
+     * @param commit The commit
+     * @param separator Separator between hashes
+     * @return Joined hashes
+     */
+    static String joinHashes(Commit commit, String separator) {
+        List<String> hashes = new ArrayList<>();
+        for (String file : commit.getChangedFiles()) {
+            String hash = commit.getFileHash(file);
+            hashes.add(hash != null ? hash : "-");
+        }
+        return String.join(separator, hashes);
+    }
+
+    /**
+     * Assigns stored hashes to a commit's changed files by position.
+     *
+     * @param commit The commit
+     * @param hashes Hashes in the same order as the changed files
+     */
+    static void applyHashes(Commit commit, String[] hashes) {
+        List<String> files = commit.getChangedFiles();
+        if (hashes.length != files.size()) {
+            System.err.println("Ignoring hashes of commit " + commit.getCommitId() + ": file count mismatch");
+            return;
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            if (!"-".equals(hashes[i].trim())) {
+                commit.setFileHash(files.get(i), hashes[i]);
+            }
+        }
+    }
+
     /**
      * Gets all commits in the repository.
      *
-     * @return A list of all commits (never null)
+     * @return A copy of the list of all commits (never null)
      */
-    public List<Commit> getCommits() {
+    public synchronized List<Commit> getCommits() {
         return new ArrayList<>(commits);
     }
 
+    /**
+     * Gets the commit graph, for ancestry queries that need no commit
+     * metadata. The graph file is rebuilt if it is missing or does not
+     * cover every commit.
+     *
+     * @return The commit graph, or null if it cannot be written
+     */
+    public synchronized CommitGraph getCommitGraph() {
+        if (commitGraph == null) {
+            commitGraph = CommitGraph.open(new File(repositoryPath, COMMIT_GRAPH));
+        }
+        if (commitGraph == null || commitGraph.getCommitCount() != commits.size() || !commitGraph.hasPathFilters()) {
+            updateCommitGraph();
+        }
+        return commitGraph;
+    }
+
+    /**
+     * Gets the cache of blame results for this repository. Results saved
+     * by earlier runs are kept under data/cache/blame.
+     *
+     * @return The blame cache (never null)
+     */
+    public synchronized BlameCache getBlameCache() {
+        if (blameCache == null) {
+            blameCache = new BlameCache(new File(repositoryPath, BLAME_CACHE_DIR), BlameCache.DEFAULT_MAX_BYTES);
+        }
+        return blameCache;
+    }
+
+    /**
+     * Gets the full-text index of commit messages and summaries, first
+     * adding any commits it does not have yet.
+     *
+     * @return The message index (never null)
+     */
+    public synchronized MessageIndex getMessageIndex() {
+        if (messageIndex == null) {
+            messageIndex = MessageIndex.open(new File(repositoryPath, SEARCH_DIR));
+        }
+        if (messageIndex.getCommitCount() != commits.size()) {
+            messageIndex.update(commits);
+        }
+        return messageIndex;
+    }
+
+    /**
+     * Finds commits whose message or summary contains every word of a
+     * query, using the message index.
+     *
+     * @param query Words to search for; a word ending in '*' matches as a prefix
+     * @param limit Most commits to return (0 or less for all)
+     * @return Matching commits, newest first (never null)
+     */
+    public synchronized List<Commit> searchCommits(String query, int limit) {
+        List<Commit> results = new ArrayList<>();
+        if (query == null || query.trim().isEmpty()) {
+            return results;
+        }
+        for (int ordinal : getMessageIndex().search(query, limit)) {
+            if (ordinal < commits.size()) {
+                results.add(commits.get(ordinal));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Gets the time and author index of the commit log. Commits it does
+     * not cover yet are appended to it; it is rewritten in full only when
+     * it is missing or stale, or once the appended commits outgrow
+     * {@link #MIN_HISTORY_APPENDS} or an eighth of the index.
+     *
+     * @return The history index, or null if it could not be written
+     */
+    public synchronized HistoryIndex getHistoryIndex() {
+        if (historyIndex == null || historyIndex.getCommitCount() != commits.size()) {
+            File file = new File(repositoryPath, HISTORY_INDEX);
+            HistoryIndex index = historyIndex != null ? historyIndex : HistoryIndex.open(file);
+            if (index != null && index.getCommitCount() < commits.size()
+                    && index.getAppendedCount() < Math.max(MIN_HISTORY_APPENDS,
+                                                            (index.getCommitCount() - index.getAppendedCount()) / 8)) {
+                index = index.append(file, commits);
+            }
+            if (index == null || index.getCommitCount() != commits.size()) {
+                index = HistoryIndex.write(file, commits) ? HistoryIndex.open(file) : null;
+            }
+            historyIndex = index;
+        }
+        return historyIndex;
+    }
+
+    /**
+     * Gets the analytics totals (per file, directory, author and day),
+     * adding any commits made since they were last saved. New commits are
+     * appended to the rollup file's tail rather than rewriting it.
+     *
+     * @return The rollups; never null, though they may not be saved if the
+     *         file cannot be written
+     */
+    public synchronized Rollups getRollups() {
+        if (rollups == null || rollups.getCommitCount() != commits.size()) {
+            File file = new File(repositoryPath, ROLLUPS);
+            if (rollups == null) {
+                rollups = Rollups.open(file);
+                if (rollups == null) {
+                    rollups = new Rollups();
+                }
+            }
+            if (rollups.update(commits, this::getPathKey)) {
+                rollups.save(file);
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * Finds the commits made in a time range by an author, using the
+     * history index instead of reading every commit. Times are compared to
+     * the second, so callers should still check exact bounds.
+     *
+     * @param since Earliest time, inclusive (null for no bound)
+     * @param until Latest time, inclusive (null for no bound)
+     * @param author Text the author must contain, ignoring case (null for all)
+     * @return IDs of the matching commits in log order, or null if the
+     *         index is unavailable
+     */
+    public synchronized List<String> findCommitIds(LocalDateTime since, LocalDateTime until, String author) {
+        HistoryIndex index = getHistoryIndex();
+        if (index == null) {
+            return null;
+        }
+        List<String> ids = new ArrayList<>();
+        for (int ordinal : index.find(since, until, author)) {
+            if (ordinal < commits.size()) {
+                ids.add(commits.get(ordinal).getCommitId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the trigram index of committed file contents, first indexing
+     * any commits it does not have yet. Waits for background indexing
+     * that is still running.
+     *
+     * @return The content index (never null)
+     */
+    public ContentIndex getContentIndex() {
+        ContentIndex index = openContentIndex();
+        List<Commit> snapshot = getCommits();
+        if (index.getCommitCount() != snapshot.size()) {
+            index.update(snapshot);
+        }
+        return index;
+    }
+
+    private synchronized ContentIndex openContentIndex() {
+        if (contentIndex == null) {
+            contentIndex = ContentIndex.open(new File(repositoryPath, CONTENT_INDEX_DIR),
+                blob -> getFileAtCommit(blob.getCommitId(), blob.getPath()));
+        }
+        return contentIndex;
+    }
+
+    /**
+     * Indexes the contents of new commits on a background thread, so a
+     * commit does not wait for its files to be read. Searches catch up on
+     * whatever the background thread has not finished. Call this once a
+     * commit's files have been copied into its snapshot directory.
+     */
+    public void indexContentInBackground() {
+        ContentIndex index = openContentIndex();
+        List<Commit> snapshot = getCommits();
+        CONTENT_INDEXER.execute(() -> index.update(snapshot));
+    }
+
+    /**
+     * Brings the commit-graph file, and its changed-path filters, up to
+     * date with the loaded commits. Commits made since the graph was
+     * written are appended to it; the graph is rewritten in full only
+     * when it is missing or stale, or once the appended commits outgrow
+     * {@link #MIN_GRAPH_APPENDS} or an eighth of the graph.
+     */
+    private synchronized void updateCommitGraph() {
+        File graphFile = new File(repositoryPath, COMMIT_GRAPH);
+        CommitGraph graph = commitGraph != null ? commitGraph : CommitGraph.open(graphFile);
+        int known = graph != null ? graph.getCommitCount() : 0;
+        boolean appendable = graph != null && graph.hasPathFilters()
+            && known > 0 && known < commits.size()
+            && graph.contains(commits.get(known - 1).getCommitId())
+            && !graph.contains(commits.get(known).getCommitId())
+            && graph.getAppendedCount() < Math.max(MIN_GRAPH_APPENDS, (known - graph.getAppendedCount()) / 8);
+        if (appendable) {
+            commitGraph = graph.append(graphFile, commits.subList(known, commits.size()), this::getPathKey);
+            if (commitGraph != null && commitGraph.getCommitCount() == commits.size()) {
+                return;
+            }
+        }
+        commitGraph = CommitGraph.write(graphFile, commits, this::getPathKey) ? CommitGraph.open(graphFile) : null;
+    }
+
+    private synchronized Path getRootPath() {
+        if (rootPath == null) {
+            Path root = Paths.get(repositoryPath).toAbsolutePath().normalize();
+            try {
+                root = root.toRealPath();
+            } catch (IOException e) {
+                // Not on disk (yet); the normalized path will do
+            }
+            rootPath = root;
+        }
+        return rootPath;
+    }
+
+    /**
+     * Converts a file path to the form used in path-limited history: relative
+     * to the repository root, with '/' separators. Relative paths are taken
+     * as relative to the repository root.
+     *
+     * @param filePath Absolute or repository-relative path
+     * @return Repository-relative path ("" for the root itself), or null if
+     *         the path is outside the repository
+     */
+    public String getPathKey(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        Path root = getRootPath();
+        Path file = Paths.get(filePath.trim());
+        file = (file.isAbsolute() ? file : root.resolve(file)).normalize();
+        if (!file.startsWith(root)) {
+            return null;
+        }
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
     /**
      * Gets a commit by its ID.
      *
@@ -334,10 +713,91 @@ public class Repository {
             return null;
         }
 
-        String trimmedId = commitId.trim();
-        for (Commit commit : commits) {
-            if (commit.getCommitId().equals(trimmedId)) {
-                return commit;
+        return commitsById.get(commitId.trim());
+    }
+
+    /**
+     * Opens a file as it was at a commit, for reading. Commits hold only the
+     * files staged for them, so the version read is the one stored by the
+     * newest commit in the commit's history that changed the file. Every
+     * reader of committed content goes through {@link #getFileAtCommit}, so
+     * they all agree on which version that is and where it is stored.
+     *
+     * @param commitId Commit ID
+     * @param path File, absolute or relative to the repository root
+     * @return Read-only channel positioned at the start (the caller closes
+     *         it), or null if the file did not exist at the commit
+     */
+    public SeekableByteChannel openFileAtCommit(String commitId, String path) {
+        File stored = getFileAtCommit(commitId, path);
+        if (stored == null) {
+            return null;
+        }
+        try {
+            return FileChannel.open(stored.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            System.err.println("Error opening " + path + " at " + commitId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the stored copy of a file as it was at a commit. The version is
+     * found with the commit graph's changed-path filters, and locations
+     * are cached, since stored commits never change.
+     *
+     * @param commitId Commit ID
+     * @param path File, absolute or relative to the repository root
+     * @return The stored file, or null if the file did not exist at the commit
+     */
+    public File getFileAtCommit(String commitId, String path) {
+        String pathKey = getPathKey(path);
+        Commit commit = getCommitById(commitId);
+        if (commit == null || pathKey == null || pathKey.isEmpty()) {
+            return null;
+        }
+        String cacheKey = commit.getCommitId() + '\0' + pathKey;
+        synchronized (fileLocations) {
+            File cached = fileLocations.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        String file = findChangedFile(commit, pathKey);
+        if (file == null) {
+            CommitGraph graph = getCommitGraph();
+            if (graph == null || !graph.contains(commit.getCommitId())) {
+                return null;
+            }
+            List<String> version = graph.pathHistory(commit.getCommitId(), pathKey,
+                id -> findChangedFile(getCommitById(id), pathKey) != null, 1);
+            if (version.isEmpty()) {
+                return null;
+            }
+            commit = getCommitById(version.get(0));
+            file = findChangedFile(commit, pathKey);
+        }
+        File stored = Snapshot.ofCommit(commit, repositoryPath).getFile(file);
+        if (stored == null || !stored.isFile()) {
+            return null;
+        }
+        synchronized (fileLocations) {
+            fileLocations.put(cacheKey, stored);
+        }
+        return stored;
+    }
+
+    /**
+     * @return The commit's changed file with the given path key, or null
+     */
+    private String findChangedFile(Commit commit, String pathKey) {
+        if (commit == null) {
+            return null;
+        }
+        for (String file : commit.getChangedFiles()) {
+            if (pathKey.equals(getPathKey(file))) {
+                return file;
             }
         }
         return null;
@@ -530,7 +990,7 @@ public class Repository {
      *
      * @return The number of commits
      */
-    public int getCommitCount() {
+    public synchronized int getCommitCount() {
         return commits.size();
     }
 
@@ -539,7 +999,7 @@ public class Repository {
      *
      * @return The latest commit, or null if no commits exist
      */
-    public Commit getLatestCommit() {
+    public synchronized Commit getLatestCommit() {
         if (commits.isEmpty()) {
             return null;
         }
@@ -551,7 +1011,7 @@ public class Repository {
      *
      * @return true if there are commits, false otherwise
      */
-    public boolean hasCommits() {
+    public synchronized boolean hasCommits() {
         return !commits.isEmpty();
     }
 
@@ -695,6 +1155,9 @@ public class Repository {
             String timestamp = metadata.getProperty("TIMESTAMP");
             String summary = metadata.getProperty("SUMMARY");
             String filesStr = metadata.getProperty("FILES");
+            String hashesStr = metadata.getProperty("HASHES");
+            String statsStr = metadata.getProperty("STATS");
+            String parentsStr = metadata.getProperty("PARENTS");
 
             if (message == null || timestamp == null || summary == null || filesStr == null) {
                 System.err.println("Incomplete metadata in commit: " + commitId);
@@ -714,6 +1177,15 @@ public class Repository {
             // Create commit object
             Commit loadedCommit = new Commit(commitId.trim(), message, commitTime, files);
             loadedCommit.setSummary(summary);
+            if (hashesStr != null && !hashesStr.isEmpty()) {
+                applyHashes(loadedCommit, hashesStr.split(","));
+            }
+            if (statsStr != null) {
+                loadedCommit.setChangeStats(ChangeStats.parse(statsStr, ",", loadedCommit.getFileCount()));
+            }
+            if (parentsStr != null && !parentsStr.isEmpty()) {
+                loadedCommit.setParentIds(Arrays.asList(parentsStr.split(",")));
+            }
 
             return loadedCommit;
 
@@ -724,7 +1196,27 @@ public class Repository {
     }
 
     /**
-     * Updates the head.txt file to track the latest commit ID.
+     * Gets the branches, tags and HEAD of this repository. Repositories
+     * created before refs existed get a default branch at their recorded
+     * HEAD (or latest commit) on first use.
+     *
+     * @return The repository's refs
+     */
+    public RefStore getRefs() {
+        if (!refs.hasHead() && isInitialized()) {
+            String start = readLegacyHead();
+            Commit latest = getLatestCommit();
+            if (start == null && latest != null) {
+                start = latest.getCommitId();
+            }
+            refs.initialize(start);
+        }
+        return refs;
+    }
+
+    /**
+     * Moves HEAD to a commit: the current branch if HEAD is on one,
+     * otherwise the detached HEAD itself.
      *
      * @param commitId The commit ID to set as head
      * @return true if successful, false otherwise
@@ -733,20 +1225,39 @@ public class Repository {
         if (commitId == null || commitId.trim().isEmpty()) {
             return false;
         }
+        return advanceHead(getHead(), commitId);
+    }
 
-        try {
-            String headFilePath = repositoryPath + File.separator + INDEX_DIR + File.separator + "head.txt";
-
-            // Write commit ID to head file
-            try (FileWriter writer = new FileWriter(headFilePath)) {
-                writer.write(commitId.trim());
-                return true;
-            }
-
-        } catch (IOException e) {
-            System.err.println("Error updating HEAD: " + e.getMessage());
+    /**
+     * Moves HEAD (or the branch it is on) from one commit to another, only
+     * if it still points at the expected commit. Used by commits so that a
+     * concurrent commit is never silently overwritten.
+     *
+     * @param expectedId Commit HEAD must point at now, or null if it has none
+     * @param commitId The commit ID to set as head
+     * @return true if HEAD was moved, false otherwise
+     */
+    public boolean advanceHead(String expectedId, String commitId) {
+        if (commitId == null || commitId.trim().isEmpty()) {
             return false;
         }
+        RefStore refStore = getRefs();
+        String target = refStore.getHeadTarget();
+        return refStore.compareAndSwap(target != null ? target : RefStore.HEAD, expectedId, commitId.trim());
+    }
+
+    /**
+     * Locks HEAD (or the branch it is on) while it still points at the
+     * expected commit, so a commit can be written before HEAD moves
+     * without another commit moving it in between.
+     *
+     * @param expectedId Commit HEAD must point at now, or null if it has none
+     * @return The held lock, or null if HEAD moved or is being updated
+     */
+    public RefStore.RefLock lockHead(String expectedId) {
+        RefStore refStore = getRefs();
+        String target = refStore.getHeadTarget();
+        return refStore.lockRef(target != null ? target : RefStore.HEAD, expectedId);
     }
 
     /**
@@ -755,18 +1266,22 @@ public class Repository {
      * @return Current HEAD commit ID, or null if not set
      */
     public String getHead() {
-        try {
-            String headFilePath = repositoryPath + File.separator + INDEX_DIR + File.separator + "head.txt";
-            File headFile = new File(headFilePath);
-
-            if (!headFile.exists()) {
-                return null;
-            }
-
-            try (BufferedReader reader = new BufferedReader(new FileReader(headFile))) {
-                return reader.readLine();
-            }
+        return isInitialized() ? getRefs().resolve(RefStore.HEAD) : null;
+    }
 
+    /**
+     * Reads the HEAD recorded in data/index/head.txt by older versions.
+     *
+     * @return Commit ID, or null if not recorded
+     */
+    private String readLegacyHead() {
+        File headFile = new File(repositoryPath, INDEX_DIR + File.separator + "head.txt");
+        if (!headFile.exists()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(headFile))) {
+            String line = reader.readLine();
+            return line != null && !line.trim().isEmpty() ? line.trim() : null;
         } catch (IOException e) {
             System.err.println("Error reading HEAD: " + e.getMessage());
             return null;
@@ -798,11 +1313,12 @@ public class Repository {
         map.put("path", repositoryPath);
         map.put("name", name);
         map.put("createdAt", createdAt);
-        map.put("commitCount", commits.size());
+        List<Commit> snapshot = getCommits();
+        map.put("commitCount", snapshot.size());
         map.put("initialized", isInitialized());
 
         List<Map<String, Object>> commitMaps = new ArrayList<>();
-        for (Commit commit : commits) {
+        for (Commit commit : snapshot) {
             commitMaps.add(commit.toMap());
         }
         map.put("commits", commitMaps);
@@ -850,6 +1366,11 @@ public class Repository {
                 }
             }
 
+            // Point HEAD at the default branch
+            if (!refs.initialize(null)) {
+                return false;
+            }
+
             System.out.println("Repository initialized successfully at: " + repositoryPath);
             return true;
 
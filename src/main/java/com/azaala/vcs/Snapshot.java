@@ -0,0 +1,97 @@
+package com.azaala.vcs;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * One side of a comparison: a set of files with their content hashes, and
+ * where to read each file's content. Stored commits, the staging index and
+ * the working tree are all described this way, so the same diff code can
+ * compare any two of them.
+ */
+public class Snapshot {
+    private final Commit commit;
+    private final Function<String, File> locator;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param commit Files, hashes and header information (ID, message, time)
+     * @param locator Maps a file path to the file holding its content, or null
+     *                if content cannot be read (comparison then uses hashes only)
+     */
+    public Snapshot(Commit commit, Function<String, File> locator) {
+        this.commit = commit;
+        this.locator = locator;
+    }
+
+    /**
+     * Creates the snapshot of a stored commit. Files are read from their
+     * path relative to the repository inside the commit directory.
+     *
+     * Older commits stored files by name only. A file missing from its
+     * relative path is looked up by name, unless another of the commit's
+     * files is stored at the top level under that name.
+     *
+     * @param commit The commit
+     * @param repoPath Repository path, or null to compare by hashes only
+     * @return Snapshot reading from the commit's directory
+     */
+    public static Snapshot ofCommit(Commit commit, String repoPath) {
+        if (repoPath == null) {
+            return new Snapshot(commit, null);
+        }
+        File commitDir = new File(repoPath + File.separator + "data" + File.separator + "commits" +
+                                  File.separator + "commit_" + commit.getCommitId());
+        FileHandler fileHandler = new FileHandler();
+        AtomicReference<Set<String>> topLevel = new AtomicReference<>();
+        return new Snapshot(commit, file -> {
+            String relativePath = fileHandler.getRelativePath(file, repoPath);
+            File stored = new File(commitDir, relativePath);
+            String name = stored.getName();
+            if (stored.isFile() || name.equals(relativePath)) {
+                return stored;
+            }
+            Set<String> paths = topLevel.get();
+            if (paths == null) {
+                paths = new HashSet<>();
+                for (String committed : commit.getChangedFiles()) {
+                    paths.add(fileHandler.getRelativePath(committed, repoPath));
+                }
+                topLevel.set(paths);
+            }
+            return paths.contains(name) ? stored : new File(commitDir, name);
+        });
+    }
+
+    public Commit getCommit() {
+        return commit;
+    }
+
+    /**
+     * @return Paths of the files in this snapshot
+     */
+    public List<String> getFiles() {
+        return commit.getChangedFiles();
+    }
+
+    /**
+     * @param path File path
+     * @return Content hash of the file, or null if unknown
+     */
+    public String getHash(String path) {
+        return commit.getFileHash(path);
+    }
+
+    /**
+     * @param path File path
+     * @return File holding the content, or null if content cannot be read
+     */
+    public File getFile(String path) {
+        return locator != null ? locator.apply(path) : null;
+    }
+}
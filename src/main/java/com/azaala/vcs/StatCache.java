@@ -0,0 +1,158 @@
+package com.azaala.vcs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the size, modification time and content hash of files, so a
+ * file that has not been touched since it was last hashed is not read
+ * again. Used to compare the working tree and the index against stored
+ * versions cheaply.
+ *
+ * Entries are kept in data/index/stat_cache.txt as "path|size|mtime|hash"
+ * lines. A file modified within the last few seconds is hashed but not
+ * cached, since a second write in the same clock tick would leave its
+ * size and time unchanged.
+ */
+public class StatCache {
+    private static final String CACHE_FILE = "data/index/stat_cache.txt";
+    private static final long RACY_WINDOW_MILLIS = 2000;
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean dirty;
+    private long hits;
+    private long misses;
+
+    /**
+     * Opens the stat cache of a repository, loading existing entries.
+     *
+     * @param repositoryPath Repository path
+     */
+    public StatCache(String repositoryPath) {
+        this.cacheFile = new File(repositoryPath, CACHE_FILE);
+        load();
+    }
+
+    /**
+     * Gets the content hash of a file, reading it only if its size or
+     * modification time changed since it was cached.
+     *
+     * @param file File to hash
+     * @return Content hash, or null if the file does not exist or cannot be read
+     */
+    public synchronized String getHash(File file) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long modified = file.lastModified();
+
+        Entry entry = entries.get(key);
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            hits++;
+            return entry.hash;
+        }
+
+        misses++;
+        String hash = Utils.hashFileContent(file);
+        if (hash == null) {
+            return null;
+        }
+        if (modified < System.currentTimeMillis() - RACY_WINDOW_MILLIS) {
+            entries.put(key, new Entry(size, modified, hash));
+            dirty = true;
+        } else if (entries.remove(key) != null) {
+            dirty = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the cache back if entries changed. The file is replaced
+     * atomically, so readers never see a partial cache.
+     *
+     * @return true if the cache is saved (or had no changes), false on error
+     */
+    public synchronized boolean save() {
+        if (!dirty) {
+            return true;
+        }
+
+        try {
+            File parent = cacheFile.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                System.err.println("Failed to create directory: " + parent.getPath());
+                return false;
+            }
+
+            File temp = new File(cacheFile.getPath() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                    Entry entry = mapEntry.getValue();
+                    writer.write(mapEntry.getKey() + "|" + entry.size + "|" + entry.modified + "|" + entry.hash);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error saving stat cache: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+
+    private void load() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Split from the right: the path itself may contain '|'
+                int hashStart = line.lastIndexOf('|');
+                int modifiedStart = hashStart > 0 ? line.lastIndexOf('|', hashStart - 1) : -1;
+                int sizeStart = modifiedStart > 0 ? line.lastIndexOf('|', modifiedStart - 1) : -1;
+                if (sizeStart <= 0) {
+                    continue;
+                }
+                try {
+                    long size = Long.parseLong(line.substring(sizeStart + 1, modifiedStart));
+                    long modified = Long.parseLong(line.substring(modifiedStart + 1, hashStart));
+                    entries.put(line.substring(0, sizeStart), new Entry(size, modified, line.substring(hashStart + 1)));
+                } catch (NumberFormatException e) {
+                    // Skip corrupt lines; the file is simply hashed again
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading stat cache: " + e.getMessage());
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
@@ -1,19 +1,99 @@
 package com.azaala.vcs;
 
+import com.azaala.vcs.analytics.Rollups;
+import com.azaala.vcs.diff.BinaryDetector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Generates summaries for commits and repository activity.
+ *
+ * Commit summaries can also describe what changed inside the files:
+ * functions added and removed, and TODO/FIXME notes added and resolved.
+ * Each file content is analyzed once, keyed by its hash, and the result
+ * kept in memory and optionally in a cache directory, so the previous
+ * version of a file is never read again after its own commit.
  */
 public class SummaryGenerator {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * A function declaration on one line: "def name(" or "function name(",
+     * or a C-style declaration (modifiers, return type, name, parameters)
+     * ending the line with an optional brace. Groups: script function
+     * name, or return type, name and parameters.
+     */
     private static final Pattern FUNCTION_PATTERN = Pattern.compile(
-            "(public|private|protected)?\\s+\\w+\\s+\\w+\\(.*\\)\\s*\\{?");
+            "^\\s*(?:(?:async\\s+)?(?:def|function|func|fn)\\s+(\\w+)\\s*\\(.*"
+            + "|(?:[\\w.$<>?*&:]+\\s+)*([\\w.$\\[\\]<>?*&:]+)\\s+(\\w+)\\s*\\(([^;]*)\\)\\s*"
+            + "(?:throws\\s+[\\w.,\\s]+|const\\s*)?\\{?\\s*)$");
     private static final Pattern TODO_PATTERN = Pattern.compile("(TODO|FIXME):\\s*(.*)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** Words that look like a return type or name in statements such as "else if (x) {". */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "if", "else", "for", "while", "do", "switch", "case", "catch", "try", "return", "new",
+            "throw", "synchronized", "sizeof", "await", "yield", "elif", "with"));
+    private static final Set<String> CODE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "java", "py", "cpp", "cc", "c", "h", "hpp", "js", "ts", "go", "cs", "kt", "rs", "rb", "php", "swift", "scala"));
+
+    /** Files larger than this are not analyzed. */
+    private static final long MAX_ANALYZED_BYTES = 1024 * 1024;
+    /** Longest function signature or note kept, in characters. */
+    private static final int MAX_ITEM_LENGTH = 200;
+    /** Longer lines are not taken for declarations, which keeps matching linear. */
+    private static final int MAX_DECLARATION_LENGTH = 500;
+    private static final int MAX_CACHED_ANALYSES = 20000;
+    private static final int ANALYSIS_MAGIC = 0x464e5431; // "FNT1"
+
+    private static final ForkJoinPool ANALYSIS_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /** Analyses by content hash (LRU). */
+    private final Map<String, FileAnalysis> analyses = new LinkedHashMap<String, FileAnalysis>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FileAnalysis> eldest) {
+            return size() > MAX_CACHED_ANALYSES;
+        }
+    };
+    private volatile File cacheDirectory;
+
+    /**
+     * Sets where analyses are saved, one small file per content hash, so
+     * later processes can reuse them.
+     *
+     * @param cacheDirectory Cache directory (null to keep analyses in memory only)
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
 
     /**
      * Generates a summary for a commit.
@@ -23,10 +103,64 @@ public class SummaryGenerator {
      * @return Generated summary
      */
     public String generateSummary(Commit commit, Commit previousCommit) {
+        return generateSummary(commit, previousCommit, null, null);
+    }
+
+    /**
+     * Generates a summary for a commit, including the functions and
+     * TODO/FIXME notes its files add and remove.
+     *
+     * @param commit Current commit
+     * @param previousCommit Previous commit (can be null)
+     * @param before Previous committed version of the changed files (null if none)
+     * @param after Content of the changed files in this commit (null to skip content changes)
+     * @return Generated summary
+     */
+    public String generateSummary(Commit commit, Commit previousCommit, Snapshot before, Snapshot after) {
+        if (commit == null) {
+            return "Invalid commit";
+        }
+        return render(commit, summarize(commit, previousCommit, before, after));
+    }
+
+    /**
+     * Computes the structured summary of a commit: file counts by type
+     * and, given the file contents, the functions and TODO/FIXME notes
+     * added and removed. The files are analyzed in parallel, and contents
+     * already analyzed are not read again.
+     *
+     * @param commit Current commit
+     * @param previousCommit Previous commit (can be null)
+     * @param before Previous committed version of the changed files (null if none)
+     * @param after Content of the changed files in this commit (null to skip content changes)
+     * @return The summary fields
+     */
+    public CommitSummary summarize(Commit commit, Commit previousCommit, Snapshot before, Snapshot after) {
+        List<String> changedFiles = commit.getChangedFiles();
+        int[] contentChanges = after != null ? contentChanges(changedFiles, before, after) : new int[4];
+        return new CommitSummary(previousCommit == null,
+                                 commit.getFileCount() - (previousCommit != null ? previousCommit.getFileCount() : 0),
+                                 countFilesByType(changedFiles, "java", "py", "cpp", "js"),
+                                 countFilesByType(changedFiles, "md", "txt", "pdf", "doc"),
+                                 countFilesByType(changedFiles, "xml", "json", "yml", "properties"),
+                                 contentChanges[0], contentChanges[1], contentChanges[2], contentChanges[3]);
+    }
+
+    /**
+     * Renders the readable summary of a commit from its stored fields.
+     *
+     * @param commit The commit
+     * @return Rendered summary, or the stored text if it is free-form
+     */
+    public String renderSummary(Commit commit) {
         if (commit == null) {
             return "Invalid commit";
         }
+        CommitSummary fields = commit.getSummaryFields();
+        return fields != null ? render(commit, fields) : commit.getSummary();
+    }
 
+    private String render(Commit commit, CommitSummary fields) {
         StringBuilder summary = new StringBuilder();
         summary.append("=== Commit Summary ===\n");
         summary.append("ID: ").append(commit.getCommitId()).append("\n");
@@ -37,39 +171,34 @@ public class SummaryGenerator {
         summary.append("\n");
 
         int fileCount = commit.getFileCount();
+        int difference = fields.getFileDelta();
 
-        if (previousCommit == null) {
+        if (fields.isInitial()) {
             summary.append("Type: Initial commit\n");
             summary.append("Files added: ").append(fileCount).append("\n");
+        } else if (difference > 0) {
+            summary.append("Files added: ").append(difference).append(" (total: ").append(fileCount).append(")\n");
+        } else if (difference < 0) {
+            summary.append("Files removed: ").append(Math.abs(difference)).append(" (total: ").append(fileCount).append(")\n");
         } else {
-            int previousFileCount = previousCommit.getFileCount();
-            int difference = fileCount - previousFileCount;
-
-            if (difference > 0) {
-                summary.append("Files added: ").append(difference).append(" (total: ").append(fileCount).append(")\n");
-            } else if (difference < 0) {
-                summary.append("Files removed: ").append(Math.abs(difference)).append(" (total: ").append(fileCount).append(")\n");
-            } else {
-                summary.append("Files modified (no count change): ").append(fileCount).append("\n");
-            }
-        }
-
-        List<String> changedFiles = commit.getChangedFiles();
-        if (changedFiles == null) {
-            changedFiles = java.util.Collections.emptyList();
+            summary.append("Files modified (no count change): ").append(fileCount).append("\n");
         }
 
-        // Identify file types
-        int codeFiles = countFilesByType(changedFiles, "java", "py", "cpp", "js");
-        int docFiles = countFilesByType(changedFiles, "md", "txt", "pdf", "doc");
-        int configFiles = countFilesByType(changedFiles, "xml", "json", "yml", "properties");
-
         summary.append("\nBreakdown:\n");
-        summary.append(" - Code files: ").append(codeFiles).append("\n");
-        summary.append(" - Docs: ").append(docFiles).append("\n");
-        summary.append(" - Config: ").append(configFiles).append("\n");
+        summary.append(" - Code files: ").append(fields.getCodeFiles()).append("\n");
+        summary.append(" - Docs: ").append(fields.getDocFiles()).append("\n");
+        summary.append(" - Config: ").append(fields.getConfigFiles()).append("\n");
+
+        if (fields.hasContentChanges()) {
+            summary.append("\nContent changes:\n");
+            summary.append(" - Functions added: ").append(fields.getFunctionsAdded()).append("\n");
+            summary.append(" - Functions removed: ").append(fields.getFunctionsRemoved()).append("\n");
+            summary.append(" - TODO/FIXME added: ").append(fields.getNotesAdded())
+                   .append(", resolved: ").append(fields.getNotesResolved()).append("\n");
+        }
 
         // List changed files (limited to avoid huge output)
+        List<String> changedFiles = commit.getChangedFiles();
         summary.append("\nChanged files (").append(changedFiles.size()).append("):\n");
         int limit = Math.min(changedFiles.size(), 20);
         for (int i = 0; i < limit; i++) {
@@ -82,6 +211,251 @@ public class SummaryGenerator {
         return summary.toString();
     }
 
+    /**
+     * Counts the functions and notes added and removed across the changed
+     * files.
+     *
+     * @return Functions added, functions removed, notes added, notes resolved
+     */
+    private int[] contentChanges(List<String> changedFiles, Snapshot before, Snapshot after) {
+        Set<String> previousFiles = before != null ? new HashSet<>(before.getFiles()) : Collections.emptySet();
+        int[] totals = new int[4];
+        List<int[]> changes;
+        try {
+            changes = ANALYSIS_POOL.submit(() -> changedFiles.parallelStream()
+                    .map(file -> compare(file,
+                            previousFiles.contains(file) ? analyze(before, file) : FileAnalysis.EMPTY,
+                            analyze(after, file)))
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return totals;
+        } catch (ExecutionException e) {
+            System.err.println("Error analyzing changed files: " + e.getCause());
+            return totals;
+        }
+        for (int[] change : changes) {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += change[i];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Compares two versions of a file. Functions are only counted in
+     * source files; notes in any text file.
+     *
+     * @return Functions added, functions removed, notes added, notes resolved
+     */
+    private static int[] compare(String file, FileAnalysis older, FileAnalysis newer) {
+        int[] changes = new int[4];
+        if (isCodeFile(file)) {
+            changes[0] = countMissing(newer.functions, older.functions);
+            changes[1] = countMissing(older.functions, newer.functions);
+        }
+        changes[2] = countMissing(newer.notes, older.notes);
+        changes[3] = countMissing(older.notes, newer.notes);
+        return changes;
+    }
+
+    /**
+     * @return Number of items not in the other set
+     */
+    private static int countMissing(Set<String> items, Set<String> other) {
+        int count = 0;
+        for (String item : items) {
+            if (!other.contains(item)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isCodeFile(String file) {
+        int dot = file.lastIndexOf('.');
+        return dot >= 0 && CODE_EXTENSIONS.contains(file.substring(dot + 1).toLowerCase());
+    }
+
+    /**
+     * Gets the analysis of one file of a snapshot: from memory, then from
+     * the cache directory, and only then by reading the file.
+     */
+    private FileAnalysis analyze(Snapshot snapshot, String path) {
+        String hash = snapshot.getHash(path);
+        if (hash != null) {
+            synchronized (analyses) {
+                FileAnalysis cached = analyses.get(hash);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        File cacheFile = hash != null ? cacheFileFor(hash) : null;
+        FileAnalysis analysis = cacheFile != null ? loadAnalysis(cacheFile) : null;
+        if (analysis == null) {
+            analysis = analyzeFile(snapshot.getFile(path), hash);
+            if (analysis == null) {
+                return FileAnalysis.EMPTY;
+            }
+            if (cacheFile != null) {
+                saveAnalysis(cacheFile, analysis);
+            }
+        }
+        if (hash != null) {
+            synchronized (analyses) {
+                analyses.put(hash, analysis);
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * Reads a file's function signatures and TODO/FIXME notes. Binary and
+     * very large files have none.
+     *
+     * @return The analysis, or null if the file could not be read
+     */
+    private static FileAnalysis analyzeFile(File file, String hash) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        if (file.length() > MAX_ANALYZED_BYTES || BinaryDetector.isBinary(file, hash)) {
+            return FileAnalysis.EMPTY;
+        }
+        Set<String> functions = new LinkedHashSet<>();
+        Set<String> notes = new LinkedHashSet<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("TODO") || line.contains("FIXME")) {
+                    Matcher note = TODO_PATTERN.matcher(line);
+                    if (note.find()) {
+                        notes.add(truncate(note.group(1) + ": " + note.group(2).trim()));
+                    }
+                }
+                String signature = functionSignature(line);
+                if (signature != null) {
+                    functions.add(truncate(signature));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + file.getPath());
+            return null;
+        }
+        return new FileAnalysis(functions, notes);
+    }
+
+    /**
+     * @return "name(parameters)" with whitespace collapsed, or null if the
+     *         line does not declare a function
+     */
+    private static String functionSignature(String line) {
+        if (line.length() > MAX_DECLARATION_LENGTH || line.indexOf('(') < 0) {
+            return null;
+        }
+        Matcher matcher = FUNCTION_PATTERN.matcher(line);
+        if (!matcher.matches()) {
+            return null;
+        }
+        if (matcher.group(1) != null) {
+            return matcher.group(1) + "()";
+        }
+        if (KEYWORDS.contains(matcher.group(2)) || KEYWORDS.contains(matcher.group(3))) {
+            return null;
+        }
+        return matcher.group(3) + "(" + WHITESPACE.matcher(matcher.group(4).trim()).replaceAll(" ") + ")";
+    }
+
+    private static String truncate(String text) {
+        return text.length() > MAX_ITEM_LENGTH ? text.substring(0, MAX_ITEM_LENGTH) : text;
+    }
+
+    private File cacheFileFor(String hash) {
+        File directory = cacheDirectory;
+        if (directory == null || hash.length() < 3) {
+            return null;
+        }
+        return new File(new File(directory, hash.substring(0, 2)), hash.substring(2));
+    }
+
+    private static FileAnalysis loadAnalysis(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != ANALYSIS_MAGIC) {
+                return null;
+            }
+            Set<String> functions = readItems(in);
+            Set<String> notes = readItems(in);
+            return new FileAnalysis(functions, notes);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable analysis cache entry: " + file.getPath());
+            return null;
+        }
+    }
+
+    private static Set<String> readItems(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Invalid item count");
+        }
+        Set<String> items = new LinkedHashSet<>();
+        for (int i = 0; i < count; i++) {
+            items.add(in.readUTF());
+        }
+        return items;
+    }
+
+    /**
+     * Saves an analysis, replacing the file atomically. Failures are
+     * reported and otherwise ignored, since the analysis can be redone.
+     */
+    private static void saveAnalysis(File file, FileAnalysis analysis) {
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(ANALYSIS_MAGIC);
+                writeItems(out, analysis.functions);
+                writeItems(out, analysis.notes);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error saving analysis cache: " + e.getMessage());
+        }
+    }
+
+    private static void writeItems(DataOutputStream out, Set<String> items) throws IOException {
+        out.writeInt(items.size());
+        for (String item : items) {
+            out.writeUTF(item);
+        }
+    }
+
+    /**
+     * Function signatures and TODO/FIXME notes of one file content.
+     */
+    private static final class FileAnalysis {
+        static final FileAnalysis EMPTY = new FileAnalysis(Collections.emptySet(), Collections.emptySet());
+
+        final Set<String> functions;
+        final Set<String> notes;
+
+        FileAnalysis(Set<String> functions, Set<String> notes) {
+            this.functions = functions;
+            this.notes = notes;
+        }
+    }
+
     /**
      * Counts files by their extensions.
      *
@@ -130,7 +504,7 @@ public class SummaryGenerator {
             if (commit.getTimestamp() != null) {
                 summary.append("   Date: ").append(commit.getTimestamp().format(FORMATTER)).append("\n");
             }
-            String commitSummary = commit.getSummary();
+            String commitSummary = commit.describeSummary();
             if (commitSummary != null && !commitSummary.isEmpty()) {
                 summary.append("   Summary: ").append(commitSummary).append("\n");
             }
@@ -140,6 +514,45 @@ public class SummaryGenerator {
         return summary.toString();
     }
 
+    /**
+     * Generates totals over the whole history from the analytics rollups,
+     * without reading any commit.
+     *
+     * @param rollups The repository's rollups
+     * @param limit Maximum number of authors and files to list
+     * @return Totals summary string
+     */
+    public String generateRollupSummary(Rollups rollups, int limit) {
+        if (rollups == null || rollups.getCommitCount() == 0) {
+            return "";
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append("=== Repository Totals ===\n");
+        Rollups.Row total = rollups.getTotal();
+        summary.append("All time: ").append(total.getCommits()).append(" commits, +").append(total.getAdded())
+               .append(" -").append(total.getDeleted()).append(" lines, ").append(total.getBytes()).append(" bytes\n");
+        Rollups.Row month = rollups.forDays(LocalDate.now().minusDays(29), null);
+        summary.append("Last 30 days: ").append(month.getCommits()).append(" commits, +").append(month.getAdded())
+               .append(" -").append(month.getDeleted()).append(" lines\n");
+
+        List<Rollups.Row> authors = rollups.byAuthor();
+        summary.append("Top authors:\n");
+        for (Rollups.Row author : authors.subList(0, Math.min(limit, authors.size()))) {
+            summary.append("   ").append(author.getKey()).append(": ").append(author.getCommits())
+                   .append(" commits, +").append(author.getAdded()).append(" -").append(author.getDeleted()).append("\n");
+        }
+        List<Rollups.Row> files = rollups.topFiles(limit);
+        if (!files.isEmpty()) {
+            summary.append("Most changed files:\n");
+            for (Rollups.Row file : files) {
+                summary.append("   ").append(file.getKey()).append(": ").append(file.getCommits())
+                       .append(" commits, +").append(file.getAdded()).append(" -").append(file.getDeleted()).append("\n");
+            }
+        }
+        return summary.toString();
+    }
+
     /**
      * Generates a quick status summary.
      *
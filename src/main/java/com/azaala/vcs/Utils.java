@@ -1,7 +1,9 @@
 package com.azaala.vcs;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -117,6 +119,7 @@ public class Utils {
 
     /**
      * Generates a hash of the file content using SHA-256.
+     * The file is streamed through the digest, so large files are not loaded into memory.
      *
      * @param file File to hash
      * @return Hex string of the hash, or null if error
@@ -126,10 +129,14 @@ public class Utils {
             return null;
         }
 
-        try {
+        try (InputStream input = new FileInputStream(file)) {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] fileBytes = java.nio.file.Files.readAllBytes(file.toPath());
-            byte[] hashBytes = digest.digest(fileBytes);
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            byte[] hashBytes = digest.digest();
 
             // Convert to hex string
             StringBuilder hexString = new StringBuilder();
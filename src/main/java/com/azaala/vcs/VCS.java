@@ -1,10 +1,30 @@
 package com.azaala.vcs;
 
+import com.azaala.vcs.blame.BlameEngine;
+import com.azaala.vcs.blame.BlameResult;
+import com.azaala.vcs.diff.BinaryDetector;
+import com.azaala.vcs.diff.DiffAlgorithm;
+import com.azaala.vcs.diff.DiffFormatter;
+import com.azaala.vcs.graph.CommitGraph;
+import com.azaala.vcs.merge.MergeEngine;
+import com.azaala.vcs.patch.PatchApplier;
+import com.azaala.vcs.search.ContentIndex;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 
 /**
  * Core VCS class that coordinates version control operations.
@@ -15,12 +35,22 @@ public class VCS {
     private FileHandler fileHandler;
     private DiffUtil diffUtil;
     private SummaryGenerator summaryGenerator;
+    private String author;
 
     private static final String DATA_DIR = "data";
     private static final String COMMITS_DIR = "data/commits";
     private static final String INDEX_DIR = "data/index";
+    private static final String ANALYSIS_CACHE_DIR = "data/cache/analysis";
+    private static final int STAT_GRAPH_WIDTH = 40;
+    private static final int ROLLUP_SUMMARY_LIMIT = 5;
     private static final String STAGED_FILES = "data/index/staged_files.txt";
+    private static final String HEAD = "HEAD";
+    private static final String INDEX_ID = "index";
+    private static final String WORKING_TREE_ID = "worktree";
     private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    /** A log uses the history index when it selects at most this many commits, or an eighth of history. */
+    private static final int MIN_INDEXED_CANDIDATES = 4096;
+    private static final DateTimeFormatter BLAME_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     /**
      * Initializes a new VCS instance.
@@ -31,6 +61,26 @@ public class VCS {
         this.summaryGenerator = new SummaryGenerator();
     }
 
+    /**
+     * Gets the author recorded on new commits.
+     *
+     * @return The author set with {@link #setAuthor(String)}, or the
+     *         system user name if none was set (never null)
+     */
+    public String getAuthor() {
+        return author != null ? author : System.getProperty("user.name", "Unknown");
+    }
+
+    /**
+     * Sets the author recorded on new commits.
+     *
+     * @param author Author such as "Name &lt;email&gt;" (null or empty for the
+     *               system user name)
+     */
+    public void setAuthor(String author) {
+        this.author = author != null && !author.trim().isEmpty() ? author.trim() : null;
+    }
+
     /**
      * Initializes a new repository at the specified path.
      *
@@ -123,6 +173,11 @@ public class VCS {
                 }
             }
 
+            // Point HEAD at the default branch (an existing HEAD is kept)
+            if (!repository.getRefs().initialize(null)) {
+                return false;
+            }
+
             System.out.println("Repository initialized successfully at: " + basePath);
             return true;
 
@@ -421,7 +476,9 @@ public class VCS {
 
     /**
      * Creates a new commit with the given message.
-     * Creates a snapshot of staged files and metadata.
+     * Creates a snapshot of staged files and metadata. Nothing is written
+     * if HEAD moved since the commit began or another commit holds it;
+     * the staged files are then kept.
      *
      * @param message Commit message
      * @return The ID of the new commit if successful, null otherwise
@@ -455,91 +512,56 @@ public class VCS {
             String commitId = Utils.generateUniqueId();
             LocalDateTime timestamp = LocalDateTime.now();
 
-            // Get previous commit for summary generation
-            List<Commit> existingCommits = repository.getCommits();
-            Commit previousCommit = existingCommits.isEmpty() ? null : existingCommits.get(existingCommits.size() - 1);
-
-            // Create commit object
-            Commit commit = new Commit(commitId, trimmedMessage, timestamp, stagedFiles);
-
-            // Generate summary
-            String summary = summaryGenerator.generateSummary(commit, previousCommit);
-            commit.setSummary(summary);
-
-            // Save commit to repository
-            String commitResult = repository.createCommit(commit);
-            if (commitResult == null) {
-                System.err.println("Failed to save commit to repository");
-                return null;
-            }
+            // Remember where HEAD was, so it only moves if nobody else moved it
+            String previousHead = repository.getHead();
 
-            // Create commit directory and save files
-            String commitPath = repository.getPath() + File.separator + COMMITS_DIR + File.separator + "commit_" + commitId;
-            File commitDir = new File(commitPath);
-            if (!commitDir.mkdirs()) {
-                System.err.println("Failed to create commit directory: " + commitPath);
-                return null;
-            }
+            // The previous commit is HEAD, the first parent
+            Commit previousCommit = previousHead != null ? repository.getCommitById(previousHead) : null;
 
-            // Copy staged files to commit directory
-            String indexPath = repository.getPath() + File.separator + INDEX_DIR;
-            File repoRoot = new File(repository.getPath());
+            // Create commit object; a pending merge adds its commit as a parent
+            Commit commit = new Commit(commitId, trimmedMessage, timestamp, stagedFiles);
+            commit.setAuthor(getAuthor());
+            RefStore refs = repository.getRefs();
+            String mergeHead = refs.resolve(RefStore.MERGE_HEAD);
+            commit.setParentIds(Arrays.asList(previousHead, mergeHead));
 
+            // Record content hashes of the staged copies so later comparisons
+            // can tell identical files apart without reading them
             for (String filePath : stagedFiles) {
-                try {
-                    File sourceFile = new File(filePath);
-                    if (!sourceFile.exists()) {
-                        System.err.println("Source file doesn't exist: " + filePath);
-                        return null;
-                    }
-
-                    // Calculate relative path from repository root
-                    String relativePath = fileHandler.getRelativePath(filePath, repository.getPath());
-
-                    // Try to find file in index with structure preserved
-                    String indexSourcePath = indexPath + File.separator + relativePath;
-                    // Fallback: try just filename for backward compatibility
-                    String indexSourcePathSimple = indexPath + File.separator + Utils.getFileName(filePath);
-
-                    File indexSource = null;
-                    if (new File(indexSourcePath).exists()) {
-                        indexSource = new File(indexSourcePath);
-                    } else if (new File(indexSourcePathSimple).exists()) {
-                        indexSource = new File(indexSourcePathSimple);
-                    } else {
-                        System.err.println("File not found in index for: " + filePath);
-                        System.err.println("  Tried: " + indexSourcePath);
-                        System.err.println("  Tried: " + indexSourcePathSimple);
-                        return null;
-                    }
+                File indexSource = resolveIndexSource(filePath);
+                if (indexSource != null) {
+                    commit.setFileHash(filePath, Utils.hashFileContent(indexSource));
+                }
+            }
 
-                    // Create target path preserving directory structure
-                    File targetFile = new File(commitDir, relativePath);
+            // Compare each staged file with its last committed version
+            Snapshot before = previousCommit != null ? previousVersions(previousCommit, stagedFiles) : null;
+            Snapshot after = new Snapshot(commit, this::resolveIndexSource);
 
-                    // Create parent directories if needed
-                    if (targetFile.getParentFile() != null && !targetFile.getParentFile().exists()) {
-                        if (!targetFile.getParentFile().mkdirs()) {
-                            System.err.println("Failed to create target directory: " + targetFile.getParentFile().getAbsolutePath());
-                            return null;
-                        }
-                    }
+            // Count changed lines and bytes once, so history views never diff again
+            commit.setChangeStats(diffUtil.computeChangeStats(before, after, null));
 
-                    // Copy file to commit
-                    if (!fileHandler.copyFile(indexSource.getAbsolutePath(), targetFile.getAbsolutePath())) {
-                        System.err.println("Failed to copy file to commit: " + filePath);
-                        return null;
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing file for commit: " + filePath);
-                    System.err.println("Exception: " + e.getMessage());
+            // Generate summary
+            summaryGenerator.setCacheDirectory(new File(repository.getPath(), ANALYSIS_CACHE_DIR));
+            commit.setSummaryFields(summaryGenerator.summarize(commit, previousCommit, before, after));
+
+            // Hold HEAD until the commit is saved, so a concurrent commit cannot
+            // move it in between; if it already moved, nothing is written
+            RefStore.RefLock headLock = repository.lockHead(previousHead);
+            if (headLock == null) {
+                System.err.println("HEAD moved or is being updated by another commit; staged files are kept");
+                return null;
+            }
+            try {
+                if (!saveCommit(commit, stagedFiles) || !headLock.commit(commitId)) {
                     return null;
                 }
+            } finally {
+                headLock.release();
             }
 
-            // Save commit metadata
-            if (!fileHandler.saveCommit(commit, commitPath)) {
-                System.err.println("Failed to save commit metadata");
-                return null;
+            if (mergeHead != null) {
+                refs.compareAndSwap(RefStore.MERGE_HEAD, mergeHead, null);
             }
 
             // Clear staged files
@@ -549,7 +571,7 @@ public class VCS {
 
             System.out.println("Commit created successfully: " + commitId);
             System.out.println("Files committed: " + stagedFiles.size());
-            System.out.println("Summary: " + summary);
+            System.out.println("Summary: " + summaryGenerator.renderSummary(commit));
 
             return commitId;
 
@@ -559,6 +581,106 @@ public class VCS {
         }
     }
 
+    /**
+     * Writes a commit's snapshot directory and metadata, then adds it to
+     * the repository's log and indexes.
+     *
+     * @return true if the commit was saved
+     */
+    private boolean saveCommit(Commit commit, List<String> stagedFiles) {
+        String commitId = commit.getCommitId();
+
+        // Create commit directory and save files
+        String commitPath = repository.getPath() + File.separator + COMMITS_DIR + File.separator + "commit_" + commitId;
+        File commitDir = new File(commitPath);
+        if (!commitDir.mkdirs()) {
+            System.err.println("Failed to create commit directory: " + commitPath);
+            return false;
+        }
+
+        // Copy staged files to commit directory
+        String indexPath = repository.getPath() + File.separator + INDEX_DIR;
+
+        for (String filePath : stagedFiles) {
+            try {
+                File sourceFile = new File(filePath);
+                if (!sourceFile.exists()) {
+                    System.err.println("Source file doesn't exist: " + filePath);
+                    return false;
+                }
+
+                // Calculate relative path from repository root
+                String relativePath = fileHandler.getRelativePath(filePath, repository.getPath());
+
+                File indexSource = resolveIndexSource(filePath);
+                if (indexSource == null) {
+                    System.err.println("File not found in index for: " + filePath);
+                    System.err.println("  Tried: " + indexPath + File.separator + relativePath);
+                    System.err.println("  Tried: " + indexPath + File.separator + Utils.getFileName(filePath));
+                    return false;
+                }
+
+                // Create target path preserving directory structure
+                File targetFile = new File(commitDir, relativePath);
+
+                // Create parent directories if needed
+                if (targetFile.getParentFile() != null && !targetFile.getParentFile().exists()) {
+                    if (!targetFile.getParentFile().mkdirs()) {
+                        System.err.println("Failed to create target directory: " + targetFile.getParentFile().getAbsolutePath());
+                        return false;
+                    }
+                }
+
+                // Copy file to commit
+                if (!fileHandler.copyFile(indexSource.getAbsolutePath(), targetFile.getAbsolutePath())) {
+                    System.err.println("Failed to copy file to commit: " + filePath);
+                    return false;
+                }
+            } catch (Exception e) {
+                System.err.println("Error processing file for commit: " + filePath);
+                System.err.println("Exception: " + e.getMessage());
+                return false;
+            }
+        }
+
+        // Save commit metadata
+        if (!fileHandler.saveCommit(commit, commitPath)) {
+            System.err.println("Failed to save commit metadata");
+            return false;
+        }
+
+        // Save commit to repository
+        if (repository.createCommit(commit) == null) {
+            System.err.println("Failed to save commit to repository");
+            return false;
+        }
+
+        // Index the snapshot's contents now that its files are in place
+        repository.indexContentInBackground();
+        return true;
+    }
+
+    /**
+     * Finds the staged copy of a file in the index.
+     *
+     * @param filePath Absolute path of the staged file
+     * @return The index copy, or null if it is not in the index
+     */
+    private File resolveIndexSource(String filePath) {
+        String indexPath = repository.getPath() + File.separator + INDEX_DIR;
+        String relativePath = fileHandler.getRelativePath(filePath, repository.getPath());
+
+        // Try to find file in index with structure preserved
+        File indexSource = new File(indexPath + File.separator + relativePath);
+        if (indexSource.exists()) {
+            return indexSource;
+        }
+
+        // Fallback: try just filename for backward compatibility
+        File indexSourceSimple = new File(indexPath + File.separator + Utils.getFileName(filePath));
+        return indexSourceSimple.exists() ? indexSourceSimple : null;
+    }
+
     /**
      * Gets the current status of the repository.
      *
@@ -644,17 +766,7 @@ public class VCS {
 
             // Display commits in reverse chronological order (newest first)
             for (int i = commits.size() - 1; i >= 0; i--) {
-                Commit commit = commits.get(i);
-                logEntries.add("Commit: " + commit.getCommitId());
-                logEntries.add("Date: " + commit.getTimestamp().format(TIMESTAMP_FORMATTER));
-                logEntries.add("Message: " + commit.getMessage());
-                logEntries.add("Files: " + commit.getFileCount());
-                logEntries.add("Summary: " + commit.getSummary());
-                logEntries.add("Changed files:");
-                for (String file : commit.getChangedFiles()) {
-                    logEntries.add("  - " + file);
-                }
-                logEntries.add("----------------------------");
+                addLogEntry(logEntries, commits.get(i));
             }
 
         } catch (Exception e) {
@@ -665,55 +777,1223 @@ public class VCS {
     }
 
     /**
-     * Compares two commits and generates a diff report.
+     * Lists the commits reachable from a commit, branch or tag, each before
+     * its parents and otherwise newest first. The order comes from the
+     * commit graph; only the listed commits' details are looked up.
      *
-     * @param commitId1 First commit ID
-     * @param commitId2 Second commit ID
-     * @return A list of differences between the commits (never null)
-     * @throws IllegalArgumentException if either commit ID is null or empty
+     * @param revision Commit ID, branch, tag or HEAD to start from
+     * @return A list of commit information strings (never null)
      */
-    public List<String> diff(String commitId1, String commitId2) {
-        List<String> differences = new ArrayList<>();
+    public List<String> log(String revision) {
+        return log(revision, null);
+    }
+
+    /**
+     * Lists the commits reachable from a commit, branch or tag that changed
+     * a file or anything under a directory. Each commit's changed-path
+     * Bloom filter rules it out without looking at its file list, so only
+     * the few commits that may match are checked.
+     *
+     * @param revision Commit ID, branch, tag or HEAD to start from
+     * @param path File or directory, absolute or relative to the repository
+     *             root (null for all commits)
+     * @return A list of commit information strings (never null)
+     */
+    public List<String> log(String revision, String path) {
+        List<String> logEntries = new ArrayList<>();
 
         if (repository == null) {
-            differences.add("Repository not initialized. Run 'init' first.");
-            return differences;
+            logEntries.add("Repository not initialized. Run 'init' first.");
+            return logEntries;
         }
 
-        if (commitId1 == null || commitId1.trim().isEmpty()) {
-            throw new IllegalArgumentException("First commit ID cannot be null or empty");
+        LogQuery query = new LogQuery();
+        query.setRevision(revision);
+        query.setPath(path);
+        LogCursor cursor = queryLog(query);
+        if (cursor == null) {
+            logEntries.add("Cannot read log of " + query.getRevision() + (path != null ? " -- " + path.trim() : ""));
+            return logEntries;
         }
 
-        if (commitId2 == null || commitId2.trim().isEmpty()) {
-            throw new IllegalArgumentException("Second commit ID cannot be null or empty");
+        int count = 0;
+        while (cursor.hasNext()) {
+            logEntries.addAll(formatLogEntry(cursor.next()));
+            count++;
+        }
+        String pathKey = path != null ? repository.getPathKey(path) : "";
+        logEntries.add(0, "=== Commit Log (" + query.getRevision()
+                          + (pathKey == null || pathKey.isEmpty() ? "" : " -- " + pathKey) + ") ===");
+        logEntries.add(1, "Total commits: " + count);
+        logEntries.add(2, "");
+        return logEntries;
+    }
+
+    /**
+     * Opens a cursor over the commits a query selects, each before its
+     * parents and otherwise newest first. Commits are produced lazily, so
+     * reading one page costs the same however long the history is; a path
+     * query uses the changed-path filters to skip unrelated commits, and
+     * date and author bounds use the repository's history index.
+     *
+     * @param query Start revision, filters and page bounds
+     * @return A cursor over the matching commits, or null if the repository
+     *         is not initialized, the revision does not exist or the path is
+     *         outside the repository
+     */
+    public LogCursor queryLog(LogQuery query) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return null;
+        }
+        if (query == null) {
+            query = new LogQuery();
+        }
+
+        String pathKey = query.getPath() != null ? repository.getPathKey(query.getPath()) : "";
+        if (pathKey == null) {
+            System.err.println("Path is outside the repository: " + query.getPath());
+            return null;
+        }
+
+        Commit start = resolveCommit(query.getRevision());
+        if (start == null) {
+            if (HEAD.equalsIgnoreCase(query.getRevision()) && repository.getCommits().isEmpty()) {
+                return new LogCursor(repository, Collections.emptyIterator(), query);
+            }
+            System.err.println("Commit not found: " + query.getRevision());
+            return null;
+        }
+
+        CommitGraph graph = repository.getCommitGraph();
+        if (graph == null || !graph.contains(start.getCommitId())) {
+            System.err.println("Commit graph unavailable");
+            return null;
+        }
+        Iterator<String> commitIds = pathKey.isEmpty()
+            ? graph.walk(Collections.singletonList(start.getCommitId()), null, null, indexedCandidates(query))
+            : graph.walk(Collections.singletonList(start.getCommitId()), pathKey, changesPath(pathKey, true),
+                         indexedCandidates(query));
+        return new LogCursor(repository, commitIds, query);
+    }
+
+    /**
+     * Looks up the commits a query's date and author bounds allow in the
+     * history index, so the walk passes over the others without reading
+     * them and stops below the oldest of them. The cursor still checks
+     * each commit against the exact bounds.
+     *
+     * @return Candidate commit IDs, or null to check every walked commit:
+     *         when nothing is bounded, the index is unavailable, or the
+     *         bounds allow so much of history that checking is cheaper
+     */
+    private List<String> indexedCandidates(LogQuery query) {
+        if (query.getSince() == null && query.getUntil() == null && query.getAuthor() == null) {
+            return null;
+        }
+        List<String> ids = repository.findCommitIds(query.getSince(), query.getUntil(), query.getAuthor());
+        if (ids == null || ids.size() > Math.max(MIN_INDEXED_CANDIDATES, repository.getCommitCount() / 8)) {
+            return null;
+        }
+        return ids;
+    }
+
+    /**
+     * Finds commits whose message or summary contains every word of a
+     * query. The repository's message index answers from posting lists,
+     * so the cost depends on the matches, not on the length of history.
+     *
+     * @param query Words to search for; a word ending in '*' matches as a prefix
+     * @param limit Most commits to list (0 or less for all)
+     * @return One line per matching commit, newest first, or an error message (never null)
+     */
+    public List<String> search(String query, int limit) {
+        List<String> results = new ArrayList<>();
+
+        if (repository == null) {
+            results.add("Repository not initialized. Run 'init' first.");
+            return results;
+        }
+        if (query == null || query.trim().isEmpty()) {
+            results.add("Search query cannot be empty");
+            return results;
         }
 
-        String trimmedId1 = commitId1.trim();
-        String trimmedId2 = commitId2.trim();
+        for (Commit commit : repository.searchCommits(query, limit)) {
+            results.add(commit.getCommitId() + "  " + commit.getTimestamp().format(TIMESTAMP_FORMATTER)
+                        + "  " + commit.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * Finds the lines of committed files matching a regular expression,
+     * like git grep. The repository's content index narrows the search to
+     * files holding the pattern's literal text, and only those are read.
+     *
+     * @param regex Regular expression, matched against each line
+     * @param ignoreCase Whether to match regardless of case
+     * @param revision Commit ID, branch, tag or HEAD to search the files of,
+     *                 or null to search every file content in history
+     * @param limit Most lines to list (0 or less for all)
+     * @return "path:line: text" lines ("commit:path:line: text" across
+     *         history), or an error message (never null)
+     */
+    public List<String> grep(String regex, boolean ignoreCase, String revision, int limit) {
+        List<String> results = new ArrayList<>();
 
+        if (repository == null) {
+            results.add("Repository not initialized. Run 'init' first.");
+            return results;
+        }
+        if (regex == null || regex.isEmpty()) {
+            results.add("Search pattern cannot be empty");
+            return results;
+        }
+        Pattern pattern;
         try {
-            // Get commits directly from repository
-            Commit commit1 = repository.getCommitById(trimmedId1);
-            Commit commit2 = repository.getCommitById(trimmedId2);
+            pattern = Pattern.compile(regex, ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+        } catch (PatternSyntaxException e) {
+            results.add("Invalid pattern: " + e.getDescription());
+            return results;
+        }
 
-            if (commit1 == null) {
-                differences.add("Commit not found: " + trimmedId1);
-                return differences;
+        ContentIndex index = repository.getContentIndex();
+        if (revision == null) {
+            for (ContentIndex.Match match : index.search(pattern, null, limit)) {
+                ContentIndex.Blob blob = match.getBlob();
+                results.add(blob.getCommitId() + ":" + displayPath(blob.getPath()) + ":"
+                            + match.getLineNumber() + ": " + match.getLine());
             }
+            return results;
+        }
 
-            if (commit2 == null) {
-                differences.add("Commit not found: " + trimmedId2);
-                return differences;
+        Commit commit = resolveCommit(revision);
+        if (commit == null) {
+            if (!HEAD.equalsIgnoreCase(revision.trim())) {
+                results.add("Commit not found: " + revision);
+            }
+            return results;
+        }
+        Snapshot tree = treeSnapshot(commit);
+        Map<String, List<String>> pathsByHash = new HashMap<>();
+        for (String file : tree.getFiles()) {
+            String hash = tree.getHash(file);
+            if (hash == null) {
+                hash = Utils.hashFileContent(tree.getFile(file));
+            }
+            if (hash != null) {
+                pathsByHash.computeIfAbsent(hash, h -> new ArrayList<>()).add(displayPath(file));
+            }
+        }
+
+        // Several paths can share one content; list the lines by path
+        TreeMap<String, List<String>> byPath = new TreeMap<>();
+        int count = 0;
+        for (ContentIndex.Match match : index.search(pattern, blob -> pathsByHash.containsKey(blob.getHash()), limit)) {
+            for (String path : pathsByHash.get(match.getBlob().getHash())) {
+                if (limit <= 0 || count < limit) {
+                    byPath.computeIfAbsent(path, p -> new ArrayList<>())
+                          .add(path + ":" + match.getLineNumber() + ": " + match.getLine());
+                    count++;
+                }
             }
+        }
+        for (List<String> lines : byPath.values()) {
+            results.addAll(lines);
+        }
+        return results;
+    }
 
-            // Use DiffUtil for detailed comparison
-            return diffUtil.compareCommits(commit1, commit2);
+    private String displayPath(String file) {
+        String pathKey = repository.getPathKey(file);
+        return pathKey != null ? pathKey : file;
+    }
 
-        } catch (Exception e) {
-            differences.add("Error generating diff: " + e.getMessage());
+    /**
+     * Annotates each line of a file with the commit that introduced it, as
+     * of a commit, branch or tag. Versions blamed before are taken from the
+     * repository's blame cache, so only newer changes to the file are diffed.
+     *
+     * @param revision Commit ID, branch, tag or HEAD
+     * @param path File, absolute or relative to the repository root
+     * @return Annotated lines, or error messages (never null)
+     */
+    public List<String> blame(String revision, String path) {
+        List<String> output = new ArrayList<>();
+
+        if (repository == null) {
+            output.add("Repository not initialized. Run 'init' first.");
+            return output;
         }
 
-        return differences;
+        Commit start = resolveCommit(revision);
+        if (start == null) {
+            output.add("Commit not found: " + (revision != null ? revision.trim() : ""));
+            return output;
+        }
+        CommitGraph graph = repository.getCommitGraph();
+        if (graph == null) {
+            output.add("Commit graph unavailable");
+            return output;
+        }
+        String pathKey = path != null ? repository.getPathKey(path) : null;
+        if (pathKey == null || pathKey.isEmpty()) {
+            output.add("Path is outside the repository: " + (path != null ? path.trim() : ""));
+            return output;
+        }
+
+        Predicate<String> changesFile = changesPath(pathKey, false);
+        List<String> tip = graph.pathHistory(start.getCommitId(), pathKey, changesFile, 1);
+        if (tip.isEmpty()) {
+            output.add("File not found in history: " + pathKey);
+            return output;
+        }
+
+        BlameEngine engine = new BlameEngine(repository.getBlameCache());
+        BlameEngine.FileHistory history = new BlameEngine.FileHistory() {
+            @Override
+            public List<String> getPreviousVersions(String commitId) {
+                List<String> versions = new ArrayList<>();
+                Commit commit = repository.getCommitById(commitId);
+                if (commit != null) {
+                    for (String parentId : commit.getParentIds()) {
+                        for (String version : graph.pathHistory(parentId, pathKey, changesFile, 1)) {
+                            if (!versions.contains(version)) {
+                                versions.add(version);
+                            }
+                        }
+                    }
+                }
+                return versions;
+            }
+
+            @Override
+            public List<String> readLines(String commitId) {
+                return readCommitFile(repository.getCommitById(commitId), pathKey);
+            }
+        };
+
+        BlameResult result = engine.blame(pathKey, tip.get(0), history);
+        List<String> lines = result != null ? history.readLines(result.getCommitId()) : null;
+        if (lines == null || lines.size() != result.getLineCount()) {
+            output.add("Cannot blame binary or unreadable file: " + pathKey);
+            return output;
+        }
+        repository.getBlameCache().save(result);
+
+        output.add("=== Blame (" + pathKey + " @ " + result.getCommitId() + ") ===");
+        Map<String, String> dates = new HashMap<>();
+        for (int line = 0; line < lines.size(); line++) {
+            String origin = result.getOriginCommit(line);
+            String date = dates.computeIfAbsent(origin, id -> {
+                Commit commit = repository.getCommitById(id);
+                return commit != null ? commit.getTimestamp().format(BLAME_DATE_FORMATTER) : "";
+            });
+            output.add(String.format("%s %s %5d) %s", origin, date, line + 1, lines.get(line)));
+        }
+        output.add("Versions processed: " + engine.getVersionsProcessed());
+        return output;
+    }
+
+    /**
+     * Builds a check for whether a commit changed a path.
+     *
+     * @param pathKey Repository-relative path with '/' separators
+     * @param includeChildren Whether files under the path count as well
+     */
+    private Predicate<String> changesPath(String pathKey, boolean includeChildren) {
+        return commitId -> {
+            Commit commit = repository.getCommitById(commitId);
+            if (commit == null) {
+                return false;
+            }
+            for (String file : commit.getChangedFiles()) {
+                String fileKey = repository.getPathKey(file);
+                if (fileKey != null && (fileKey.equals(pathKey)
+                        || (includeChildren && fileKey.startsWith(pathKey + "/")))) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Reads a file as it was at a commit. Bytes that are not valid UTF-8
+     * (a Latin-1 file, say) are read as replacement characters rather than
+     * failing the read.
+     *
+     * @return The lines, or null if the file did not exist at the commit or is binary
+     */
+    private List<String> readCommitFile(Commit commit, String pathKey) {
+        if (commit == null) {
+            return null;
+        }
+        try (SeekableByteChannel channel = repository.openFileAtCommit(commit.getCommitId(), pathKey)) {
+            if (channel == null || BinaryDetector.isBinary(channel, null)) {
+                return null;
+            }
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, decoder, -1));
+            return reader.lines().collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error reading " + pathKey + " at " + commit.getCommitId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a file as it was at a commit, byte for byte.
+     *
+     * @param revision Commit ID, branch, tag or HEAD
+     * @param path File, absolute or relative to the repository root
+     * @param out Stream to write to (left open)
+     * @return true if the file was written, false otherwise
+     */
+    public boolean showFile(String revision, String path, OutputStream out) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return false;
+        }
+        Commit commit = resolveCommit(revision);
+        if (commit == null) {
+            System.err.println("Commit not found: " + (revision != null ? revision.trim() : ""));
+            return false;
+        }
+        try (SeekableByteChannel channel = repository.openFileAtCommit(commit.getCommitId(), path)) {
+            if (channel == null) {
+                System.err.println("File not found at " + commit.getCommitId() + ": " + path);
+                return false;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) > 0) {
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error reading " + path + " at " + commit.getCommitId() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Formats the change statistics recorded with a commit, one line per
+     * file and a total, like git log --stat. Nothing is read or diffed.
+     *
+     * @param commit The commit
+     * @return Statistics lines (never null)
+     */
+    public List<String> formatStat(Commit commit) {
+        List<String> lines = new ArrayList<>();
+        ChangeStats stats = commit.getChangeStats();
+        if (stats == null) {
+            lines.add(" (no change statistics recorded)");
+            return lines;
+        }
+        List<String> files = commit.getChangedFiles();
+        List<String> paths = new ArrayList<>();
+        int width = 0;
+        int maxChanges = 0;
+        for (int i = 0; i < files.size(); i++) {
+            paths.add(displayPath(files.get(i)));
+            width = Math.max(width, paths.get(i).length());
+            maxChanges = Math.max(maxChanges, stats.getAdditions(i) + stats.getDeletions(i));
+        }
+        for (int i = 0; i < files.size(); i++) {
+            String counts;
+            if (stats.isBinary(i)) {
+                counts = "Bin " + stats.getBytesChanged(i) + " bytes";
+            } else {
+                int changes = stats.getAdditions(i) + stats.getDeletions(i);
+                // Scale the graph down for large changes, keeping at least one mark per side
+                int plus = scaleStat(stats.getAdditions(i), maxChanges);
+                int minus = scaleStat(stats.getDeletions(i), maxChanges);
+                counts = changes + " " + repeat('+', plus) + repeat('-', minus);
+            }
+            lines.add(String.format(" %-" + width + "s | %s", paths.get(i), counts));
+        }
+        lines.add(String.format(" %d file%s changed, %d insertion%s(+), %d deletion%s(-), %d bytes",
+                files.size(), files.size() == 1 ? "" : "s",
+                stats.getAdditions(), stats.getAdditions() == 1 ? "" : "s",
+                stats.getDeletions(), stats.getDeletions() == 1 ? "" : "s",
+                stats.getBytesChanged()));
+        return lines;
+    }
+
+    private static int scaleStat(int count, int maxChanges) {
+        if (count == 0 || maxChanges <= STAT_GRAPH_WIDTH) {
+            return count;
+        }
+        return Math.max(1, (int) ((long) count * STAT_GRAPH_WIDTH / maxChanges));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private void addLogEntry(List<String> logEntries, Commit commit) {
+        logEntries.addAll(formatLogEntry(commit));
+    }
+
+    /**
+     * Formats one commit as log output lines.
+     *
+     * @param commit The commit
+     * @return Header, message, summary and changed files of the commit
+     */
+    public List<String> formatLogEntry(Commit commit) {
+        List<String> logEntries = new ArrayList<>();
+        logEntries.add("Commit: " + commit.getCommitId());
+        if (commit.isMerge()) {
+            logEntries.add("Merge: " + String.join(" ", commit.getParentIds()));
+        }
+        if (commit.getAuthor() != null) {
+            logEntries.add("Author: " + commit.getAuthor());
+        }
+        logEntries.add("Date: " + commit.getTimestamp().format(TIMESTAMP_FORMATTER));
+        logEntries.add("Message: " + commit.getMessage());
+        logEntries.add("Files: " + commit.getFileCount()
+                       + (commit.getChangeStats() != null ? " (" + commit.getChangeStats() + ")" : ""));
+        logEntries.add("Summary: " + commit.describeSummary());
+        logEntries.add("Changed files:");
+        for (String file : commit.getChangedFiles()) {
+            logEntries.add("  - " + file);
+        }
+        logEntries.add("----------------------------");
+        return logEntries;
+    }
+
+    /**
+     * Compares two commits line by line with the Myers algorithm.
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @return Detailed diff output (never null)
+     * @throws IllegalArgumentException if either commit ID is null or empty
+     */
+    public List<String> diff(String commitId1, String commitId2) {
+        return diff(commitId1, commitId2, null);
+    }
+
+    /**
+     * Compares two commits line by line using the selected diff algorithm.
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return Detailed diff output (never null)
+     * @throws IllegalArgumentException if either commit ID is null or empty
+     */
+    public List<String> diff(String commitId1, String commitId2, DiffAlgorithm algorithm) {
+        List<String> differences = new ArrayList<>();
+
+        if (repository == null) {
+            differences.add("Repository not initialized. Run 'init' first.");
+            return differences;
+        }
+
+        if (commitId1 == null || commitId1.trim().isEmpty()) {
+            throw new IllegalArgumentException("First commit ID cannot be null or empty");
+        }
+
+        if (commitId2 == null || commitId2.trim().isEmpty()) {
+            throw new IllegalArgumentException("Second commit ID cannot be null or empty");
+        }
+
+        try {
+            Commit commit1 = resolveCommit(commitId1);
+            Commit commit2 = resolveCommit(commitId2);
+
+            if (commit1 == null) {
+                differences.add("Commit not found: " + commitId1.trim());
+                return differences;
+            }
+
+            if (commit2 == null) {
+                differences.add("Commit not found: " + commitId2.trim());
+                return differences;
+            }
+
+            return diffUtil.generateDetailedDiff(treeSnapshot(commit1), treeSnapshot(commit2), algorithm);
+
+        } catch (Exception e) {
+            differences.add("Error generating diff: " + e.getMessage());
+        }
+
+        return differences;
+    }
+
+    /**
+     * Compares two commits and streams the result to a formatter, so large
+     * diffs can go to the console or a file without being held in memory.
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @param formatter Output format and sink
+     * @return true if the diff was written, false if a commit was not found or writing failed
+     * @throws IllegalArgumentException if either commit ID is null or empty
+     */
+    public boolean writeDiff(String commitId1, String commitId2, DiffAlgorithm algorithm, DiffFormatter formatter) {
+        List<String> errors = new ArrayList<>();
+        Commit[] pair = findCommitPair(commitId1, commitId2, errors);
+        if (pair == null) {
+            errors.forEach(System.err::println);
+            return false;
+        }
+        return diffUtil.writeDiff(treeSnapshot(pair[0]), treeSnapshot(pair[1]), algorithm, formatter);
+    }
+
+    /**
+     * Lists changed paths with A/D/M/R/C status letters between two commits.
+     * Works from recorded content hashes; snapshots are only read to find
+     * renames and copies among files without an identical counterpart.
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @return "status<TAB>path" lines sorted by path (never null)
+     * @throws IllegalArgumentException if either commit ID is null or empty
+     */
+    public List<String> diffNameStatus(String commitId1, String commitId2) {
+        List<String> differences = new ArrayList<>();
+        Commit[] pair = findCommitPair(commitId1, commitId2, differences);
+        if (pair == null) {
+            return differences;
+        }
+        return diffUtil.generateNameStatus(treeSnapshot(pair[0]), treeSnapshot(pair[1]));
+    }
+
+    /**
+     * Lists added and deleted line counts per changed path between two commits.
+     * Files whose content hashes match are skipped without being read.
+     *
+     * @param commitId1 First commit ID
+     * @param commitId2 Second commit ID
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @return "added<TAB>deleted<TAB>path" lines sorted by path (never null)
+     * @throws IllegalArgumentException if either commit ID is null or empty
+     */
+    public List<String> diffNumStat(String commitId1, String commitId2, DiffAlgorithm algorithm) {
+        List<String> differences = new ArrayList<>();
+        Commit[] pair = findCommitPair(commitId1, commitId2, differences);
+        if (pair == null) {
+            return differences;
+        }
+        return diffUtil.generateNumStat(treeSnapshot(pair[0]), treeSnapshot(pair[1]), algorithm);
+    }
+
+    /**
+     * Compares the working tree against the index, or against a commit,
+     * and streams the result to a formatter. Only files known to the
+     * repository (in HEAD, the index or the given commit) are compared;
+     * tracked files missing from disk show as deleted. Files whose size and
+     * modification time match the stat cache are not read again.
+     *
+     * @param commitId Commit ID or "HEAD" to compare against, or null for the index
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @param formatter Output format and sink
+     * @return true if the diff was written, false if the commit was not found or writing failed
+     */
+    public boolean writeWorkingTreeDiff(String commitId, DiffAlgorithm algorithm, DiffFormatter formatter) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return false;
+        }
+
+        StatCache statCache = new StatCache(repository.getPath());
+        Snapshot base;
+        if (commitId == null) {
+            base = indexSnapshot(resolveHeadCommit(), statCache);
+        } else {
+            Commit commit = resolveCommit(commitId);
+            if (commit == null) {
+                System.err.println("Commit not found: " + commitId.trim());
+                return false;
+            }
+            base = treeSnapshot(commit);
+        }
+
+        Set<String> tracked = new LinkedHashSet<>(base.getFiles());
+        tracked.addAll(repository.getStagedFiles());
+        Snapshot workingTree = workingTreeSnapshot(tracked, statCache);
+
+        boolean written = diffUtil.writeDiff(base, workingTree, algorithm, formatter);
+        statCache.save();
+        return written;
+    }
+
+    /**
+     * Compares the index (staged changes) against HEAD or a commit and
+     * streams the result to a formatter, like "diff --cached". Files that
+     * are not staged keep their version from HEAD.
+     *
+     * @param commitId Commit ID or "HEAD" to compare against, or null for HEAD
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @param formatter Output format and sink
+     * @return true if the diff was written, false if the commit was not found or writing failed
+     */
+    public boolean writeCachedDiff(String commitId, DiffAlgorithm algorithm, DiffFormatter formatter) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return false;
+        }
+
+        Commit commit = commitId != null ? resolveCommit(commitId) : resolveHeadCommit();
+        if (commit == null) {
+            System.err.println("Commit not found: " + commitId.trim());
+            return false;
+        }
+
+        StatCache statCache = new StatCache(repository.getPath());
+        Snapshot index = indexSnapshot(resolveHeadCommit(), statCache);
+        boolean written = diffUtil.writeDiff(treeSnapshot(commit), index, algorithm, formatter);
+        statCache.save();
+        return written;
+    }
+
+    /**
+     * Applies a unified diff to the working tree of the repository. Paths
+     * in the patch are taken relative to the repository root.
+     *
+     * @param patchFile Path of the patch file
+     * @param strip Leading path components to strip from patch paths (1 for "a/" and "b/")
+     * @param fuzz Context lines a hunk may ignore at each end when it does not match exactly
+     * @param dryRun true to only check that the patch applies
+     * @return Per-file results, or null if the repository or patch file is missing
+     */
+    public PatchApplier.Result applyPatch(String patchFile, int strip, int fuzz, boolean dryRun) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return null;
+        }
+
+        if (patchFile == null || patchFile.trim().isEmpty()) {
+            throw new IllegalArgumentException("Patch file cannot be null or empty");
+        }
+
+        File patch = new File(patchFile.trim());
+        if (!patch.isFile()) {
+            System.err.println("Patch file does not exist: " + patch.getPath());
+            return null;
+        }
+
+        PatchApplier applier = new PatchApplier(new File(repository.getPath()));
+        applier.setStrip(strip);
+        applier.setFuzz(fuzz);
+        applier.setDryRun(dryRun);
+        return applier.apply(patch);
+    }
+
+    /**
+     * Creates a branch. Only a ref naming the commit is written.
+     *
+     * @param name Branch name (e.g. "feature/login")
+     * @param startPoint Commit ID, branch or tag to start at, or null for HEAD
+     * @return true if the branch was created, false otherwise
+     */
+    public boolean createBranch(String name, String startPoint) {
+        return createRef(RefStore.HEADS_PREFIX, "Branch", name, startPoint);
+    }
+
+    /**
+     * Deletes a branch. The branch HEAD is on cannot be deleted.
+     *
+     * @param name Branch name
+     * @return true if the branch was deleted, false otherwise
+     */
+    public boolean deleteBranch(String name) {
+        if (repository != null && name != null
+                && (RefStore.HEADS_PREFIX + name.trim()).equals(repository.getRefs().getHeadTarget())) {
+            System.err.println("Cannot delete the current branch: " + name.trim());
+            return false;
+        }
+        return deleteRef(RefStore.HEADS_PREFIX, "Branch", name);
+    }
+
+    /**
+     * Lists branches with the commits they point at.
+     *
+     * @return Map from branch name to commit ID, sorted by name (never null)
+     */
+    public Map<String, String> listBranches() {
+        return listRefs(RefStore.HEADS_PREFIX);
+    }
+
+    /**
+     * Gets the branch HEAD is on.
+     *
+     * @return Branch name, or null if HEAD is detached or there is no repository
+     */
+    public String getCurrentBranch() {
+        if (repository == null) {
+            return null;
+        }
+        String target = repository.getRefs().getHeadTarget();
+        return target != null && target.startsWith(RefStore.HEADS_PREFIX)
+            ? target.substring(RefStore.HEADS_PREFIX.length()) : target;
+    }
+
+    /**
+     * Points HEAD at a branch so that new commits advance it. The working
+     * tree and staging area are left as they are.
+     *
+     * @param name Branch name
+     * @return true if HEAD now points at the branch, false otherwise
+     */
+    public boolean switchBranch(String name) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return false;
+        }
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Branch name cannot be null or empty");
+        }
+        RefStore refs = repository.getRefs();
+        String refName = RefStore.HEADS_PREFIX + name.trim();
+        if (refs.resolve(refName) == null) {
+            System.err.println("Branch not found: " + name.trim());
+            return false;
+        }
+        return refs.setHead(refName);
+    }
+
+    /**
+     * Creates a tag naming a commit.
+     *
+     * @param name Tag name (e.g. "v1.0")
+     * @param target Commit ID, branch or tag to tag, or null for HEAD
+     * @return true if the tag was created, false otherwise
+     */
+    public boolean createTag(String name, String target) {
+        return createRef(RefStore.TAGS_PREFIX, "Tag", name, target);
+    }
+
+    /**
+     * Deletes a tag.
+     *
+     * @param name Tag name
+     * @return true if the tag was deleted, false otherwise
+     */
+    public boolean deleteTag(String name) {
+        return deleteRef(RefStore.TAGS_PREFIX, "Tag", name);
+    }
+
+    /**
+     * Lists tags with the commits they name.
+     *
+     * @return Map from tag name to commit ID, sorted by name (never null)
+     */
+    public Map<String, String> listTags() {
+        return listRefs(RefStore.TAGS_PREFIX);
+    }
+
+    /**
+     * Moves all loose branches and tags into the packed-refs file, so that
+     * listing them reads a single file.
+     *
+     * @return Number of refs packed, or -1 on failure
+     */
+    public int packRefs() {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return -1;
+        }
+        return repository.getRefs().packRefs();
+    }
+
+    private boolean createRef(String prefix, String kind, String name, String startPoint) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return false;
+        }
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException(kind + " name cannot be null or empty");
+        }
+        String refName = prefix + name.trim();
+        if (!RefStore.isValidRefName(refName)) {
+            System.err.println("Invalid " + kind.toLowerCase() + " name: " + name.trim());
+            return false;
+        }
+
+        Commit commit = resolveCommit(startPoint != null ? startPoint : HEAD);
+        if (commit == null) {
+            System.err.println(startPoint != null ? "Commit not found: " + startPoint.trim()
+                                                  : "No commits yet; nothing to point the " + kind.toLowerCase() + " at");
+            return false;
+        }
+        RefStore refs = repository.getRefs();
+        if (refs.resolve(refName) != null) {
+            System.err.println(kind + " already exists: " + name.trim());
+            return false;
+        }
+        return refs.compareAndSwap(refName, null, commit.getCommitId());
+    }
+
+    private boolean deleteRef(String prefix, String kind, String name) {
+        if (repository == null) {
+            System.err.println("Repository not initialized. Run 'init' first.");
+            return false;
+        }
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException(kind + " name cannot be null or empty");
+        }
+        RefStore refs = repository.getRefs();
+        String refName = prefix + name.trim();
+        String current = refs.resolve(refName);
+        if (current == null) {
+            System.err.println(kind + " not found: " + name.trim());
+            return false;
+        }
+        return refs.compareAndSwap(refName, current, null);
+    }
+
+    private Map<String, String> listRefs(String prefix) {
+        Map<String, String> named = new LinkedHashMap<>();
+        if (repository == null) {
+            return named;
+        }
+        for (Map.Entry<String, String> entry : repository.getRefs().list(prefix).entrySet()) {
+            named.put(entry.getKey().substring(prefix.length()), entry.getValue());
+        }
+        return named;
+    }
+
+    /**
+     * Merges the changes made between two commits into the working tree
+     * (three-way: the working tree is "ours", the base commit the common
+     * ancestor). Files changed only by the other commit are taken from it,
+     * files changed on both sides are merged line by line, and overlapping
+     * changes are written with conflict markers. When the base is found
+     * from the commit graph, the other commit is remembered as MERGE_HEAD
+     * and becomes the second parent of the next commit.
+     *
+     * @param baseId Common ancestor commit ID, or null to use the merge
+     *               base of HEAD and theirsId from the commit graph
+     * @param theirsId Commit, branch or tag whose changes are merged in
+     * @param algorithm Line diff algorithm (null for Myers)
+     * @param dryRun true to report the outcome without writing files
+     * @return One "status<TAB>path" line per affected file (A/M/D updated,
+     *         U conflict) and a summary line (never null)
+     */
+    public List<String> merge(String baseId, String theirsId, DiffAlgorithm algorithm, boolean dryRun) {
+        List<String> report = new ArrayList<>();
+        if (repository == null) {
+            report.add("Repository not initialized. Run 'init' first.");
+            return report;
+        }
+
+        if (theirsId == null || theirsId.trim().isEmpty() || (baseId != null && baseId.trim().isEmpty())) {
+            throw new IllegalArgumentException("Commit IDs cannot be null or empty");
+        }
+
+        Commit theirs = resolveCommit(theirsId);
+        if (theirs == null) {
+            report.add("Commit not found: " + theirsId.trim());
+            return report;
+        }
+
+        Commit base;
+        boolean recordMerge = false;
+        if (baseId != null) {
+            base = resolveCommit(baseId);
+            if (base == null) {
+                report.add("Commit not found: " + baseId.trim());
+                return report;
+            }
+        } else {
+            String headId = repository.getHead();
+            CommitGraph graph = repository.getCommitGraph();
+            if (headId != null && graph != null && graph.isAncestor(theirs.getCommitId(), headId)) {
+                report.add("Already up to date.");
+                return report;
+            }
+            String baseCommitId = headId != null && graph != null ? graph.mergeBase(headId, theirs.getCommitId()) : null;
+            base = baseCommitId != null ? repository.getCommitById(baseCommitId) : null;
+            if (base == null) {
+                // Unrelated histories: every file counts as added on both sides
+                base = new Commit(HEAD, "No common ancestor", LocalDateTime.now(), new ArrayList<>());
+            }
+            recordMerge = headId != null;
+        }
+
+        // Every file any side knows about counts as tracked in the working tree,
+        // so an untracked file in the way is merged rather than overwritten
+        StatCache statCache = new StatCache(repository.getPath());
+        Snapshot baseTree = treeSnapshot(base);
+        Snapshot theirsTree = treeSnapshot(theirs);
+        Set<String> tracked = new LinkedHashSet<>(treeSnapshot(resolveHeadCommit()).getFiles());
+        tracked.addAll(repository.getStagedFiles());
+        tracked.addAll(baseTree.getFiles());
+        tracked.addAll(theirsTree.getFiles());
+        Snapshot ours = workingTreeSnapshot(tracked, statCache);
+
+        MergeEngine engine = new MergeEngine();
+        engine.setAlgorithm(algorithm);
+        String theirsLabel = theirs.getCommitId().length() > 8 ? theirs.getCommitId().substring(0, 8) : theirs.getCommitId();
+        engine.setLabels("working tree", theirsLabel);
+
+        int[] counts = new int[2];
+        try {
+            engine.merge(baseTree, ours, theirsTree, merge -> {
+                String line = applyFileMerge(merge, dryRun);
+                if (line != null) {
+                    report.add(line);
+                    counts[merge.getStatus() == MergeEngine.Status.CONFLICT ? 1 : 0]++;
+                }
+            });
+        } catch (IOException e) {
+            report.add("Error writing merge result: " + e.getMessage());
+            return report;
+        }
+        statCache.save();
+
+        // The next commit records theirs as its second parent
+        if (recordMerge && !dryRun) {
+            RefStore refs = repository.getRefs();
+            String pending = refs.resolve(RefStore.MERGE_HEAD);
+            refs.compareAndSwap(RefStore.MERGE_HEAD, pending, theirs.getCommitId());
+        }
+
+        report.add(String.format("Merge%s: %d file(s) updated, %d conflict(s)",
+            dryRun ? " (dry run)" : "", counts[0], counts[1]));
+        return report;
+    }
+
+    /**
+     * Writes one file's merge result to the working tree.
+     *
+     * @return Report line for the file, or null if it is unchanged
+     * @throws IOException if the file cannot be written
+     */
+    private String applyFileMerge(MergeEngine.FileMerge merge, boolean dryRun) throws IOException {
+        String path = merge.getPath();
+        boolean existed = new File(path).exists();
+        String status;
+
+        switch (merge.getStatus()) {
+            case UNCHANGED:
+                return null;
+            case DELETED:
+                status = "D";
+                if (!dryRun && !fileHandler.deleteFile(path) && new File(path).exists()) {
+                    throw new IOException("cannot delete " + path);
+                }
+                break;
+            default:
+                status = merge.getStatus() == MergeEngine.Status.CONFLICT ? "U" : existed ? "M" : "A";
+                if (dryRun) {
+                    break;
+                }
+                if (merge.getLines() != null) {
+                    if (!fileHandler.writeLines(path, merge.getLines())) {
+                        throw new IOException("cannot write " + path);
+                    }
+                } else if (merge.getSource() != null) {
+                    if (!fileHandler.copyFile(merge.getSource(), new File(path))) {
+                        throw new IOException("cannot write " + path);
+                    }
+                }
+                break;
+        }
+
+        String line = status + "\t" + path;
+        if (merge.getConflictCount() > 0 && merge.getLines() != null) {
+            line += " (" + merge.getConflictCount() + " conflict" + (merge.getConflictCount() == 1 ? "" : "s") + ")";
+        }
+        if (merge.getMessage() != null) {
+            line += " (" + merge.getMessage() + ")";
+        }
+        return line;
+    }
+
+    /**
+     * Resolves a commit ID, accepting "HEAD" for the current commit.
+     *
+     * @return The commit, or null if it does not exist
+     */
+    private Commit resolveCommit(String commitId) {
+        if (commitId == null || commitId.trim().isEmpty()) {
+            return null;
+        }
+        if (HEAD.equalsIgnoreCase(commitId.trim())) {
+            Commit head = resolveHeadCommit();
+            return head.getCommitId().equals(HEAD) ? null : head;
+        }
+        Commit commit = repository.getCommitById(commitId.trim());
+        if (commit == null) {
+            // Not a commit ID: try it as a branch or tag name
+            String target = repository.getRefs().resolve(commitId.trim());
+            commit = target != null ? repository.getCommitById(target) : null;
+        }
+        return commit;
+    }
+
+    /**
+     * Gets the HEAD commit, falling back to the latest commit when no HEAD
+     * is recorded. An empty repository yields an empty commit named HEAD.
+     */
+    private Commit resolveHeadCommit() {
+        Commit head = repository.getHeadCommit();
+        if (head == null) {
+            head = repository.getLatestCommit();
+        }
+        if (head == null) {
+            head = new Commit(HEAD, "No commits yet", LocalDateTime.now(), new ArrayList<>());
+        }
+        return head;
+    }
+
+    /**
+     * Builds the snapshot of the index: every file as of HEAD, with staged
+     * files replaced by their copies in the index.
+     */
+    private Snapshot indexSnapshot(Commit head, StatCache statCache) {
+        Snapshot headSnapshot = treeSnapshot(head);
+        Set<String> staged = new HashSet<>(repository.getStagedFiles());
+        Set<String> files = new LinkedHashSet<>(headSnapshot.getFiles());
+        files.addAll(staged);
+
+        Commit index = new Commit(INDEX_ID, "Staged changes", LocalDateTime.now(), new ArrayList<>(files));
+        for (String file : files) {
+            index.setFileHash(file, staged.contains(file)
+                ? statCache.getHash(resolveIndexSource(file)) : headSnapshot.getHash(file));
+        }
+        return new Snapshot(index, file -> staged.contains(file) ? resolveIndexSource(file) : headSnapshot.getFile(file));
+    }
+
+    /**
+     * Builds the snapshot of every file as of a commit. Commits hold only
+     * the files staged for them, so each file is taken from the newest
+     * commit in the commit's history that has it. Content is read through
+     * {@link Repository#getFileAtCommit}, like blame and show.
+     */
+    private Snapshot treeSnapshot(Commit commit) {
+        CommitGraph graph = repository.getCommitGraph();
+        List<String> history = graph != null && graph.contains(commit.getCommitId())
+            ? graph.topologicalOrder(Collections.singletonList(commit.getCommitId()), 0)
+            : Collections.singletonList(commit.getCommitId());
+
+        Set<String> seen = new HashSet<>();
+        Commit tree = new Commit(commit.getCommitId(), commit.getMessage(), commit.getTimestamp(), new ArrayList<>());
+        List<String> files = new ArrayList<>();
+        for (String commitId : history) {
+            Commit ancestor = commitId.equals(commit.getCommitId()) ? commit : repository.getCommitById(commitId);
+            if (ancestor == null) {
+                continue;
+            }
+            for (String file : ancestor.getChangedFiles()) {
+                if (seen.add(file)) {
+                    files.add(file);
+                    tree.setFileHash(file, ancestor.getFileHash(file));
+                }
+            }
+        }
+        tree.setChangedFiles(files);
+        return fileAtCommitSnapshot(tree, seen);
+    }
+
+    /**
+     * Finds the last committed version of each given file as of a commit.
+     * Unlike {@link #treeSnapshot}, the walk back through history stops as
+     * soon as every file has been found, so changing recently committed
+     * files costs a few steps. Files never committed are left out.
+     */
+    private Snapshot previousVersions(Commit commit, Collection<String> files) {
+        CommitGraph graph = repository.getCommitGraph();
+        Iterator<String> history = graph != null && graph.contains(commit.getCommitId())
+            ? graph.walk(Collections.singletonList(commit.getCommitId()))
+            : Collections.singletonList(commit.getCommitId()).iterator();
+
+        Set<String> missing = new HashSet<>(files);
+        Commit tree = new Commit(commit.getCommitId(), commit.getMessage(), commit.getTimestamp(), new ArrayList<>());
+        List<String> found = new ArrayList<>();
+        while (!missing.isEmpty() && history.hasNext()) {
+            String commitId = history.next();
+            Commit ancestor = commitId.equals(commit.getCommitId()) ? commit : repository.getCommitById(commitId);
+            if (ancestor == null) {
+                continue;
+            }
+            for (String file : ancestor.getChangedFiles()) {
+                if (missing.remove(file)) {
+                    found.add(file);
+                    tree.setFileHash(file, ancestor.getFileHash(file));
+                }
+            }
+        }
+        tree.setChangedFiles(found);
+        return fileAtCommitSnapshot(tree, new HashSet<>(found));
+    }
+
+    /**
+     * Wraps the files of a commit's tree in a snapshot that reads each of
+     * them through {@link Repository#getFileAtCommit}.
+     *
+     * @param tree Files and hashes, with the commit's ID
+     * @param files Files of the tree that can be read
+     */
+    private Snapshot fileAtCommitSnapshot(Commit tree, Set<String> files) {
+        String commitId = tree.getCommitId();
+        return new Snapshot(tree, file -> files.contains(file) ? repository.getFileAtCommit(commitId, file) : null);
+    }
+
+    /**
+     * Builds the snapshot of the working tree for the given files. Files
+     * that no longer exist are left out, so they show as deleted.
+     */
+    private Snapshot workingTreeSnapshot(Collection<String> tracked, StatCache statCache) {
+        List<String> files = new ArrayList<>();
+        for (String file : tracked) {
+            if (new File(file).isFile()) {
+                files.add(file);
+            }
+        }
+
+        Commit workingTree = new Commit(WORKING_TREE_ID, "Working tree", LocalDateTime.now(), files);
+        for (String file : files) {
+            workingTree.setFileHash(file, statCache.getHash(new File(file)));
+        }
+        return new Snapshot(workingTree, File::new);
+    }
+
+    /**
+     * Looks up two commits for a comparison, adding a message to errors if
+     * the repository or either commit is missing.
+     *
+     * @return The two commits, or null if they could not be found
+     */
+    private Commit[] findCommitPair(String commitId1, String commitId2, List<String> errors) {
+        if (repository == null) {
+            errors.add("Repository not initialized. Run 'init' first.");
+            return null;
+        }
+
+        if (commitId1 == null || commitId1.trim().isEmpty()) {
+            throw new IllegalArgumentException("First commit ID cannot be null or empty");
+        }
+
+        if (commitId2 == null || commitId2.trim().isEmpty()) {
+            throw new IllegalArgumentException("Second commit ID cannot be null or empty");
+        }
+
+        Commit commit1 = resolveCommit(commitId1);
+        if (commit1 == null) {
+            errors.add("Commit not found: " + commitId1.trim());
+            return null;
+        }
+
+        Commit commit2 = resolveCommit(commitId2);
+        if (commit2 == null) {
+            errors.add("Commit not found: " + commitId2.trim());
+            return null;
+        }
+        return new Commit[]{commit1, commit2};
     }
 
     /**
@@ -747,7 +2027,9 @@ public class VCS {
 
         try {
             List<Commit> commits = repository.getCommits();
-            return summaryGenerator.generateCommitSummary(commits, Math.max(1, limit));
+            String recent = summaryGenerator.generateCommitSummary(commits, Math.max(1, limit));
+            String totals = summaryGenerator.generateRollupSummary(repository.getRollups(), ROLLUP_SUMMARY_LIMIT);
+            return totals.isEmpty() ? recent : recent + "\n" + totals;
         } catch (Exception e) {
             return "Error generating activity summary: " + e.getMessage();
         }
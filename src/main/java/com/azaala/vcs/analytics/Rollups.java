@@ -0,0 +1,689 @@
+package com.azaala.vcs.analytics;
+
+import com.azaala.vcs.ChangeStats;
+import com.azaala.vcs.Commit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Running totals of commit activity: commits, lines added and deleted and
+ * bytes changed, per file, per directory, per author and per day. Each
+ * commit is added once when it is made, so a report over any span of
+ * history is a lookup in these tables rather than a pass over the log.
+ *
+ * File layout:
+ * <pre>
+ *   header: magic "ROLL", version, commit count, ID of the last commit,
+ *           totals (added, deleted, bytes)
+ *   tables: files, directories, authors, days; each a row count, then
+ *           (key, commits, added, deleted, bytes) per row, sorted by key
+ * </pre>
+ * Paths are repository-relative with '/' separators; directories have no
+ * trailing '/'. Days are ISO dates of the commit time. Commits without an
+ * author are counted under {@link #UNKNOWN_AUTHOR}.
+ * <p>
+ * Commits added after the file was written are appended to a tail file
+ * next to it, and replayed on open:
+ * <pre>
+ *   header:  magic "ROLT", version, commit count and ID of the last commit
+ *            of the file it extends
+ *   record:  length, then commit ID, author, whether there is a day, day,
+ *            totals (added, deleted, bytes), changed path count and
+ *            (key, added, deleted, bytes) per path; directory keys end
+ *            with '/'
+ * </pre>
+ * The file is rewritten, and the tail dropped, once the tail holds an
+ * eighth of the commits (and at least {@value #MIN_TAIL_COMMITS}).
+ * <p>
+ * The {@value #TOP_SIZE} files and directories with the most churn are
+ * kept ranked as rows change, so top lists up to that size are not sorted
+ * on each query.
+ */
+public class Rollups {
+    /** Author key of commits made without an author. */
+    public static final String UNKNOWN_AUTHOR = "Unknown";
+
+    private static final int MAGIC = 0x524F4C4C; // "ROLL"
+    private static final int VERSION = 1;
+    private static final int TAIL_MAGIC = 0x524F4C54; // "ROLT"
+    private static final int TAIL_VERSION = 1;
+    private static final int MIN_TAIL_COMMITS = 256;
+    private static final int TOP_SIZE = 100;
+
+    /** Most churn first, then most commits, then by key. */
+    private static final Comparator<Row> CHURN_ORDER = Comparator.comparingLong(Row::getChurn).reversed()
+        .thenComparing(Comparator.comparingInt(Row::getCommits).reversed())
+        .thenComparing(Row::getKey);
+
+    /**
+     * Totals for one key of a table.
+     */
+    public static final class Row {
+        private final String key;
+        private int commits;
+        private long added;
+        private long deleted;
+        private long bytes;
+
+        private Row(String key) {
+            this.key = key;
+        }
+
+        private Row(Row other) {
+            this(other.key);
+            add(other);
+        }
+
+        private void add(int commitCount, long linesAdded, long linesDeleted, long bytesChanged) {
+            commits += commitCount;
+            added += linesAdded;
+            deleted += linesDeleted;
+            bytes += bytesChanged;
+        }
+
+        private void add(Row other) {
+            add(other.commits, other.added, other.deleted, other.bytes);
+        }
+
+        public String getKey() { return key; }
+        public int getCommits() { return commits; }
+        public long getAdded() { return added; }
+        public long getDeleted() { return deleted; }
+        public long getBytes() { return bytes; }
+
+        /**
+         * @return Lines added plus lines deleted
+         */
+        public long getChurn() {
+            return added + deleted;
+        }
+
+        @Override
+        public String toString() {
+            return key + ": " + commits + " commits, +" + added + " -" + deleted + ", " + bytes + " bytes";
+        }
+    }
+
+    /**
+     * What one commit adds to the tables.
+     */
+    private static final class Delta {
+        private final Row totals;
+        private final String author;
+        private final LocalDate day;
+        private final List<Row> paths;
+
+        private Delta(Row totals, String author, LocalDate day, List<Row> paths) {
+            this.totals = totals;
+            this.author = author;
+            this.day = day;
+            this.paths = paths;
+        }
+
+        private static Delta of(Commit commit, Function<String, String> pathKey) {
+            LocalDate day = commit.getTimestamp() != null ? commit.getTimestamp().toLocalDate() : null;
+            return new Delta(commitTotals(commit), authorOf(commit), day, changesByPath(commit, pathKey));
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(totals.key);
+            out.writeUTF(author);
+            out.writeBoolean(day != null);
+            if (day != null) {
+                out.writeUTF(day.toString());
+            }
+            out.writeLong(totals.added);
+            out.writeLong(totals.deleted);
+            out.writeLong(totals.bytes);
+            out.writeInt(paths.size());
+            for (Row path : paths) {
+                out.writeUTF(path.key);
+                out.writeLong(path.added);
+                out.writeLong(path.deleted);
+                out.writeLong(path.bytes);
+            }
+        }
+
+        private static Delta read(DataInputStream in) throws IOException {
+            Row totals = new Row(in.readUTF());
+            String author = in.readUTF();
+            LocalDate day = in.readBoolean() ? LocalDate.parse(in.readUTF()) : null;
+            totals.add(1, in.readLong(), in.readLong(), in.readLong());
+            int pathCount = in.readInt();
+            List<Row> paths = new ArrayList<>(pathCount);
+            for (int i = 0; i < pathCount; i++) {
+                Row path = new Row(in.readUTF());
+                path.add(1, in.readLong(), in.readLong(), in.readLong());
+                paths.add(path);
+            }
+            return new Delta(totals, author, day, paths);
+        }
+    }
+
+    private final TreeMap<String, Row> files = new TreeMap<>();
+    private final TreeMap<String, Row> directories = new TreeMap<>();
+    private final TreeMap<String, Row> authors = new TreeMap<>();
+    private final TreeMap<LocalDate, Row> days = new TreeMap<>();
+    private final TreeSet<Row> topFiles = new TreeSet<>(CHURN_ORDER);
+    private final TreeSet<Row> topDirectories = new TreeSet<>(CHURN_ORDER);
+    private final Row total = new Row("");
+    private int commitCount;
+    private String lastCommitId = "";
+    /** Commit count and last commit ID of the rollup file. */
+    private int savedCount;
+    private String savedLastCommitId = "";
+    /** Commits in the tail file, and its length up to the last whole record. */
+    private int tailCount;
+    private long tailLength;
+    /** Commits added since the last save. */
+    private final List<Delta> pending = new ArrayList<>();
+    /** Whether the rollup file must be rewritten rather than extended. */
+    private boolean rewrite = true;
+
+    /**
+     * Creates empty rollups, to be filled by {@link #update(List, Function)}.
+     */
+    public Rollups() {
+    }
+
+    /**
+     * Opens a rollup file.
+     *
+     * @param file Rollup file
+     * @return The rollups, or null if the file is missing or invalid
+     */
+    public static Rollups open(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.err.println("Ignoring invalid analytics rollups: " + file.getPath());
+                return null;
+            }
+            Rollups rollups = new Rollups();
+            rollups.commitCount = in.readInt();
+            rollups.lastCommitId = in.readUTF();
+            rollups.total.add(rollups.commitCount, in.readLong(), in.readLong(), in.readLong());
+            readTable(in, rollups.files, Function.identity());
+            readTable(in, rollups.directories, Function.identity());
+            readTable(in, rollups.authors, Function.identity());
+            readTable(in, rollups.days, LocalDate::parse);
+            rollups.topFiles.addAll(rollups.files.values());
+            trim(rollups.topFiles);
+            rollups.topDirectories.addAll(rollups.directories.values());
+            trim(rollups.topDirectories);
+            rollups.savedCount = rollups.commitCount;
+            rollups.savedLastCommitId = rollups.lastCommitId;
+            rollups.rewrite = false;
+            rollups.readTail(tailFile(file));
+            return rollups;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable analytics rollups: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static <K> void readTable(DataInputStream in, TreeMap<K, Row> table,
+                                      Function<String, K> keyParser) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            Row row = new Row(key);
+            row.add(in.readInt(), in.readLong(), in.readLong(), in.readLong());
+            table.put(keyParser.apply(key), row);
+        }
+    }
+
+    private static File tailFile(File file) {
+        return new File(file.getPath() + "-tail");
+    }
+
+    /**
+     * Replays the commits appended since the file was written. A record cut
+     * short by an interrupted append is ignored, and is overwritten by the
+     * next one.
+     */
+    private void readTail(File file) {
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != TAIL_MAGIC || in.readInt() != TAIL_VERSION || in.readInt() != savedCount
+                    || !in.readUTF().equals(savedLastCommitId)) {
+                System.err.println("Ignoring stale analytics rollups tail: " + file.getPath());
+                return;
+            }
+            long length = 14 + savedLastCommitId.getBytes(StandardCharsets.UTF_8).length;
+            while (true) {
+                byte[] record;
+                try {
+                    record = new byte[in.readInt()];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(Delta.read(new DataInputStream(new ByteArrayInputStream(record))));
+                tailCount++;
+                length += 4 + record.length;
+            }
+            tailLength = length;
+        } catch (IOException | RuntimeException e) {
+            // Rows already replayed stay counted; the next save rewrites the file
+            System.err.println("Ignoring unreadable analytics rollups tail: " + e.getMessage());
+            rewrite = true;
+        }
+    }
+
+    /**
+     * Saves the commits added since the rollups were opened or last saved.
+     * They are appended to the tail file, unless the tail has grown large
+     * enough to fold into a rewritten rollup file.
+     *
+     * @param file Rollup file
+     * @return true if written
+     */
+    public synchronized boolean save(File file) {
+        if (!rewrite && pending.isEmpty()) {
+            return true;
+        }
+        if (rewrite || tailCount + pending.size() >= Math.max(MIN_TAIL_COMMITS, commitCount / 8)) {
+            return rewrite(file);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (tailLength == 0) {
+                out.writeInt(TAIL_MAGIC);
+                out.writeInt(TAIL_VERSION);
+                out.writeInt(savedCount);
+                out.writeUTF(savedLastCommitId);
+            }
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            for (Delta delta : pending) {
+                record.reset();
+                delta.write(new DataOutputStream(record));
+                out.writeInt(record.size());
+                record.writeTo(out);
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to analytics rollups: " + e.getMessage());
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(tailFile(file).toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+            // Drop anything after the last whole record
+            channel.truncate(tailLength);
+            channel.position(tailLength);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to analytics rollups: " + e.getMessage());
+            return false;
+        }
+        tailLength += bytes.size();
+        tailCount += pending.size();
+        pending.clear();
+        return true;
+    }
+
+    /**
+     * Writes the rollups, replacing the file atomically and dropping the tail.
+     */
+    private boolean rewrite(File file) {
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(commitCount);
+                out.writeUTF(lastCommitId);
+                out.writeLong(total.added);
+                out.writeLong(total.deleted);
+                out.writeLong(total.bytes);
+                writeTable(out, files);
+                writeTable(out, directories);
+                writeTable(out, authors);
+                writeTable(out, days);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            // The rewritten file has every commit the tail had
+            Files.deleteIfExists(tailFile(file).toPath());
+            savedCount = commitCount;
+            savedLastCommitId = lastCommitId;
+            tailCount = 0;
+            tailLength = 0;
+            pending.clear();
+            rewrite = false;
+            return true;
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error writing analytics rollups: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeTable(DataOutputStream out, TreeMap<?, Row> table) throws IOException {
+        out.writeInt(table.size());
+        for (Row row : table.values()) {
+            out.writeUTF(row.key);
+            out.writeInt(row.commits);
+            out.writeLong(row.added);
+            out.writeLong(row.deleted);
+            out.writeLong(row.bytes);
+        }
+    }
+
+    /**
+     * Brings the rollups up to date with a commit log. Only commits after
+     * the ones already counted are added; if the log no longer starts with
+     * those commits, everything is counted again.
+     *
+     * @param commits All commits, in log order
+     * @param pathKey Converts a changed file to its repository-relative key,
+     *                or null to leave it out of the path tables
+     * @return true if any commit was added
+     */
+    public synchronized boolean update(List<Commit> commits, Function<String, String> pathKey) {
+        if (commitCount > commits.size()
+                || (commitCount > 0 && !commits.get(commitCount - 1).getCommitId().equals(lastCommitId))) {
+            clear();
+        }
+        if (commitCount == commits.size()) {
+            return false;
+        }
+        for (int i = commitCount; i < commits.size(); i++) {
+            Delta delta = Delta.of(commits.get(i), pathKey);
+            apply(delta);
+            pending.add(delta);
+        }
+        return true;
+    }
+
+    private void clear() {
+        files.clear();
+        directories.clear();
+        authors.clear();
+        days.clear();
+        topFiles.clear();
+        topDirectories.clear();
+        total.commits = 0;
+        total.added = 0;
+        total.deleted = 0;
+        total.bytes = 0;
+        commitCount = 0;
+        lastCommitId = "";
+        pending.clear();
+        rewrite = true;
+    }
+
+    private void apply(Delta delta) {
+        for (Row change : delta.paths) {
+            if (change.key.endsWith("/")) {
+                String directory = change.key.substring(0, change.key.length() - 1);
+                addRanked(directories, topDirectories, directory, change);
+            } else {
+                addRanked(files, topFiles, change.key, change);
+            }
+        }
+        authors.computeIfAbsent(delta.author, Row::new).add(delta.totals);
+        if (delta.day != null) {
+            days.computeIfAbsent(delta.day, d -> new Row(d.toString())).add(delta.totals);
+        }
+        total.add(delta.totals);
+        commitCount++;
+        lastCommitId = delta.totals.key;
+    }
+
+    /**
+     * Adds a change to a row and keeps the top set ranked. Rows only grow,
+     * so a row that is not ranked can only enter the set by passing its
+     * last row.
+     */
+    private static void addRanked(TreeMap<String, Row> table, TreeSet<Row> top, String key, Row change) {
+        Row row = table.computeIfAbsent(key, Row::new);
+        // Removed before it changes, since the set is ordered by its totals
+        boolean ranked = top.remove(row);
+        row.add(change);
+        if (ranked || top.size() < TOP_SIZE || CHURN_ORDER.compare(row, top.last()) < 0) {
+            top.add(row);
+            trim(top);
+        }
+    }
+
+    private static void trim(TreeSet<Row> top) {
+        while (top.size() > TOP_SIZE) {
+            top.pollLast();
+        }
+    }
+
+    /**
+     * Gets what one commit adds to the file and directory totals. Each row
+     * counts the commit once, however many of its files it covers.
+     *
+     * @param commit The commit
+     * @param pathKey Converts a changed file to its repository-relative key,
+     *                or null to leave it out
+     * @return One row per changed file and per directory containing one,
+     *         sorted by key; directory keys end with '/'
+     */
+    public static List<Row> changesByPath(Commit commit, Function<String, String> pathKey) {
+        List<String> changed = commit.getChangedFiles();
+        ChangeStats stats = commit.getChangeStats();
+        TreeMap<String, Row> touched = new TreeMap<>();
+        for (int i = 0; i < changed.size(); i++) {
+            String key = pathKey.apply(changed.get(i));
+            if (key == null || key.isEmpty()) {
+                continue;
+            }
+            Row change = new Row(key);
+            if (stats != null) {
+                change.add(0, stats.getAdditions(i), stats.getDeletions(i), stats.getBytesChanged(i));
+            }
+            touched.computeIfAbsent(key, Row::new).add(change);
+            for (int slash = key.lastIndexOf('/'); slash > 0; slash = key.lastIndexOf('/', slash - 1)) {
+                touched.computeIfAbsent(key.substring(0, slash + 1), Row::new).add(change);
+            }
+        }
+        for (Row row : touched.values()) {
+            row.commits = 1;
+        }
+        return new ArrayList<>(touched.values());
+    }
+
+    /**
+     * @param commit The commit
+     * @return What the commit adds to the author, day and overall totals
+     */
+    public static Row commitTotals(Commit commit) {
+        Row row = new Row(commit.getCommitId());
+        ChangeStats stats = commit.getChangeStats();
+        if (stats != null) {
+            row.add(1, stats.getAdditions(), stats.getDeletions(), stats.getBytesChanged());
+        } else {
+            row.add(1, 0, 0, 0);
+        }
+        return row;
+    }
+
+    /**
+     * @param commit The commit
+     * @return Author key the commit is counted under
+     */
+    public static String authorOf(Commit commit) {
+        String author = commit.getAuthor();
+        return author == null || author.trim().isEmpty() ? UNKNOWN_AUTHOR : author;
+    }
+
+    /**
+     * @return Number of commits counted
+     */
+    public synchronized int getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return Totals over all commits
+     */
+    public synchronized Row getTotal() {
+        return new Row(total);
+    }
+
+    /**
+     * Gets the totals of a file or directory.
+     *
+     * @param path Repository-relative file or directory ("" for the whole
+     *             repository)
+     * @return Totals of the commits that changed it, or null if none did
+     */
+    public synchronized Row forPath(String path) {
+        String key = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        if (key.isEmpty()) {
+            return new Row(total);
+        }
+        Row row = files.get(key);
+        if (row == null) {
+            row = directories.get(key);
+        }
+        return row != null ? new Row(row) : null;
+    }
+
+    /**
+     * Gets the totals of an author.
+     *
+     * @param author Author name, as recorded with commits
+     * @return Totals of the author's commits, or null if there are none
+     */
+    public synchronized Row forAuthor(String author) {
+        Row row = authors.get(author == null ? UNKNOWN_AUTHOR : author);
+        return row != null ? new Row(row) : null;
+    }
+
+    /**
+     * @return Totals of every author, most commits first
+     */
+    public synchronized List<Row> byAuthor() {
+        List<Row> rows = copy(authors.values());
+        rows.sort(Comparator.comparingInt(Row::getCommits).reversed().thenComparing(Row::getKey));
+        return rows;
+    }
+
+    /**
+     * Gets the totals of each day with commits in a range.
+     *
+     * @param from First day, inclusive (null for no bound)
+     * @param to Last day, inclusive (null for no bound)
+     * @return Totals per day, oldest first
+     */
+    public synchronized List<Row> byDay(LocalDate from, LocalDate to) {
+        return copy(dayRange(from, to).values());
+    }
+
+    /**
+     * Sums the totals of the days in a range.
+     *
+     * @param from First day, inclusive (null for no bound)
+     * @param to Last day, inclusive (null for no bound)
+     * @return Totals of the commits made in the range
+     */
+    public synchronized Row forDays(LocalDate from, LocalDate to) {
+        Row sum = new Row((from != null ? from.toString() : "") + ".." + (to != null ? to.toString() : ""));
+        for (Row day : dayRange(from, to).values()) {
+            sum.add(day);
+        }
+        return sum;
+    }
+
+    private Map<LocalDate, Row> dayRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            return new TreeMap<>();
+        }
+        if (from == null && to == null) {
+            return days;
+        } else if (from == null) {
+            return days.headMap(to, true);
+        } else if (to == null) {
+            return days.tailMap(from, true);
+        }
+        return days.subMap(from, true, to, true);
+    }
+
+    /**
+     * Gets the files with the most churn (lines added plus deleted).
+     *
+     * @param limit Maximum number of files
+     * @return Totals per file, most churn first
+     */
+    public synchronized List<Row> topFiles(int limit) {
+        return top(files, topFiles, limit);
+    }
+
+    /**
+     * Gets the directories with the most churn (lines added plus deleted).
+     *
+     * @param limit Maximum number of directories
+     * @return Totals per directory, most churn first
+     */
+    public synchronized List<Row> topDirectories(int limit) {
+        return top(directories, topDirectories, limit);
+    }
+
+    private static List<Row> top(TreeMap<String, Row> table, TreeSet<Row> ranked, int limit) {
+        List<Row> rows;
+        if (limit <= TOP_SIZE) {
+            rows = new ArrayList<>();
+            for (Row row : ranked) {
+                if (rows.size() >= limit) {
+                    break;
+                }
+                rows.add(new Row(row));
+            }
+            return rows;
+        }
+        rows = copy(table.values());
+        rows.sort(CHURN_ORDER);
+        return new ArrayList<>(rows.subList(0, Math.min(limit, rows.size())));
+    }
+
+    private static List<Row> copy(Iterable<Row> rows) {
+        List<Row> copies = new ArrayList<>();
+        for (Row row : rows) {
+            copies.add(new Row(row));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,59 @@
+package com.azaala.vcs.async;
+
+import com.azaala.vcs.Commit;
+import com.azaala.vcs.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * CommitSearchWorker - Searches commit messages and summaries through the message index
+ */
+public class CommitSearchWorker extends BaseVCSWorker<List<Commit>> {
+    private final Repository repository;
+    private final String query;
+    private final int limit;
+    private final Consumer<List<Commit>> resultConsumer;
+
+    /**
+     * Creates a search worker.
+     *
+     * @param repository Repository to search
+     * @param query Words to search for
+     * @param limit Most commits to return (0 or less for all)
+     * @param resultConsumer Receives the matches on the event dispatch thread
+     * @param progressListener Progress listener (may be null)
+     */
+    public CommitSearchWorker(Repository repository, String query, int limit,
+                              Consumer<List<Commit>> resultConsumer, ProgressListener progressListener) {
+        super(progressListener);
+        this.repository = repository;
+        this.query = query;
+        this.limit = limit;
+        this.resultConsumer = resultConsumer;
+    }
+
+    @Override
+    protected List<Commit> doInBackground() throws Exception {
+        if (repository == null) {
+            return new ArrayList<>();
+        }
+        publishProgress("Searching commits...", 20);
+        List<Commit> matches = repository.searchCommits(query, limit);
+        publishProgress("Found " + matches.size() + " commits", 100);
+        return matches;
+    }
+
+    @Override
+    protected void onSuccess(List<Commit> result) {
+        if (resultConsumer != null && result != null) {
+            resultConsumer.accept(result);
+        }
+    }
+
+    @Override
+    protected void onError(Exception exception) {
+        System.err.println("✗ Commit search failed: " + exception.getMessage());
+    }
+}
@@ -1,12 +1,17 @@
 package com.azaala.vcs.async;
 
+import com.azaala.vcs.Commit;
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
+import com.azaala.vcs.analytics.Rollups;
+import com.azaala.vcs.persistence.DatabaseException;
 import com.azaala.vcs.persistence.DatabaseManager;
 import com.azaala.vcs.persistence.dao.*;
 import com.azaala.vcs.persistence.models.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -25,6 +30,7 @@ public class CommitWorker extends BaseVCSWorker<String> {
     private final CommitFileDAO commitFileDAO;
     private final ActivityLogDAO activityLogDAO;
     private final RepositoryDAO repositoryDAO;
+    private final RollupDAO rollupDAO;
 
     public CommitWorker(VCS vcs, Repository repository, String commitMessage, ProgressListener progressListener) {
         super(progressListener);
@@ -37,6 +43,7 @@ public class CommitWorker extends BaseVCSWorker<String> {
         this.commitFileDAO = new CommitFileDAO();
         this.activityLogDAO = new ActivityLogDAO();
         this.repositoryDAO = new RepositoryDAO();
+        this.rollupDAO = new RollupDAO();
     }
 
     public CommitWorker(VCS vcs, Repository repository, String commitMessage) {
@@ -124,11 +131,17 @@ public class CommitWorker extends BaseVCSWorker<String> {
                     finalRepoId,
                     commitMessage,
                     commitMessage.substring(0, Math.min(100, commitMessage.length())),
-                    System.getProperty("user.name", "Unknown"),
+                    vcs.getAuthor(),
                     LocalDateTime.now(),
                     finalFilePathsToCommit.size(),
                     LocalDateTime.now()
                 );
+                Commit committed = repository.getCommitById(cId);
+                if (committed != null && committed.getChangeStats() != null) {
+                    commitEntity.setLinesAdded(committed.getChangeStats().getAdditions());
+                    commitEntity.setLinesDeleted(committed.getChangeStats().getDeletions());
+                    commitEntity.setBytesChanged(committed.getChangeStats().getBytesChanged());
+                }
 
                 // Save commit using DAO
                 boolean commitSaved = commitDAO.create(commitEntity);
@@ -165,6 +178,10 @@ public class CommitWorker extends BaseVCSWorker<String> {
                     filesProcessed++;
                 }
 
+                if (committed != null) {
+                    recordRollups(finalRepoId, committed);
+                }
+
                 publishProgress("Clearing staging area...", 75);
 
                 // Clear staged files
@@ -336,5 +353,22 @@ public class CommitWorker extends BaseVCSWorker<String> {
 
         return userMessage;
     }
+
+    /**
+     * Adds a commit to the database rollups, with the same per-path rows
+     * as the repository's own analytics totals.
+     */
+    private void recordRollups(Long repoId, Commit commit) throws DatabaseException {
+        Rollups.Row totals = Rollups.commitTotals(commit);
+        RollupEntity author = new RollupEntity(repoId, Rollups.authorOf(commit), totals.getCommits(),
+                                               totals.getAdded(), totals.getDeleted(), totals.getBytes());
+        List<RollupEntity> paths = new ArrayList<>();
+        for (Rollups.Row change : Rollups.changesByPath(commit, repository::getPathKey)) {
+            paths.add(new RollupEntity(repoId, change.getKey(), change.getCommits(),
+                                       change.getAdded(), change.getDeleted(), change.getBytes()));
+        }
+        LocalDate day = commit.getTimestamp() != null ? commit.getTimestamp().toLocalDate() : LocalDate.now();
+        rollupDAO.addCommit(repoId, author, day, paths);
+    }
 }
 
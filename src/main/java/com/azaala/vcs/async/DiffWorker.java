@@ -2,6 +2,9 @@ package com.azaala.vcs.async;
 
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
+import com.azaala.vcs.diff.DiffAlgorithm;
+import com.azaala.vcs.diff.DiffCache;
+import com.azaala.vcs.persistence.DatabaseManager;
 import com.azaala.vcs.persistence.dao.CommitDAO;
 import com.azaala.vcs.persistence.dao.CommitFileDAO;
 import com.azaala.vcs.persistence.models.CommitEntity;
@@ -11,26 +14,37 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * DiffWorker - Compares commits and generates diff with database lookup
+ * DiffWorker - Compares commits and generates diff with database lookup.
+ * The detailed line diff is computed here, off the EDT; per-file results
+ * are served from the shared DiffCache when the same file versions were
+ * compared before.
  */
 public class DiffWorker extends BaseVCSWorker<List<String>> {
     private final VCS vcs;
     private final Repository repository;
     private final String commitId1;
     private final String commitId2;
+    private final DiffAlgorithm algorithm;
     private final CommitDAO commitDAO;
     private final CommitFileDAO commitFileDAO;
+    private volatile List<String> diffLines;
 
-    public DiffWorker(VCS vcs, Repository repository, String commitId1, String commitId2, ProgressListener progressListener) {
+    public DiffWorker(VCS vcs, Repository repository, String commitId1, String commitId2,
+                      DiffAlgorithm algorithm, ProgressListener progressListener) {
         super(progressListener);
         this.vcs = vcs;
         this.repository = repository;
         this.commitId1 = commitId1;
         this.commitId2 = commitId2;
+        this.algorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
         this.commitDAO = new CommitDAO();
         this.commitFileDAO = new CommitFileDAO();
     }
 
+    public DiffWorker(VCS vcs, Repository repository, String commitId1, String commitId2, ProgressListener progressListener) {
+        this(vcs, repository, commitId1, commitId2, DiffAlgorithm.MYERS, progressListener);
+    }
+
     public DiffWorker(VCS vcs, Repository repository, String commitId1, String commitId2) {
         this(vcs, repository, commitId1, commitId2, null);
     }
@@ -42,18 +56,19 @@ public class DiffWorker extends BaseVCSWorker<List<String>> {
 
             publishProgress("Validating commits...", 10);
 
-            // Check if commits exist in database
+            // Check if commits exist in database (skipped entirely when no database is connected)
             CommitEntity commit1 = null;
             CommitEntity commit2 = null;
+            boolean databaseAvailable = DatabaseManager.getInstance().isInitialized();
 
-            if (commitId1 != null && !commitId1.isEmpty()) {
+            if (databaseAvailable && commitId1 != null && !commitId1.isEmpty()) {
                 commit1 = commitDAO.findById(commitId1);
                 if (commit1 == null) {
                     publishProgress("Commit 1 not found in database, using VCS diff", 20);
                 }
             }
 
-            if (commitId2 != null && !commitId2.isEmpty()) {
+            if (databaseAvailable && commitId2 != null && !commitId2.isEmpty()) {
                 commit2 = commitDAO.findById(commitId2);
                 if (commit2 == null) {
                     publishProgress("Commit 2 not found in database, using VCS diff", 20);
@@ -62,8 +77,8 @@ public class DiffWorker extends BaseVCSWorker<List<String>> {
 
             publishProgress("Comparing commits...", 40);
 
-            // Get VCS diff
-            List<String> differences = vcs.diff(commitId1, commitId2);
+            // Get detailed VCS diff (unchanged and cached files are not re-read)
+            List<String> differences = vcs.diff(commitId1, commitId2, algorithm);
 
             // Enhance with database information if available
             if (commit1 != null && commit2 != null) {
@@ -104,22 +119,32 @@ public class DiffWorker extends BaseVCSWorker<List<String>> {
                 diffList.add("No differences found");
             }
 
-            publishProgress("Diff generation complete", 100);
+            publishProgress("Diff generation complete - " + DiffCache.getInstance().getStatistics(), 100);
             return diffList;
 
         } catch (Exception e) {
             System.err.println("✗ Diff generation failed: " + e.getMessage());
             // Return VCS diff as fallback
             try {
-                return vcs.diff(commitId1, commitId2);
+                return vcs.diff(commitId1, commitId2, algorithm);
             } catch (Exception ex) {
                 throw e;
             }
         }
     }
 
+    /**
+     * Gets the diff output once the worker has finished successfully.
+     *
+     * @return Diff lines, or null if the worker has not completed
+     */
+    public List<String> getDiffLines() {
+        return diffLines;
+    }
+
     @Override
     protected void onSuccess(List<String> result) {
+        diffLines = result;
         if (result != null) {
             System.out.println("✓ Diff generation completed (" + result.size() + " lines)");
         } else {
@@ -178,7 +203,7 @@ public class DiffWorker extends BaseVCSWorker<List<String>> {
             userMessage = "⚠️ Cannot Compare Files\n\n" +
                 "The files cannot be compared.\n\n" +
                 "Possible reasons:\n" +
-                "• Binary files cannot be diff'd\n" +
+                "• A file snapshot is missing\n" +
                 "• File format not supported\n" +
                 "• Files are identical\n\n" +
                 "Try selecting different files.";
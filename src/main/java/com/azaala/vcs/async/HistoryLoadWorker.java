@@ -1,5 +1,7 @@
 package com.azaala.vcs.async;
 
+import com.azaala.vcs.LogCursor;
+import com.azaala.vcs.LogQuery;
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
 import com.azaala.vcs.persistence.dao.CommitDAO;
@@ -49,10 +51,7 @@ public class HistoryLoadWorker extends BaseVCSWorker<List<String>> {
             List<String> historyList = new ArrayList<>();
 
             publishProgress("Loading VCS commit history...", 20);
-            List<String> vcsHistory = vcs.log();
-            if (vcsHistory != null && !vcsHistory.isEmpty()) {
-                historyList.addAll(vcsHistory);
-            }
+            historyList.addAll(loadVcsHistory());
 
             // If repository is available, load from database for enhanced details
             if (repository != null && repository.getRepoId() != null) {
@@ -94,13 +93,30 @@ public class HistoryLoadWorker extends BaseVCSWorker<List<String>> {
             System.err.println("✗ History loading failed: " + e.getMessage());
             // Return VCS history as fallback
             try {
-                return vcs.log();
+                return loadVcsHistory();
             } catch (Exception ex) {
                 throw e;
             }
         }
     }
 
+    /**
+     * Reads up to the limit of commits from the VCS log cursor, so only
+     * the commits shown are looked up.
+     */
+    private List<String> loadVcsHistory() {
+        List<String> entries = new ArrayList<>();
+        LogQuery query = new LogQuery();
+        query.setLimit(limit < Integer.MAX_VALUE ? limit : 0);
+        LogCursor cursor = vcs.queryLog(query);
+        if (cursor != null) {
+            while (cursor.hasNext()) {
+                entries.addAll(vcs.formatLogEntry(cursor.next()));
+            }
+        }
+        return entries;
+    }
+
     @Override
     protected void onSuccess(List<String> result) {
         if (result != null) {
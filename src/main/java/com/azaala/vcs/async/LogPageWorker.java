@@ -0,0 +1,60 @@
+package com.azaala.vcs.async;
+
+import com.azaala.vcs.Commit;
+import com.azaala.vcs.LogCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * LogPageWorker - Reads the next page of commits from a log cursor
+ */
+public class LogPageWorker extends BaseVCSWorker<List<Commit>> {
+    private final LogCursor cursor;
+    private final int pageSize;
+    private final Consumer<List<Commit>> pageConsumer;
+
+    /**
+     * Creates a worker for one page.
+     *
+     * @param cursor Cursor to read from; it is advanced by this worker
+     * @param pageSize Most commits to read
+     * @param pageConsumer Receives the page on the event dispatch thread
+     * @param progressListener Progress listener (may be null)
+     */
+    public LogPageWorker(LogCursor cursor, int pageSize, Consumer<List<Commit>> pageConsumer,
+                         ProgressListener progressListener) {
+        super(progressListener);
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+        this.pageConsumer = pageConsumer;
+    }
+
+    public LogPageWorker(LogCursor cursor, int pageSize, Consumer<List<Commit>> pageConsumer) {
+        this(cursor, pageSize, pageConsumer, null);
+    }
+
+    @Override
+    protected List<Commit> doInBackground() throws Exception {
+        if (cursor == null) {
+            return new ArrayList<>();
+        }
+        publishProgress("Loading commits...", 20);
+        List<Commit> page = cursor.nextPage(pageSize);
+        publishProgress("Loaded " + page.size() + " commits", 100);
+        return page;
+    }
+
+    @Override
+    protected void onSuccess(List<Commit> result) {
+        if (pageConsumer != null && result != null) {
+            pageConsumer.accept(result);
+        }
+    }
+
+    @Override
+    protected void onError(Exception exception) {
+        System.err.println("✗ Loading commits failed: " + exception.getMessage());
+    }
+}
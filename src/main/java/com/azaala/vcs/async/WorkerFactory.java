@@ -1,7 +1,13 @@
 package com.azaala.vcs.async;
 
+import com.azaala.vcs.Commit;
+import com.azaala.vcs.LogCursor;
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
+import com.azaala.vcs.diff.DiffAlgorithm;
+
+import java.util.List;
+import java.util.function.Consumer;
 
 public class WorkerFactory {
     private static final WorkerFactory instance = new WorkerFactory();
@@ -29,10 +35,26 @@ public class WorkerFactory {
         return new DiffWorker(vcs, repository, commitId1, commitId2, progressListener);
     }
 
+    public DiffWorker createDiffWorker(VCS vcs, Repository repository, String commitId1, String commitId2,
+                                       DiffAlgorithm algorithm, ProgressListener progressListener) {
+        return new DiffWorker(vcs, repository, commitId1, commitId2, algorithm, progressListener);
+    }
+
     public HistoryLoadWorker createHistoryLoadWorker(VCS vcs, Repository repository, int limit, ProgressListener progressListener) {
         return new HistoryLoadWorker(vcs, repository, limit, progressListener);
     }
 
+    public LogPageWorker createLogPageWorker(LogCursor cursor, int pageSize, Consumer<List<Commit>> pageConsumer,
+                                             ProgressListener progressListener) {
+        return new LogPageWorker(cursor, pageSize, pageConsumer, progressListener);
+    }
+
+    public CommitSearchWorker createCommitSearchWorker(Repository repository, String query, int limit,
+                                                       Consumer<List<Commit>> resultConsumer,
+                                                       ProgressListener progressListener) {
+        return new CommitSearchWorker(repository, query, limit, resultConsumer, progressListener);
+    }
+
     public StatusLoadWorker createStatusLoadWorker(VCS vcs, Repository repository, ProgressListener progressListener) {
         return new StatusLoadWorker(vcs, repository, progressListener);
     }
@@ -0,0 +1,249 @@
+package com.azaala.vcs.blame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Blame results keyed by path and the commit holding that version of the
+ * file. A version's blame never changes once computed, so entries never
+ * go stale; they are only evicted to bound memory.
+ *
+ * Results can also be saved to a directory, one small file per version.
+ * Saving the blamed tip of each request means the next blame after a new
+ * commit only has to diff that commit against the saved version, even in
+ * a new process. All methods are thread-safe.
+ */
+public final class BlameCache {
+    /** Default size bound: 16 MB of estimated result data. */
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final int MAGIC = 0x424c4d31; // "BLM1"
+
+    private final File directory;
+    private final LinkedHashMap<Key, BlameResult> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private long currentBytes;
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    /**
+     * Creates a cache.
+     *
+     * @param directory Where saved results are kept (null for memory only)
+     * @param maxBytes Most estimated bytes to keep in memory
+     */
+    public BlameCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up a result in memory, then among the saved results.
+     *
+     * @param path Repository-relative path
+     * @param commitId Commit holding the version
+     * @return The result, or null on a miss
+     */
+    public synchronized BlameResult get(String path, String commitId) {
+        Key key = new Key(path, commitId);
+        BlameResult result = entries.get(key);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        result = load(path, commitId);
+        if (result != null) {
+            diskHits++;
+            put(result);
+            return result;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Keeps a result in memory, evicting least recently used entries until
+     * the cache fits its size bound again.
+     *
+     * @param result The result to cache
+     */
+    public synchronized void put(BlameResult result) {
+        if (result == null) {
+            return;
+        }
+        long size = estimateSize(result);
+        if (size > maxBytes) {
+            return;
+        }
+        BlameResult previous = entries.put(new Key(result.getPath(), result.getCommitId()), result);
+        if (previous != null) {
+            currentBytes -= estimateSize(previous);
+        }
+        currentBytes += size;
+
+        Iterator<Map.Entry<Key, BlameResult>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= estimateSize(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Saves a result to the cache directory, replacing the file atomically.
+     *
+     * @param result The result to save
+     * @return true if saved, false if there is no directory or writing failed
+     */
+    public synchronized boolean save(BlameResult result) {
+        File file = fileFor(result.getPath(), result.getCommitId());
+        if (file == null) {
+            return false;
+        }
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(result.getPath());
+            out.writeUTF(result.getCommitId());
+            String[] origins = result.getOrigins();
+            out.writeInt(origins.length);
+            for (String origin : origins) {
+                out.writeUTF(origin);
+            }
+            out.writeInt(result.getLineCount());
+            for (int line = 0; line < result.getLineCount(); line++) {
+                out.writeInt(result.getOriginIndex(line));
+                out.writeInt(result.getOriginLine(line));
+            }
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error saving blame cache: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error saving blame cache: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getDiskHits() { return diskHits; }
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Formats the cache statistics for display.
+     *
+     * @return One-line statistics summary
+     */
+    public synchronized String getStatistics() {
+        return String.format("Blame cache: %d entries, %.1f/%.1f MB (%d hits, %d from disk, %d misses)",
+                entries.size(), currentBytes / (1024.0 * 1024.0), maxBytes / (1024.0 * 1024.0),
+                hits, diskHits, misses);
+    }
+
+    private BlameResult load(String path, String commitId) {
+        File file = fileFor(path, commitId);
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(path) || !in.readUTF().equals(commitId)) {
+                return null;
+            }
+            String[] origins = new String[in.readInt()];
+            for (int i = 0; i < origins.length; i++) {
+                origins[i] = in.readUTF();
+            }
+            int lineCount = in.readInt();
+            int[] originIndexes = new int[lineCount];
+            int[] originLines = new int[lineCount];
+            for (int line = 0; line < lineCount; line++) {
+                originIndexes[line] = in.readInt();
+                originLines[line] = in.readInt();
+                if (originIndexes[line] < 0 || originIndexes[line] >= origins.length) {
+                    return null;
+                }
+            }
+            return new BlameResult(path, commitId, origins, originIndexes, originLines);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable blame cache entry: " + file.getPath());
+            return null;
+        }
+    }
+
+    /**
+     * Saved results are named by a digest of path and commit, fanned out
+     * over subdirectories by its first two characters.
+     */
+    private File fileFor(String path, String commitId) {
+        if (directory == null) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((path + '\0' + commitId).getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b & 0xff));
+            }
+            return new File(new File(directory, name.substring(0, 2)), name.substring(2));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static long estimateSize(BlameResult result) {
+        return 128 + 2L * result.getPath().length() + 64L * result.getOrigins().length + 8L * result.getLineCount();
+    }
+
+    private static final class Key {
+        private final String path;
+        private final String commitId;
+
+        Key(String path, String commitId) {
+            this.path = path;
+            this.commitId = commitId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            return path.equals(key.path) && commitId.equals(key.commitId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, commitId);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.azaala.vcs.blame;
+
+import com.azaala.vcs.diff.DiffAlgorithm;
+import com.azaala.vcs.diff.Edit;
+import com.azaala.vcs.diff.LineHasher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the commit that introduced each line of a file. Each version of
+ * the file is diffed against its previous versions (one per parent line of
+ * history); lines left unchanged keep the origin they had there, and all
+ * other lines are attributed to the version's own commit.
+ *
+ * Versions are processed oldest first from an explicit stack, so long
+ * histories cannot overflow the call stack, and the walk back stops at the
+ * first version already in the cache. Blaming a file again after a new
+ * commit therefore costs one diff.
+ */
+public class BlameEngine {
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * The history of one file, as seen by the blame engine.
+     */
+    public interface FileHistory {
+        /**
+         * Finds the versions a version was derived from: for each parent of
+         * its commit, the newest commit in that parent's history that
+         * changed the file.
+         *
+         * @param commitId Commit holding a version of the file
+         * @return Commit IDs of the previous versions (empty for the first version)
+         */
+        List<String> getPreviousVersions(String commitId);
+
+        /**
+         * Reads a version of the file.
+         *
+         * @param commitId Commit holding a version of the file
+         * @return The lines, or null if the version is binary or unreadable
+         */
+        List<String> readLines(String commitId);
+    }
+
+    private final BlameCache cache;
+    private DiffAlgorithm algorithm = DiffAlgorithm.MYERS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private int versionsProcessed;
+
+    /**
+     * Creates a blame engine.
+     *
+     * @param cache Cache of results shared between runs
+     */
+    public BlameEngine(BlameCache cache) {
+        this.cache = cache != null ? cache : new BlameCache(null, BlameCache.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Sets the line diff algorithm used between versions.
+     *
+     * @param algorithm Diff algorithm (null for Myers)
+     */
+    public void setAlgorithm(DiffAlgorithm algorithm) {
+        this.algorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
+    }
+
+    /**
+     * Sets the diff time limit per version (0 or less for none). A coarse
+     * diff attributes more lines to the newer version.
+     *
+     * @param timeoutMillis Time limit in milliseconds
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return Number of versions diffed by the last blame (0 if it was cached)
+     */
+    public int getVersionsProcessed() {
+        return versionsProcessed;
+    }
+
+    /**
+     * Blames one version of a file.
+     *
+     * @param path Repository-relative path, used as the cache key
+     * @param commitId Commit holding the version to blame
+     * @param history Previous versions and contents of the file
+     * @return Origin of every line, or null if the version cannot be read
+     */
+    public BlameResult blame(String path, String commitId, FileHistory history) {
+        versionsProcessed = 0;
+        BlameResult cached = cache.get(path, commitId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Results and contents of versions still needed by a newer version,
+        // with the number of newer versions that have yet to use them
+        Map<String, BlameResult> results = new HashMap<>();
+        Map<String, List<String>> contents = new HashMap<>();
+        Map<String, Integer> pendingUses = new HashMap<>();
+        Map<String, List<String>> previousVersions = new HashMap<>();
+
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(commitId);
+        while (!stack.isEmpty()) {
+            String version = stack.peek();
+            if (results.containsKey(version)) {
+                stack.pop();
+                continue;
+            }
+
+            List<String> previous = previousVersions.get(version);
+            if (previous == null) {
+                previous = history.getPreviousVersions(version);
+                previousVersions.put(version, previous);
+                for (String previousVersion : previous) {
+                    pendingUses.merge(previousVersion, 1, Integer::sum);
+                }
+            }
+
+            boolean ready = true;
+            for (String previousVersion : previous) {
+                if (!results.containsKey(previousVersion)) {
+                    BlameResult known = cache.get(path, previousVersion);
+                    if (known != null) {
+                        results.put(previousVersion, known);
+                    } else {
+                        stack.push(previousVersion);
+                        ready = false;
+                    }
+                }
+            }
+            if (!ready) {
+                continue;
+            }
+
+            stack.pop();
+            List<String> lines = history.readLines(version);
+            BlameResult result = blameVersion(path, version, lines, previous, results, contents, history);
+            versionsProcessed++;
+            if (lines != null) {
+                cache.put(result);
+            }
+            results.put(version, result);
+            contents.put(version, lines != null ? lines : Collections.emptyList());
+            if (version.equals(commitId)) {
+                return lines != null ? result : null;
+            }
+
+            for (String previousVersion : previous) {
+                if (pendingUses.merge(previousVersion, -1, Integer::sum) <= 0) {
+                    results.remove(previousVersion);
+                    contents.remove(previousVersion);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Blames a version whose previous versions are all blamed. Previous
+     * versions are tried in parent order; a line takes its origin from the
+     * first one that has it unchanged.
+     */
+    private BlameResult blameVersion(String path, String version, List<String> lines, List<String> previous,
+                                     Map<String, BlameResult> results, Map<String, List<String>> contents,
+                                     FileHistory history) {
+        if (lines == null) {
+            lines = Collections.emptyList();
+        }
+        Map<String, Integer> originIds = new LinkedHashMap<>();
+        int[] originIndexes = new int[lines.size()];
+        int[] originLines = new int[lines.size()];
+        boolean[] assigned = new boolean[lines.size()];
+
+        for (String previousVersion : previous) {
+            BlameResult before = results.get(previousVersion);
+            List<String> beforeLines = contents.get(previousVersion);
+            if (beforeLines == null) {
+                // Came from the cache: read it once for this diff
+                beforeLines = history.readLines(previousVersion);
+            }
+            if (before == null || beforeLines == null || beforeLines.size() != before.getLineCount()) {
+                continue;
+            }
+
+            int[][] ids = LineHasher.hashLines(beforeLines, lines);
+            int oldLine = 0;
+            int newLine = 0;
+            for (Edit edit : withEnd(algorithm.diff(ids[0], ids[1], timeoutMillis), ids[0].length, ids[1].length)) {
+                for (; newLine < edit.getBeginB(); oldLine++, newLine++) {
+                    if (!assigned[newLine]) {
+                        originIndexes[newLine] = originIds.computeIfAbsent(before.getOriginCommit(oldLine),
+                                                                           id -> originIds.size());
+                        originLines[newLine] = before.getOriginLine(oldLine);
+                        assigned[newLine] = true;
+                    }
+                }
+                oldLine = edit.getEndA();
+                newLine = edit.getEndB();
+            }
+        }
+
+        for (int line = 0; line < lines.size(); line++) {
+            if (!assigned[line]) {
+                originIndexes[line] = originIds.computeIfAbsent(version, id -> originIds.size());
+                originLines[line] = line + 1;
+            }
+        }
+        return new BlameResult(path, version, originIds.keySet().toArray(new String[0]),
+                               originIndexes, originLines);
+    }
+
+    /**
+     * Appends an empty edit at the end of both sequences, so the unchanged
+     * tail is handled like any other unchanged region.
+     */
+    private static List<Edit> withEnd(List<Edit> edits, int oldLength, int newLength) {
+        List<Edit> result = new ArrayList<>(edits);
+        result.add(new Edit(oldLength, oldLength, newLength, newLength));
+        return result;
+    }
+}
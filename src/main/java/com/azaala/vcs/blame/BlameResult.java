@@ -0,0 +1,75 @@
+package com.azaala.vcs.blame;
+
+/**
+ * Where each line of one version of a file came from: the commit that
+ * introduced it and its line number in that commit's version. Origin
+ * commit IDs are stored once and referenced per line, so a result stays
+ * small even for long files.
+ */
+public final class BlameResult {
+    private final String path;
+    private final String commitId;
+    private final String[] origins;
+    private final int[] originIndexes;
+    private final int[] originLines;
+
+    /**
+     * Creates a result.
+     *
+     * @param path Repository-relative path of the file
+     * @param commitId Commit holding this version of the file
+     * @param origins Distinct origin commit IDs
+     * @param originIndexes Index into origins for each line
+     * @param originLines Line number (1-based) in the origin version for each line
+     */
+    BlameResult(String path, String commitId, String[] origins, int[] originIndexes, int[] originLines) {
+        this.path = path;
+        this.commitId = commitId;
+        this.origins = origins;
+        this.originIndexes = originIndexes;
+        this.originLines = originLines;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return ID of the commit holding the blamed version of the file
+     */
+    public String getCommitId() {
+        return commitId;
+    }
+
+    public int getLineCount() {
+        return originIndexes.length;
+    }
+
+    /**
+     * Gets the commit that introduced a line.
+     *
+     * @param line Line index (0-based)
+     * @return Origin commit ID
+     */
+    public String getOriginCommit(int line) {
+        return origins[originIndexes[line]];
+    }
+
+    /**
+     * Gets a line's number in the version of the file where it was introduced.
+     *
+     * @param line Line index (0-based)
+     * @return Line number (1-based) in the origin commit's version
+     */
+    public int getOriginLine(int line) {
+        return originLines[line];
+    }
+
+    String[] getOrigins() {
+        return origins;
+    }
+
+    int getOriginIndex(int line) {
+        return originIndexes[line];
+    }
+}
@@ -0,0 +1,126 @@
+package com.azaala.vcs.diff;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tells binary files from text files by looking for a NUL byte in the
+ * first block, the same heuristic git uses. Results are cached by content
+ * hash, so each blob is sniffed at most once per process.
+ */
+public final class BinaryDetector {
+    /** Number of leading bytes inspected. */
+    public static final int SNIFF_BYTES = 8000;
+
+    private static final int MAX_CACHED_RESULTS = 50000;
+
+    /** Results by content hash (LRU). */
+    private static final Map<String, Boolean> CACHE = new LinkedHashMap<String, Boolean>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
+    private BinaryDetector() {
+    }
+
+    /**
+     * Checks whether a file holds binary content.
+     *
+     * @param file File to inspect
+     * @param hash Content hash of the file, or null to skip the cache
+     * @return true if the first block contains a NUL byte; false for text,
+     *         empty, missing or unreadable files
+     */
+    public static boolean isBinary(File file, String hash) {
+        if (hash != null) {
+            synchronized (CACHE) {
+                Boolean cached = CACHE.get(hash);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+
+        boolean binary;
+        try (InputStream in = new FileInputStream(file)) {
+            binary = containsNul(in);
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + file.getPath());
+            return false;
+        }
+
+        if (hash != null) {
+            synchronized (CACHE) {
+                CACHE.put(hash, binary);
+            }
+        }
+        return binary;
+    }
+
+    /**
+     * Checks whether the content of an open channel is binary. The channel
+     * is read from its start and left positioned there.
+     *
+     * @param channel Channel to inspect
+     * @param hash Content hash of the content, or null to skip the cache
+     * @return true if the first block contains a NUL byte
+     * @throws IOException if the channel cannot be read
+     */
+    public static boolean isBinary(SeekableByteChannel channel, String hash) throws IOException {
+        if (hash != null) {
+            synchronized (CACHE) {
+                Boolean cached = CACHE.get(hash);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(SNIFF_BYTES);
+        channel.position(0);
+        while (block.hasRemaining() && channel.read(block) > 0) {
+            // Fill the block
+        }
+        channel.position(0);
+        boolean binary = false;
+        for (int i = 0; i < block.position(); i++) {
+            if (block.get(i) == 0) {
+                binary = true;
+                break;
+            }
+        }
+
+        if (hash != null) {
+            synchronized (CACHE) {
+                CACHE.put(hash, binary);
+            }
+        }
+        return binary;
+    }
+
+    private static boolean containsNul(InputStream in) throws IOException {
+        byte[] block = new byte[SNIFF_BYTES];
+        int total = 0;
+        int read;
+        while (total < block.length && (read = in.read(block, total, block.length - total)) > 0) {
+            total += read;
+        }
+        for (int i = 0; i < total; i++) {
+            if (block[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
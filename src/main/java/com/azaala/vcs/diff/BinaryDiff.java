@@ -0,0 +1,298 @@
+package com.azaala.vcs.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Block-level diff of two binary files, in the style of rsync: the old
+ * file is cut into fixed-size blocks indexed by a rolling checksum, and the
+ * new file is scanned byte by byte for those blocks. Bytes of the new file
+ * not covered by a matching block are reported as changed ranges, next to
+ * the old bytes they replace.
+ *
+ * Both files are memory-mapped and compared as bytes; no line or string is
+ * ever built from their content.
+ */
+public class BinaryDiff {
+    /** Smallest block size; grows for large files to bound the index. */
+    public static final int MIN_BLOCK_SIZE = 64;
+
+    private static final long MAX_BLOCKS = 1L << 20;
+    private static final int MAX_CHAIN = 16;
+
+    /**
+     * Diffs two binary files.
+     *
+     * @param oldFile Old version
+     * @param newFile New version
+     * @return Changed byte ranges and sizes
+     * @throws IOException If either file cannot be mapped
+     */
+    public Result diff(File oldFile, File newFile) throws IOException {
+        MappedFile a = MappedFile.open(oldFile);
+        MappedFile b = MappedFile.open(newFile);
+        long oldSize = a.size();
+        long newSize = b.size();
+
+        // Equal head and tail are matched exactly, byte by byte
+        long common = Math.min(oldSize, newSize);
+        long prefix = 0;
+        while (prefix < common && a.get(prefix) == b.get(prefix)) {
+            prefix++;
+        }
+        long suffix = 0;
+        while (suffix < common - prefix && a.get(oldSize - 1 - suffix) == b.get(newSize - 1 - suffix)) {
+            suffix++;
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        long aStart = prefix;
+        long aEnd = oldSize - suffix;
+        long bStart = prefix;
+        long bEnd = newSize - suffix;
+        if (aStart < aEnd || bStart < bEnd) {
+            List<long[]> runs = aStart < aEnd && bStart < bEnd
+                    ? matchBlocks(a, aStart, aEnd, b, bStart, bEnd)
+                    : Collections.emptyList();
+            toRanges(runs, aStart, aEnd, bStart, bEnd, ranges);
+        }
+        return new Result(oldSize, newSize, ranges);
+    }
+
+    /**
+     * Finds runs of the new region that also occur in the old region.
+     * Each run is {oldOffset, newOffset, length}, in new-file order.
+     */
+    private List<long[]> matchBlocks(MappedFile a, long aStart, long aEnd, MappedFile b, long bStart, long bEnd) {
+        int blockSize = blockSize(aEnd - aStart);
+        int blockCount = (int) ((aEnd - aStart) / blockSize);
+        List<long[]> runs = new ArrayList<>();
+        if (blockCount == 0 || bEnd - bStart < blockSize) {
+            return runs;
+        }
+
+        // Index old blocks by weak checksum; chains link blocks with equal sums
+        Map<Integer, Integer> heads = new HashMap<>(blockCount * 2);
+        int[] next = new int[blockCount];
+        for (int i = blockCount - 1; i >= 0; i--) {
+            int sum = checksum(a, aStart + (long) i * blockSize, blockSize);
+            Integer head = heads.put(sum, i);
+            next[i] = head != null ? head : -1;
+        }
+
+        long pos = bStart;
+        int low = 0;
+        int high = 0;
+        for (int k = 0; k < blockSize; k++) {
+            low += b.get(pos + k) & 0xff;
+            high += (blockSize - k) * (b.get(pos + k) & 0xff);
+        }
+
+        while (true) {
+            long match = -1;
+            Integer head = heads.get(((high & 0xffff) << 16) | (low & 0xffff));
+            if (head != null) {
+                long[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+                long expected = last != null && last[1] + last[2] == pos ? last[0] + last[2] : -1;
+                int checked = 0;
+                for (int i = head; i >= 0 && checked < MAX_CHAIN; i = next[i], checked++) {
+                    long oldOffset = aStart + (long) i * blockSize;
+                    if (sameBytes(a, oldOffset, b, pos, blockSize)) {
+                        if (match < 0 || oldOffset == expected) {
+                            match = oldOffset;
+                        }
+                        if (oldOffset == expected) {
+                            break;
+                        }
+                    }
+                }
+            }
+
+            if (match >= 0) {
+                long[] last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+                if (last != null && last[1] + last[2] == pos && last[0] + last[2] == match) {
+                    last[2] += blockSize;
+                } else {
+                    runs.add(new long[]{match, pos, blockSize});
+                }
+                pos += blockSize;
+                if (pos + blockSize > bEnd) {
+                    break;
+                }
+                low = 0;
+                high = 0;
+                for (int k = 0; k < blockSize; k++) {
+                    low += b.get(pos + k) & 0xff;
+                    high += (blockSize - k) * (b.get(pos + k) & 0xff);
+                }
+            } else {
+                if (pos + blockSize >= bEnd) {
+                    break;
+                }
+                int out = b.get(pos) & 0xff;
+                int in = b.get(pos + blockSize) & 0xff;
+                low += in - out;
+                high += low - blockSize * out;
+                pos++;
+            }
+        }
+
+        extendRuns(runs, a, aStart, aEnd, b, bStart, bEnd);
+        return runs;
+    }
+
+    /**
+     * Grows each run byte by byte into the unmatched bytes around it, so
+     * change boundaries are exact rather than block-aligned.
+     */
+    private void extendRuns(List<long[]> runs, MappedFile a, long aStart, long aEnd,
+                            MappedFile b, long bStart, long bEnd) {
+        for (int r = 0; r < runs.size(); r++) {
+            long[] run = runs.get(r);
+            long newFloor = r > 0 ? runs.get(r - 1)[1] + runs.get(r - 1)[2] : bStart;
+            while (run[1] > newFloor && run[0] > aStart && a.get(run[0] - 1) == b.get(run[1] - 1)) {
+                run[0]--;
+                run[1]--;
+                run[2]++;
+            }
+            long newCeiling = r + 1 < runs.size() ? runs.get(r + 1)[1] : bEnd;
+            while (run[1] + run[2] < newCeiling && run[0] + run[2] < aEnd
+                    && a.get(run[0] + run[2]) == b.get(run[1] + run[2])) {
+                run[2]++;
+            }
+        }
+    }
+
+    /**
+     * Turns matched runs into changed ranges: each gap in the new region,
+     * paired with the old bytes between the surrounding runs when those
+     * runs appear in the same order in the old file.
+     */
+    private void toRanges(List<long[]> runs, long aStart, long aEnd, long bStart, long bEnd, List<Range> ranges) {
+        long oldCursor = aStart;
+        long newCursor = bStart;
+        for (long[] run : runs) {
+            long oldLength = Math.max(0, run[0] - oldCursor);
+            long newLength = run[1] - newCursor;
+            if (oldLength > 0 || newLength > 0) {
+                ranges.add(new Range(oldCursor, oldLength, newCursor, newLength));
+            }
+            oldCursor = Math.max(oldCursor, run[0] + run[2]);
+            newCursor = run[1] + run[2];
+        }
+        if (oldCursor < aEnd || newCursor < bEnd) {
+            ranges.add(new Range(oldCursor, Math.max(0, aEnd - oldCursor), newCursor, bEnd - newCursor));
+        }
+    }
+
+    /**
+     * Picks a power-of-two block size that keeps the old-file index at
+     * about a million blocks or fewer.
+     */
+    private static int blockSize(long length) {
+        int size = MIN_BLOCK_SIZE;
+        while (length / size > MAX_BLOCKS && size < (1 << 24)) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /** Adler-style weak checksum, matching the rolling update in matchBlocks. */
+    private static int checksum(MappedFile file, long offset, int length) {
+        int low = 0;
+        int high = 0;
+        for (int k = 0; k < length; k++) {
+            int value = file.get(offset + k) & 0xff;
+            low += value;
+            high += (length - k) * value;
+        }
+        return ((high & 0xffff) << 16) | (low & 0xffff);
+    }
+
+    private static boolean sameBytes(MappedFile a, long aOffset, MappedFile b, long bOffset, int length) {
+        for (int k = 0; k < length; k++) {
+            if (a.get(aOffset + k) != b.get(bOffset + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One changed region: oldLength bytes at oldOffset were replaced by
+     * newLength bytes at newOffset (either length may be zero).
+     */
+    public static class Range {
+        private final long oldOffset;
+        private final long oldLength;
+        private final long newOffset;
+        private final long newLength;
+
+        public Range(long oldOffset, long oldLength, long newOffset, long newLength) {
+            this.oldOffset = oldOffset;
+            this.oldLength = oldLength;
+            this.newOffset = newOffset;
+            this.newLength = newLength;
+        }
+
+        public long getOldOffset() { return oldOffset; }
+        public long getOldLength() { return oldLength; }
+        public long getNewOffset() { return newOffset; }
+        public long getNewLength() { return newLength; }
+
+        @Override
+        public String toString() {
+            return String.format("@@ 0x%08x,%d -> 0x%08x,%d @@", oldOffset, oldLength, newOffset, newLength);
+        }
+    }
+
+    /**
+     * Outcome of a binary diff.
+     */
+    public static class Result {
+        private final long oldSize;
+        private final long newSize;
+        private final List<Range> ranges;
+
+        Result(long oldSize, long newSize, List<Range> ranges) {
+            this.oldSize = oldSize;
+            this.newSize = newSize;
+            this.ranges = Collections.unmodifiableList(ranges);
+        }
+
+        public long getOldSize() { return oldSize; }
+        public long getNewSize() { return newSize; }
+
+        /**
+         * @return Changed ranges in new-file order (empty if identical)
+         */
+        public List<Range> getRanges() { return ranges; }
+
+        /**
+         * @return Total bytes of the new file not found in the old one
+         */
+        public long getBytesAdded() {
+            long total = 0;
+            for (Range range : ranges) {
+                total += range.getNewLength();
+            }
+            return total;
+        }
+
+        /**
+         * @return Total bytes of the old file replaced or removed
+         */
+        public long getBytesRemoved() {
+            long total = 0;
+            for (Range range : ranges) {
+                total += range.getOldLength();
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.azaala.vcs.diff;
+
+/**
+ * Point in time after which a diff algorithm stops refining its result.
+ * The deadline remembers whether a diff found it expired, and so reported
+ * part of its result as coarse replacements.
+ */
+public final class Deadline {
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE, false);
+
+    private final long deadlineNanos;
+    private final boolean limited;
+    private boolean reached;
+
+    private Deadline(long deadlineNanos, boolean limited) {
+        this.deadlineNanos = deadlineNanos;
+        this.limited = limited;
+    }
+
+    /**
+     * Creates a deadline the given number of milliseconds from now.
+     *
+     * @param timeoutMillis Time limit (0 or less means no limit)
+     * @return The deadline
+     */
+    public static Deadline after(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + timeoutMillis * 1_000_000L, true);
+    }
+
+    /**
+     * Checks the time limit. Algorithms call this just before giving up on
+     * a region, so a true result means the region falls back.
+     *
+     * @return true once the time limit has passed
+     */
+    boolean isExpired() {
+        if (limited && System.nanoTime() - deadlineNanos > 0) {
+            reached = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if a diff using this deadline stopped refining a region
+     *         because the time limit had passed
+     */
+    public boolean isReached() {
+        return reached;
+    }
+}
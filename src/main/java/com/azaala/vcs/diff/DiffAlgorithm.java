@@ -0,0 +1,83 @@
+package com.azaala.vcs.diff;
+
+import java.util.List;
+
+/**
+ * Line diff algorithms that can be selected for commit comparisons.
+ */
+public enum DiffAlgorithm {
+    /** Minimal edit script; best for ordinary source files. */
+    MYERS("myers"),
+
+    /** Anchors on rare lines; faster and more readable on repetitive files. */
+    HISTOGRAM("histogram");
+
+    private final String displayName;
+
+    DiffAlgorithm(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets the lowercase name used on the command line.
+     *
+     * @return Display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Computes the edit script between two line-hash arrays.
+     *
+     * @param a Line ids of the old version
+     * @param b Line ids of the new version
+     * @param timeoutMillis Time limit after which unsolved regions are reported
+     *                      as whole replacements (0 or less for none)
+     * @return Ordered, non-overlapping edits (never null)
+     */
+    public List<Edit> diff(int[] a, int[] b, long timeoutMillis) {
+        return diff(a, b, Deadline.after(timeoutMillis));
+    }
+
+    /**
+     * Computes the edit script between two line-hash arrays, stopping at a
+     * deadline. {@link Deadline#isReached()} afterwards tells whether any
+     * region was reported as a whole replacement because time ran out.
+     *
+     * @param a Line ids of the old version
+     * @param b Line ids of the new version
+     * @param deadline Time after which unsolved regions are reported as
+     *                 whole replacements
+     * @return Ordered, non-overlapping edits (never null)
+     */
+    public List<Edit> diff(int[] a, int[] b, Deadline deadline) {
+        if (this == HISTOGRAM) {
+            return new HistogramDiff().diff(a, b, deadline);
+        }
+        return new MyersDiff().diff(a, 0, a.length, b, 0, b.length, deadline, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Looks up an algorithm by name, ignoring case.
+     *
+     * @param name Algorithm name such as "myers" or "histogram"
+     * @return The matching algorithm, or null if the name is unknown
+     */
+    public static DiffAlgorithm fromName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String trimmed = name.trim();
+        for (DiffAlgorithm algorithm : values()) {
+            if (algorithm.displayName.equalsIgnoreCase(trimmed)) {
+                return algorithm;
+            }
+        }
+        // Patience diff is served by the histogram implementation
+        if ("patience".equalsIgnoreCase(trimmed)) {
+            return HISTOGRAM;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,130 @@
+package com.azaala.vcs.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares Myers and histogram diff on inputs that are hard for Myers:
+ * files made mostly of repeated lines (braces, blank lines) and large
+ * rewrites where nearly every line changed.
+ *
+ * Run with: java -cp azaala-vcs.jar com.azaala.vcs.diff.DiffBenchmark [lines] [timeoutMs]
+ */
+public class DiffBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long timeoutMillis = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+
+        System.out.println("Diff benchmark: " + lines + " lines, time limit " + timeoutMillis + " ms");
+        System.out.println(String.format("%-28s %-10s %10s %8s %8s  %s", "Input", "Algorithm", "Time (ms)", "Edits", "Changed", "Result"));
+
+        Random random = new Random(42);
+        run("repetitive, scattered edits", repetitiveFile(lines, random), timeoutMillis);
+        run("full rewrite, shared braces", rewrittenFile(lines, random), timeoutMillis);
+        run("moved blocks", movedBlocks(lines, random), timeoutMillis);
+    }
+
+    private static void run(String name, Input input, long timeoutMillis) {
+        int[][] hashed = LineHasher.hashLines(input.oldLines, input.newLines);
+        for (DiffAlgorithm algorithm : DiffAlgorithm.values()) {
+            List<Edit> edits = null;
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                edits = algorithm.diff(hashed[0], hashed[1], timeoutMillis);
+            }
+
+            long total = 0;
+            long slowest = 0;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                long start = System.nanoTime();
+                edits = algorithm.diff(hashed[0], hashed[1], timeoutMillis);
+                long elapsed = System.nanoTime() - start;
+                total += elapsed;
+                slowest = Math.max(slowest, elapsed);
+            }
+            boolean cutOff = timeoutMillis > 0 && slowest / 1_000_000 >= timeoutMillis;
+
+            int changed = 0;
+            for (Edit edit : edits) {
+                changed += edit.getLengthA() + edit.getLengthB();
+            }
+            System.out.println(String.format("%-28s %-10s %10.2f %8d %8d  %s",
+                    name, algorithm.getDisplayName(), total / 1_000_000.0 / MEASURED_ROUNDS, edits.size(), changed,
+                    cutOff ? "cut off (time limit)" : "completed"));
+        }
+    }
+
+    /**
+     * Source-like file where most lines are braces or blank, with 1% of lines edited.
+     */
+    private static Input repetitiveFile(int lines, Random random) {
+        List<String> oldLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            switch (i % 5) {
+                case 0: oldLines.add("    {"); break;
+                case 1: oldLines.add("        value" + (i % 7) + " = compute();"); break;
+                case 2: oldLines.add("    }"); break;
+                default: oldLines.add(""); break;
+            }
+        }
+        List<String> newLines = new ArrayList<>(oldLines);
+        for (int i = 0; i < lines / 100; i++) {
+            int index = random.nextInt(newLines.size());
+            if (random.nextBoolean()) {
+                newLines.set(index, "        changed" + i + "();");
+            } else {
+                newLines.add(index, "        inserted" + i + "();");
+            }
+        }
+        return new Input(oldLines, newLines);
+    }
+
+    /**
+     * Every non-brace line changes: the worst case for Myers (D close to N + M).
+     */
+    private static Input rewrittenFile(int lines, Random random) {
+        List<String> oldLines = new ArrayList<>(lines);
+        List<String> newLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            boolean brace = i % 3 == 0;
+            oldLines.add(brace ? "}" : "old statement " + random.nextInt(lines));
+            newLines.add(brace ? "}" : "new statement " + random.nextInt(lines));
+        }
+        return new Input(oldLines, newLines);
+    }
+
+    /**
+     * Unique lines where large blocks are moved to different positions.
+     */
+    private static Input movedBlocks(int lines, Random random) {
+        List<String> oldLines = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            oldLines.add("line " + i);
+        }
+        List<String> newLines = new ArrayList<>(oldLines);
+        int blockSize = Math.max(1, lines / 20);
+        for (int i = 0; i < 5; i++) {
+            int from = random.nextInt(newLines.size() - blockSize);
+            List<String> block = new ArrayList<>(newLines.subList(from, from + blockSize));
+            newLines.subList(from, from + blockSize).clear();
+            newLines.addAll(random.nextInt(newLines.size()), block);
+        }
+        return new Input(oldLines, newLines);
+    }
+
+    /**
+     * Old and new versions of one benchmark input.
+     */
+    private static final class Input {
+        private final List<String> oldLines;
+        private final List<String> newLines;
+
+        Input(List<String> oldLines, List<String> newLines) {
+            this.oldLines = oldLines;
+            this.newLines = newLines;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.azaala.vcs.diff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of per-file diff results, keyed by the content hashes
+ * of both versions and the algorithm used. Because the key is content, a
+ * result can be reused for any commit pair (and any path) with the same
+ * two file versions.
+ *
+ * The bound is an estimate of retained bytes rather than an entry count,
+ * so a few huge diffs cannot push out hundreds of small ones unnoticed.
+ * All methods are thread-safe.
+ */
+public final class DiffCache {
+    /** Default size bound: 32 MB of estimated diff data. */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static DiffCache instance;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long maxBytes;
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache with the given size bound.
+     *
+     * @param maxBytes Most estimated bytes to retain
+     */
+    public DiffCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the cache shared by all diff utilities in this process.
+     *
+     * @return Shared cache instance
+     */
+    public static synchronized DiffCache getInstance() {
+        if (instance == null) {
+            instance = new DiffCache(DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * Looks up a cached diff and marks it as most recently used.
+     *
+     * @param oldHash Content hash of the old version
+     * @param newHash Content hash of the new version
+     * @param algorithm Algorithm the diff was computed with
+     * @return The cached result, or null on a miss
+     */
+    public synchronized FileDiff get(String oldHash, String newHash, DiffAlgorithm algorithm) {
+        Entry entry = entries.get(new Key(oldHash, newHash, algorithm));
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.diff;
+    }
+
+    /**
+     * Stores a diff result, evicting least recently used entries until the
+     * cache fits its size bound again. Results larger than the whole bound
+     * are not stored.
+     *
+     * @param oldHash Content hash of the old version
+     * @param newHash Content hash of the new version
+     * @param algorithm Algorithm the diff was computed with
+     * @param diff The result to cache
+     */
+    public synchronized void put(String oldHash, String newHash, DiffAlgorithm algorithm, FileDiff diff) {
+        if (oldHash == null || newHash == null || algorithm == null || diff == null) {
+            return;
+        }
+        long size = estimateSize(diff);
+        if (size > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(new Key(oldHash, newHash, algorithm), new Entry(diff, size));
+        if (previous != null) {
+            currentBytes -= previous.size;
+        }
+        currentBytes += size;
+        evictToFit();
+    }
+
+    /**
+     * Removes all entries. Statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * Changes the size bound, evicting entries if the cache is now too big.
+     *
+     * @param maxBytes Most estimated bytes to retain
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        evictToFit();
+    }
+
+    public synchronized long getMaxBytes() { return maxBytes; }
+    public synchronized long getCurrentBytes() { return currentBytes; }
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Gets the fraction of lookups that were served from the cache.
+     *
+     * @return Hit rate between 0 and 1 (0 before any lookup)
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Formats the cache statistics for display.
+     *
+     * @return One-line statistics summary
+     */
+    public synchronized String getStatistics() {
+        return String.format("Diff cache: %d entries, %.1f/%.1f MB, hit rate %.0f%% (%d hits, %d misses, %d evictions)",
+                entries.size(), currentBytes / (1024.0 * 1024.0), maxBytes / (1024.0 * 1024.0),
+                getHitRate() * 100, hits, misses, evictions);
+    }
+
+    private void evictToFit() {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().getValue().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Rough heap footprint of a diff result: strings are two bytes per char
+     * plus object headers.
+     */
+    private static long estimateSize(FileDiff diff) {
+        long size = 256 + 2L * diff.getPath().length() + 48L * diff.getByteRanges().size();
+        for (Hunk hunk : diff.getHunks()) {
+            size += 64;
+            for (String line : hunk.getLines()) {
+                size += 56 + 2L * line.length();
+            }
+        }
+        return size;
+    }
+
+    private static final class Key {
+        private final String oldHash;
+        private final String newHash;
+        private final DiffAlgorithm algorithm;
+
+        Key(String oldHash, String newHash, DiffAlgorithm algorithm) {
+            this.oldHash = oldHash;
+            this.newHash = newHash;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            return oldHash.equals(key.oldHash) && newHash.equals(key.newHash) && algorithm == key.algorithm;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(oldHash, newHash, algorithm);
+        }
+    }
+
+    private static final class Entry {
+        private final FileDiff diff;
+        private final long size;
+
+        Entry(FileDiff diff, long size) {
+            this.diff = diff;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.azaala.vcs.diff;
+
+import com.azaala.vcs.Commit;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Receives a commit comparison file by file and writes it out in some
+ * format. Implementations write straight to their sink as events arrive,
+ * so memory use does not grow with the size of the diff.
+ *
+ * Events come in this order: begin, added files, removed files, modified
+ * files, renamed/copied files, unchanged files, end. Within each group
+ * files are sorted by path.
+ */
+public interface DiffFormatter {
+
+    /**
+     * Starts the output.
+     *
+     * @param oldCommit Commit compared from
+     * @param newCommit Commit compared to
+     * @param algorithm Line diff algorithm in use
+     * @param summary File counts per category
+     * @throws IOException If writing fails
+     */
+    void begin(Commit oldCommit, Commit newCommit, DiffAlgorithm algorithm, DiffSummary summary) throws IOException;
+
+    /**
+     * Writes a file that exists only in the new commit.
+     *
+     * @param path File path
+     * @param snapshot Stored content of the file
+     * @param binary true if the content is binary
+     * @throws IOException If writing fails
+     */
+    void addedFile(String path, File snapshot, boolean binary) throws IOException;
+
+    /**
+     * Writes a file that exists only in the old commit.
+     *
+     * @param path File path
+     * @param snapshot Stored content of the file
+     * @param binary true if the content is binary
+     * @throws IOException If writing fails
+     */
+    void removedFile(String path, File snapshot, boolean binary) throws IOException;
+
+    /**
+     * Writes a file whose content changed.
+     *
+     * @param diff Per-file diff result
+     * @throws IOException If writing fails
+     */
+    void modifiedFile(FileDiff diff) throws IOException;
+
+    /**
+     * Writes a renamed or copied file.
+     *
+     * @param match The rename or copy
+     * @param diff Content diff against the source, or null if the content is identical
+     * @throws IOException If writing fails
+     */
+    void renamedFile(RenameDetector.Match match, FileDiff diff) throws IOException;
+
+    /**
+     * Writes a file present in both commits with identical content.
+     *
+     * @param path File path
+     * @throws IOException If writing fails
+     */
+    void unchangedFile(String path) throws IOException;
+
+    /**
+     * Finishes the output and flushes the sink (without closing it).
+     *
+     * @throws IOException If writing fails
+     */
+    void end() throws IOException;
+}
@@ -0,0 +1,36 @@
+package com.azaala.vcs.diff;
+
+/**
+ * File counts per change category of a commit comparison, known before
+ * any file diff is written.
+ */
+public class DiffSummary {
+    private final int added;
+    private final int removed;
+    private final int modified;
+    private final int renamed;
+    private final int copied;
+    private final int unchanged;
+
+    public DiffSummary(int added, int removed, int modified, int renamed, int copied, int unchanged) {
+        this.added = added;
+        this.removed = removed;
+        this.modified = modified;
+        this.renamed = renamed;
+        this.copied = copied;
+        this.unchanged = unchanged;
+    }
+
+    public int getAdded() { return added; }
+    public int getRemoved() { return removed; }
+    public int getModified() { return modified; }
+    public int getRenamed() { return renamed; }
+    public int getCopied() { return copied; }
+    public int getUnchanged() { return unchanged; }
+
+    @Override
+    public String toString() {
+        return "DiffSummary{" + "added=" + added + ", removed=" + removed + ", modified=" + modified +
+                ", renamed=" + renamed + ", copied=" + copied + ", unchanged=" + unchanged + '}';
+    }
+}
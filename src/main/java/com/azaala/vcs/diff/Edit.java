@@ -0,0 +1,108 @@
+package com.azaala.vcs.diff;
+
+import java.util.Objects;
+
+/**
+ * A single region of difference between two line sequences.
+ * Ranges are half-open: lines [beginA, endA) of the old sequence are
+ * replaced by lines [beginB, endB) of the new sequence.
+ */
+public class Edit {
+
+    /**
+     * Kind of change described by an edit.
+     */
+    public enum Type {
+        INSERT, DELETE, REPLACE, EMPTY
+    }
+
+    private final int beginA;
+    private final int endA;
+    private final int beginB;
+    private final int endB;
+
+    /**
+     * Creates a new edit region.
+     *
+     * @param beginA First old line (inclusive, 0-based)
+     * @param endA Last old line (exclusive)
+     * @param beginB First new line (inclusive, 0-based)
+     * @param endB Last new line (exclusive)
+     */
+    public Edit(int beginA, int endA, int beginB, int endB) {
+        this.beginA = beginA;
+        this.endA = endA;
+        this.beginB = beginB;
+        this.endB = endB;
+    }
+
+    public int getBeginA() { return beginA; }
+    public int getEndA() { return endA; }
+    public int getBeginB() { return beginB; }
+    public int getEndB() { return endB; }
+
+    /**
+     * @return Number of old lines removed by this edit
+     */
+    public int getLengthA() {
+        return endA - beginA;
+    }
+
+    /**
+     * @return Number of new lines inserted by this edit
+     */
+    public int getLengthB() {
+        return endB - beginB;
+    }
+
+    /**
+     * Gets the kind of change this edit represents.
+     *
+     * @return The edit type
+     */
+    public Type getType() {
+        if (beginA == endA) {
+            return beginB == endB ? Type.EMPTY : Type.INSERT;
+        }
+        return beginB == endB ? Type.DELETE : Type.REPLACE;
+    }
+
+    /**
+     * Checks whether this edit ends exactly where the other begins.
+     *
+     * @param next The following edit
+     * @return true if the two edits touch and can be merged
+     */
+    public boolean isAdjacentTo(Edit next) {
+        return next != null && endA == next.beginA && endB == next.beginB;
+    }
+
+    /**
+     * Merges this edit with an adjacent following edit.
+     *
+     * @param next The following edit (must be adjacent)
+     * @return A new edit covering both regions
+     */
+    public Edit mergeWith(Edit next) {
+        return new Edit(beginA, next.endA, beginB, next.endB);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Edit edit = (Edit) obj;
+        return beginA == edit.beginA && endA == edit.endA &&
+                beginB == edit.beginB && endB == edit.endB;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(beginA, endA, beginB, endB);
+    }
+
+    @Override
+    public String toString() {
+        return getType() + "(" + beginA + "-" + endA + "," + beginB + "-" + endB + ")";
+    }
+}
@@ -0,0 +1,178 @@
+package com.azaala.vcs.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of diffing one file between two versions: its hunks, line
+ * statistics and how the comparison went. Computed independently per file
+ * so that many files can be diffed in parallel and rendered afterwards.
+ */
+public class FileDiff {
+    private final String path;
+    private String oldPath;
+    private List<Hunk> hunks = Collections.emptyList();
+    private int additions;
+    private int deletions;
+    private long oldLineCount;
+    private long newLineCount;
+    private boolean oldMissingNewline;
+    private boolean newMissingNewline;
+    private boolean timedOut;
+    private boolean overBudget;
+    private String error;
+    private boolean binary;
+    private long oldSize;
+    private long newSize;
+    private List<BinaryDiff.Range> byteRanges = Collections.emptyList();
+
+    public FileDiff(String path) {
+        this.path = path;
+    }
+
+    public String getPath() { return path; }
+
+    /**
+     * @return Path in the old version; differs from the path for a rename or copy
+     */
+    public String getOldPath() { return oldPath != null ? oldPath : path; }
+    public void setOldPath(String oldPath) { this.oldPath = oldPath; }
+
+    /**
+     * @return true if the old version was recorded under another path
+     */
+    public boolean isRenamed() { return oldPath != null && !oldPath.equals(path); }
+
+    public List<Hunk> getHunks() { return hunks; }
+    public void setHunks(List<Hunk> hunks) { this.hunks = Collections.unmodifiableList(new ArrayList<>(hunks)); }
+
+    public int getAdditions() { return additions; }
+    public void setAdditions(int additions) { this.additions = additions; }
+
+    public int getDeletions() { return deletions; }
+    public void setDeletions(int deletions) { this.deletions = deletions; }
+
+    public long getOldLineCount() { return oldLineCount; }
+    public void setOldLineCount(long oldLineCount) { this.oldLineCount = oldLineCount; }
+
+    public long getNewLineCount() { return newLineCount; }
+    public void setNewLineCount(long newLineCount) { this.newLineCount = newLineCount; }
+
+    /**
+     * @return true if the old version's last line has no line terminator
+     */
+    public boolean isOldMissingNewline() { return oldMissingNewline; }
+    public void setOldMissingNewline(boolean oldMissingNewline) { this.oldMissingNewline = oldMissingNewline; }
+
+    /**
+     * @return true if the new version's last line has no line terminator
+     */
+    public boolean isNewMissingNewline() { return newMissingNewline; }
+    public void setNewMissingNewline(boolean newMissingNewline) { this.newMissingNewline = newMissingNewline; }
+
+    /**
+     * @return true if the diff hit its time limit and parts are coarse
+     */
+    public boolean isTimedOut() { return timedOut; }
+    public void setTimedOut(boolean timedOut) { this.timedOut = timedOut; }
+
+    /**
+     * @return true if the changed region exceeded the memory budget and
+     *         the single hunk carries no lines
+     */
+    public boolean isOverBudget() { return overBudget; }
+    public void setOverBudget(boolean overBudget) { this.overBudget = overBudget; }
+
+    /**
+     * @return Error message if the file could not be read, otherwise null
+     */
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    /**
+     * @return true if either version is binary; hunks and line counts are
+     *         then empty and the byte ranges describe the change
+     */
+    public boolean isBinary() { return binary; }
+    public void setBinary(boolean binary) { this.binary = binary; }
+
+    public long getOldSize() { return oldSize; }
+    public void setOldSize(long oldSize) { this.oldSize = oldSize; }
+
+    public long getNewSize() { return newSize; }
+    public void setNewSize(long newSize) { this.newSize = newSize; }
+
+    public List<BinaryDiff.Range> getByteRanges() { return byteRanges; }
+    public void setByteRanges(List<BinaryDiff.Range> byteRanges) {
+        this.byteRanges = Collections.unmodifiableList(new ArrayList<>(byteRanges));
+    }
+
+    /**
+     * Copies this result for another path with the same content, e.g. when
+     * a cached diff is reused for a different file. The old path is not
+     * copied.
+     *
+     * @param otherPath Path of the copy
+     * @return A copy sharing the (unmodifiable) hunks and byte ranges
+     */
+    public FileDiff withPath(String otherPath) {
+        FileDiff copy = new FileDiff(otherPath);
+        copy.hunks = hunks;
+        copy.additions = additions;
+        copy.deletions = deletions;
+        copy.oldLineCount = oldLineCount;
+        copy.newLineCount = newLineCount;
+        copy.oldMissingNewline = oldMissingNewline;
+        copy.newMissingNewline = newMissingNewline;
+        copy.timedOut = timedOut;
+        copy.overBudget = overBudget;
+        copy.error = error;
+        copy.binary = binary;
+        copy.oldSize = oldSize;
+        copy.newSize = newSize;
+        copy.byteRanges = byteRanges;
+        return copy;
+    }
+
+    /**
+     * Checks whether a file's last line has no line terminator.
+     *
+     * @param file File to check
+     * @return true if the file is not empty and does not end with '\n'
+     *         (false if it cannot be read)
+     */
+    public static boolean endsWithoutNewline(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() == 0) {
+                return false;
+            }
+            in.seek(in.length() - 1);
+            return in.read() != '\n';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Counts the prefixed lines across all hunks (context included).
+     *
+     * @return Number of hunk lines
+     */
+    public int getHunkLineCount() {
+        int count = 0;
+        for (Hunk hunk : hunks) {
+            count += hunk.getLines().size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "FileDiff{" + "path='" + path + '\'' + ", hunks=" + hunks.size() +
+                ", additions=" + additions + ", deletions=" + deletions + '}';
+    }
+}
@@ -0,0 +1,249 @@
+package com.azaala.vcs.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Histogram diff, an extension of patience diff.
+ *
+ * For each region the old side is indexed into a histogram of line
+ * occurrences. The longest common run anchored on the rarest shared line is
+ * used as a split point, and both sides of it are solved the same way.
+ * Very common lines (braces, blank lines) are never used as anchors, which
+ * keeps the output readable and the running time low on repetitive files.
+ * Regions where every shared line is too common fall back to Myers with a
+ * bounded edit cost: few scattered changes are still found exactly, while a
+ * full rewrite is reported as one replacement instead of spending quadratic
+ * time aligning braces and blank lines.
+ */
+public class HistogramDiff {
+    /** Lines occurring more often than this in a region are never used as anchors. */
+    private static final int MAX_CHAIN_LENGTH = 64;
+
+    /** Most middle snake rounds the Myers fallback may spend on one region. */
+    private static final int MAX_FALLBACK_COST = 1024;
+
+    private final long timeoutMillis;
+    private final MyersDiff fallback = new MyersDiff();
+
+    /**
+     * Creates a histogram diff without a time limit.
+     */
+    public HistogramDiff() {
+        this(0);
+    }
+
+    /**
+     * Creates a histogram diff that falls back to a coarse result after a time limit.
+     *
+     * @param timeoutMillis Time limit in milliseconds (0 or less for none)
+     */
+    public HistogramDiff(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Computes the edit script turning sequence a into sequence b.
+     *
+     * @param a Line ids of the old version
+     * @param b Line ids of the new version
+     * @return Ordered, non-overlapping edits (never null)
+     */
+    public List<Edit> diff(int[] a, int[] b) {
+        return diff(a, b, Deadline.after(timeoutMillis));
+    }
+
+    /**
+     * Computes the edit script turning sequence a into sequence b, sharing
+     * an existing deadline.
+     */
+    List<Edit> diff(int[] a, int[] b, Deadline deadline) {
+        List<Edit> edits = new ArrayList<>();
+
+        // Explicit work stack instead of recursion: a split can be very lopsided
+        Deque<int[]> regions = new ArrayDeque<>();
+        regions.push(new int[]{0, a.length, 0, b.length});
+
+        while (!regions.isEmpty()) {
+            int[] region = regions.pop();
+            int aStart = region[0];
+            int aEnd = region[1];
+            int bStart = region[2];
+            int bEnd = region[3];
+
+            while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+                aStart++;
+                bStart++;
+            }
+            while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+                aEnd--;
+                bEnd--;
+            }
+
+            if (aStart == aEnd && bStart == bEnd) {
+                continue;
+            }
+            if (aStart == aEnd || bStart == bEnd || deadline.isExpired()) {
+                edits.add(new Edit(aStart, aEnd, bStart, bEnd));
+                continue;
+            }
+
+            int[] match = findLongestRareMatch(a, aStart, aEnd, b, bStart, bEnd);
+            if (match == null) {
+                // Every shared line is too common to anchor on
+                edits.addAll(fallback.diff(a, aStart, aEnd, b, bStart, bEnd, deadline, MAX_FALLBACK_COST));
+            } else if (match.length == 0) {
+                // Nothing in common at all
+                edits.add(new Edit(aStart, aEnd, bStart, bEnd));
+            } else {
+                // Right side is pushed first so the left side is emitted first
+                regions.push(new int[]{match[1], aEnd, match[3], bEnd});
+                regions.push(new int[]{aStart, match[0], bStart, match[2]});
+            }
+        }
+
+        return MyersDiff.normalize(edits);
+    }
+
+    /**
+     * Finds the longest common run containing the lowest-occurrence shared line.
+     *
+     * @return {aStart, aEnd, bStart, bEnd} of the best run, an empty array if the
+     *         regions share no line, or null if only over-common lines are shared
+     */
+    private int[] findLongestRareMatch(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+        OccurrenceTable table = new OccurrenceTable(a, aStart, aEnd);
+
+        int[] best = null;
+        int bestLength = 0;
+        int bestRarity = MAX_CHAIN_LENGTH + 1;
+        boolean sawCommonLine = false;
+
+        int bi = bStart;
+        while (bi < bEnd) {
+            int nextB = bi + 1;
+            int slot = table.find(b[bi]);
+            if (slot < 0) {
+                bi = nextB;
+                continue;
+            }
+
+            int count = table.count(slot);
+            if (count > MAX_CHAIN_LENGTH) {
+                sawCommonLine = true;
+                bi = nextB;
+                continue;
+            }
+            if (count > bestRarity) {
+                bi = nextB;
+                continue;
+            }
+
+            for (int ai = table.first(slot); ai >= 0; ai = table.next(ai)) {
+                int as = ai;
+                int bs = bi;
+                int ae = ai + 1;
+                int be = bi + 1;
+                int rarity = count;
+
+                while (as > aStart && bs > bStart && a[as - 1] == b[bs - 1]) {
+                    as--;
+                    bs--;
+                    rarity = Math.min(rarity, table.countOf(a[as]));
+                }
+                while (ae < aEnd && be < bEnd && a[ae] == b[be]) {
+                    rarity = Math.min(rarity, table.countOf(a[ae]));
+                    ae++;
+                    be++;
+                }
+
+                if (nextB < be) {
+                    nextB = be;
+                }
+
+                int length = ae - as;
+                if (rarity < bestRarity || (rarity == bestRarity && length > bestLength)) {
+                    best = new int[]{as, ae, bs, be};
+                    bestLength = length;
+                    bestRarity = rarity;
+                }
+            }
+            bi = nextB;
+        }
+
+        if (best != null) {
+            return best;
+        }
+        return sawCommonLine ? null : new int[0];
+    }
+
+    /**
+     * Open-addressing table of line id to occurrence count and position chain
+     * for one region of the old sequence.
+     */
+    private static final class OccurrenceTable {
+        private final int[] keys;
+        private final int[] counts;
+        private final int[] heads;
+        private final int[] nextPosition;
+        private final int base;
+        private final int mask;
+
+        OccurrenceTable(int[] a, int start, int end) {
+            int capacity = Integer.highestOneBit(Math.max(4, (end - start) * 2 - 1)) << 1;
+            this.keys = new int[capacity];
+            this.counts = new int[capacity];
+            this.heads = new int[capacity];
+            this.nextPosition = new int[end - start];
+            this.base = start;
+            this.mask = capacity - 1;
+            Arrays.fill(keys, -1);
+
+            // Scan backwards so every chain lists positions in ascending order
+            for (int i = end - 1; i >= start; i--) {
+                int slot = slotFor(a[i]);
+                if (keys[slot] == -1) {
+                    keys[slot] = a[i];
+                    nextPosition[i - base] = -1;
+                } else {
+                    nextPosition[i - base] = heads[slot];
+                }
+                heads[slot] = i;
+                counts[slot]++;
+            }
+        }
+
+        private int slotFor(int key) {
+            int slot = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != -1 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        int find(int key) {
+            int slot = slotFor(key);
+            return keys[slot] == -1 ? -1 : slot;
+        }
+
+        int count(int slot) {
+            return counts[slot];
+        }
+
+        int countOf(int key) {
+            int slot = find(key);
+            return slot < 0 ? 0 : counts[slot];
+        }
+
+        int first(int slot) {
+            return heads[slot];
+        }
+
+        int next(int position) {
+            return nextPosition[position - base];
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.azaala.vcs.diff;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of nearby edits together with surrounding context lines.
+ * Lines are stored unified-diff style: each entry starts with ' ' for
+ * context, '-' for a removed line or '+' for an added line.
+ */
+public class Hunk {
+    private final int oldStart;
+    private final int oldCount;
+    private final int newStart;
+    private final int newCount;
+    private final List<String> lines;
+
+    /**
+     * Creates a new hunk.
+     *
+     * @param oldStart First old line covered (1-based)
+     * @param oldCount Number of old lines covered
+     * @param newStart First new line covered (1-based)
+     * @param newCount Number of new lines covered
+     * @param lines Prefixed hunk lines
+     */
+    public Hunk(int oldStart, int oldCount, int newStart, int newCount, List<String> lines) {
+        this.oldStart = oldStart;
+        this.oldCount = oldCount;
+        this.newStart = newStart;
+        this.newCount = newCount;
+        this.lines = lines;
+    }
+
+    public int getOldStart() { return oldStart; }
+    public int getOldCount() { return oldCount; }
+    public int getNewStart() { return newStart; }
+    public int getNewCount() { return newCount; }
+
+    /**
+     * @return Prefixed hunk lines (unmodifiable)
+     */
+    public List<String> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Formats the standard "@@ -a,b +c,d @@" hunk header.
+     *
+     * @return Hunk header string
+     */
+    public String getHeader() {
+        return "@@ -" + oldStart + "," + oldCount + " +" + newStart + "," + newCount + " @@";
+    }
+
+    /**
+     * Groups edits into hunks, keeping up to contextLines unchanged lines
+     * around each change. Edits closer than twice the context are joined.
+     *
+     * @param edits Edits from a diff algorithm
+     * @param oldLines Lines of the old version
+     * @param newLines Lines of the new version
+     * @param contextLines Number of context lines around each change
+     * @return Hunks in file order (never null)
+     */
+    public static List<Hunk> fromEdits(List<Edit> edits, List<String> oldLines, List<String> newLines, int contextLines) {
+        List<Hunk> hunks = new ArrayList<>();
+        int context = Math.max(0, contextLines);
+        int i = 0;
+
+        while (i < edits.size()) {
+            // Extend the group while the next edit's context would overlap
+            int j = i;
+            while (j + 1 < edits.size() &&
+                    edits.get(j + 1).getBeginA() - edits.get(j).getEndA() <= 2 * context) {
+                j++;
+            }
+
+            Edit first = edits.get(i);
+            Edit last = edits.get(j);
+            int aStart = Math.max(0, first.getBeginA() - context);
+            int bStart = Math.max(0, first.getBeginB() - (first.getBeginA() - aStart));
+            int aEnd = Math.min(oldLines.size(), last.getEndA() + context);
+            int bEnd = Math.min(newLines.size(), last.getEndB() + (aEnd - last.getEndA()));
+
+            List<String> lines = new ArrayList<>();
+            int a = aStart;
+            for (int e = i; e <= j; e++) {
+                Edit edit = edits.get(e);
+                while (a < edit.getBeginA()) {
+                    lines.add(" " + oldLines.get(a++));
+                }
+                for (int k = edit.getBeginA(); k < edit.getEndA(); k++) {
+                    lines.add("-" + oldLines.get(k));
+                }
+                for (int k = edit.getBeginB(); k < edit.getEndB(); k++) {
+                    lines.add("+" + newLines.get(k));
+                }
+                a = edit.getEndA();
+            }
+            while (a < aEnd) {
+                lines.add(" " + oldLines.get(a++));
+            }
+
+            // An empty side points at the line before the hunk, as in unified diffs
+            int oldCount = aEnd - aStart;
+            int newCount = bEnd - bStart;
+            hunks.add(new Hunk(oldCount == 0 ? aStart : aStart + 1, oldCount,
+                    newCount == 0 ? bStart : bStart + 1, newCount, lines));
+            i = j + 1;
+        }
+
+        return hunks;
+    }
+}
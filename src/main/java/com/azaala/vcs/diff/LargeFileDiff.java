@@ -0,0 +1,475 @@
+package com.azaala.vcs.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line diff for files too large to load as strings.
+ *
+ * Both files are memory-mapped and their common prefix and suffix are
+ * skipped by comparing raw bytes, so only the differing middle window is
+ * split into lines. Window lines are interned by their bytes into int ids
+ * without decoding; text is decoded as UTF-8 only for lines that end up in
+ * a hunk. If the window would need more memory than the configured budget,
+ * the changed region is reported by its line range alone.
+ */
+public class LargeFileDiff {
+    /** Default memory budget for the changed window: 64 MB. */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+    /** Rough heap cost of one window line: offset, id, interner slot and diff state. */
+    private static final int BYTES_PER_LINE = 48;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** Longer lines are cut when shown, so one huge line cannot exhaust the heap. */
+    private static final int MAX_DISPLAY_LINE_BYTES = 16 * 1024;
+
+    private final DiffAlgorithm algorithm;
+    private final long timeoutMillis;
+    private final long memoryBudget;
+
+    /**
+     * Creates a large file diff.
+     *
+     * @param algorithm Line diff algorithm for the changed window
+     * @param timeoutMillis Time limit for the line diff (0 or less for none)
+     * @param memoryBudget Most heap bytes to spend on the changed window
+     */
+    public LargeFileDiff(DiffAlgorithm algorithm, long timeoutMillis, long memoryBudget) {
+        this.algorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
+        this.timeoutMillis = timeoutMillis;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Diffs two files line by line.
+     *
+     * @param oldFile Old version
+     * @param newFile New version
+     * @param contextLines Context lines around each change
+     * @return The diff result
+     * @throws IOException If either file cannot be mapped
+     */
+    public Result diff(File oldFile, File newFile, int contextLines) throws IOException {
+        MappedFile a = MappedFile.open(oldFile);
+        MappedFile b = MappedFile.open(newFile);
+        byte[] bufferA = new byte[CHUNK_SIZE];
+        byte[] bufferB = new byte[CHUNK_SIZE];
+
+        boolean oldMissingNewline = a.size() > 0 && a.get(a.size() - 1) != '\n';
+        boolean newMissingNewline = b.size() > 0 && b.get(b.size() - 1) != '\n';
+        long prefix = commonPrefix(a, b, bufferA, bufferB);
+        if (prefix == a.size() && prefix == b.size()) {
+            long lines = countLines(a, 0, a.size(), bufferA);
+            return new Result(Collections.emptyList(), lines, lines, 0, 0, false, false,
+                    oldMissingNewline, newMissingNewline);
+        }
+        long suffix = commonSuffix(a, b, prefix, bufferA, bufferB);
+
+        // Widen the window by the context lines the hunks will show
+        long windowStart = prefix;
+        int contextBefore = 0;
+        while (contextBefore < contextLines && windowStart > 0) {
+            windowStart = lineStart(a, windowStart - 1);
+            contextBefore++;
+        }
+        long windowEndA = a.size() - suffix;
+        long windowEndB = b.size() - suffix;
+        for (int i = 0; i < contextLines && windowEndA < a.size(); i++) {
+            long next = nextLineStart(a, windowEndA);
+            windowEndB += next - windowEndA;
+            windowEndA = next;
+        }
+
+        int baseLine = (int) countLines(a, 0, windowStart, bufferA);
+        long windowLinesA = countLines(a, windowStart, windowEndA, bufferA);
+        long windowLinesB = countLines(b, windowStart, windowEndB, bufferB);
+        long oldLineCount = baseLine + windowLinesA + countLines(a, windowEndA, a.size(), bufferA);
+        long newLineCount = baseLine + windowLinesB + countLines(b, windowEndB, b.size(), bufferB);
+
+        if ((windowLinesA + windowLinesB) * BYTES_PER_LINE > memoryBudget) {
+            // Report the whole window as one change without reading its lines
+            Hunk region = new Hunk(baseLine + 1, (int) windowLinesA, baseLine + 1, (int) windowLinesB,
+                    Collections.emptyList());
+            return new Result(Collections.singletonList(region), oldLineCount, newLineCount,
+                    (int) windowLinesB, (int) windowLinesA, true, false, oldMissingNewline, newMissingNewline);
+        }
+
+        LineInterner interner = new LineInterner(a, b, (int) Math.min(windowLinesA + windowLinesB, 1 << 20));
+        Window oldWindow = scanWindow(a, 0, windowStart, windowEndA, (int) windowLinesA, interner, bufferA);
+        Window newWindow = scanWindow(b, 1, windowStart, windowEndB, (int) windowLinesB, interner, bufferB);
+        if (oldMissingNewline != newMissingNewline) {
+            // The last lines differ in their terminator, so they must not match.
+            // Both windows reach the end of their file, as the last bytes differ.
+            Window unterminated = oldMissingNewline ? oldWindow : newWindow;
+            if (unterminated.ids.length > 0) {
+                unterminated.ids[unterminated.ids.length - 1] = interner.unique();
+            }
+        }
+
+        Deadline deadline = Deadline.after(timeoutMillis);
+        List<Edit> edits = algorithm.diff(oldWindow.ids, newWindow.ids, deadline);
+        int additions = 0;
+        int deletions = 0;
+        for (Edit edit : edits) {
+            additions += edit.getLengthB();
+            deletions += edit.getLengthA();
+        }
+
+        List<Hunk> hunks = new ArrayList<>();
+        for (Hunk hunk : Hunk.fromEdits(edits, oldWindow.asLines(a), newWindow.asLines(b), contextLines)) {
+            hunks.add(new Hunk(hunk.getOldStart() + baseLine, hunk.getOldCount(),
+                    hunk.getNewStart() + baseLine, hunk.getNewCount(), new ArrayList<>(hunk.getLines())));
+        }
+        return new Result(hunks, oldLineCount, newLineCount, additions, deletions, false, deadline.isReached(),
+                oldMissingNewline, newMissingNewline);
+    }
+
+    /**
+     * Length of the common prefix, cut back to the start of a line.
+     */
+    private static long commonPrefix(MappedFile a, MappedFile b, byte[] bufferA, byte[] bufferB) {
+        long limit = Math.min(a.size(), b.size());
+        long position = 0;
+        while (position < limit) {
+            int length = (int) Math.min(CHUNK_SIZE, limit - position);
+            a.read(position, bufferA, 0, length);
+            b.read(position, bufferB, 0, length);
+            int mismatch = Arrays.mismatch(bufferA, 0, length, bufferB, 0, length);
+            if (mismatch >= 0) {
+                position += mismatch;
+                break;
+            }
+            position += length;
+        }
+
+        if (position == a.size() && position == b.size()) {
+            return position;
+        }
+        return lineStart(a, position);
+    }
+
+    /**
+     * Length of the common suffix that does not overlap the prefix and starts
+     * at a line boundary in both files.
+     */
+    private static long commonSuffix(MappedFile a, MappedFile b, long prefix, byte[] bufferA, byte[] bufferB) {
+        long limit = Math.min(a.size(), b.size()) - prefix;
+        long suffix = 0;
+        while (suffix < limit) {
+            int length = (int) Math.min(CHUNK_SIZE, limit - suffix);
+            a.read(a.size() - suffix - length, bufferA, 0, length);
+            b.read(b.size() - suffix - length, bufferB, 0, length);
+            int i = length - 1;
+            while (i >= 0 && bufferA[i] == bufferB[i]) {
+                i--;
+            }
+            if (i >= 0) {
+                suffix += length - 1 - i;
+                break;
+            }
+            suffix += length;
+        }
+
+        while (suffix > 0 && !(isLineStart(a, a.size() - suffix, prefix) && isLineStart(b, b.size() - suffix, prefix))) {
+            suffix--;
+        }
+        return suffix;
+    }
+
+    private static boolean isLineStart(MappedFile file, long position, long prefix) {
+        return position == prefix || file.get(position - 1) == '\n';
+    }
+
+    /**
+     * Start of the line containing position.
+     */
+    private static long lineStart(MappedFile file, long position) {
+        while (position > 0 && file.get(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    /**
+     * Start of the line after the one containing position (or the file size).
+     */
+    private static long nextLineStart(MappedFile file, long position) {
+        while (position < file.size() && file.get(position) != '\n') {
+            position++;
+        }
+        return Math.min(file.size(), position + 1);
+    }
+
+    /**
+     * Counts lines in [start, end) the way BufferedReader.readLine would.
+     */
+    private static long countLines(MappedFile file, long start, long end, byte[] buffer) {
+        long lines = 0;
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(CHUNK_SIZE, end - position);
+            file.read(position, buffer, 0, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    lines++;
+                }
+            }
+            position += length;
+        }
+        if (end > start && file.get(end - 1) != '\n') {
+            lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * Splits [start, end) into lines and interns each line's bytes.
+     */
+    private static Window scanWindow(MappedFile file, int side, long start, long end, int lineCount,
+                                     LineInterner interner, byte[] buffer) {
+        long[] offsets = new long[lineCount + 1];
+        int[] ids = new int[lineCount];
+        int line = 0;
+        long lineBegin = start;
+        int hash = 0;
+        boolean pendingCarriageReturn = false;
+
+        long position = start;
+        while (position < end) {
+            int length = (int) Math.min(CHUNK_SIZE, end - position);
+            file.read(position, buffer, 0, length);
+            for (int i = 0; i < length; i++) {
+                byte value = buffer[i];
+                if (value == '\n') {
+                    long lineEnd = position + i - (pendingCarriageReturn ? 1 : 0);
+                    offsets[line] = lineBegin;
+                    ids[line++] = interner.intern(side, lineBegin, lineEnd, hash);
+                    lineBegin = position + i + 1;
+                    hash = 0;
+                    pendingCarriageReturn = false;
+                    continue;
+                }
+                if (pendingCarriageReturn) {
+                    hash = 31 * hash + '\r';
+                }
+                pendingCarriageReturn = value == '\r';
+                if (!pendingCarriageReturn) {
+                    hash = 31 * hash + value;
+                }
+            }
+            position += length;
+        }
+        if (lineBegin < end) {
+            // A trailing '\r' at end of file is a line terminator for readLine too
+            offsets[line] = lineBegin;
+            ids[line++] = interner.intern(side, lineBegin, end - (pendingCarriageReturn ? 1 : 0), hash);
+        }
+        offsets[line] = end;
+        return new Window(offsets, ids);
+    }
+
+    /**
+     * Decodes one line for display, dropping its terminator.
+     */
+    private static String decode(MappedFile file, long start, long end) {
+        if (end > start && file.get(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && file.get(end - 1) == '\r') {
+            end--;
+        }
+        int length = (int) Math.min(end - start, MAX_DISPLAY_LINE_BYTES);
+        byte[] bytes = new byte[length];
+        file.read(start, bytes, 0, length);
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return length < end - start ? text + " [...]" : text;
+    }
+
+    /**
+     * Line offsets and ids of one side of the changed window.
+     */
+    private static final class Window {
+        private final long[] offsets;
+        private final int[] ids;
+
+        Window(long[] offsets, int[] ids) {
+            this.offsets = offsets;
+            this.ids = ids;
+        }
+
+        /**
+         * View of the window as text lines, decoded on access.
+         */
+        List<String> asLines(MappedFile file) {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    return decode(file, offsets[index], offsets[index + 1]);
+                }
+
+                @Override
+                public int size() {
+                    return ids.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Open-addressing table giving equal byte sequences the same id.
+     * Each id remembers where its first occurrence lives, and candidates
+     * with the same hash are confirmed byte by byte, so ids never collide.
+     */
+    private static final class LineInterner {
+        private final MappedFile[] files;
+        private int[] slots;
+        private int[] hashes;
+        private byte[] sides;
+        private long[] starts;
+        private long[] lengths;
+        private int size;
+
+        LineInterner(MappedFile a, MappedFile b, int expected) {
+            this.files = new MappedFile[]{a, b};
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            this.slots = new int[capacity];
+            this.hashes = new int[Math.max(16, expected)];
+            this.sides = new byte[hashes.length];
+            this.starts = new long[hashes.length];
+            this.lengths = new long[hashes.length];
+        }
+
+        int intern(int side, long start, long end, int hash) {
+            int mask = slots.length - 1;
+            int slot = (hash * 0x9E3779B9) >>> 1 & mask;
+            while (slots[slot] != 0) {
+                int id = slots[slot] - 1;
+                if (hashes[id] == hash && sameBytes(id, side, start, end - start)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            int id = unique();
+            hashes[id] = hash;
+            sides[id] = (byte) side;
+            starts[id] = start;
+            lengths[id] = end - start;
+            slots[slot] = id + 1;
+
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        /**
+         * @return A new id, equal to no interned line
+         */
+        int unique() {
+            if (size == hashes.length) {
+                int capacity = hashes.length * 2;
+                hashes = Arrays.copyOf(hashes, capacity);
+                sides = Arrays.copyOf(sides, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+            }
+            return size++;
+        }
+
+        private boolean sameBytes(int id, int side, long start, long length) {
+            if (lengths[id] != length) {
+                return false;
+            }
+            MappedFile existing = files[sides[id]];
+            MappedFile candidate = files[side];
+            long existingStart = starts[id];
+            for (long i = 0; i < length; i++) {
+                if (existing.get(existingStart + i) != candidate.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = (hashes[id] * 0x9E3779B9) >>> 1 & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = id + 1;
+            }
+        }
+    }
+
+    /**
+     * Outcome of a large file diff.
+     */
+    public static class Result {
+        private final List<Hunk> hunks;
+        private final long oldLineCount;
+        private final long newLineCount;
+        private final int additions;
+        private final int deletions;
+        private final boolean overBudget;
+        private final boolean timedOut;
+        private final boolean oldMissingNewline;
+        private final boolean newMissingNewline;
+
+        Result(List<Hunk> hunks, long oldLineCount, long newLineCount, int additions, int deletions, boolean overBudget,
+               boolean timedOut, boolean oldMissingNewline, boolean newMissingNewline) {
+            this.hunks = hunks;
+            this.oldLineCount = oldLineCount;
+            this.newLineCount = newLineCount;
+            this.additions = additions;
+            this.deletions = deletions;
+            this.overBudget = overBudget;
+            this.timedOut = timedOut;
+            this.oldMissingNewline = oldMissingNewline;
+            this.newMissingNewline = newMissingNewline;
+        }
+
+        /**
+         * @return Hunks with absolute line numbers; when over budget, a single
+         *         hunk without lines spanning the changed region
+         */
+        public List<Hunk> getHunks() { return hunks; }
+        public long getOldLineCount() { return oldLineCount; }
+        public long getNewLineCount() { return newLineCount; }
+        public int getAdditions() { return additions; }
+        public int getDeletions() { return deletions; }
+
+        /**
+         * @return true if the changed region was too large for the memory
+         *         budget and its lines were not compared
+         */
+        public boolean isOverBudget() { return overBudget; }
+
+        /**
+         * @return true if the line diff hit its time limit and parts of the
+         *         window are reported as whole replacements
+         */
+        public boolean isTimedOut() { return timedOut; }
+
+        /**
+         * @return true if the old file's last line has no line terminator
+         */
+        public boolean isOldMissingNewline() { return oldMissingNewline; }
+
+        /**
+         * @return true if the new file's last line has no line terminator
+         */
+        public boolean isNewMissingNewline() { return newMissingNewline; }
+    }
+}
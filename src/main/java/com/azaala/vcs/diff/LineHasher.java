@@ -0,0 +1,61 @@
+package com.azaala.vcs.diff;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts line lists into int arrays so the diff algorithms compare
+ * integers instead of strings. Each distinct line text is given a dense id,
+ * so equal ids always mean equal lines (no hash collisions).
+ */
+public final class LineHasher {
+
+    private LineHasher() {
+    }
+
+    /**
+     * Assigns a shared id to every distinct line of both sequences.
+     *
+     * @param oldLines Lines of the old version
+     * @param newLines Lines of the new version
+     * @return Two arrays: ids for the old lines and ids for the new lines
+     */
+    public static int[][] hashLines(List<String> oldLines, List<String> newLines) {
+        Map<String, Integer> ids = new HashMap<>(Math.max(16, (oldLines.size() + newLines.size()) * 2));
+        int[] a = assignIds(oldLines, ids);
+        int[] b = assignIds(newLines, ids);
+        return new int[][]{a, b};
+    }
+
+    /**
+     * Assigns a shared id to every distinct line of three sequences, as
+     * needed for a three-way merge.
+     *
+     * @param baseLines Lines of the common ancestor
+     * @param oursLines Lines of one side
+     * @param theirsLines Lines of the other side
+     * @return Three arrays of ids, in argument order
+     */
+    public static int[][] hashLines(List<String> baseLines, List<String> oursLines, List<String> theirsLines) {
+        Map<String, Integer> ids = new HashMap<>(
+            Math.max(16, (baseLines.size() + oursLines.size() + theirsLines.size()) * 2));
+        int[] base = assignIds(baseLines, ids);
+        int[] ours = assignIds(oursLines, ids);
+        int[] theirs = assignIds(theirsLines, ids);
+        return new int[][]{base, ours, theirs};
+    }
+
+    private static int[] assignIds(List<String> lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer id = ids.get(lines.get(i));
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines.get(i), id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+}
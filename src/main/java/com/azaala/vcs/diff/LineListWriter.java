@@ -0,0 +1,47 @@
+package com.azaala.vcs.diff;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writer that collects its output as a list of lines, for callers of the
+ * List-based diff API. Lines end at '\n'; a trailing partial line is
+ * added on close.
+ */
+public class LineListWriter extends Writer {
+    private final List<String> lines = new ArrayList<>();
+    private final StringBuilder current = new StringBuilder();
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char c = buffer[i];
+            if (c == '\n') {
+                lines.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        if (current.length() > 0) {
+            lines.add(current.toString());
+            current.setLength(0);
+        }
+    }
+
+    /**
+     * @return Lines written so far, without line terminators
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+}
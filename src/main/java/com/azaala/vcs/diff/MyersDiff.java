@@ -0,0 +1,218 @@
+package com.azaala.vcs.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Linear-space Myers O(ND) difference algorithm over line-hash arrays.
+ *
+ * Common prefixes and suffixes are stripped first, then the middle snake
+ * of the remaining region is found by searching forward and backward at the
+ * same time and the two halves are solved recursively. Running time is
+ * proportional to (N + M) * D, so a small change in a large file is cheap.
+ * An optional time limit turns any region still unsolved at the deadline
+ * into a single coarse replace edit.
+ */
+public class MyersDiff {
+    private final long timeoutMillis;
+
+    /**
+     * Creates a Myers diff without a time limit.
+     */
+    public MyersDiff() {
+        this(0);
+    }
+
+    /**
+     * Creates a Myers diff that falls back to a coarse result after a time limit.
+     *
+     * @param timeoutMillis Time limit in milliseconds (0 or less for none)
+     */
+    public MyersDiff(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Computes the edit script turning sequence a into sequence b.
+     *
+     * @param a Line ids of the old version
+     * @param b Line ids of the new version
+     * @return Ordered, non-overlapping edits (never null)
+     */
+    public List<Edit> diff(int[] a, int[] b) {
+        return diff(a, 0, a.length, b, 0, b.length, Deadline.after(timeoutMillis), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the edit script for a sub-region, sharing an existing deadline.
+     * Used by other algorithms that fall back to Myers for part of their work.
+     * A middle snake search that needs more than maxCost rounds gives up and
+     * reports its region as one replace edit, bounding the work at
+     * (N + M) * maxCost per region.
+     */
+    List<Edit> diff(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd, Deadline deadline, int maxCost) {
+        List<Edit> edits = new ArrayList<>();
+        compare(a, aStart, aEnd, b, bStart, bEnd, deadline, maxCost, edits);
+        return normalize(edits);
+    }
+
+    /**
+     * Recursively diffs the region a[aStart, aEnd) against b[bStart, bEnd).
+     */
+    private void compare(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd,
+                         Deadline deadline, int maxCost, List<Edit> edits) {
+        // Strip common prefix
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            aStart++;
+            bStart++;
+        }
+
+        // Strip common suffix
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+
+        if (aStart == aEnd && bStart == bEnd) {
+            return;
+        }
+
+        if (aStart == aEnd || bStart == bEnd) {
+            edits.add(new Edit(aStart, aEnd, bStart, bEnd));
+            return;
+        }
+
+        int[] split = middleSnake(a, aStart, aEnd, b, bStart, bEnd, deadline, maxCost);
+        if (split == null) {
+            // No common line, or out of time or budget: one replace covers the region
+            edits.add(new Edit(aStart, aEnd, bStart, bEnd));
+            return;
+        }
+
+        compare(a, aStart, split[0], b, bStart, split[1], deadline, maxCost, edits);
+        compare(a, split[0], aEnd, b, split[1], bEnd, deadline, maxCost, edits);
+    }
+
+    /**
+     * Finds the point where the forward and reverse D-paths overlap.
+     *
+     * @return Absolute split point {x, y}, or null if the sequences share nothing
+     *         or the deadline or cost budget ran out
+     */
+    private int[] middleSnake(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd,
+                              Deadline deadline, int maxCost) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+
+        int[] forward = new int[length];
+        int[] reverse = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(reverse, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+
+        int delta = n - m;
+        boolean oddDelta = (delta & 1) != 0;
+
+        // Diagonals that ran off the grid are trimmed from later rounds
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+
+        int rounds = Math.min(maxD, maxCost);
+        for (int d = 0; d < rounds; d++) {
+            if (deadline.isExpired()) {
+                return null;
+            }
+
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aStart + x1] == b[bStart + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+
+                if (x1 > n) {
+                    k1End += 2;
+                } else if (y1 > m) {
+                    k1Start += 2;
+                } else if (oddDelta) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && reverse[k2Offset] != -1) {
+                        int x2 = n - reverse[k2Offset];
+                        if (x1 >= x2) {
+                            return new int[]{aStart + x1, bStart + y1};
+                        }
+                    }
+                }
+            }
+
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && reverse[k2Offset - 1] < reverse[k2Offset + 1])) {
+                    x2 = reverse[k2Offset + 1];
+                } else {
+                    x2 = reverse[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aEnd - x2 - 1] == b[bEnd - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                reverse[k2Offset] = x2;
+
+                if (x2 > n) {
+                    k2End += 2;
+                } else if (y2 > m) {
+                    k2Start += 2;
+                } else if (!oddDelta) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return new int[]{aStart + x1, bStart + y1};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Merges touching edits produced by neighbouring recursive calls.
+     */
+    static List<Edit> normalize(List<Edit> edits) {
+        if (edits.size() < 2) {
+            return edits;
+        }
+        List<Edit> merged = new ArrayList<>(edits.size());
+        Edit current = edits.get(0);
+        for (int i = 1; i < edits.size(); i++) {
+            Edit next = edits.get(i);
+            if (current.isAdjacentTo(next)) {
+                current = current.mergeWith(next);
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
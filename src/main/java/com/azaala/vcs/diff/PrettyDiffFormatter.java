@@ -0,0 +1,314 @@
+package com.azaala.vcs.diff;
+
+import com.azaala.vcs.Commit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The detailed, human-readable comparison format: banners, a summary box,
+ * one section per change category with line-numbered hunks, and a total.
+ */
+public class PrettyDiffFormatter implements DiffFormatter {
+    /** Default number of hunk lines per file shown inline. */
+    public static final int DEFAULT_INLINE_LINE_LIMIT = 2000;
+
+    private static final int PREVIEW_LINES = 3;
+    private static final int MAX_BYTE_RANGES_SHOWN = 20;
+    private static final String RULE = "───────────────────────────────────────────────────────────────────────────";
+
+    private static final int SECTION_NONE = 0;
+    private static final int SECTION_ADDED = 1;
+    private static final int SECTION_REMOVED = 2;
+    private static final int SECTION_MODIFIED = 3;
+    private static final int SECTION_RENAMED = 4;
+    private static final int SECTION_UNCHANGED = 5;
+
+    private final Writer out;
+    private int inlineLineLimit = DEFAULT_INLINE_LINE_LIMIT;
+    private DiffSummary summary;
+    private int section = SECTION_NONE;
+
+    /**
+     * Creates a formatter writing to the given sink.
+     *
+     * @param out Output sink (not closed by the formatter)
+     */
+    public PrettyDiffFormatter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Sets how many hunk lines a file's diff may have before it is shown
+     * summarized (hunk headers only) instead of inline.
+     *
+     * @param inlineLineLimit Maximum number of inline hunk lines per file
+     */
+    public void setInlineLineLimit(int inlineLineLimit) {
+        this.inlineLineLimit = inlineLineLimit;
+    }
+
+    public int getInlineLineLimit() {
+        return inlineLineLimit;
+    }
+
+    @Override
+    public void begin(Commit oldCommit, Commit newCommit, DiffAlgorithm algorithm, DiffSummary summary) throws IOException {
+        this.summary = summary;
+        this.section = SECTION_NONE;
+
+        // Header
+        line("╔════════════════════════════════════════════════════════════════════════╗");
+        line("║                    DETAILED COMMIT COMPARISON                          ║");
+        line("╚════════════════════════════════════════════════════════════════════════╝");
+        line("");
+
+        // Commit info
+        line("FROM COMMIT: " + shortId(oldCommit));
+        line("  Message: " + oldCommit.getMessage());
+        line("  Date: " + oldCommit.getTimestamp());
+        line("");
+        line("TO COMMIT: " + shortId(newCommit));
+        line("  Message: " + newCommit.getMessage());
+        line("  Date: " + newCommit.getTimestamp());
+        line("");
+        line("ALGORITHM: " + algorithm.getDisplayName());
+        line("");
+
+        // Summary statistics
+        line("┌────────────────────────────────────────────────────────────────────────┐");
+        line("│ SUMMARY                                                                │");
+        line("├────────────────────────────────────────────────────────────────────────┤");
+        line(String.format("│ Files Added:     %3d                                                 │", summary.getAdded()));
+        line(String.format("│ Files Removed:   %3d                                                 │", summary.getRemoved()));
+        line(String.format("│ Files Modified:  %3d                                                 │", summary.getModified()));
+        line(String.format("│ Files Renamed:   %3d                                                 │", summary.getRenamed()));
+        line(String.format("│ Files Copied:    %3d                                                 │", summary.getCopied()));
+        line(String.format("│ Files Unchanged: %3d                                                 │", summary.getUnchanged()));
+        line("└────────────────────────────────────────────────────────────────────────┘");
+        line("");
+    }
+
+    @Override
+    public void addedFile(String path, File snapshot, boolean binary) throws IOException {
+        enterSection(SECTION_ADDED, "✨ NEW FILES (" + summary.getAdded() + ")");
+        line("  ➕ " + path);
+        writePreview(snapshot, binary, "     >>> ");
+    }
+
+    @Override
+    public void removedFile(String path, File snapshot, boolean binary) throws IOException {
+        enterSection(SECTION_REMOVED, "❌ DELETED FILES (" + summary.getRemoved() + ")");
+        line("  ➖ " + path);
+        writePreview(snapshot, binary, "     <<< ");
+    }
+
+    @Override
+    public void modifiedFile(FileDiff diff) throws IOException {
+        enterSection(SECTION_MODIFIED, "🔄 MODIFIED FILES (" + summary.getModified() + ")");
+        writeFileDiff(diff);
+    }
+
+    @Override
+    public void renamedFile(RenameDetector.Match match, FileDiff diff) throws IOException {
+        enterSection(SECTION_RENAMED, "🔀 RENAMED / COPIED FILES (" + (summary.getRenamed() + summary.getCopied()) + ")");
+        line(String.format("  %s %s → %s (%s, %d%% similar)",
+            match.isCopy() ? "📋" : "🔀", match.getOldPath(), match.getNewPath(),
+            match.isCopy() ? "copied" : "renamed", match.getSimilarity()));
+        if (diff != null) {
+            writeFileDiff(diff);
+        }
+    }
+
+    @Override
+    public void unchangedFile(String path) throws IOException {
+        enterSection(SECTION_UNCHANGED, "✅ UNCHANGED FILES (" + summary.getUnchanged() + ")");
+        line("  ➜ " + path);
+    }
+
+    @Override
+    public void end() throws IOException {
+        enterSection(SECTION_NONE, null);
+
+        // Final summary
+        line("╔════════════════════════════════════════════════════════════════════════╗");
+        line(String.format("║ Total: %d file(s) added, %d removed, %d modified, %d renamed/copied, %d unchanged ║",
+            summary.getAdded(), summary.getRemoved(), summary.getModified(),
+            summary.getRenamed() + summary.getCopied(), summary.getUnchanged()));
+        line("╚════════════════════════════════════════════════════════════════════════╝");
+        out.flush();
+    }
+
+    /**
+     * Closes the current section with a blank line and opens the next one.
+     */
+    private void enterSection(int next, String title) throws IOException {
+        if (section == next) {
+            return;
+        }
+        if (section != SECTION_NONE) {
+            line("");
+        }
+        section = next;
+        if (title != null) {
+            line(RULE);
+            line(title);
+            line(RULE);
+        }
+    }
+
+    /**
+     * Renders one file: its hunks inline, or only the hunk headers when the
+     * diff is longer than the inline limit.
+     */
+    private void writeFileDiff(FileDiff fileDiff) throws IOException {
+        line("");
+        line("  📝 " + (fileDiff.isRenamed() ? fileDiff.getOldPath() + " → " : "") + fileDiff.getPath());
+        line("  " + "─".repeat(70));
+
+        if (fileDiff.getError() != null) {
+            line("  (" + fileDiff.getError() + ")");
+            return;
+        }
+        if (fileDiff.isBinary()) {
+            writeBinaryDiff(fileDiff);
+            return;
+        }
+        if (fileDiff.isTimedOut()) {
+            line("  (Diff time limit reached - showing coarse diff)");
+        }
+
+        List<Hunk> hunks = fileDiff.getHunks();
+        if (hunks.isEmpty()) {
+            line("  (No differences found)");
+        } else if (fileDiff.isOverBudget()) {
+            Hunk region = hunks.get(0);
+            line("  " + region.getHeader());
+            line(String.format("  (Changed region of %d old / %d new lines exceeds the diff memory budget - lines not shown)",
+                region.getOldCount(), region.getNewCount()));
+        } else if (fileDiff.getHunkLineCount() > inlineLineLimit) {
+            for (Hunk hunk : hunks) {
+                line("  " + hunk.getHeader());
+            }
+            line(String.format("  (Diff of %d lines exceeds the inline limit of %d - showing hunk headers only)",
+                fileDiff.getHunkLineCount(), inlineLineLimit));
+        } else {
+            for (Hunk hunk : hunks) {
+                writeHunk(hunk);
+            }
+        }
+
+        line("");
+        line(String.format("  Changes: +%d -%d | Old: %d lines, New: %d lines",
+            fileDiff.getAdditions(), fileDiff.getDeletions(), fileDiff.getOldLineCount(), fileDiff.getNewLineCount()));
+    }
+
+    /**
+     * Renders a binary file's changed byte ranges and size delta.
+     */
+    private void writeBinaryDiff(FileDiff fileDiff) throws IOException {
+        List<BinaryDiff.Range> ranges = fileDiff.getByteRanges();
+        if (ranges.isEmpty()) {
+            line("  (Binary files are identical)");
+        } else {
+            int shown = Math.min(ranges.size(), MAX_BYTE_RANGES_SHOWN);
+            for (int i = 0; i < shown; i++) {
+                BinaryDiff.Range range = ranges.get(i);
+                line(String.format("  %s  -%d +%d bytes", range, range.getOldLength(), range.getNewLength()));
+            }
+            if (ranges.size() > shown) {
+                line("  ... and " + (ranges.size() - shown) + " more changed ranges");
+            }
+        }
+
+        long delta = fileDiff.getNewSize() - fileDiff.getOldSize();
+        line("");
+        line(String.format("  Binary file: %d ranges changed | Old: %d bytes, New: %d bytes (%s%d)",
+            ranges.size(), fileDiff.getOldSize(), fileDiff.getNewSize(), delta >= 0 ? "+" : "", delta));
+    }
+
+    /**
+     * Renders one hunk: its header, then each line with its line number.
+     */
+    private void writeHunk(Hunk hunk) throws IOException {
+        line("  " + hunk.getHeader());
+        int oldLineNo = hunk.getOldCount() == 0 ? hunk.getOldStart() + 1 : hunk.getOldStart();
+        int newLineNo = hunk.getNewCount() == 0 ? hunk.getNewStart() + 1 : hunk.getNewStart();
+
+        for (String hunkLine : hunk.getLines()) {
+            char marker = hunkLine.charAt(0);
+            String text = hunkLine.substring(1);
+            if (marker == '-') {
+                line(String.format("  ➖ [%3d] %s", oldLineNo++, text));
+            } else if (marker == '+') {
+                line(String.format("  ➕ [%3d] %s", newLineNo++, text));
+            } else {
+                line(String.format("     [%3d] %s", newLineNo, text));
+                oldLineNo++;
+                newLineNo++;
+            }
+        }
+    }
+
+    /**
+     * Shows the line count and first few lines of an added or removed file,
+     * reading only as much of the file as needed. Binary files show their
+     * size only.
+     */
+    private void writePreview(File file, boolean binary, String prefix) throws IOException {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        if (binary) {
+            line("     Binary file, " + file.length() + " bytes");
+            return;
+        }
+
+        List<String> preview = new ArrayList<>();
+        long lineCount = 0;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                if (lineCount < PREVIEW_LINES) {
+                    preview.add(text);
+                }
+                lineCount++;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + file.getPath());
+            return;
+        }
+
+        if (lineCount > 0) {
+            line("     Lines: " + lineCount);
+            for (String text : preview) {
+                line(prefix + text);
+            }
+            if (lineCount > PREVIEW_LINES) {
+                line("     ... and " + (lineCount - PREVIEW_LINES) + " more lines");
+            }
+        }
+    }
+
+    /**
+     * Shortens a commit ID for display. The index and working tree sides
+     * have short symbolic IDs that are shown as they are.
+     */
+    private String shortId(Commit commit) {
+        String id = commit.getCommitId();
+        return id.length() > 8 ? id.substring(0, 8) : id;
+    }
+
+    private void line(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+    }
+}
@@ -0,0 +1,184 @@
+package com.azaala.vcs.diff;
+
+import com.azaala.vcs.Commit;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Standard unified diff output with git-style extended headers, readable
+ * by patch tools. Paths are written relative to the repository root with
+ * "a/" and "b/" prefixes. Added and removed files are streamed from their
+ * snapshots line by line. A last line without a terminator is followed by
+ * "\ No newline at end of file", as in git, so applying the patch keeps
+ * the file's ending.
+ */
+public class UnifiedDiffFormatter implements DiffFormatter {
+    private static final String DEV_NULL = "/dev/null";
+    private static final String NO_NEWLINE = "\\ No newline at end of file";
+
+    private final Writer out;
+    private final String rootPrefix;
+
+    /**
+     * Creates a formatter writing to the given sink.
+     *
+     * @param out Output sink (not closed by the formatter)
+     * @param rootPath Repository root that paths are made relative to, or null to keep them as recorded
+     */
+    public UnifiedDiffFormatter(Writer out, String rootPath) {
+        this.out = out;
+        this.rootPrefix = rootPath != null ? new File(rootPath).getAbsolutePath() + File.separator : null;
+    }
+
+    @Override
+    public void begin(Commit oldCommit, Commit newCommit, DiffAlgorithm algorithm, DiffSummary summary) {
+        // Unified diffs have no preamble
+    }
+
+    @Override
+    public void addedFile(String path, File snapshot, boolean binary) throws IOException {
+        String name = relative(path);
+        line("diff --git a/" + name + " b/" + name);
+        line("new file mode 100644");
+        writeWholeFile(snapshot, binary, DEV_NULL, "b/" + name, '+');
+    }
+
+    @Override
+    public void removedFile(String path, File snapshot, boolean binary) throws IOException {
+        String name = relative(path);
+        line("diff --git a/" + name + " b/" + name);
+        line("deleted file mode 100644");
+        writeWholeFile(snapshot, binary, "a/" + name, DEV_NULL, '-');
+    }
+
+    @Override
+    public void modifiedFile(FileDiff diff) throws IOException {
+        String name = relative(diff.getPath());
+        line("diff --git a/" + name + " b/" + name);
+        writeHunks(diff, "a/" + name, "b/" + name);
+    }
+
+    @Override
+    public void renamedFile(RenameDetector.Match match, FileDiff diff) throws IOException {
+        String oldName = relative(match.getOldPath());
+        String newName = relative(match.getNewPath());
+        String kind = match.isCopy() ? "copy" : "rename";
+        line("diff --git a/" + oldName + " b/" + newName);
+        line("similarity index " + match.getSimilarity() + "%");
+        line(kind + " from " + oldName);
+        line(kind + " to " + newName);
+        if (diff != null) {
+            writeHunks(diff, "a/" + oldName, "b/" + newName);
+        }
+    }
+
+    @Override
+    public void unchangedFile(String path) {
+        // Unchanged files are not part of a unified diff
+    }
+
+    @Override
+    public void end() throws IOException {
+        out.flush();
+    }
+
+    private void writeHunks(FileDiff diff, String oldName, String newName) throws IOException {
+        if (diff.getError() != null) {
+            line("# " + diff.getError());
+            return;
+        }
+        if (diff.isBinary()) {
+            if (!diff.getByteRanges().isEmpty()) {
+                line("Binary files " + oldName + " and " + newName + " differ");
+            }
+            return;
+        }
+        if (diff.getHunks().isEmpty()) {
+            return;
+        }
+
+        line("--- " + oldName);
+        line("+++ " + newName);
+        if (diff.isOverBudget()) {
+            Hunk region = diff.getHunks().get(0);
+            line("# " + region.getHeader() + " changed region exceeds the diff memory budget - lines not shown");
+            return;
+        }
+        for (Hunk hunk : diff.getHunks()) {
+            line(hunk.getHeader());
+            // Line numbers of the last old and new lines written
+            long oldLine = hunk.getOldCount() == 0 ? hunk.getOldStart() : hunk.getOldStart() - 1;
+            long newLine = hunk.getNewCount() == 0 ? hunk.getNewStart() : hunk.getNewStart() - 1;
+            for (String hunkLine : hunk.getLines()) {
+                line(hunkLine);
+                char marker = hunkLine.charAt(0);
+                boolean lastOld = marker != '+' && ++oldLine == diff.getOldLineCount() && diff.isOldMissingNewline();
+                boolean lastNew = marker != '-' && ++newLine == diff.getNewLineCount() && diff.isNewMissingNewline();
+                if (lastOld || lastNew) {
+                    line(NO_NEWLINE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a file as one hunk of added or removed lines. The file is read
+     * twice, once to count lines for the hunk header, so no line is kept.
+     */
+    private void writeWholeFile(File snapshot, boolean binary, String oldName, String newName, char marker)
+            throws IOException {
+        if (snapshot == null || !snapshot.exists()) {
+            line("# File snapshot missing");
+            return;
+        }
+        if (binary) {
+            line("Binary files " + oldName + " and " + newName + " differ");
+            return;
+        }
+
+        long count = 0;
+        try (BufferedReader reader = newReader(snapshot)) {
+            while (reader.readLine() != null) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        line("--- " + oldName);
+        line("+++ " + newName);
+        line(marker == '+' ? "@@ -0,0 +1," + count + " @@" : "@@ -1," + count + " +0,0 @@");
+        try (BufferedReader reader = newReader(snapshot)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                out.write(marker);
+                line(text);
+            }
+        }
+        if (FileDiff.endsWithoutNewline(snapshot)) {
+            line(NO_NEWLINE);
+        }
+    }
+
+    private String relative(String path) {
+        String name = rootPrefix != null && path.startsWith(rootPrefix) ? path.substring(rootPrefix.length()) : path;
+        name = name.replace(File.separatorChar, '/');
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+
+    private BufferedReader newReader(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private void line(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+    }
+}
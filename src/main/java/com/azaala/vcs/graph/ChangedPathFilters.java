@@ -0,0 +1,279 @@
+package com.azaala.vcs.graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One Bloom filter per commit over the paths it changed, kept next to the
+ * commit graph in the same record order. A filter answers "did this
+ * commit change this path?" with "no" (certain) or "maybe", so a
+ * path-limited history walk only looks at the few commits that may match.
+ *
+ * Every changed path is added together with its parent directories, so
+ * directories can be queried too. Paths are repository-relative with '/'
+ * separators. A commit changing more than MAX_PATHS paths gets a filter
+ * of all ones, which always answers "maybe".
+ *
+ * File layout:
+ * <pre>
+ *   header:  magic "CGPF", version, commit count
+ *   index:   end offset of each commit's filter in the data, in record order
+ *   data:    filter bytes
+ * </pre>
+ */
+final class ChangedPathFilters {
+    private static final int MAGIC = 0x43475046; // "CGPF"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int HASH_COUNT = 7;
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int MAX_PATHS = 512;
+    private static final int SEED1 = 0x293ae76f;
+    private static final int SEED2 = 0x7e646e2c;
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int dataStart;
+
+    private ChangedPathFilters(ByteBuffer data, int count) {
+        this.data = data;
+        this.count = count;
+        this.dataStart = HEADER_SIZE + 4 * count;
+    }
+
+    /**
+     * Opens a filters file written for a graph of the given size.
+     *
+     * @return The filters, or null if the file is missing, invalid or
+     *         written for a different graph
+     */
+    static ChangedPathFilters open(File file, int expectedCount) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION
+                    || data.getInt(8) != expectedCount) {
+                return null;
+            }
+            int count = data.getInt(8);
+            long end = count > 0 ? data.getInt(HEADER_SIZE + 4 * (count - 1)) : 0;
+            if (HEADER_SIZE + 4L * count + end != data.capacity()) {
+                System.err.println("Ignoring truncated path filters: " + file.getPath());
+                return null;
+            }
+            return new ChangedPathFilters(data, count);
+        } catch (IOException e) {
+            System.err.println("Error opening path filters: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes one filter per commit, replacing the file atomically.
+     *
+     * @param file Filters file
+     * @param changedPaths Changed paths of each commit, in graph record order
+     * @return true if successful, false otherwise
+     */
+    static boolean write(File file, List<Collection<String>> changedPaths) {
+        byte[][] filters = new byte[changedPaths.size()][];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = buildFilter(changedPaths.get(i));
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(filters.length);
+            int end = 0;
+            for (byte[] filter : filters) {
+                end += filter.length;
+                out.writeInt(end);
+            }
+            for (byte[] filter : filters) {
+                out.write(filter);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error writing path filters: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error writing path filters: " + e.getMessage());
+            return false;
+        }
+    }
+
+    int getCommitCount() {
+        return count;
+    }
+
+    /**
+     * Checks a commit's filter.
+     *
+     * @param index Commit record index
+     * @param key Hashed path
+     * @return false if the commit certainly did not change the path
+     */
+    boolean mightContain(int index, PathKey key) {
+        int start = index == 0 ? 0 : data.getInt(HEADER_SIZE + 4 * (index - 1));
+        int end = data.getInt(HEADER_SIZE + 4 * index);
+        int bits = (end - start) * 8;
+        if (bits == 0) {
+            return false;
+        }
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = Math.floorMod(key.hash1 + i * key.hash2, bits);
+            if ((data.get(dataStart + start + (bit >>> 3)) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks a filter kept outside the file, such as one appended with a
+     * commit to the graph's tail.
+     *
+     * @param filter Filter built by {@link #buildFilter(Collection)}
+     * @param key Hashed path
+     * @return false if the commit certainly did not change the path
+     */
+    static boolean mightContain(byte[] filter, PathKey key) {
+        int bits = filter.length * 8;
+        if (bits == 0) {
+            return false;
+        }
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = Math.floorMod(key.hash1 + i * key.hash2, bits);
+            if ((filter[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the filter of one commit's changed paths.
+     *
+     * @param paths Changed paths, repository-relative with '/' separators
+     * @return Filter bytes
+     */
+    static byte[] buildFilter(Collection<String> paths) {
+        Set<String> entries = new LinkedHashSet<>();
+        for (String path : paths) {
+            String entry = path;
+            while (!entry.isEmpty() && entries.add(entry)) {
+                int slash = entry.lastIndexOf('/');
+                entry = slash > 0 ? entry.substring(0, slash) : "";
+            }
+        }
+        if (entries.size() > MAX_PATHS) {
+            return new byte[]{(byte) 0xff};
+        }
+        if (entries.isEmpty()) {
+            return new byte[0];
+        }
+
+        byte[] filter = new byte[(entries.size() * BITS_PER_ENTRY + 7) / 8];
+        int bits = filter.length * 8;
+        for (String entry : entries) {
+            PathKey key = new PathKey(entry);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                int bit = Math.floorMod(key.hash1 + i * key.hash2, bits);
+                filter[bit >>> 3] |= (byte) (1 << (bit & 7));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * A path's two hashes, computed once per query and combined into the
+     * filter positions by double hashing.
+     */
+    static final class PathKey {
+        private final int hash1;
+        private final int hash2;
+
+        PathKey(String path) {
+            byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+            this.hash1 = murmur3(bytes, SEED1);
+            this.hash2 = murmur3(bytes, SEED2);
+        }
+    }
+
+    /**
+     * 32-bit MurmurHash3.
+     */
+    private static int murmur3(byte[] bytes, int seed) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int hash = seed;
+        int blocks = bytes.length / 4;
+
+        for (int i = 0; i < blocks; i++) {
+            int k = (bytes[4 * i] & 0xff) | (bytes[4 * i + 1] & 0xff) << 8
+                  | (bytes[4 * i + 2] & 0xff) << 16 | (bytes[4 * i + 3] & 0xff) << 24;
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            hash ^= k;
+            hash = Integer.rotateLeft(hash, 13);
+            hash = hash * 5 + 0xe6546b64;
+        }
+
+        int k = 0;
+        int tail = blocks * 4;
+        switch (bytes.length & 3) {
+            case 3:
+                k ^= (bytes[tail + 2] & 0xff) << 16;
+                // fall through
+            case 2:
+                k ^= (bytes[tail + 1] & 0xff) << 8;
+                // fall through
+            case 1:
+                k ^= bytes[tail] & 0xff;
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                hash ^= k;
+            default:
+                break;
+        }
+
+        hash ^= bytes.length;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
@@ -0,0 +1,1016 @@
+package com.azaala.vcs.graph;
+
+import com.azaala.vcs.Commit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Commit ancestry in a compact binary file, so history questions (is A
+ * an ancestor of B, where did two branches fork, in what order were
+ * commits made) are answered without reading any commit metadata.
+ *
+ * The file holds a header and one fixed-width record per commit, sorted
+ * by commit ID so a commit is found by binary search:
+ * <pre>
+ *   header:  magic "CGPH", version, commit count, ID width, extra edge count
+ *   record:  ID (ID width bytes, zero padded)
+ *            first parent, second parent   (record indexes)
+ *            generation                    (1 for a root, else 1 + max of parents)
+ *            timestamp                     (epoch seconds)
+ *   extra edges: parents of commits with more than two, as record indexes
+ * </pre>
+ * A commit with more than two parents has EXTRA_EDGES set in its second
+ * parent field, whose low bits give the position of its parent list in
+ * the extra edges; the last entry of that list has LAST_EDGE set.
+ *
+ * Generation numbers let walks stop early: a commit can only be an
+ * ancestor of commits with a higher generation.
+ *
+ * New commits are appended to a tail file next to the graph instead of
+ * rewriting it, so a commit costs the same however long the history is.
+ * Their record indexes follow the sorted records', in the order appended:
+ * <pre>
+ *   header:  magic "CGPT", version, commit count of the sorted graph
+ *   record:  ID (UTF), parent count, parents (record indexes), generation,
+ *            timestamp, changed-path filter length (-1 for none), filter
+ * </pre>
+ * The tail is read into memory when the graph is opened and discarded
+ * when the graph is rewritten; {@link #getAppendedCount()} tells callers
+ * when a rewrite is due.
+ */
+public class CommitGraph {
+    private static final int MAGIC = 0x43475048; // "CGPH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int NO_PARENT = 0x70000000;
+    private static final int EXTRA_EDGES = 0x80000000;
+    private static final int LAST_EDGE = 0x80000000;
+    private static final int TAIL_MAGIC = 0x43475054; // "CGPT"
+    private static final int TAIL_VERSION = 1;
+
+    private static final int PARENT1 = 1;
+    private static final int PARENT2 = 2;
+    private static final int STALE = 4;
+    private static final int RESULT = 8;
+
+    private final ByteBuffer data;
+    private final int sortedCount;
+    private final int count;
+    private final int idWidth;
+    private final int recordSize;
+    private final int extraEdgesStart;
+    private final Tail tail;
+    private ChangedPathFilters pathFilters;
+
+    private CommitGraph(ByteBuffer data, int sortedCount, int idWidth, Tail tail) {
+        this.data = data;
+        this.sortedCount = sortedCount;
+        this.count = sortedCount + tail.ids.size();
+        this.idWidth = idWidth;
+        this.recordSize = idWidth + 20;
+        this.extraEdgesStart = HEADER_SIZE + sortedCount * recordSize;
+        this.tail = tail;
+    }
+
+    /**
+     * Commits appended after the sorted records, as read from the tail file.
+     */
+    private static final class Tail {
+        private final List<String> ids = new ArrayList<>();
+        private final List<int[]> parents = new ArrayList<>();
+        private final List<Integer> generations = new ArrayList<>();
+        private final List<Long> timestamps = new ArrayList<>();
+        private final List<byte[]> filters = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private boolean allFiltered = true;
+        private long length;
+
+        private void add(String id, int[] commitParents, int generation, long timestamp, byte[] filter, int index) {
+            ids.add(id);
+            parents.add(commitParents);
+            generations.add(generation);
+            timestamps.add(timestamp);
+            filters.add(filter);
+            indexes.put(id, index);
+            allFiltered &= filter != null;
+        }
+    }
+
+    /**
+     * Opens a commit-graph file, with its changed-path filters when they
+     * were written. The files are mapped, not parsed.
+     *
+     * @param file Commit-graph file
+     * @return The graph, or null if the file is missing or invalid
+     */
+    public static CommitGraph open(File file) {
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                System.err.println("Ignoring invalid commit graph: " + file.getPath());
+                return null;
+            }
+            int count = data.getInt(8);
+            int idWidth = data.getInt(12);
+            int extraEdges = data.getInt(16);
+            long expected = HEADER_SIZE + (long) count * (idWidth + 20) + 4L * extraEdges;
+            if (count < 0 || idWidth <= 0 || extraEdges < 0 || expected != data.capacity()) {
+                System.err.println("Ignoring truncated commit graph: " + file.getPath());
+                return null;
+            }
+            CommitGraph graph = new CommitGraph(data, count, idWidth, readTail(tailFile(file), count));
+            graph.pathFilters = ChangedPathFilters.open(pathFiltersFile(file), count);
+            return graph;
+        } catch (IOException e) {
+            System.err.println("Error opening commit graph: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the graph of the given commits, replacing the file atomically.
+     * Parents that are not among the commits are left out.
+     *
+     * @param file Commit-graph file
+     * @param commits All commits
+     * @return true if successful, false otherwise
+     */
+    public static boolean write(File file, Collection<Commit> commits) {
+        return write(file, commits, null);
+    }
+
+    /**
+     * Writes the graph of the given commits and, next to it, a Bloom filter
+     * of each commit's changed paths.
+     *
+     * @param file Commit-graph file
+     * @param commits All commits
+     * @param pathKey Turns a changed file into a repository-relative path
+     *                with '/' separators (null to write no filters)
+     * @return true if successful, false otherwise
+     */
+    public static boolean write(File file, Collection<Commit> commits, Function<String, String> pathKey) {
+        List<Commit> sorted = new ArrayList<>(commits);
+        sorted.sort((a, b) -> a.getCommitId().compareTo(b.getCommitId()));
+
+        if (pathKey != null) {
+            List<Collection<String>> changedPaths = new ArrayList<>(sorted.size());
+            for (Commit commit : sorted) {
+                changedPaths.add(changedPaths(commit, pathKey));
+            }
+            if (!ChangedPathFilters.write(pathFiltersFile(file), changedPaths)) {
+                return false;
+            }
+        }
+
+        Map<String, Integer> indexes = new HashMap<>(sorted.size() * 2);
+        int idWidth = 1;
+        for (int i = 0; i < sorted.size(); i++) {
+            String id = sorted.get(i).getCommitId();
+            indexes.put(id, i);
+            idWidth = Math.max(idWidth, id.getBytes(StandardCharsets.UTF_8).length);
+        }
+
+        int[][] parents = new int[sorted.size()][];
+        for (int i = 0; i < sorted.size(); i++) {
+            List<Integer> known = new ArrayList<>();
+            for (String parentId : sorted.get(i).getParentIds()) {
+                Integer parent = indexes.get(parentId);
+                if (parent != null && parent != i) {
+                    known.add(parent);
+                }
+            }
+            parents[i] = known.stream().mapToInt(Integer::intValue).toArray();
+        }
+        int[] generations = computeGenerations(parents);
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            List<Integer> extraEdges = new ArrayList<>();
+            for (int[] commitParents : parents) {
+                if (commitParents.length > 2) {
+                    for (int p = 1; p < commitParents.length; p++) {
+                        extraEdges.add(commitParents[p] | (p == commitParents.length - 1 ? LAST_EDGE : 0));
+                    }
+                }
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sorted.size());
+            out.writeInt(idWidth);
+            out.writeInt(extraEdges.size());
+
+            int extraPosition = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                byte[] id = Arrays.copyOf(sorted.get(i).getCommitId().getBytes(StandardCharsets.UTF_8), idWidth);
+                out.write(id);
+                int[] commitParents = parents[i];
+                out.writeInt(commitParents.length > 0 ? commitParents[0] : NO_PARENT);
+                if (commitParents.length > 2) {
+                    out.writeInt(EXTRA_EDGES | extraPosition);
+                    extraPosition += commitParents.length - 1;
+                } else {
+                    out.writeInt(commitParents.length == 2 ? commitParents[1] : NO_PARENT);
+                }
+                out.writeInt(generations[i]);
+                out.writeLong(sorted.get(i).getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            }
+            for (int edge : extraEdges) {
+                out.writeInt(edge);
+            }
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error writing commit graph: " + e.getMessage());
+            return false;
+        }
+
+        try {
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            // The rewritten graph has every commit the tail had
+            Files.deleteIfExists(tailFile(file).toPath());
+            return true;
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error writing commit graph: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the tail of appended commits. A record cut short by an
+     * interrupted append is ignored, and is overwritten by the next one.
+     *
+     * @param file Tail file
+     * @param sortedCount Commit count of the sorted graph the tail extends
+     * @return The appended commits (empty if the file is missing, invalid
+     *         or written for a different graph)
+     */
+    private static Tail readTail(File file, int sortedCount) {
+        Tail tail = new Tail();
+        if (!file.isFile()) {
+            return tail;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != TAIL_MAGIC || in.readInt() != TAIL_VERSION || in.readInt() != sortedCount) {
+                System.err.println("Ignoring stale commit graph tail: " + file.getPath());
+                return tail;
+            }
+            tail.length = 12;
+            long fileLength = file.length();
+            while (tail.length < fileLength) {
+                String id;
+                int[] parents;
+                int generation;
+                long timestamp;
+                byte[] filter = null;
+                long recordLength;
+                try {
+                    id = in.readUTF();
+                    parents = new int[in.readInt()];
+                    for (int i = 0; i < parents.length; i++) {
+                        parents[i] = in.readInt();
+                    }
+                    generation = in.readInt();
+                    timestamp = in.readLong();
+                    int filterLength = in.readInt();
+                    if (filterLength >= 0) {
+                        filter = new byte[filterLength];
+                        in.readFully(filter);
+                    }
+                    recordLength = 2 + id.getBytes(StandardCharsets.UTF_8).length + 4 + 4L * parents.length
+                                   + 4 + 8 + 4 + (filter != null ? filter.length : 0);
+                } catch (EOFException e) {
+                    break;
+                }
+                int index = sortedCount + tail.ids.size();
+                for (int parent : parents) {
+                    if (parent < 0 || parent >= index) {
+                        System.err.println("Ignoring invalid commit graph tail: " + file.getPath());
+                        return new Tail();
+                    }
+                }
+                tail.add(id, parents, generation, timestamp, filter, index);
+                tail.length += recordLength;
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable commit graph tail: " + e.getMessage());
+            return new Tail();
+        }
+        return tail;
+    }
+
+    /**
+     * Adds commits to the graph by appending their records, with their
+     * changed-path filters, to the tail file. The sorted graph and its
+     * filters are not rewritten.
+     *
+     * @param file Commit-graph file this graph was opened from
+     * @param commits New commits, parents before children
+     * @param pathKey Turns a changed file into a repository-relative path
+     *                with '/' separators (null to write no filters)
+     * @return The graph with the commits, or null if they could not be written
+     */
+    public CommitGraph append(File file, List<Commit> commits, Function<String, String> pathKey) {
+        Map<String, Integer> added = new HashMap<>();
+        List<Integer> generations = new ArrayList<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (tail.length == 0) {
+                out.writeInt(TAIL_MAGIC);
+                out.writeInt(TAIL_VERSION);
+                out.writeInt(sortedCount);
+            }
+            for (Commit commit : commits) {
+                List<Integer> known = new ArrayList<>();
+                int generation = 1;
+                for (String parentId : commit.getParentIds()) {
+                    Integer parent = added.get(parentId);
+                    int parentGeneration;
+                    if (parent != null) {
+                        parentGeneration = generations.get(parent - count);
+                    } else {
+                        parent = indexOf(parentId);
+                        if (parent < 0) {
+                            continue;
+                        }
+                        parentGeneration = generation(parent);
+                    }
+                    if (!known.contains(parent)) {
+                        known.add(parent);
+                        generation = Math.max(generation, parentGeneration + 1);
+                    }
+                }
+                added.put(commit.getCommitId(), count + generations.size());
+                generations.add(generation);
+
+                out.writeUTF(commit.getCommitId());
+                out.writeInt(known.size());
+                for (int parent : known) {
+                    out.writeInt(parent);
+                }
+                out.writeInt(generation);
+                out.writeLong(commit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+                if (pathKey != null) {
+                    byte[] filter = ChangedPathFilters.buildFilter(changedPaths(commit, pathKey));
+                    out.writeInt(filter.length);
+                    out.write(filter);
+                } else {
+                    out.writeInt(-1);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to commit graph: " + e.getMessage());
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(tailFile(file).toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+            // Drop anything after the last whole record
+            channel.truncate(tail.length);
+            channel.position(tail.length);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to commit graph: " + e.getMessage());
+            return null;
+        }
+        return open(file);
+    }
+
+    private static List<String> changedPaths(Commit commit, Function<String, String> pathKey) {
+        List<String> paths = new ArrayList<>();
+        for (String changedFile : commit.getChangedFiles()) {
+            String path = pathKey.apply(changedFile);
+            if (path != null) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Computes generation numbers without recursion, so long histories
+     * cannot overflow the stack.
+     */
+    private static int[] computeGenerations(int[][] parents) {
+        int[] generations = new int[parents.length];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int start = 0; start < parents.length; start++) {
+            if (generations[start] != 0) {
+                continue;
+            }
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                int commit = stack.peek();
+                if (generations[commit] > 0) {
+                    stack.pop();
+                    continue;
+                }
+                // -1 marks a commit whose parents are being computed
+                boolean ready = true;
+                int generation = 1;
+                for (int parent : parents[commit]) {
+                    if (generations[parent] > 0) {
+                        generation = Math.max(generation, generations[parent] + 1);
+                    } else if (generations[parent] == 0) {
+                        ready = false;
+                        stack.push(parent);
+                    }
+                }
+                if (ready || generations[commit] == -1) {
+                    generations[commit] = generation;
+                    stack.pop();
+                } else {
+                    generations[commit] = -1;
+                }
+            }
+        }
+        return generations;
+    }
+
+    private static File pathFiltersFile(File graphFile) {
+        return new File(graphFile.getPath() + "-paths");
+    }
+
+    private static File tailFile(File graphFile) {
+        return new File(graphFile.getPath() + "-tail");
+    }
+
+    /**
+     * @return Number of commits in the graph
+     */
+    public int getCommitCount() {
+        return count;
+    }
+
+    /**
+     * @return Number of commits appended since the graph was last written
+     *         in full
+     */
+    public int getAppendedCount() {
+        return count - sortedCount;
+    }
+
+    /**
+     * @return true if changed-path filters are available for every commit
+     */
+    public boolean hasPathFilters() {
+        return pathFilters != null && tail.allFiltered;
+    }
+
+    /**
+     * Checks whether the graph has a commit.
+     *
+     * @param commitId Commit ID
+     * @return true if the commit is in the graph
+     */
+    public boolean contains(String commitId) {
+        return indexOf(commitId) >= 0;
+    }
+
+    /**
+     * Gets a commit's parents.
+     *
+     * @param commitId Commit ID
+     * @return Parent IDs, first parent first (empty if unknown or a root)
+     */
+    public List<String> getParents(String commitId) {
+        List<String> parents = new ArrayList<>();
+        int index = indexOf(commitId);
+        if (index >= 0) {
+            for (int parent : parents(index)) {
+                parents.add(idAt(parent));
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Gets a commit's generation: 1 for a root commit, otherwise one more
+     * than its highest parent.
+     *
+     * @param commitId Commit ID
+     * @return Generation number, or 0 if the commit is not in the graph
+     */
+    public int getGeneration(String commitId) {
+        int index = indexOf(commitId);
+        return index >= 0 ? generation(index) : 0;
+    }
+
+    /**
+     * Checks whether one commit is reachable from another through parents.
+     * A commit counts as its own ancestor.
+     *
+     * @param ancestorId Possible ancestor
+     * @param descendantId Possible descendant
+     * @return true if ancestorId is an ancestor of descendantId
+     */
+    public boolean isAncestor(String ancestorId, String descendantId) {
+        int ancestor = indexOf(ancestorId);
+        int descendant = indexOf(descendantId);
+        return ancestor >= 0 && descendant >= 0 && reaches(descendant, ancestor);
+    }
+
+    /**
+     * Finds the best common ancestor of two commits, as used for the base
+     * of a three-way merge.
+     *
+     * @param commitId1 First commit
+     * @param commitId2 Second commit
+     * @return The merge base (the one with the highest generation when
+     *         there are several), or null if the histories are unrelated
+     */
+    public String mergeBase(String commitId1, String commitId2) {
+        List<String> bases = mergeBases(commitId1, commitId2);
+        return bases.isEmpty() ? null : bases.get(0);
+    }
+
+    /**
+     * Finds all best common ancestors of two commits: common ancestors
+     * that are not ancestors of another common ancestor.
+     *
+     * @param commitId1 First commit
+     * @param commitId2 Second commit
+     * @return Merge bases, highest generation first (never null)
+     */
+    public List<String> mergeBases(String commitId1, String commitId2) {
+        List<String> result = new ArrayList<>();
+        int one = indexOf(commitId1);
+        int two = indexOf(commitId2);
+        if (one < 0 || two < 0) {
+            return result;
+        }
+        if (one == two) {
+            result.add(idAt(one));
+            return result;
+        }
+
+        // Paint down from both commits, highest generation first; a commit
+        // reached from both sides is a candidate, and everything below a
+        // candidate is stale. A queued commit's order never changes, so its
+        // flags are updated in place. The walk ends when only stale
+        // commits are left.
+        int[] flags = new int[count];
+        CommitQueue queue = new CommitQueue();
+        flags[one] = PARENT1;
+        flags[two] = PARENT2;
+        queue.offer(one);
+        queue.offer(two);
+        int active = 2;
+        List<Integer> candidates = new ArrayList<>();
+
+        while (active > 0) {
+            int commit = queue.poll();
+            int painted = flags[commit] & (PARENT1 | PARENT2 | STALE);
+            if ((painted & STALE) == 0) {
+                active--;
+                if (painted == (PARENT1 | PARENT2)) {
+                    flags[commit] |= RESULT;
+                    candidates.add(commit);
+                    painted |= STALE;
+                }
+            }
+            for (int parent : parents(commit)) {
+                int before = flags[parent];
+                if ((before & painted) == painted) {
+                    continue;
+                }
+                flags[parent] |= painted;
+                if (queue.offer(parent)) {
+                    if ((flags[parent] & STALE) == 0) {
+                        active++;
+                    }
+                } else if (queue.isQueued(parent) && (before & STALE) == 0 && (flags[parent] & STALE) != 0) {
+                    active--;
+                }
+            }
+        }
+
+        // Drop candidates that are ancestors of other candidates
+        candidates.sort(this::compareNewestFirst);
+        for (int i = 0; i < candidates.size(); i++) {
+            boolean redundant = false;
+            for (int j = 0; j < candidates.size() && !redundant; j++) {
+                redundant = i != j && reaches(candidates.get(j), candidates.get(i));
+            }
+            if (!redundant) {
+                result.add(idAt(candidates.get(i)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists the commits reachable from the given ones so that every commit
+     * comes before its parents: commits are taken highest generation
+     * first (newest first among equal generations), and a child always
+     * has a higher generation than its parents. Only as much history as
+     * the limit needs is walked.
+     *
+     * @param tipIds Commits to start from
+     * @param limit Maximum number of commits to list (0 or less for all)
+     * @return Commit IDs in topological order (never null)
+     */
+    public List<String> topologicalOrder(Collection<String> tipIds, int limit) {
+        return collect(walk(tipIds), limit);
+    }
+
+    /**
+     * Lists the commits reachable from a commit that changed a path (or
+     * anything under it), in the order of {@link #topologicalOrder}. The
+     * changed-path filters rule out almost every other commit without
+     * looking at it; the remaining candidates are confirmed by the caller.
+     *
+     * @param tipId Commit to start from
+     * @param path Repository-relative path with '/' separators
+     * @param changesPath Confirms that a candidate commit changed the path
+     * @param limit Maximum number of commits to list (0 or less for all)
+     * @return Commit IDs, newest first (never null)
+     */
+    public List<String> pathHistory(String tipId, String path, Predicate<String> changesPath, int limit) {
+        return collect(walk(Collections.singletonList(tipId), path, changesPath), limit);
+    }
+
+    /**
+     * Walks the commits reachable from the given ones lazily, in the order
+     * of {@link #topologicalOrder}. Each step walks only as much history
+     * as it needs, so taking the first few commits costs the same however
+     * long the history is.
+     *
+     * @param tipIds Commits to start from
+     * @return Commit IDs in topological order
+     */
+    public Iterator<String> walk(Collection<String> tipIds) {
+        return walk(tipIds, null, null);
+    }
+
+    /**
+     * Walks lazily like {@link #walk(Collection)}, yielding only commits
+     * that changed a path (or anything under it), as in {@link #pathHistory}.
+     *
+     * @param tipIds Commits to start from
+     * @param path Repository-relative path with '/' separators (null for all commits)
+     * @param changesPath Confirms that a candidate commit changed the path
+     * @return Commit IDs in topological order
+     */
+    public Iterator<String> walk(Collection<String> tipIds, String path, Predicate<String> changesPath) {
+        return walk(tipIds, path, changesPath, null);
+    }
+
+    /**
+     * Walks lazily like {@link #walk(Collection, String, Predicate)},
+     * yielding only commits from a candidate set, such as the commits a
+     * secondary index selected. The walk ends once it is below the lowest
+     * generation of any candidate, since no candidate can come after that.
+     *
+     * @param tipIds Commits to start from
+     * @param path Repository-relative path with '/' separators (null for all commits)
+     * @param changesPath Confirms that a candidate commit changed the path
+     * @param candidates Commits that may be yielded (null for all)
+     * @return Commit IDs in topological order
+     */
+    public Iterator<String> walk(Collection<String> tipIds, String path, Predicate<String> changesPath,
+                                 Collection<String> candidates) {
+        boolean[] allowed = null;
+        int lowestGeneration = 0;
+        if (candidates != null) {
+            allowed = new boolean[count];
+            lowestGeneration = Integer.MAX_VALUE;
+            for (String commitId : candidates) {
+                int index = indexOf(commitId);
+                if (index >= 0) {
+                    allowed[index] = true;
+                    lowestGeneration = Math.min(lowestGeneration, generation(index));
+                }
+            }
+        }
+        return new Walk(tipIds, path != null && changesPath != null ? new ChangedPathFilters.PathKey(path) : null,
+                        changesPath, allowed, lowestGeneration);
+    }
+
+    private static List<String> collect(Iterator<String> walk, int limit) {
+        List<String> commits = new ArrayList<>();
+        while (walk.hasNext() && (limit <= 0 || commits.size() < limit)) {
+            commits.add(walk.next());
+        }
+        return commits;
+    }
+
+    /**
+     * Checks whether target is reachable from start, never walking below
+     * target's generation.
+     */
+    private boolean reaches(int start, int target) {
+        int targetGeneration = generation(target);
+        boolean[] seen = new boolean[count];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(start);
+        seen[start] = true;
+        while (!stack.isEmpty()) {
+            int commit = stack.pop();
+            if (commit == target) {
+                return true;
+            }
+            for (int parent : parents(commit)) {
+                if (!seen[parent] && generation(parent) >= targetGeneration) {
+                    seen[parent] = true;
+                    stack.push(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Orders by generation, then timestamp, highest first.
+     */
+    private int compareNewestFirst(int a, int b) {
+        int byGeneration = Integer.compare(generation(b), generation(a));
+        return byGeneration != 0 ? byGeneration : Long.compare(timestamp(b), timestamp(a));
+    }
+
+    /**
+     * Finds a commit's record by binary search over the sorted IDs.
+     */
+    private int indexOf(String commitId) {
+        if (commitId == null) {
+            return -1;
+        }
+        byte[] id = commitId.trim().getBytes(StandardCharsets.UTF_8);
+        if (id.length > idWidth) {
+            return tail.indexes.getOrDefault(commitId.trim(), -1);
+        }
+        int low = 0;
+        int high = sortedCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareId(mid, id);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return tail.indexes.getOrDefault(commitId.trim(), -1);
+    }
+
+    private int compareId(int index, byte[] id) {
+        int position = HEADER_SIZE + index * recordSize;
+        for (int i = 0; i < idWidth; i++) {
+            int stored = data.get(position + i) & 0xff;
+            int wanted = i < id.length ? id[i] & 0xff : 0;
+            if (stored != wanted) {
+                return stored - wanted;
+            }
+        }
+        return 0;
+    }
+
+    private String idAt(int index) {
+        if (index >= sortedCount) {
+            return tail.ids.get(index - sortedCount);
+        }
+        int position = HEADER_SIZE + index * recordSize;
+        int length = 0;
+        while (length < idWidth && data.get(position + length) != 0) {
+            length++;
+        }
+        byte[] id = new byte[length];
+        for (int i = 0; i < length; i++) {
+            id[i] = data.get(position + i);
+        }
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private int[] parents(int index) {
+        if (index >= sortedCount) {
+            return tail.parents.get(index - sortedCount);
+        }
+        int position = HEADER_SIZE + index * recordSize + idWidth;
+        int first = data.getInt(position);
+        int second = data.getInt(position + 4);
+        if (first == NO_PARENT) {
+            return new int[0];
+        }
+        if ((second & EXTRA_EDGES) == 0) {
+            return second == NO_PARENT ? new int[]{first} : new int[]{first, second};
+        }
+
+        List<Integer> parents = new ArrayList<>();
+        parents.add(first);
+        int edge = extraEdgesStart + 4 * (second & ~EXTRA_EDGES);
+        while (true) {
+            int value = data.getInt(edge);
+            parents.add(value & ~LAST_EDGE);
+            if ((value & LAST_EDGE) != 0) {
+                break;
+            }
+            edge += 4;
+        }
+        return parents.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private int generation(int index) {
+        if (index >= sortedCount) {
+            return tail.generations.get(index - sortedCount);
+        }
+        return data.getInt(HEADER_SIZE + index * recordSize + idWidth + 8);
+    }
+
+    private long timestamp(int index) {
+        if (index >= sortedCount) {
+            return tail.timestamps.get(index - sortedCount);
+        }
+        return data.getLong(HEADER_SIZE + index * recordSize + idWidth + 12);
+    }
+
+    /**
+     * Checks a commit's changed-path filter.
+     *
+     * @return false if the commit certainly did not change the path
+     */
+    private boolean mightChange(int index, ChangedPathFilters.PathKey pathKey) {
+        if (index >= sortedCount) {
+            byte[] filter = tail.filters.get(index - sortedCount);
+            return filter == null || ChangedPathFilters.mightContain(filter, pathKey);
+        }
+        return pathFilters == null || pathFilters.mightContain(index, pathKey);
+    }
+
+    /**
+     * Lazy walk over the commit queue. The next commit is looked up only
+     * when asked for, so an abandoned walk costs nothing more.
+     */
+    private final class Walk implements Iterator<String> {
+        private final CommitQueue queue = new CommitQueue();
+        private final ChangedPathFilters.PathKey pathKey;
+        private final Predicate<String> changesPath;
+        private final boolean[] allowed;
+        private final int lowestGeneration;
+        private String next;
+
+        Walk(Collection<String> tipIds, ChangedPathFilters.PathKey pathKey, Predicate<String> changesPath,
+             boolean[] allowed, int lowestGeneration) {
+            this.pathKey = pathKey;
+            this.changesPath = changesPath;
+            this.allowed = allowed;
+            this.lowestGeneration = lowestGeneration;
+            for (String tipId : tipIds) {
+                int tip = indexOf(tipId);
+                if (tip >= 0) {
+                    queue.offer(tip);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !queue.isEmpty()) {
+                int commit = queue.poll();
+                if (generation(commit) < lowestGeneration) {
+                    // Commits come in generation order: no candidate is left
+                    return false;
+                }
+                for (int parent : parents(commit)) {
+                    queue.offer(parent);
+                }
+                if (allowed != null && !allowed[commit]) {
+                    continue;
+                }
+                if (pathKey == null) {
+                    next = idAt(commit);
+                } else if (mightChange(commit, pathKey)) {
+                    String commitId = idAt(commit);
+                    if (changesPath.test(commitId)) {
+                        next = commitId;
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String commitId = next;
+            next = null;
+            return commitId;
+        }
+    }
+
+    /**
+     * Priority queue of record indexes, highest generation (then newest)
+     * first. A commit is queued at most once per walk.
+     */
+    private final class CommitQueue {
+        private int[] heap = new int[64];
+        private int size;
+        private final boolean[] seen = new boolean[count];
+        private final boolean[] queued = new boolean[count];
+
+        /**
+         * Queues a commit unless this walk has already queued it.
+         *
+         * @return true if the commit was queued now
+         */
+        boolean offer(int commit) {
+            if (seen[commit]) {
+                return false;
+            }
+            seen[commit] = true;
+            queued[commit] = true;
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parentPosition = (position - 1) >>> 1;
+                if (compareNewestFirst(heap[parentPosition], commit) <= 0) {
+                    break;
+                }
+                heap[position] = heap[parentPosition];
+                position = parentPosition;
+            }
+            heap[position] = commit;
+            return true;
+        }
+
+        int poll() {
+            int first = heap[0];
+            int last = heap[--size];
+            int position = 0;
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && compareNewestFirst(heap[child + 1], heap[child]) < 0) {
+                    child++;
+                }
+                if (compareNewestFirst(last, heap[child]) <= 0) {
+                    break;
+                }
+                heap[position] = heap[child];
+                position = child;
+            }
+            if (size > 0) {
+                heap[position] = last;
+            }
+            queued[first] = false;
+            return first;
+        }
+
+        boolean isQueued(int commit) {
+            return queued[commit];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
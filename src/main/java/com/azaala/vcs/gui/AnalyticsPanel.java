@@ -0,0 +1,143 @@
+package com.azaala.vcs.gui;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.awt.*;
+import java.time.LocalDate;
+import java.util.List;
+import com.azaala.vcs.VCS;
+import com.azaala.vcs.Repository;
+import com.azaala.vcs.analytics.Rollups;
+
+/**
+ * Analytics Panel - Displays churn per author, per day and per file,
+ * read from the repository's running totals
+ */
+public class AnalyticsPanel extends JPanel {
+    private static final int TOP_FILES = 50;
+    private static final String[] RANGES = {"Last 7 days", "Last 30 days", "Last 365 days", "All time"};
+    private static final int[] RANGE_DAYS = {7, 30, 365, 0};
+
+    private VCS vcs;
+    private Repository repository;
+    private JLabel totalsLabel;
+    private JComboBox<String> rangeBox;
+    private DefaultTableModel authorModel;
+    private DefaultTableModel dayModel;
+    private DefaultTableModel fileModel;
+
+    public AnalyticsPanel(VCS vcs, Repository repository) {
+        this.vcs = vcs;
+        this.repository = repository;
+
+        setLayout(new BorderLayout(UITheme.PADDING_MEDIUM, UITheme.PADDING_MEDIUM));
+        setBackground(UITheme.BACKGROUND_COLOR);
+        setBorder(BorderFactory.createEmptyBorder(UITheme.PADDING_MEDIUM, UITheme.PADDING_MEDIUM,
+                                                  UITheme.PADDING_MEDIUM, UITheme.PADDING_MEDIUM));
+
+        JPanel infoPanel = UITheme.createInfoPanel(
+            "Analytics",
+            "See who changed the repository, when, and which files change most. " +
+            "Totals are kept up to date as commits are made, so even long histories load instantly. " +
+            "Pick a range to limit the daily activity table."
+        );
+        add(infoPanel, BorderLayout.NORTH);
+
+        JPanel centerPanel = new JPanel(new BorderLayout(UITheme.SPACING_SECTION, UITheme.SPACING_SECTION));
+        centerPanel.setBackground(UITheme.BACKGROUND_COLOR);
+
+        totalsLabel = new JLabel(" ");
+        totalsLabel.setFont(UITheme.LABEL_FONT);
+        rangeBox = new JComboBox<>(RANGES);
+        rangeBox.setSelectedIndex(1);
+        rangeBox.addActionListener(e -> refresh());
+        JPanel topBar = new JPanel(new BorderLayout(UITheme.SPACING_COMPONENT, 0));
+        topBar.setBackground(UITheme.BACKGROUND_COLOR);
+        topBar.add(totalsLabel, BorderLayout.CENTER);
+        topBar.add(rangeBox, BorderLayout.EAST);
+        centerPanel.add(topBar, BorderLayout.NORTH);
+
+        authorModel = createModel("Author");
+        dayModel = createModel("Day");
+        fileModel = createModel("File");
+        JPanel tables = new JPanel(new GridLayout(1, 3, UITheme.SPACING_SECTION, 0));
+        tables.setBackground(UITheme.BACKGROUND_COLOR);
+        tables.add(createTablePane(authorModel, "By Author"));
+        tables.add(createTablePane(dayModel, "By Day"));
+        tables.add(createTablePane(fileModel, "Most Changed Files"));
+        centerPanel.add(tables, BorderLayout.CENTER);
+
+        add(centerPanel, BorderLayout.CENTER);
+    }
+
+    private DefaultTableModel createModel(String keyColumn) {
+        String[] columns = {keyColumn, "Commits", "Added", "Deleted", "Bytes"};
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    private JScrollPane createTablePane(DefaultTableModel model, String title) {
+        JTable table = new JTable(model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        UITheme.styleTable(table);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setBorder(UITheme.createStyledBorder(title));
+        return scrollPane;
+    }
+
+    public void setRepository(Repository repo) {
+        this.repository = repo;
+        refresh();
+    }
+
+    public void refresh() {
+        authorModel.setRowCount(0);
+        dayModel.setRowCount(0);
+        fileModel.setRowCount(0);
+        if (repository == null || vcs == null) {
+            totalsLabel.setText("No repository loaded");
+            return;
+        }
+
+        try {
+            Rollups rollups = repository.getRollups();
+            int range = RANGE_DAYS[Math.max(0, rangeBox.getSelectedIndex())];
+            LocalDate from = range > 0 ? LocalDate.now().minusDays(range - 1) : null;
+
+            Rollups.Row total = rollups.getTotal();
+            Rollups.Row inRange = rollups.forDays(from, null);
+            totalsLabel.setText(String.format("Total: %d commits, +%d -%d lines, %d bytes   |   %s: %d commits, +%d -%d lines",
+                total.getCommits(), total.getAdded(), total.getDeleted(), total.getBytes(),
+                RANGES[rangeBox.getSelectedIndex()], inRange.getCommits(), inRange.getAdded(), inRange.getDeleted()));
+
+            addRows(authorModel, rollups.byAuthor());
+            List<Rollups.Row> days = rollups.byDay(from, null);
+            for (int i = days.size() - 1; i >= 0; i--) {
+                addRow(dayModel, days.get(i));
+            }
+            addRows(fileModel, rollups.topFiles(TOP_FILES));
+        } catch (Exception e) {
+            totalsLabel.setText("Error loading analytics: " + e.getMessage());
+        }
+    }
+
+    private void addRows(DefaultTableModel model, List<Rollups.Row> rows) {
+        for (Rollups.Row row : rows) {
+            addRow(model, row);
+        }
+    }
+
+    private void addRow(DefaultTableModel model, Rollups.Row row) {
+        model.addRow(new Object[]{
+            row.getKey(),
+            row.getCommits(),
+            "+" + row.getAdded(),
+            "-" + row.getDeleted(),
+            row.getBytes()
+        });
+    }
+}
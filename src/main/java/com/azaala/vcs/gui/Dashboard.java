@@ -29,6 +29,7 @@ public class Dashboard extends JFrame {
     private HistoryPanel historyPanel;
     private StatusPanel statusPanel;
     private DiffPanel diffPanel;
+    private AnalyticsPanel analyticsPanel;
     private SettingsPanel settingsPanel;
 
     private JButton btnInit;
@@ -222,6 +223,9 @@ public class Dashboard extends JFrame {
         diffPanel = new DiffPanel(vcs, repository);
         tabbedPane.addTab("⇄ Diff", diffPanel);
 
+        analyticsPanel = new AnalyticsPanel(vcs, repository);
+        tabbedPane.addTab("📈 Analytics", analyticsPanel);
+
         settingsPanel = new SettingsPanel(vcs, repository);
         tabbedPane.addTab("⚙ Settings", settingsPanel);
 
@@ -306,6 +310,9 @@ public class Dashboard extends JFrame {
                     if (diffPanel != null) diffPanel.refresh();
                     break;
                 case 4:
+                    if (analyticsPanel != null) analyticsPanel.refresh();
+                    break;
+                case 5:
                     if (settingsPanel != null) settingsPanel.refresh();
                     break;
             }
@@ -344,6 +351,7 @@ public class Dashboard extends JFrame {
                         historyPanel.setRepository(repository);
                         statusPanel.setRepository(repository);
                         diffPanel.setRepository(repository);
+                        analyticsPanel.setRepository(repository);
                         settingsPanel.setRepository(repository);
 
                         updateRepositoryLabel();
@@ -553,6 +561,11 @@ public class Dashboard extends JFrame {
                 }
             };
 
+            // Record the author from the preferences, if one is set
+            PreferencesManager preferences = PreferencesManager.getInstance();
+            String author = preferences.getAuthorInfo();
+            vcs.setAuthor(author.isEmpty() ? preferences.getString(PreferencesManager.AUTHOR_NAME, "") : author);
+
             // Execute async worker with database transaction management
             com.azaala.vcs.async.CommitWorker worker =
                 new com.azaala.vcs.async.CommitWorker(vcs, repository, message, progressListener);
@@ -976,6 +989,7 @@ public class Dashboard extends JFrame {
             historyPanel.setRepository(repository);
             statusPanel.setRepository(repository);
             diffPanel.setRepository(repository);
+            analyticsPanel.setRepository(repository);
             settingsPanel.setRepository(repository);
 
             updateRepositoryLabel();
@@ -1168,6 +1182,7 @@ public class Dashboard extends JFrame {
         if (historyPanel != null) historyPanel.refresh();
         if (statusPanel != null) statusPanel.refresh();
         if (diffPanel != null) diffPanel.refresh();
+        if (analyticsPanel != null) analyticsPanel.refresh();
         if (settingsPanel != null) settingsPanel.refresh();
         statusLabel.setText("Refreshed at " + new java.text.SimpleDateFormat("HH:mm:ss").format(new java.util.Date()));
     }
@@ -3,10 +3,11 @@ package com.azaala.vcs.gui;
 import javax.swing.*;
 import java.awt.*;
 
-import com.azaala.vcs.DiffUtil;
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
 import com.azaala.vcs.Commit;
+import com.azaala.vcs.async.DiffWorker;
+import com.azaala.vcs.diff.DiffCache;
 import java.util.List;
 
 /**
@@ -20,6 +21,7 @@ public class DiffPanel extends JPanel {
     private JComboBox<String> commit2Combo;
     private JTextArea diffArea;
     private JLabel statsLabel;
+    private DiffWorker currentDiffWorker;
 
     public DiffPanel(VCS vcs, Repository repository) {
         this.vcs = vcs;
@@ -220,8 +222,12 @@ public class DiffPanel extends JPanel {
 
             @Override
             public void onSuccess(String result) {
-                // Diff completed, display result
-                displayDiffResults(commit1IdPrefix, commit2IdPrefix);
+                // Diff completed in the background; show the worker's output.
+                // A replaced worker finishing late finds the new one still running.
+                List<String> diffLines = currentDiffWorker.getDiffLines();
+                if (diffLines != null) {
+                    displayDiffResults(commit1IdPrefix, commit2IdPrefix, diffLines);
+                }
             }
 
             @Override
@@ -235,12 +241,15 @@ public class DiffPanel extends JPanel {
         statsLabel.setText("Comparing commits...");
         diffArea.setText("Loading diff...\n\nComparing commits with database enhancement...");
 
-        com.azaala.vcs.async.DiffWorker worker =
-            new com.azaala.vcs.async.DiffWorker(vcs, repository, commit1IdPrefix, commit2IdPrefix, progressListener);
-        worker.execute();
+        // A newer comparison replaces one still running
+        if (currentDiffWorker != null && !currentDiffWorker.isDone()) {
+            currentDiffWorker.cancel(true);
+        }
+        currentDiffWorker = new DiffWorker(vcs, repository, commit1IdPrefix, commit2IdPrefix, progressListener);
+        currentDiffWorker.execute();
     }
 
-    private void displayDiffResults(String commit1IdPrefix, String commit2IdPrefix) {
+    private void displayDiffResults(String commit1IdPrefix, String commit2IdPrefix, List<String> detailedDiff) {
         try {
             // Find commits by ID
             Commit commit1 = null;
@@ -261,14 +270,6 @@ public class DiffPanel extends JPanel {
                 return;
             }
 
-            // Use robust DiffUtil with line-by-line comparison
-            DiffUtil diffUtil = new DiffUtil();
-            List<String> detailedDiff = diffUtil.generateDetailedDiff(
-                commit1,
-                commit2,
-                repository.getPath()
-            );
-
             // Display comprehensive diff output
             StringBuilder output = new StringBuilder();
             for (String line : detailedDiff) {
@@ -281,10 +282,11 @@ public class DiffPanel extends JPanel {
             long additions = detailedDiff.stream().filter(l -> l.contains("  ➕")).count();
             long deletions = detailedDiff.stream().filter(l -> l.contains("  ➖")).count();
 
-            statsLabel.setText(String.format("✓ Detailed analysis: %s → %s | Changes: +%d -%d",
+            DiffCache cache = DiffCache.getInstance();
+            statsLabel.setText(String.format("✓ Detailed analysis: %s → %s | Changes: +%d -%d | Cache hit rate: %.0f%%",
                 commit1.getCommitId().substring(0, 8),
                 commit2.getCommitId().substring(0, 8),
-                additions, deletions));
+                additions, deletions, cache.getHitRate() * 100));
             diffArea.setCaretPosition(0);
 
         } catch (Exception e) {
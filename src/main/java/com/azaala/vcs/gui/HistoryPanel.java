@@ -3,21 +3,32 @@ package com.azaala.vcs.gui;
 import javax.swing.*;
 import javax.swing.table.*;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
 import com.azaala.vcs.Commit;
+import com.azaala.vcs.LogCursor;
+import com.azaala.vcs.LogQuery;
+import com.azaala.vcs.async.WorkerFactory;
 
 /**
- * History Panel - Displays commit history and details
+ * History Panel - Displays commit history and details, one page at a time
  */
 public class HistoryPanel extends JPanel {
+    private static final int PAGE_SIZE = 50;
+    private static final int SEARCH_LIMIT = 500;
 
     private VCS vcs;
     private Repository repository;
     private JTable historyTable;
     private DefaultTableModel tableModel;
     private JTextArea detailsArea;
+    private JButton loadMoreButton;
+    private JTextField searchField;
+    private LogCursor cursor;
+    private String activeSearch;
+    private final List<Commit> loadedCommits = new ArrayList<>();
 
     public HistoryPanel(VCS vcs, Repository repository) {
         this.vcs = vcs;
@@ -31,8 +42,10 @@ public class HistoryPanel extends JPanel {
         // Add info panel
         JPanel infoPanel = UITheme.createInfoPanel(
             "Commit History",
-            "Browse all commits in your repository. " +
-            "Click a commit row to view detailed information including files changed. " +
+            "Browse the commits in your repository, newest first. " +
+            "Click a commit row to view detailed information including files changed, " +
+            "and 'Load More' to continue into older history. " +
+            "Type words into the search box to find commits by message or summary. " +
             "Use this to track project changes over time and understand project evolution."
         );
         add(infoPanel, BorderLayout.NORTH);
@@ -41,7 +54,7 @@ public class HistoryPanel extends JPanel {
         JPanel centerPanel = new JPanel(new BorderLayout(UITheme.SPACING_SECTION, UITheme.SPACING_SECTION));
         centerPanel.setBackground(UITheme.BACKGROUND_COLOR);
 
-        String[] columns = {"Commit ID", "Message", "Date", "Files"};
+        String[] columns = {"Commit ID", "Message", "Date", "Files", "Changes"};
         tableModel = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) {
@@ -62,8 +75,45 @@ public class HistoryPanel extends JPanel {
         });
 
         JScrollPane scrollPane = new JScrollPane(historyTable);
-        scrollPane.setBorder(UITheme.createStyledBorder("All Commits"));
-        centerPanel.add(scrollPane, BorderLayout.CENTER);
+        scrollPane.setBorder(UITheme.createStyledBorder("Commits"));
+
+        loadMoreButton = new JButton("Load More");
+        UITheme.styleButton(loadMoreButton);
+        loadMoreButton.setEnabled(false);
+        loadMoreButton.addActionListener(e -> loadNextPage());
+        JPanel moreBar = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        moreBar.setBackground(UITheme.BACKGROUND_COLOR);
+        moreBar.add(loadMoreButton);
+
+        searchField = new JTextField();
+        UITheme.styleTextField(searchField);
+        searchField.setToolTipText("Words to find in commit messages and summaries; end a word with * to match a prefix");
+        searchField.addActionListener(e -> runSearch());
+        JButton searchButton = new JButton("Search");
+        UITheme.stylePrimaryButton(searchButton);
+        searchButton.addActionListener(e -> runSearch());
+        JButton clearButton = new JButton("Clear");
+        UITheme.styleButton(clearButton);
+        clearButton.addActionListener(e -> {
+            searchField.setText("");
+            refresh();
+        });
+        JPanel searchButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, UITheme.SPACING_COMPONENT, 0));
+        searchButtons.setBackground(UITheme.BACKGROUND_COLOR);
+        searchButtons.add(searchButton);
+        searchButtons.add(clearButton);
+        JPanel searchBar = new JPanel(new BorderLayout(UITheme.SPACING_COMPONENT, 0));
+        searchBar.setBackground(UITheme.BACKGROUND_COLOR);
+        searchBar.setBorder(BorderFactory.createEmptyBorder(0, 0, UITheme.SPACING_COMPONENT, 0));
+        searchBar.add(searchField, BorderLayout.CENTER);
+        searchBar.add(searchButtons, BorderLayout.EAST);
+
+        JPanel tablePanel = new JPanel(new BorderLayout());
+        tablePanel.setBackground(UITheme.BACKGROUND_COLOR);
+        tablePanel.add(searchBar, BorderLayout.NORTH);
+        tablePanel.add(scrollPane, BorderLayout.CENTER);
+        tablePanel.add(moreBar, BorderLayout.SOUTH);
+        centerPanel.add(tablePanel, BorderLayout.CENTER);
 
         detailsArea = new JTextArea();
         detailsArea.setEditable(false);
@@ -83,71 +133,103 @@ public class HistoryPanel extends JPanel {
     }
 
     public void refresh() {
+        clearTable();
+        if (repository == null || vcs == null) {
+            return;
+        }
+        if (!searchField.getText().trim().isEmpty()) {
+            runSearch();
+            return;
+        }
+
+        cursor = vcs.queryLog(new LogQuery());
+        loadNextPage();
+    }
+
+    private void clearTable() {
         tableModel.setRowCount(0);
         detailsArea.setText("");
+        loadedCommits.clear();
+        loadMoreButton.setEnabled(false);
+        cursor = null;
+        activeSearch = null;
+    }
 
+    /**
+     * Shows the commits matching the search box, newest first, in place of
+     * the log. An empty search box goes back to the log.
+     */
+    private void runSearch() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            refresh();
+            return;
+        }
+        clearTable();
         if (repository == null) {
             return;
         }
-
-        // Create progress listener
-        com.azaala.vcs.async.ProgressListener progressListener = new com.azaala.vcs.async.ProgressListener() {
-            @Override
-            public void onProgress(String message, int progress) {
-                // Update progress silently
+        activeSearch = query;
+        WorkerFactory.getInstance().createCommitSearchWorker(repository, query, SEARCH_LIMIT, matches -> {
+            if (!query.equals(activeSearch)) {
+                return;
             }
-
-            @Override
-            public void onSuccess(String result) {
-                // Reload from database
-                loadHistoryFromDatabase();
+            for (Commit commit : matches) {
+                addCommitRow(commit);
             }
-
-            @Override
-            public void onError(String message, Throwable exception) {
-                System.err.println("Error loading history: " + message);
-                // Fallback to VCS history
-                loadHistoryFromVCS();
+            if (matches.isEmpty()) {
+                detailsArea.setText("No commits match \"" + query + "\".");
             }
-        };
-
-        // Try to load from database first
-        com.azaala.vcs.async.HistoryLoadWorker worker =
-            new com.azaala.vcs.async.HistoryLoadWorker(vcs, repository, progressListener);
-        worker.execute();
+        }, null).execute();
     }
 
-    private void loadHistoryFromDatabase() {
-        // Load from VCS as fallback (database details are displayed via formatted strings)
-        loadHistoryFromVCS();
+    private void addCommitRow(Commit commit) {
+        loadedCommits.add(commit);
+        Object[] row = {
+            commit.getCommitId(),
+            commit.getMessage(),
+            commit.getTimestamp().toString(),
+            commit.getFileCount(),
+            commit.getChangeStats() != null
+                ? "+" + commit.getChangeStats().getAdditions() + " -" + commit.getChangeStats().getDeletions()
+                : ""
+        };
+        tableModel.addRow(row);
     }
 
-    private void loadHistoryFromVCS() {
-        if (repository != null) {
-            List<Commit> commits = repository.getCommits();
-            // Display commits in reverse order (newest first)
-            for (int i = commits.size() - 1; i >= 0; i--) {
-                Commit commit = commits.get(i);
-                Object[] row = {
-                    commit.getCommitId(),
-                    commit.getMessage(),
-                    commit.getTimestamp().toString(),
-                    commit.getFileCount()
-                };
-                tableModel.addRow(row);
-            }
+    /**
+     * Reads the next page from the cursor in the background and appends it
+     * to the table. Pages from a cursor replaced by a refresh are dropped.
+     */
+    private void loadNextPage() {
+        LogCursor pageCursor = cursor;
+        if (pageCursor == null) {
+            return;
         }
+        loadMoreButton.setEnabled(false);
+        WorkerFactory.getInstance().createLogPageWorker(pageCursor, PAGE_SIZE, page -> {
+            if (pageCursor != cursor) {
+                return;
+            }
+            for (Commit commit : page) {
+                addCommitRow(commit);
+            }
+            loadMoreButton.setEnabled(page.size() == PAGE_SIZE);
+        }, null).execute();
     }
 
     private void displayCommitDetails(int row) {
-        if (repository != null && row >= 0 && row < repository.getCommits().size()) {
-            Commit commit = repository.getCommits().get(row);
+        if (repository != null && row >= 0 && row < loadedCommits.size()) {
+            Commit commit = loadedCommits.get(row);
             StringBuilder details = new StringBuilder();
             details.append("═══════════════════════════════════════════\n");
             details.append("Commit ID: ").append(commit.getCommitId()).append("\n");
             details.append("Message: ").append(commit.getMessage()).append("\n");
             details.append("Timestamp: ").append(commit.getTimestamp()).append("\n");
             details.append("Files Changed: ").append(commit.getFileCount()).append("\n");
+            if (commit.getChangeStats() != null) {
+                details.append("Changes: ").append(commit.getChangeStats()).append("\n");
+            }
             details.append("═══════════════════════════════════════════\n\n");
             details.append("Changed Files:\n");
             details.append("───────────────────────────────────────────\n");
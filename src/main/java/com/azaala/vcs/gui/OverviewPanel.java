@@ -2,6 +2,8 @@ package com.azaala.vcs.gui;
 
 import javax.swing.*;
 import java.awt.*;
+import com.azaala.vcs.ChangeStats;
+import com.azaala.vcs.Commit;
 import com.azaala.vcs.VCS;
 import com.azaala.vcs.Repository;
 
@@ -19,6 +21,8 @@ public class OverviewPanel extends JPanel {
     private JLabel lblTotalCommits;
     private JLabel lblStagedFiles;
     private JLabel lblTrackedFiles;
+    private JLabel lblLinesChanged;
+    private JLabel lblBytesChanged;
 
     public OverviewPanel(VCS vcs, Repository repository) {
         this.vcs = vcs;
@@ -33,7 +37,8 @@ public class OverviewPanel extends JPanel {
         JPanel infoPanel = UITheme.createInfoPanel(
             "Repository Overview",
             "View key statistics and information about your repository. " +
-            "Shows the total number of commits, staged files, and tracked files. " +
+            "Shows the total number of commits, staged files, tracked files, " +
+            "and lines and bytes changed across all commits. " +
             "Use this tab to quickly assess your repository status."
         );
         add(infoPanel, BorderLayout.NORTH);
@@ -45,7 +50,7 @@ public class OverviewPanel extends JPanel {
 
     private JPanel createStatsPanel() {
         JPanel panel = new JPanel();
-        panel.setLayout(new GridLayout(3, 2, UITheme.SPACING_SECTION, UITheme.SPACING_SECTION));
+        panel.setLayout(new GridLayout(4, 2, UITheme.SPACING_SECTION, UITheme.SPACING_SECTION));
         panel.setBackground(UITheme.BACKGROUND_COLOR);
         panel.setBorder(BorderFactory.createEmptyBorder(UITheme.PADDING_LARGE, UITheme.PADDING_LARGE,
                                                         UITheme.PADDING_LARGE, UITheme.PADDING_LARGE));
@@ -62,6 +67,10 @@ public class OverviewPanel extends JPanel {
         panel.add(createStatItem("Staged Files:", lblStagedFiles = createValueLabel("0")));
         panel.add(createStatItem("Tracked Files:", lblTrackedFiles = createValueLabel("0")));
 
+        // Row 4: Lines and bytes changed, from the statistics recorded with each commit
+        panel.add(createStatItem("Lines Changed:", lblLinesChanged = createValueLabel("0")));
+        panel.add(createStatItem("Bytes Changed:", lblBytesChanged = createValueLabel("0")));
+
         return panel;
     }
 
@@ -106,6 +115,19 @@ public class OverviewPanel extends JPanel {
             lblTrackedFiles.setText(String.valueOf(repository.getCommits().stream()
                 .mapToInt(c -> c.getFileCount())
                 .sum()));
+            long added = 0;
+            long deleted = 0;
+            long bytes = 0;
+            for (Commit commit : repository.getCommits()) {
+                ChangeStats stats = commit.getChangeStats();
+                if (stats != null) {
+                    added += stats.getAdditions();
+                    deleted += stats.getDeletions();
+                    bytes += stats.getBytesChanged();
+                }
+            }
+            lblLinesChanged.setText("+" + added + " / -" + deleted);
+            lblBytesChanged.setText(String.valueOf(bytes));
         } else {
             lblRepoName.setText("No repository");
             lblRepoPath.setText("N/A");
@@ -113,6 +135,8 @@ public class OverviewPanel extends JPanel {
             lblTotalCommits.setText("0");
             lblStagedFiles.setText("0");
             lblTrackedFiles.setText("0");
+            lblLinesChanged.setText("0");
+            lblBytesChanged.setText("0");
         }
     }
 }
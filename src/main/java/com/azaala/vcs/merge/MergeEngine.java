@@ -0,0 +1,354 @@
+package com.azaala.vcs.merge;
+
+import com.azaala.vcs.Snapshot;
+import com.azaala.vcs.diff.BinaryDetector;
+import com.azaala.vcs.diff.DiffAlgorithm;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Merges whole snapshots file by file. Most files are decided from their
+ * content hashes alone: unchanged on one side means the other side wins,
+ * and equal content on both sides needs no work. Only files changed on
+ * both sides are read and merged line by line, in parallel, a bounded
+ * number ahead of the one being handed to the consumer.
+ */
+public class MergeEngine {
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+    private static final int MERGE_WINDOW_PER_THREAD = 4;
+    private static final ForkJoinPool MERGE_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * How a file was merged.
+     */
+    public enum Status {
+        /** Ours is already the result; nothing to write. */
+        UNCHANGED,
+        /** Only theirs changed the file; their version is the result. */
+        TAKE_THEIRS,
+        /** Theirs deleted a file ours left unchanged. */
+        DELETED,
+        /** Both sides changed the file and the changes merged cleanly. */
+        MERGED,
+        /** Both sides changed the file in incompatible ways. */
+        CONFLICT
+    }
+
+    private DiffAlgorithm algorithm = DiffAlgorithm.MYERS;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private String oursLabel = "ours";
+    private String theirsLabel = "theirs";
+
+    /**
+     * Sets the line diff algorithm used for content merges.
+     *
+     * @param algorithm Diff algorithm (null for Myers)
+     */
+    public void setAlgorithm(DiffAlgorithm algorithm) {
+        this.algorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
+    }
+
+    public DiffAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sets the diff time limit per file side (0 or less for none).
+     *
+     * @param timeoutMillis Time limit in milliseconds
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Sets the names written after conflict markers.
+     *
+     * @param oursLabel Name of our side
+     * @param theirsLabel Name of their side
+     */
+    public void setLabels(String oursLabel, String theirsLabel) {
+        this.oursLabel = oursLabel;
+        this.theirsLabel = theirsLabel;
+    }
+
+    /**
+     * Merges every file of two snapshots against their common ancestor
+     * and hands each result to the consumer in path order.
+     *
+     * @param base Common ancestor
+     * @param ours Our side (the result is expressed as changes to it)
+     * @param theirs Their side
+     * @param consumer Receives each file's result
+     * @throws IOException if the consumer fails
+     */
+    public void merge(Snapshot base, Snapshot ours, Snapshot theirs, MergeConsumer consumer) throws IOException {
+        Sides sides = new Sides(base, ours, theirs);
+        SortedSet<String> paths = new TreeSet<>(sides.baseFiles);
+        paths.addAll(sides.oursFiles);
+        paths.addAll(sides.theirsFiles);
+
+        int window = MERGE_WINDOW_PER_THREAD * MERGE_POOL.getParallelism();
+        Deque<ForkJoinTask<FileMerge>> pending = new ArrayDeque<>();
+        try {
+            for (String path : paths) {
+                if (pending.size() >= window) {
+                    consumer.accept(pending.removeFirst().join());
+                }
+                pending.addLast(submitFileMerge(path, sides));
+            }
+            while (!pending.isEmpty()) {
+                consumer.accept(pending.removeFirst().join());
+            }
+        } finally {
+            // A failing consumer leaves tasks that nobody will read
+            for (ForkJoinTask<FileMerge> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Merges one file.
+     *
+     * @param path File path
+     * @param base Common ancestor
+     * @param ours Our side
+     * @param theirs Their side
+     * @return The file's merge result
+     */
+    public FileMerge mergeFile(String path, Snapshot base, Snapshot ours, Snapshot theirs) {
+        Sides sides = new Sides(base, ours, theirs);
+        FileMerge decided = decide(path, sides);
+        return decided != null ? decided : mergeContent(path, sides);
+    }
+
+    /**
+     * Decides a file from hashes, or starts its content merge.
+     */
+    private ForkJoinTask<FileMerge> submitFileMerge(String path, Sides sides) {
+        FileMerge decided = decide(path, sides);
+        if (decided != null) {
+            ForkJoinTask<FileMerge> done = ForkJoinTask.adapt(() -> decided);
+            done.complete(decided);
+            return done;
+        }
+        return MERGE_POOL.submit(() -> mergeContent(path, sides));
+    }
+
+    /**
+     * Decides a file without reading it, when at most one side changed it
+     * or both sides ended up with the same content.
+     *
+     * @return The result, or null if the content has to be merged
+     */
+    private FileMerge decide(String path, Sides sides) {
+        Version baseVersion = Version.of(sides.base, sides.baseFiles, path);
+        Version oursVersion = Version.of(sides.ours, sides.oursFiles, path);
+        Version theirsVersion = Version.of(sides.theirs, sides.theirsFiles, path);
+
+        if (oursVersion.sameAs(theirsVersion) || baseVersion.sameAs(theirsVersion)) {
+            return new FileMerge(path, Status.UNCHANGED);
+        }
+        if (baseVersion.sameAs(oursVersion)) {
+            if (!theirsVersion.present) {
+                return new FileMerge(path, Status.DELETED);
+            }
+            FileMerge merge = new FileMerge(path, Status.TAKE_THEIRS);
+            merge.source = sides.theirs.getFile(path);
+            return merge;
+        }
+
+        // Both sides changed the file
+        if (!oursVersion.present) {
+            FileMerge merge = new FileMerge(path, Status.CONFLICT);
+            merge.source = sides.theirs.getFile(path);
+            merge.conflictCount = 1;
+            merge.message = "deleted by " + oursLabel + ", modified by " + theirsLabel;
+            return merge;
+        }
+        if (!theirsVersion.present) {
+            FileMerge merge = new FileMerge(path, Status.CONFLICT);
+            merge.conflictCount = 1;
+            merge.message = "modified by " + oursLabel + ", deleted by " + theirsLabel;
+            return merge;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the three versions and merges them line by line. Binary files
+     * changed on both sides cannot be merged and keep our version.
+     */
+    private FileMerge mergeContent(String path, Sides sides) {
+        File baseFile = sides.baseFiles.contains(path) ? sides.base.getFile(path) : null;
+        File oursFile = sides.ours.getFile(path);
+        File theirsFile = sides.theirs.getFile(path);
+
+        if (BinaryDetector.isBinary(oursFile, sides.ours.getHash(path)) ||
+            BinaryDetector.isBinary(theirsFile, sides.theirs.getHash(path)) ||
+            BinaryDetector.isBinary(baseFile, sides.base.getHash(path))) {
+            FileMerge merge = new FileMerge(path, Status.CONFLICT);
+            merge.conflictCount = 1;
+            merge.message = "binary file changed on both sides";
+            return merge;
+        }
+
+        try {
+            List<String> baseLines = baseFile != null ? readLines(baseFile) : new ArrayList<>();
+            ThreeWayMerge merger = new ThreeWayMerge(algorithm, timeoutMillis);
+            merger.setLabels(oursLabel, theirsLabel);
+            ThreeWayMerge.Result result = merger.merge(baseLines, readLines(oursFile), readLines(theirsFile));
+
+            FileMerge merge = new FileMerge(path, result.hasConflicts() ? Status.CONFLICT : Status.MERGED);
+            merge.lines = result.getLines();
+            merge.conflictCount = result.getConflictCount();
+            if (baseFile == null) {
+                merge.message = "added on both sides";
+            }
+            return merge;
+        } catch (IOException e) {
+            System.err.println("Error merging " + path + ": " + e.getMessage());
+            FileMerge merge = new FileMerge(path, Status.CONFLICT);
+            merge.conflictCount = 1;
+            merge.message = "cannot read file: " + e.getMessage();
+            return merge;
+        }
+    }
+
+    private List<String> readLines(File file) throws IOException {
+        if (file == null) {
+            throw new IOException("file snapshot missing");
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Receives merged files in path order.
+     */
+    public interface MergeConsumer {
+        void accept(FileMerge merge) throws IOException;
+    }
+
+    /**
+     * The three snapshots with their file sets, for constant-time lookups.
+     */
+    private static final class Sides {
+        private final Snapshot base;
+        private final Snapshot ours;
+        private final Snapshot theirs;
+        private final Set<String> baseFiles;
+        private final Set<String> oursFiles;
+        private final Set<String> theirsFiles;
+
+        Sides(Snapshot base, Snapshot ours, Snapshot theirs) {
+            this.base = base;
+            this.ours = ours;
+            this.theirs = theirs;
+            this.baseFiles = new HashSet<>(base.getFiles());
+            this.oursFiles = new HashSet<>(ours.getFiles());
+            this.theirsFiles = new HashSet<>(theirs.getFiles());
+        }
+    }
+
+    /**
+     * Whether a snapshot has a file, and its content hash.
+     */
+    private static final class Version {
+        private final boolean present;
+        private final String hash;
+
+        private Version(boolean present, String hash) {
+            this.present = present;
+            this.hash = hash;
+        }
+
+        static Version of(Snapshot snapshot, Set<String> files, String path) {
+            boolean present = files.contains(path);
+            return new Version(present, present ? snapshot.getHash(path) : null);
+        }
+
+        /**
+         * Equal when both are absent, or both present with the same known hash.
+         */
+        boolean sameAs(Version other) {
+            if (!present || !other.present) {
+                return present == other.present;
+            }
+            return hash != null && hash.equals(other.hash);
+        }
+    }
+
+    /**
+     * Result of merging one file.
+     */
+    public static class FileMerge {
+        private final String path;
+        private final Status status;
+        private List<String> lines;
+        private File source;
+        private int conflictCount;
+        private String message;
+
+        FileMerge(String path, Status status) {
+            this.path = path;
+            this.status = status;
+        }
+
+        public String getPath() { return path; }
+        public Status getStatus() { return status; }
+
+        /**
+         * @return Merged lines (with conflict markers) for content merges, otherwise null
+         */
+        public List<String> getLines() {
+            return lines != null ? Collections.unmodifiableList(lines) : null;
+        }
+
+        /**
+         * @return File whose content is the result (their version), or null
+         *         if the result is ours or given as lines
+         */
+        public File getSource() { return source; }
+
+        public int getConflictCount() { return conflictCount; }
+
+        /**
+         * @return Note on how the file was handled (e.g. kind of conflict), or null
+         */
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return status + " " + path + (message != null ? " (" + message + ")" : "");
+        }
+    }
+}
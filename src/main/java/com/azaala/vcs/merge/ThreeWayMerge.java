@@ -0,0 +1,194 @@
+package com.azaala.vcs.merge;
+
+import com.azaala.vcs.diff.DiffAlgorithm;
+import com.azaala.vcs.diff.Edit;
+import com.azaala.vcs.diff.LineHasher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merges two versions of a text with their common ancestor (diff3).
+ * Lines are hashed into shared ids and each side is diffed against the
+ * base; regions changed on only one side take that side's lines, and
+ * regions changed on both sides in different ways become conflicts
+ * marked with &lt;&lt;&lt;&lt;&lt;&lt;&lt;, ======= and &gt;&gt;&gt;&gt;&gt;&gt;&gt;.
+ */
+public class ThreeWayMerge {
+    private static final String MARKER_OURS = "<<<<<<< ";
+    private static final String MARKER_SEPARATOR = "=======";
+    private static final String MARKER_THEIRS = ">>>>>>> ";
+
+    private final DiffAlgorithm algorithm;
+    private final long timeoutMillis;
+    private String oursLabel = "ours";
+    private String theirsLabel = "theirs";
+
+    /**
+     * Creates a merger.
+     *
+     * @param algorithm Line diff algorithm used against the base
+     * @param timeoutMillis Diff time limit per side (0 or less for none); a
+     *                      coarse diff only widens conflict regions
+     */
+    public ThreeWayMerge(DiffAlgorithm algorithm, long timeoutMillis) {
+        this.algorithm = algorithm != null ? algorithm : DiffAlgorithm.MYERS;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sets the names written after the conflict markers.
+     *
+     * @param oursLabel Name of the first side
+     * @param theirsLabel Name of the second side
+     */
+    public void setLabels(String oursLabel, String theirsLabel) {
+        this.oursLabel = oursLabel;
+        this.theirsLabel = theirsLabel;
+    }
+
+    /**
+     * Merges two versions of a text.
+     *
+     * @param base Lines of the common ancestor (empty if there is none)
+     * @param ours Lines of the first side
+     * @param theirs Lines of the second side
+     * @return Merged lines and the number of conflicts
+     */
+    public Result merge(List<String> base, List<String> ours, List<String> theirs) {
+        int[][] ids = LineHasher.hashLines(base, ours, theirs);
+        List<Edit> oursEdits = algorithm.diff(ids[0], ids[1], timeoutMillis);
+        List<Edit> theirsEdits = algorithm.diff(ids[0], ids[2], timeoutMillis);
+
+        List<String> out = new ArrayList<>(Math.max(ours.size(), theirs.size()));
+        int conflicts = 0;
+        int basePos = 0;
+        int oursOffset = 0;
+        int theirsOffset = 0;
+        int i = 0;
+        int j = 0;
+
+        while (i < oursEdits.size() || j < theirsEdits.size()) {
+            // A chunk starts at the next edit of either side and grows while
+            // edits of either side touch it
+            boolean oursFirst = j >= theirsEdits.size() ||
+                (i < oursEdits.size() && oursEdits.get(i).getBeginA() <= theirsEdits.get(j).getBeginA());
+            Edit first = oursFirst ? oursEdits.get(i) : theirsEdits.get(j);
+            int chunkStart = first.getBeginA();
+            int chunkEnd = first.getEndA();
+            int oursDelta = 0;
+            int theirsDelta = 0;
+            int firstOurs = i;
+            int firstTheirs = j;
+
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                while (i < oursEdits.size() && oursEdits.get(i).getBeginA() <= chunkEnd) {
+                    Edit edit = oursEdits.get(i++);
+                    chunkEnd = Math.max(chunkEnd, edit.getEndA());
+                    oursDelta += edit.getLengthB() - edit.getLengthA();
+                    grew = true;
+                }
+                while (j < theirsEdits.size() && theirsEdits.get(j).getBeginA() <= chunkEnd) {
+                    Edit edit = theirsEdits.get(j++);
+                    chunkEnd = Math.max(chunkEnd, edit.getEndA());
+                    theirsDelta += edit.getLengthB() - edit.getLengthA();
+                    grew = true;
+                }
+            }
+
+            out.addAll(base.subList(basePos, chunkStart));
+            int oursStart = chunkStart + oursOffset;
+            int oursEnd = chunkEnd + oursOffset + oursDelta;
+            int theirsStart = chunkStart + theirsOffset;
+            int theirsEnd = chunkEnd + theirsOffset + theirsDelta;
+
+            if (j == firstTheirs) {
+                out.addAll(ours.subList(oursStart, oursEnd));
+            } else if (i == firstOurs) {
+                out.addAll(theirs.subList(theirsStart, theirsEnd));
+            } else if (sameLines(ids[1], oursStart, oursEnd, ids[2], theirsStart, theirsEnd)) {
+                // Both sides made the same change
+                out.addAll(ours.subList(oursStart, oursEnd));
+            } else {
+                writeConflict(out, ids, ours, oursStart, oursEnd, theirs, theirsStart, theirsEnd);
+                conflicts++;
+            }
+
+            oursOffset += oursDelta;
+            theirsOffset += theirsDelta;
+            basePos = chunkEnd;
+        }
+
+        out.addAll(base.subList(basePos, base.size()));
+        return new Result(out, conflicts);
+    }
+
+    /**
+     * Writes a conflict region. Lines both sides agree on at its start and
+     * end are written outside the markers.
+     */
+    private void writeConflict(List<String> out, int[][] ids,
+                               List<String> ours, int oursStart, int oursEnd,
+                               List<String> theirs, int theirsStart, int theirsEnd) {
+        while (oursStart < oursEnd && theirsStart < theirsEnd && ids[1][oursStart] == ids[2][theirsStart]) {
+            out.add(ours.get(oursStart));
+            oursStart++;
+            theirsStart++;
+        }
+        int common = 0;
+        while (oursEnd - common > oursStart && theirsEnd - common > theirsStart &&
+               ids[1][oursEnd - common - 1] == ids[2][theirsEnd - common - 1]) {
+            common++;
+        }
+
+        out.add(MARKER_OURS + oursLabel);
+        out.addAll(ours.subList(oursStart, oursEnd - common));
+        out.add(MARKER_SEPARATOR);
+        out.addAll(theirs.subList(theirsStart, theirsEnd - common));
+        out.add(MARKER_THEIRS + theirsLabel);
+        out.addAll(ours.subList(oursEnd - common, oursEnd));
+    }
+
+    private boolean sameLines(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+        if (aEnd - aStart != bEnd - bStart) {
+            return false;
+        }
+        for (int k = 0; k < aEnd - aStart; k++) {
+            if (a[aStart + k] != b[bStart + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merged text of one file.
+     */
+    public static class Result {
+        private final List<String> lines;
+        private final int conflictCount;
+
+        Result(List<String> lines, int conflictCount) {
+            this.lines = lines;
+            this.conflictCount = conflictCount;
+        }
+
+        /**
+         * @return Merged lines, including conflict markers (unmodifiable)
+         */
+        public List<String> getLines() {
+            return Collections.unmodifiableList(lines);
+        }
+
+        public int getConflictCount() {
+            return conflictCount;
+        }
+
+        public boolean hasConflicts() {
+            return conflictCount > 0;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.azaala.vcs.patch;
+
+import com.azaala.vcs.diff.Hunk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes a patch makes to one file: its old and new path, the kind
+ * of change and the hunks to apply. Produced by PatchReader one file at a
+ * time.
+ */
+public class FilePatch {
+    /**
+     * What the patch does to the file.
+     */
+    public enum Type { MODIFY, ADD, DELETE, RENAME, COPY }
+
+    private String oldPath;
+    private String newPath;
+    private Type type = Type.MODIFY;
+    private boolean binary;
+    private boolean oldMissingNewline;
+    private boolean newMissingNewline;
+    private String error;
+    private final List<Hunk> hunks = new ArrayList<>();
+
+    /**
+     * @return Path before the change, or null for an added file
+     */
+    public String getOldPath() { return oldPath; }
+    public void setOldPath(String oldPath) { this.oldPath = oldPath; }
+
+    /**
+     * @return Path after the change, or null for a deleted file
+     */
+    public String getNewPath() { return newPath; }
+    public void setNewPath(String newPath) { this.newPath = newPath; }
+
+    /**
+     * @return The path the patch is reported under: the new path, or the old one for deletions
+     */
+    public String getPath() {
+        return newPath != null ? newPath : oldPath;
+    }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    /**
+     * @return true if the patch only states that binary content differs
+     */
+    public boolean isBinary() { return binary; }
+    public void setBinary(boolean binary) { this.binary = binary; }
+
+    /**
+     * @return true if the old version has no newline after its last line
+     */
+    public boolean isOldMissingNewline() { return oldMissingNewline; }
+    public void setOldMissingNewline(boolean oldMissingNewline) { this.oldMissingNewline = oldMissingNewline; }
+
+    /**
+     * @return true if the new version has no newline after its last line
+     */
+    public boolean isNewMissingNewline() { return newMissingNewline; }
+    public void setNewMissingNewline(boolean newMissingNewline) { this.newMissingNewline = newMissingNewline; }
+
+    /**
+     * @return Why this file's patch cannot be applied (malformed or incomplete), or null
+     */
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    /**
+     * @return Hunks in file order (unmodifiable)
+     */
+    public List<Hunk> getHunks() {
+        return Collections.unmodifiableList(hunks);
+    }
+
+    public void addHunk(Hunk hunk) {
+        hunks.add(hunk);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + getPath() + " (" + hunks.size() + " hunks)";
+    }
+}
@@ -0,0 +1,547 @@
+package com.azaala.vcs.patch;
+
+import com.azaala.vcs.diff.Hunk;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Applies unified diffs to files under a root directory. The patch is
+ * read one file at a time and files are patched in parallel, a bounded
+ * number ahead of the one being reported. Hunks that no longer match at
+ * their recorded line are searched for nearby (offset) and, if still not
+ * found, matched with fewer context lines (fuzz). Each file is written to
+ * a temporary file and moved into place, so it is either fully patched
+ * or left untouched.
+ */
+public class PatchApplier {
+    /** Default number of context lines a hunk may ignore at each end. */
+    public static final int DEFAULT_FUZZ = 2;
+    /** Default number of leading path components to strip ("a/", "b/"). */
+    public static final int DEFAULT_STRIP = 1;
+
+    private static final int WINDOW_PER_THREAD = 4;
+    private static final ForkJoinPool APPLY_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final Path root;
+    private int fuzz = DEFAULT_FUZZ;
+    private int strip = DEFAULT_STRIP;
+    private boolean dryRun;
+
+    /**
+     * Creates an applier for files under the given directory.
+     *
+     * @param rootDirectory Directory that patch paths are relative to
+     */
+    public PatchApplier(File rootDirectory) {
+        this.root = rootDirectory.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Sets how many context lines a hunk may ignore at its start and end
+     * when it does not match exactly (0 requires all context to match).
+     *
+     * @param fuzz Maximum fuzz
+     */
+    public void setFuzz(int fuzz) {
+        this.fuzz = Math.max(0, fuzz);
+    }
+
+    public int getFuzz() {
+        return fuzz;
+    }
+
+    /**
+     * Sets how many leading path components are removed from file names.
+     *
+     * @param strip Components to strip, like patch -p
+     */
+    public void setStrip(int strip) {
+        this.strip = Math.max(0, strip);
+    }
+
+    public int getStrip() {
+        return strip;
+    }
+
+    /**
+     * Sets whether to only check that the patch applies, without writing.
+     *
+     * @param dryRun true to leave all files untouched
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * Applies a patch file.
+     *
+     * @param patchFile Unified diff to apply
+     * @return Per-file results (never null)
+     */
+    public Result apply(File patchFile) {
+        try (Reader in = Files.newBufferedReader(patchFile.toPath(), StandardCharsets.UTF_8)) {
+            return apply(in);
+        } catch (IOException e) {
+            System.err.println("Error reading patch: " + e.getMessage());
+            Result result = new Result();
+            result.error = "Cannot read patch: " + e.getMessage();
+            return result;
+        }
+    }
+
+    /**
+     * Applies patch text, patching files in parallel. Files touched by a
+     * patch that is still being applied wait for it, so renames, copies
+     * and repeated entries keep their order.
+     *
+     * @param in Unified diff text (not closed)
+     * @return Per-file results in patch order (never null)
+     */
+    public Result apply(Reader in) {
+        Result result = new Result();
+        PatchReader reader = new PatchReader(in, strip);
+        int window = WINDOW_PER_THREAD * APPLY_POOL.getParallelism();
+        Deque<PendingPatch> pending = new ArrayDeque<>();
+
+        try {
+            FilePatch patch;
+            while ((patch = reader.next()) != null) {
+                Set<String> touched = touchedPaths(patch);
+                if (overlaps(pending, touched)) {
+                    while (!pending.isEmpty()) {
+                        result.files.add(pending.removeFirst().task.join());
+                    }
+                }
+                if (pending.size() >= window) {
+                    result.files.add(pending.removeFirst().task.join());
+                }
+                FilePatch filePatch = patch;
+                pending.addLast(new PendingPatch(APPLY_POOL.submit(() -> applyFile(filePatch)), touched));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading patch: " + e.getMessage());
+            result.error = "Cannot read patch: " + e.getMessage();
+        } finally {
+            // Files already submitted are finished, so nothing is left half-written
+            while (!pending.isEmpty()) {
+                result.files.add(pending.removeFirst().task.join());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies one file's patch.
+     *
+     * @param patch The file patch
+     * @return Outcome for the file
+     */
+    public FileResult applyFile(FilePatch patch) {
+        FileResult result = new FileResult(patch.getPath(), patch.getType());
+        if (patch.getError() != null) {
+            return result.fail(patch.getError());
+        }
+        if (patch.isBinary()) {
+            return result.fail("Binary patch carries no content to apply");
+        }
+
+        Path source = patch.getOldPath() != null ? resolve(patch.getOldPath()) : null;
+        Path target = patch.getNewPath() != null ? resolve(patch.getNewPath()) : null;
+        if ((patch.getOldPath() != null && source == null) || (patch.getNewPath() != null && target == null)) {
+            return result.fail("Path is outside the target directory");
+        }
+
+        FilePatch.Type type = patch.getType();
+        if (type != FilePatch.Type.ADD && (source == null || !Files.isRegularFile(source))) {
+            return result.fail("File does not exist");
+        }
+        if (type == FilePatch.Type.ADD || type == FilePatch.Type.RENAME || type == FilePatch.Type.COPY) {
+            if (target == null) {
+                return result.fail("Patch has no target path");
+            }
+            if (Files.exists(target) && !target.equals(source)) {
+                return result.fail("File already exists");
+            }
+        }
+
+        try {
+            FileText text = type == FilePatch.Type.ADD ? new FileText() : FileText.read(source);
+            List<String> lines = applyHunks(patch, text.lines, result);
+            if (lines == null) {
+                return result;
+            }
+
+            if (type == FilePatch.Type.DELETE) {
+                if (!lines.isEmpty()) {
+                    return result.fail("File has " + lines.size() + " lines the patch does not remove");
+                }
+                if (!dryRun) {
+                    Files.delete(source);
+                }
+                return result;
+            }
+
+            boolean endsWithNewline = patch.isNewMissingNewline() ? false
+                    : patch.isOldMissingNewline() || text.endsWithNewline;
+            if (!dryRun) {
+                writeAtomically(target, type == FilePatch.Type.ADD ? null : source, lines,
+                                text.lineSeparator, endsWithNewline);
+                if (type == FilePatch.Type.RENAME && !target.equals(source)) {
+                    Files.delete(source);
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            System.err.println("Error patching " + patch.getPath() + ": " + e.getMessage());
+            return result.fail("I/O error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies the hunks of a patch to file lines in order.
+     *
+     * @return The patched lines, or null if a hunk does not apply (the
+     *         failure is recorded in result)
+     */
+    private List<String> applyHunks(FilePatch patch, List<String> lines, FileResult result) {
+        List<String> out = new ArrayList<>(lines.size());
+        int cursor = 0;
+        int offset = 0;
+        int number = 0;
+
+        for (Hunk hunk : patch.getHunks()) {
+            number++;
+            List<String> oldSide = new ArrayList<>();
+            List<String> newSide = new ArrayList<>();
+            for (String line : hunk.getLines()) {
+                char marker = line.charAt(0);
+                if (marker != '+') {
+                    oldSide.add(line.substring(1));
+                }
+                if (marker != '-') {
+                    newSide.add(line.substring(1));
+                }
+            }
+
+            // An empty old side points at the line before the insertion
+            int recorded = hunk.getOldCount() == 0 ? hunk.getOldStart() : hunk.getOldStart() - 1;
+            Match match = locate(lines, cursor, recorded + offset, oldSide,
+                                 leadingContext(hunk.getLines()), trailingContext(hunk.getLines()));
+            if (match == null) {
+                result.fail("Hunk #" + number + " FAILED at " + hunk.getOldStart());
+                return null;
+            }
+
+            out.addAll(lines.subList(cursor, match.position));
+            out.addAll(newSide.subList(match.trimTop, newSide.size() - match.trimBottom));
+            cursor = match.position + oldSide.size() - match.trimTop - match.trimBottom;
+            offset = match.position - match.trimTop - recorded;
+
+            if (offset != 0 || match.fuzz > 0) {
+                result.messages.add(String.format("Hunk #%d succeeded at %d (offset %d lines%s)", number,
+                    match.position - match.trimTop + 1, offset, match.fuzz > 0 ? ", fuzz " + match.fuzz : ""));
+                result.fuzzed |= match.fuzz > 0;
+            }
+        }
+
+        out.addAll(lines.subList(cursor, lines.size()));
+        return out;
+    }
+
+    /**
+     * Finds where a hunk's old lines occur, starting at the expected
+     * position and moving outward. If they occur nowhere, retries with up
+     * to fuzz context lines ignored at each end.
+     */
+    private Match locate(List<String> lines, int cursor, int expected, List<String> oldSide,
+                         int leading, int trailing) {
+        for (int f = 0; f <= fuzz; f++) {
+            int trimTop = Math.min(f, leading);
+            int trimBottom = Math.min(f, trailing);
+            if (f > 0 && trimTop == Math.min(f - 1, leading) && trimBottom == Math.min(f - 1, trailing)) {
+                // No more context to drop
+                break;
+            }
+            List<String> pattern = oldSide.subList(trimTop, oldSide.size() - trimBottom);
+            int last = lines.size() - pattern.size();
+            if (last < cursor) {
+                continue;
+            }
+            int start = Math.max(cursor, Math.min(expected + trimTop, last));
+
+            for (int distance = 0; start - distance >= cursor || start + distance <= last; distance++) {
+                int before = start - distance;
+                if (before >= cursor && matchesAt(lines, before, pattern)) {
+                    return new Match(before, trimTop, trimBottom, f);
+                }
+                int after = start + distance;
+                if (distance > 0 && after <= last && matchesAt(lines, after, pattern)) {
+                    return new Match(after, trimTop, trimBottom, f);
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean matchesAt(List<String> lines, int position, List<String> pattern) {
+        for (int i = 0; i < pattern.size(); i++) {
+            if (!lines.get(position + i).equals(pattern.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int leadingContext(List<String> hunkLines) {
+        int count = 0;
+        while (count < hunkLines.size() && hunkLines.get(count).charAt(0) == ' ') {
+            count++;
+        }
+        return count;
+    }
+
+    private int trailingContext(List<String> hunkLines) {
+        int count = 0;
+        while (count < hunkLines.size() && hunkLines.get(hunkLines.size() - 1 - count).charAt(0) == ' ') {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Resolves a patch path under the root, refusing paths that escape it.
+     *
+     * @return The resolved path, or null if it lies outside the root
+     */
+    private Path resolve(String path) {
+        Path resolved = root.resolve(path).normalize();
+        return resolved.startsWith(root) ? resolved : null;
+    }
+
+    /**
+     * Writes lines to a temporary file next to the target and moves it
+     * into place in one step. The file keeps the permissions of the file
+     * it was patched from; a new file gets the default ones.
+     */
+    private void writeAtomically(Path target, Path modeSource, List<String> lines, String lineSeparator,
+                                 boolean endsWithNewline) throws IOException {
+        Path parent = target.getParent();
+        Files.createDirectories(parent);
+        // Not createTempFile, which would make the file readable by its owner only
+        Path temp = parent.resolve("." + target.getFileName() + "." + UUID.randomUUID() + ".patch.tmp");
+        Files.createFile(temp);
+        try {
+            if (modeSource != null
+                    && Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(modeSource));
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < lines.size(); i++) {
+                    writer.write(lines.get(i));
+                    if (i < lines.size() - 1 || endsWithNewline) {
+                        writer.write(lineSeparator);
+                    }
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Set<String> touchedPaths(FilePatch patch) {
+        Set<String> paths = new HashSet<>();
+        for (String path : new String[]{patch.getOldPath(), patch.getNewPath()}) {
+            if (path != null) {
+                paths.add(root.resolve(path).normalize().toString());
+            }
+        }
+        return paths;
+    }
+
+    private boolean overlaps(Deque<PendingPatch> pending, Set<String> touched) {
+        for (PendingPatch other : pending) {
+            for (String path : touched) {
+                if (other.paths.contains(path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A file's lines without terminators, with the line separator it uses
+     * and whether its last line is terminated.
+     */
+    private static final class FileText {
+        private List<String> lines = new ArrayList<>();
+        private String lineSeparator = "\n";
+        private boolean endsWithNewline = true;
+
+        static FileText read(Path file) throws IOException {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            FileText text = new FileText();
+            if (content.isEmpty()) {
+                return text;
+            }
+
+            int firstBreak = content.indexOf('\n');
+            boolean crlf = firstBreak > 0 && content.charAt(firstBreak - 1) == '\r';
+            text.lineSeparator = crlf ? "\r\n" : "\n";
+            text.endsWithNewline = content.endsWith("\n");
+
+            int start = 0;
+            while (start < content.length()) {
+                int end = content.indexOf('\n', start);
+                if (end < 0) {
+                    end = content.length();
+                }
+                int lineEnd = crlf && end > start && content.charAt(end - 1) == '\r' ? end - 1 : end;
+                text.lines.add(content.substring(start, lineEnd));
+                start = end + 1;
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Where a hunk matched, and how much context was ignored.
+     */
+    private static final class Match {
+        private final int position;
+        private final int trimTop;
+        private final int trimBottom;
+        private final int fuzz;
+
+        Match(int position, int trimTop, int trimBottom, int fuzz) {
+            this.position = position;
+            this.trimTop = trimTop;
+            this.trimBottom = trimBottom;
+            this.fuzz = fuzz;
+        }
+    }
+
+    private static final class PendingPatch {
+        private final ForkJoinTask<FileResult> task;
+        private final Set<String> paths;
+
+        PendingPatch(ForkJoinTask<FileResult> task, Set<String> paths) {
+            this.task = task;
+            this.paths = paths;
+        }
+    }
+
+    /**
+     * Outcome of patching one file.
+     */
+    public static class FileResult {
+        private final String path;
+        private final FilePatch.Type type;
+        private final List<String> messages = new ArrayList<>();
+        private boolean applied = true;
+        private boolean fuzzed;
+
+        FileResult(String path, FilePatch.Type type) {
+            this.path = path;
+            this.type = type;
+        }
+
+        private FileResult fail(String message) {
+            applied = false;
+            messages.add(message);
+            return this;
+        }
+
+        public String getPath() { return path; }
+        public FilePatch.Type getType() { return type; }
+        public boolean isApplied() { return applied; }
+
+        /**
+         * @return true if a hunk only matched with some context ignored
+         */
+        public boolean isFuzzed() { return fuzzed; }
+
+        /**
+         * @return Offset and fuzz notes, or the reason the file failed
+         */
+        public List<String> getMessages() {
+            return Collections.unmodifiableList(messages);
+        }
+
+        @Override
+        public String toString() {
+            return (applied ? "applied " : "FAILED ") + path + (messages.isEmpty() ? "" : ": " + String.join("; ", messages));
+        }
+    }
+
+    /**
+     * Outcome of applying a whole patch.
+     */
+    public static class Result {
+        private final List<FileResult> files = new ArrayList<>();
+        private String error;
+
+        /**
+         * @return Per-file results in patch order
+         */
+        public List<FileResult> getFiles() {
+            return Collections.unmodifiableList(files);
+        }
+
+        public int getAppliedCount() {
+            int count = 0;
+            for (FileResult file : files) {
+                if (file.isApplied()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        public int getFailedCount() {
+            return files.size() - getAppliedCount();
+        }
+
+        /**
+         * @return Why the patch could not be read to the end, or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return true if the whole patch was read and every file applied
+         */
+        public boolean isSuccess() {
+            return error == null && getFailedCount() == 0;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.azaala.vcs.patch;
+
+import com.azaala.vcs.diff.Hunk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a unified diff one file at a time, so patches of any size are
+ * parsed with memory for a single file only. Understands plain unified
+ * diffs and the git-style headers written by UnifiedDiffFormatter (new,
+ * deleted, renamed, copied and binary files).
+ */
+public class PatchReader implements Closeable {
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*");
+    private static final String DEV_NULL = "/dev/null";
+
+    private final BufferedReader reader;
+    private final int strip;
+    private String pending;
+    private long lineNumber;
+
+    /**
+     * Creates a reader over patch text.
+     *
+     * @param in Patch text
+     * @param strip Number of leading path components to remove from
+     *              file names, like patch -p (1 removes "a/" and "b/")
+     */
+    public PatchReader(Reader in, int strip) {
+        this.reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        this.strip = Math.max(0, strip);
+    }
+
+    /**
+     * Reads the next file's patch.
+     *
+     * @return The next file patch, or null at the end of the input
+     * @throws IOException if the input cannot be read
+     */
+    public FilePatch next() throws IOException {
+        FilePatch patch = null;
+        boolean sawFileHeader = false;
+        boolean gitHeader = false;
+        String line;
+
+        while ((line = peekLine()) != null) {
+            if (line.startsWith("diff --git ")) {
+                if (patch != null) {
+                    return finish(patch, gitHeader);
+                }
+                consumeLine();
+                patch = new FilePatch();
+                gitHeader = true;
+                parseGitHeader(patch, line.substring("diff --git ".length()));
+                continue;
+            }
+
+            if (line.startsWith("--- ")) {
+                // A second file header without "diff --git" starts the next file
+                if (patch != null && (sawFileHeader || !patch.getHunks().isEmpty())) {
+                    return finish(patch, gitHeader);
+                }
+                consumeLine();
+                if (patch == null) {
+                    patch = new FilePatch();
+                }
+                sawFileHeader = true;
+                parseFileHeader(patch, line);
+                continue;
+            }
+
+            consumeLine();
+            if (patch == null) {
+                // Text before the first file, such as a commit message
+                continue;
+            }
+
+            if (line.startsWith("@@")) {
+                readHunk(patch, line);
+            } else if (line.startsWith("new file mode")) {
+                patch.setType(FilePatch.Type.ADD);
+                patch.setOldPath(null);
+            } else if (line.startsWith("deleted file mode")) {
+                patch.setType(FilePatch.Type.DELETE);
+                patch.setNewPath(null);
+            } else if (line.startsWith("rename from ")) {
+                patch.setType(FilePatch.Type.RENAME);
+                patch.setOldPath(line.substring("rename from ".length()));
+            } else if (line.startsWith("rename to ")) {
+                patch.setNewPath(line.substring("rename to ".length()));
+            } else if (line.startsWith("copy from ")) {
+                patch.setType(FilePatch.Type.COPY);
+                patch.setOldPath(line.substring("copy from ".length()));
+            } else if (line.startsWith("copy to ")) {
+                patch.setNewPath(line.substring("copy to ".length()));
+            } else if (line.startsWith("Binary files ") || line.equals("GIT binary patch")) {
+                patch.setBinary(true);
+            } else if (line.startsWith("# ") && patch.getError() == null) {
+                // UnifiedDiffFormatter notes content it could not write
+                patch.setError(line.substring(2));
+            }
+        }
+        return patch != null ? finish(patch, gitHeader) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Recognizes creations and deletions written without /dev/null, as
+     * "diff -N" does: a single hunk with an empty old or new side. Git
+     * headers say so with "new file mode" or "deleted file mode", so
+     * without those lines a git patch is a change to an empty file or
+     * one that empties it.
+     */
+    private FilePatch finish(FilePatch patch, boolean gitHeader) {
+        if (gitHeader || patch.getType() != FilePatch.Type.MODIFY || patch.getHunks().size() != 1) {
+            return patch;
+        }
+        Hunk hunk = patch.getHunks().get(0);
+        if (hunk.getOldStart() == 0 && hunk.getOldCount() == 0) {
+            patch.setType(FilePatch.Type.ADD);
+            patch.setOldPath(null);
+        } else if (hunk.getNewStart() == 0 && hunk.getNewCount() == 0) {
+            patch.setType(FilePatch.Type.DELETE);
+            patch.setNewPath(null);
+        }
+        return patch;
+    }
+
+    /**
+     * Takes the paths from "diff --git a/x b/y". They are replaced by the
+     * ---/+++ or rename headers when those follow.
+     */
+    private void parseGitHeader(FilePatch patch, String paths) {
+        int split = paths.lastIndexOf(" b/");
+        if (split < 0) {
+            split = paths.indexOf(' ');
+        }
+        if (split < 0) {
+            patch.setError("Malformed diff header at line " + lineNumber);
+            return;
+        }
+        patch.setOldPath(stripPath(paths.substring(0, split)));
+        patch.setNewPath(stripPath(paths.substring(split + 1)));
+    }
+
+    /**
+     * Parses a "--- old" line and the "+++ new" line after it.
+     */
+    private void parseFileHeader(FilePatch patch, String oldLine) throws IOException {
+        String newLine = peekLine();
+        if (newLine == null || !newLine.startsWith("+++ ")) {
+            patch.setError("Missing +++ header after line " + lineNumber);
+            return;
+        }
+        consumeLine();
+
+        String oldName = headerPath(oldLine);
+        String newName = headerPath(newLine);
+        if (DEV_NULL.equals(oldName)) {
+            patch.setType(FilePatch.Type.ADD);
+            patch.setOldPath(null);
+        } else if (patch.getType() != FilePatch.Type.RENAME && patch.getType() != FilePatch.Type.COPY) {
+            patch.setOldPath(stripPath(oldName));
+        }
+        if (DEV_NULL.equals(newName)) {
+            patch.setType(FilePatch.Type.DELETE);
+            patch.setNewPath(null);
+        } else if (patch.getType() != FilePatch.Type.RENAME && patch.getType() != FilePatch.Type.COPY) {
+            patch.setNewPath(stripPath(newName));
+        }
+    }
+
+    /**
+     * Reads one hunk body, using the line counts from its header to know
+     * where it ends.
+     */
+    private void readHunk(FilePatch patch, String header) throws IOException {
+        Matcher matcher = HUNK_HEADER.matcher(header);
+        if (!matcher.matches()) {
+            patch.setError("Malformed hunk header at line " + lineNumber + ": " + header);
+            return;
+        }
+        int oldStart = Integer.parseInt(matcher.group(1));
+        int oldCount = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1;
+        int newStart = Integer.parseInt(matcher.group(3));
+        int newCount = matcher.group(4) != null ? Integer.parseInt(matcher.group(4)) : 1;
+
+        List<String> lines = new ArrayList<>();
+        int oldRemaining = oldCount;
+        int newRemaining = newCount;
+        char previous = ' ';
+        while (oldRemaining > 0 || newRemaining > 0 || isNoNewlineMarker(peekLine())) {
+            String line = peekLine();
+            if (line == null) {
+                patch.setError("Patch ends inside a hunk at line " + lineNumber);
+                return;
+            }
+            consumeLine();
+            if (line.isEmpty()) {
+                // Some tools drop the space of empty context lines
+                line = " ";
+            }
+
+            char marker = line.charAt(0);
+            if (marker == '\\') {
+                if (previous != '+') {
+                    patch.setOldMissingNewline(true);
+                }
+                if (previous != '-') {
+                    patch.setNewMissingNewline(true);
+                }
+                continue;
+            }
+            if (marker == ' ') {
+                oldRemaining--;
+                newRemaining--;
+            } else if (marker == '-') {
+                oldRemaining--;
+            } else if (marker == '+') {
+                newRemaining--;
+            } else {
+                patch.setError("Malformed hunk line " + lineNumber + ": " + line);
+                return;
+            }
+            if (oldRemaining < 0 || newRemaining < 0) {
+                patch.setError("Hunk longer than its header at line " + lineNumber);
+                return;
+            }
+            previous = marker;
+            lines.add(line);
+        }
+
+        patch.addHunk(new Hunk(oldStart, oldCount, newStart, newCount, lines));
+    }
+
+    private boolean isNoNewlineMarker(String line) {
+        return line != null && line.startsWith("\\");
+    }
+
+    /**
+     * Takes the path from a ---/+++ line, dropping a trailing timestamp.
+     */
+    private String headerPath(String line) {
+        String name = line.substring(4);
+        int tab = name.indexOf('\t');
+        return tab >= 0 ? name.substring(0, tab) : name.trim();
+    }
+
+    /**
+     * Removes the configured number of leading path components.
+     */
+    private String stripPath(String path) {
+        String stripped = path;
+        for (int i = 0; i < strip; i++) {
+            int slash = stripped.indexOf('/');
+            if (slash < 0) {
+                break;
+            }
+            stripped = stripped.substring(slash + 1);
+        }
+        return stripped;
+    }
+
+    private String peekLine() throws IOException {
+        if (pending == null) {
+            pending = reader.readLine();
+        }
+        return pending;
+    }
+
+    private void consumeLine() {
+        pending = null;
+        lineNumber++;
+    }
+}
@@ -15,6 +15,13 @@ public class DatabaseManager {
     private DatabaseConfig config;
     private static final String SCHEMA_FILE = "data/schema.sql";
 
+    /** Columns added after their table was first released: table, column, definition. */
+    private static final String[][] ADDED_COLUMNS = {
+        {"commits", "lines_added", "INT DEFAULT 0"},
+        {"commits", "lines_deleted", "INT DEFAULT 0"},
+        {"commits", "bytes_changed", "BIGINT DEFAULT 0"}
+    };
+
     private DatabaseManager() {
         this.connectionPool = ConnectionPool.getInstance();
         this.config = DatabaseConfig.getInstance();
@@ -69,6 +76,7 @@ public class DatabaseManager {
                     }
                 }
 
+                count += addMissingColumns(conn);
                 System.out.println("✓ Schema initialized successfully (" + count + " statements)");
 
             } catch (Exception e) {
@@ -82,6 +90,41 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Adds the columns introduced after a table was first created, if a
+     * database created by an older version lacks them. Existing columns are
+     * found in INFORMATION_SCHEMA, so the migration runs only once.
+     *
+     * @param conn Connection using the application database
+     * @return Number of columns added
+     */
+    private int addMissingColumns(Connection conn) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+        int added = 0;
+        try (PreparedStatement query = conn.prepareStatement(sql);
+             Statement alter = conn.createStatement()) {
+            for (String[] column : ADDED_COLUMNS) {
+                query.setString(1, column[0]);
+                query.setString(2, column[1]);
+                boolean exists;
+                try (ResultSet rs = query.executeQuery()) {
+                    exists = rs.next() && rs.getInt(1) > 0;
+                }
+                if (!exists) {
+                    try {
+                        alter.execute("ALTER TABLE " + column[0] + " ADD COLUMN " + column[1] + " " + column[2]);
+                        System.out.println("  Added column " + column[0] + "." + column[1]);
+                        added++;
+                    } catch (SQLException e) {
+                        System.out.println("  (Could not add column " + column[0] + "." + column[1] + ": " + e.getMessage() + ")");
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
     private String readSchemaFile() throws IOException {
         File schemaFile = new File(SCHEMA_FILE);
 
@@ -15,7 +15,8 @@ import java.util.List;
 public class CommitDAO extends BaseDAO {
 
     public boolean create(CommitEntity commit) throws DatabaseException {
-        String sql = "INSERT INTO commits (commit_id, repo_id, message, summary, author, timestamp, file_count, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO commits (commit_id, repo_id, message, summary, author, timestamp, file_count, " +
+                     "lines_added, lines_deleted, bytes_changed, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         Connection conn = null;
         PreparedStatement stmt = null;
 
@@ -29,7 +30,10 @@ public class CommitDAO extends BaseDAO {
             stmt.setString(5, commit.getAuthor());
             stmt.setTimestamp(6, Timestamp.valueOf(commit.getTimestamp()));
             stmt.setInt(7, commit.getFileCount());
-            stmt.setTimestamp(8, Timestamp.valueOf(commit.getCreatedAt()));
+            stmt.setInt(8, commit.getLinesAdded());
+            stmt.setInt(9, commit.getLinesDeleted());
+            stmt.setLong(10, commit.getBytesChanged());
+            stmt.setTimestamp(11, Timestamp.valueOf(commit.getCreatedAt()));
 
             int affectedRows = stmt.executeUpdate();
             logOperation("CREATE_COMMIT", "Commit ID: " + commit.getCommitId() + ", Repo ID: " + commit.getRepoId());
@@ -141,7 +145,8 @@ public class CommitDAO extends BaseDAO {
     }
 
     public boolean update(CommitEntity commit) throws DatabaseException {
-        String sql = "UPDATE commits SET message = ?, summary = ?, author = ?, file_count = ? WHERE commit_id = ?";
+        String sql = "UPDATE commits SET message = ?, summary = ?, author = ?, file_count = ?, " +
+                     "lines_added = ?, lines_deleted = ?, bytes_changed = ? WHERE commit_id = ?";
         Connection conn = null;
         PreparedStatement stmt = null;
 
@@ -152,7 +157,10 @@ public class CommitDAO extends BaseDAO {
             stmt.setString(2, commit.getSummary());
             stmt.setString(3, commit.getAuthor());
             stmt.setInt(4, commit.getFileCount());
-            stmt.setString(5, commit.getCommitId());
+            stmt.setInt(5, commit.getLinesAdded());
+            stmt.setInt(6, commit.getLinesDeleted());
+            stmt.setLong(7, commit.getBytesChanged());
+            stmt.setString(8, commit.getCommitId());
 
             int affectedRows = stmt.executeUpdate();
             logOperation("UPDATE_COMMIT", "Commit ID: " + commit.getCommitId());
@@ -276,6 +284,9 @@ public class CommitDAO extends BaseDAO {
         entity.setAuthor(rs.getString("author"));
         entity.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
         entity.setFileCount(rs.getInt("file_count"));
+        entity.setLinesAdded(rs.getInt("lines_added"));
+        entity.setLinesDeleted(rs.getInt("lines_deleted"));
+        entity.setBytesChanged(rs.getLong("bytes_changed"));
         entity.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
         return entity;
     }
@@ -0,0 +1,95 @@
+package com.azaala.vcs.persistence.dao;
+
+import com.azaala.vcs.persistence.DatabaseException;
+import com.azaala.vcs.persistence.models.RollupEntity;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Data Access Object for analytics rollups.
+ * Adds each commit's counts to the per-path, per-author and per-day totals
+ * in one transaction. Directory paths end with '/'.
+ */
+public class RollupDAO extends BaseDAO {
+
+    private static final String ADD_COUNTS =
+        " (repo_id, %s, commit_count, lines_added, lines_deleted, bytes_changed) VALUES (?, ?, ?, ?, ?, ?)" +
+        " ON DUPLICATE KEY UPDATE commit_count = commit_count + VALUES(commit_count)," +
+        " lines_added = lines_added + VALUES(lines_added)," +
+        " lines_deleted = lines_deleted + VALUES(lines_deleted)," +
+        " bytes_changed = bytes_changed + VALUES(bytes_changed)";
+
+    /**
+     * Adds one commit to the rollups.
+     *
+     * @param repoId Repository ID
+     * @param author Author totals of the commit (key is the author)
+     * @param day Day of the commit
+     * @param paths Totals of each file and directory the commit changed
+     * @throws DatabaseException if the rollups cannot be updated
+     */
+    public void addCommit(Long repoId, RollupEntity author, LocalDate day,
+                          List<RollupEntity> paths) throws DatabaseException {
+        Connection conn = null;
+        PreparedStatement authorStmt = null;
+        PreparedStatement dayStmt = null;
+        PreparedStatement pathStmt = null;
+
+        try {
+            conn = getConnection();
+            conn.setAutoCommit(false);
+            authorStmt = conn.prepareStatement("INSERT INTO rollup_authors" + String.format(ADD_COUNTS, "author"));
+            setCounts(authorStmt, repoId, author.getKey(), author);
+            authorStmt.executeUpdate();
+
+            dayStmt = conn.prepareStatement("INSERT INTO rollup_days" + String.format(ADD_COUNTS, "day"));
+            setCounts(dayStmt, repoId, null, author);
+            dayStmt.setDate(2, Date.valueOf(day));
+            dayStmt.executeUpdate();
+
+            if (!paths.isEmpty()) {
+                pathStmt = conn.prepareStatement("INSERT INTO rollup_paths" + String.format(ADD_COUNTS, "path"));
+                for (RollupEntity path : paths) {
+                    setCounts(pathStmt, repoId, path.getKey(), path);
+                    pathStmt.addBatch();
+                }
+                pathStmt.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            rollback(conn);
+            handleSQLException("Error updating analytics rollups", e);
+        } finally {
+            closeResources(pathStmt, dayStmt, authorStmt);
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error restoring auto-commit: " + e.getMessage());
+                }
+                closeConnection(conn);
+            }
+        }
+    }
+
+    private void rollback(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.err.println("Error during rollback: " + e.getMessage());
+            }
+        }
+    }
+
+    private void setCounts(PreparedStatement stmt, Long repoId, String key, RollupEntity counts) throws SQLException {
+        stmt.setLong(1, repoId);
+        stmt.setString(2, key);
+        stmt.setInt(3, counts.getCommitCount());
+        stmt.setLong(4, counts.getLinesAdded());
+        stmt.setLong(5, counts.getLinesDeleted());
+        stmt.setLong(6, counts.getBytesChanged());
+    }
+}
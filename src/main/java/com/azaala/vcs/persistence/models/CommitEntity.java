@@ -14,6 +14,9 @@ public class CommitEntity {
     private String author;
     private LocalDateTime timestamp;
     private int fileCount;
+    private int linesAdded;
+    private int linesDeleted;
+    private long bytesChanged;
     private LocalDateTime createdAt;
 
     public CommitEntity() {
@@ -62,6 +65,15 @@ public class CommitEntity {
     public int getFileCount() { return fileCount; }
     public void setFileCount(int fileCount) { this.fileCount = fileCount; }
 
+    public int getLinesAdded() { return linesAdded; }
+    public void setLinesAdded(int linesAdded) { this.linesAdded = linesAdded; }
+
+    public int getLinesDeleted() { return linesDeleted; }
+    public void setLinesDeleted(int linesDeleted) { this.linesDeleted = linesDeleted; }
+
+    public long getBytesChanged() { return bytesChanged; }
+    public void setBytesChanged(long bytesChanged) { this.bytesChanged = bytesChanged; }
+
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
@@ -70,7 +82,8 @@ public class CommitEntity {
         return "CommitEntity{" + "commitId='" + commitId + '\'' + ", repoId=" + repoId +
                 ", message='" + message + '\'' + ", summary='" + summary + '\'' +
                 ", author='" + author + '\'' + ", timestamp=" + timestamp +
-                ", fileCount=" + fileCount + ", createdAt=" + createdAt + '}';
+                ", fileCount=" + fileCount + ", linesAdded=" + linesAdded + ", linesDeleted=" + linesDeleted +
+                ", bytesChanged=" + bytesChanged + ", createdAt=" + createdAt + '}';
     }
 }
 
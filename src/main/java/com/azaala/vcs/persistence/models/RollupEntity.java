@@ -0,0 +1,53 @@
+package com.azaala.vcs.persistence.models;
+
+/**
+ * Entity class representing one row of an analytics rollup in the database.
+ * Maps to the 'rollup_paths', 'rollup_authors' and 'rollup_days' tables,
+ * whose key is a path, an author or a day (as an ISO date).
+ */
+public class RollupEntity {
+    private Long repoId;
+    private String key;
+    private int commitCount;
+    private long linesAdded;
+    private long linesDeleted;
+    private long bytesChanged;
+
+    public RollupEntity() {
+    }
+
+    public RollupEntity(Long repoId, String key, int commitCount,
+                        long linesAdded, long linesDeleted, long bytesChanged) {
+        this.repoId = repoId;
+        this.key = key;
+        this.commitCount = commitCount;
+        this.linesAdded = linesAdded;
+        this.linesDeleted = linesDeleted;
+        this.bytesChanged = bytesChanged;
+    }
+
+    public Long getRepoId() { return repoId; }
+    public void setRepoId(Long repoId) { this.repoId = repoId; }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public int getCommitCount() { return commitCount; }
+    public void setCommitCount(int commitCount) { this.commitCount = commitCount; }
+
+    public long getLinesAdded() { return linesAdded; }
+    public void setLinesAdded(long linesAdded) { this.linesAdded = linesAdded; }
+
+    public long getLinesDeleted() { return linesDeleted; }
+    public void setLinesDeleted(long linesDeleted) { this.linesDeleted = linesDeleted; }
+
+    public long getBytesChanged() { return bytesChanged; }
+    public void setBytesChanged(long bytesChanged) { this.bytesChanged = bytesChanged; }
+
+    @Override
+    public String toString() {
+        return "RollupEntity{" + "repoId=" + repoId + ", key='" + key + '\'' +
+                ", commitCount=" + commitCount + ", linesAdded=" + linesAdded +
+                ", linesDeleted=" + linesDeleted + ", bytesChanged=" + bytesChanged + '}';
+    }
+}
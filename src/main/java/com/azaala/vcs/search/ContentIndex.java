@@ -0,0 +1,953 @@
+package com.azaala.vcs.search;
+
+import com.azaala.vcs.Commit;
+import com.azaala.vcs.Utils;
+import com.azaala.vcs.diff.BinaryDetector;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Trigram index over the contents of committed files, for searching code
+ * across history without reading every stored file. Each distinct content
+ * hash (blob) is indexed once, under the first commit and path it appeared
+ * at; each three-byte sequence of its content, with ASCII letters folded to
+ * lower case, maps to the ordinals of the blobs containing it.
+ *
+ * A search takes the literal runs every match of the pattern must contain,
+ * looks up the blobs holding all of their trigrams, and runs the regular
+ * expression only over those candidates, in parallel.
+ *
+ * The index is a list of immutable segments in data/search/content, each
+ * covering a run of blob ordinals:
+ * <pre>
+ *   header    magic "TRIG", version, commit count, first blob, blob count,
+ *             key count, offset of the key table
+ *   blobs     hash, commit ID, path and kind of each blob
+ *   keys      sorted trigram keys, then (key count + 1) posting offsets
+ *   postings  blob ordinals as varint gaps
+ * </pre>
+ * Indexing new commits writes one new segment. While the newest segment
+ * holds at least half as many blobs as the one before, the two are merged,
+ * so a history of n blobs is kept in O(log n) segments.
+ */
+public class ContentIndex {
+    private static final String SEGMENT_PREFIX = "content-";
+    private static final String SEGMENT_SUFFIX = ".tri";
+    private static final int MAGIC = 0x54524947; // "TRIG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    /** Larger files are not indexed; searches always verify them. */
+    public static final long MAX_INDEXED_BYTES = 1L << 20;
+    /** Trigram occurrences gathered before a segment is written. */
+    private static final int BATCH_PAIRS = 8_000_000;
+    private static final int VERIFY_CHUNK = 256;
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private static final byte INDEXED = 0;
+    private static final byte BINARY = 1;
+    private static final byte UNINDEXED = 2;
+
+    private final File directory;
+    private final Function<Blob, File> locator;
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Blob> blobs = new ArrayList<>();
+    private final Set<String> hashes = new HashSet<>();
+    private int commitCount;
+
+    /**
+     * A stored file content, identified by its hash.
+     */
+    public static final class Blob {
+        private final String hash;
+        private final String commitId;
+        private final String path;
+        private final byte kind;
+
+        private Blob(String hash, String commitId, String path, byte kind) {
+            this.hash = hash;
+            this.commitId = commitId;
+            this.path = path;
+            this.kind = kind;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return ID of the first commit that stored this content
+         */
+        public String getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * @return Path the content was stored under in that commit
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * A line of a blob matching a search.
+     */
+    public static final class Match {
+        private final Blob blob;
+        private final int lineNumber;
+        private final String line;
+
+        private Match(Blob blob, int lineNumber, String line) {
+            this.blob = blob;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        public Blob getBlob() {
+            return blob;
+        }
+
+        /**
+         * @return Line number, starting at 1
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getLine() {
+            return line;
+        }
+    }
+
+    private ContentIndex(File directory, Function<Blob, File> locator) {
+        this.directory = directory;
+        this.locator = locator;
+    }
+
+    /**
+     * Opens the index in a directory, creating an empty one if needed.
+     *
+     * @param directory Index directory
+     * @param locator Maps a blob to the stored file holding its content
+     * @return The index (never null; unreadable segments are dropped)
+     */
+    public static ContentIndex open(File directory, Function<Blob, File> locator) {
+        ContentIndex index = new ContentIndex(directory, locator);
+        index.load();
+        return index;
+    }
+
+    /**
+     * @return Number of commits whose files are in the index
+     */
+    public synchronized int getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * @return Number of distinct contents in the index
+     */
+    public synchronized int getBlobCount() {
+        return blobs.size();
+    }
+
+    /**
+     * Indexes the files of the commits not yet in the index. Contents seen
+     * before are skipped by hash. An index covering more commits than the
+     * log has is rebuilt. The newest commit is left for a later update
+     * while its files are still missing, so its contents are not recorded
+     * as unindexed.
+     *
+     * @param commits All commits, in log order
+     * @return true if the index is up to date, false if writing failed
+     */
+    public synchronized boolean update(List<Commit> commits) {
+        if (commitCount > commits.size()) {
+            for (Segment segment : segments) {
+                segment.file.delete();
+            }
+            segments.clear();
+            blobs.clear();
+            hashes.clear();
+            commitCount = 0;
+        }
+
+        int end = commits.size();
+        if (end > commitCount && !isStored(commits.get(end - 1))) {
+            // The newest commit's files are still being copied; index it next time
+            end--;
+        }
+
+        Batch batch = new Batch(blobs.size());
+        for (int ordinal = commitCount; ordinal < end; ordinal++) {
+            Commit commit = commits.get(ordinal);
+            for (String path : commit.getChangedFiles()) {
+                String hash = commit.getFileHash(path);
+                File file = locator.apply(new Blob(hash, commit.getCommitId(), path, INDEXED));
+                if (hash == null) {
+                    // Older commits did not record hashes
+                    hash = Utils.hashFileContent(file);
+                }
+                if (hash != null && !hashes.contains(hash) && !batch.hashes.contains(hash)) {
+                    batch.add(hash, commit.getCommitId(), path, file);
+                }
+            }
+            if (batch.pairCount >= BATCH_PAIRS) {
+                if (!flush(batch, ordinal + 1)) {
+                    return false;
+                }
+                batch = new Batch(blobs.size());
+            }
+        }
+        if (!batch.blobs.isEmpty() && !flush(batch, end)) {
+            return false;
+        }
+        commitCount = end;
+        return true;
+    }
+
+    /**
+     * @return true if every file of the commit can be read
+     */
+    private boolean isStored(Commit commit) {
+        for (String path : commit.getChangedFiles()) {
+            File file = locator.apply(new Blob(commit.getFileHash(path), commit.getCommitId(), path, INDEXED));
+            if (file == null || !file.isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the lines matching a regular expression in the indexed
+     * contents. Binary contents never match.
+     *
+     * @param pattern Regular expression, matched against each line
+     * @param filter Blobs to search, or null for all
+     * @param limit Most lines to return (0 or less for all)
+     * @return Matching lines, by blob in index order, then by line (never null)
+     */
+    public synchronized List<Match> search(Pattern pattern, Predicate<Blob> filter, int limit) {
+        List<Blob> candidates = new ArrayList<>();
+        for (int ordinal : candidates(pattern)) {
+            Blob blob = blobs.get(ordinal);
+            if (filter == null || filter.test(blob)) {
+                candidates.add(blob);
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int start = 0; start < candidates.size() && (limit <= 0 || matches.size() < limit); start += VERIFY_CHUNK) {
+            List<Blob> chunk = candidates.subList(start, Math.min(candidates.size(), start + VERIFY_CHUNK));
+            List<List<Match>> found;
+            try {
+                found = SEARCH_POOL.submit(() -> chunk.parallelStream()
+                        .map(blob -> verify(blob, pattern))
+                        .collect(Collectors.toList())).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("Error searching file contents: " + e.getCause().getMessage());
+                break;
+            }
+            for (List<Match> blobMatches : found) {
+                for (Match match : blobMatches) {
+                    if (limit > 0 && matches.size() >= limit) {
+                        break;
+                    }
+                    matches.add(match);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the blobs that may match a pattern: those holding every
+     * trigram of its required literals, plus those too large to index.
+     *
+     * @return Candidate blob ordinals, ascending
+     */
+    private int[] candidates(Pattern pattern) {
+        int[] keys = queryTrigrams(pattern);
+        int[] result = new int[blobs.size()];
+        int size = 0;
+        for (Segment segment : segments) {
+            int[] matches = null;
+            if (keys.length > 0) {
+                List<int[]> postings = new ArrayList<>();
+                for (int key : keys) {
+                    postings.add(segment.postings(key));
+                }
+                // Intersect starting from the rarest trigram
+                postings.sort((a, b) -> Integer.compare(a.length, b.length));
+                matches = postings.get(0);
+                for (int i = 1; i < postings.size() && matches.length > 0; i++) {
+                    matches = MessageIndex.intersect(matches, postings.get(i));
+                }
+            }
+            int next = 0;
+            for (int ordinal = segment.firstBlob; ordinal < segment.firstBlob + segment.blobCount; ordinal++) {
+                byte kind = blobs.get(ordinal).kind;
+                boolean listed = matches == null || (next < matches.length && matches[next] == ordinal);
+                if (matches != null && listed) {
+                    next++;
+                }
+                if (kind == UNINDEXED || (kind == INDEXED && listed)) {
+                    result[size++] = ordinal;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private List<Match> verify(Blob blob, Pattern pattern) {
+        List<Match> matches = new ArrayList<>();
+        File file = locator.apply(blob);
+        if (file == null || !file.isFile() || BinaryDetector.isBinary(file, blob.hash)) {
+            return matches;
+        }
+        String content;
+        try {
+            content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.err.println("Error reading " + blob.path + ": " + e.getMessage());
+            return matches;
+        }
+        Matcher matcher = pattern.matcher("");
+        int lineNumber = 0;
+        int start = 0;
+        while (start < content.length()) {
+            int end = content.indexOf('\n', start);
+            if (end < 0) {
+                end = content.length();
+            }
+            lineNumber++;
+            String line = content.substring(start, end > start && content.charAt(end - 1) == '\r' ? end - 1 : end);
+            if (matcher.reset(line).find()) {
+                matches.add(new Match(blob, lineNumber, line));
+            }
+            start = end + 1;
+        }
+        return matches;
+    }
+
+    /**
+     * Collects the trigram keys of a pattern's required literals. Trigrams
+     * with non-ASCII bytes are left out, since a case-insensitive pattern
+     * may match them in another case.
+     *
+     * @return Distinct keys, ascending (empty if nothing narrows the search)
+     */
+    static int[] queryTrigrams(Pattern pattern) {
+        Set<Integer> keys = new HashSet<>();
+        for (String literal : requiredLiterals(pattern.pattern(), pattern.flags())) {
+            byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i + 2 < bytes.length; i++) {
+                if (bytes[i] >= 0 && bytes[i + 1] >= 0 && bytes[i + 2] >= 0) {
+                    keys.add(trigram(bytes, i));
+                }
+            }
+        }
+        int[] sorted = new int[keys.size()];
+        int i = 0;
+        for (int key : keys) {
+            sorted[i++] = key;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Finds runs of literal text that every match of a regular expression
+     * contains. The scan is conservative: groups, classes and escapes end a
+     * run, a character made optional by a quantifier is dropped, and
+     * alternation at the top level means nothing is required.
+     *
+     * @param regex Regular expression
+     * @param flags Pattern flags
+     * @return Required literal runs (empty if none are known)
+     */
+    static List<String> requiredLiterals(String regex, int flags) {
+        List<String> literals = new ArrayList<>();
+        if ((flags & Pattern.LITERAL) != 0) {
+            literals.add(regex);
+            return literals;
+        }
+        if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0 || regex.matches("(?s).*\\(\\?[a-zA-Z-]*x.*")) {
+            // Whitespace and comments are not literal in these modes
+            return literals;
+        }
+
+        StringBuilder run = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= regex.length()) {
+                        break;
+                    }
+                    char escaped = regex.charAt(++i);
+                    if (escaped == 'Q') {
+                        int end = regex.indexOf("\\E", i + 1);
+                        run.append(end < 0 ? regex.substring(i + 1) : regex.substring(i + 1, end));
+                        i = end < 0 ? regex.length() : end + 1;
+                    } else if (Character.isLetterOrDigit(escaped)) {
+                        endRun(run, literals);
+                        i = skipEscapeArgument(regex, i);
+                    } else {
+                        run.append(escaped);
+                    }
+                    break;
+                case '|':
+                    literals.clear();
+                    return literals;
+                case '[':
+                    endRun(run, literals);
+                    i = skipClass(regex, i);
+                    break;
+                case '(':
+                    endRun(run, literals);
+                    i = skipGroup(regex, i);
+                    break;
+                case '*':
+                case '?':
+                case '{':
+                    // The quantified character may be absent
+                    if (run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                    endRun(run, literals);
+                    if (c == '{') {
+                        int end = regex.indexOf('}', i);
+                        i = end < 0 ? regex.length() : end;
+                    }
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    endRun(run, literals);
+                    break;
+                default:
+                    run.append(c);
+            }
+        }
+        endRun(run, literals);
+        return literals;
+    }
+
+    private static void endRun(StringBuilder run, List<String> literals) {
+        if (run.length() >= 3) {
+            literals.add(run.toString());
+        }
+        run.setLength(0);
+    }
+
+    /**
+     * Skips the characters an escape such as \x41, \p{L} or \k<name> takes.
+     *
+     * @param i Index of the escape letter
+     * @return Index of the escape's last character
+     */
+    private static int skipEscapeArgument(String regex, int i) {
+        char escape = regex.charAt(i);
+        int next = i + 1;
+        boolean braced = next < regex.length() && regex.charAt(next) == '{';
+        switch (escape) {
+            case 'x':
+            case 'p':
+            case 'P':
+            case 'N':
+                if (braced) {
+                    int end = regex.indexOf('}', next);
+                    return end < 0 ? regex.length() : end;
+                }
+                return Math.min(regex.length() - 1, i + (escape == 'x' ? 2 : 1));
+            case 'u':
+                return Math.min(regex.length() - 1, i + 4);
+            case 'c':
+                return Math.min(regex.length() - 1, i + 1);
+            case 'k':
+                int end = regex.indexOf('>', next);
+                return end < 0 ? regex.length() : end;
+            default:
+                if (Character.isDigit(escape)) {
+                    // Octal escape or back reference
+                    while (next < regex.length() && Character.isDigit(regex.charAt(next))) {
+                        next++;
+                    }
+                    return next - 1;
+                }
+                return i;
+        }
+    }
+
+    /**
+     * @param i Index of the opening '['
+     * @return Index of the matching ']', or the end of the pattern
+     */
+    private static int skipClass(String regex, int i) {
+        int j = i + 1;
+        if (j < regex.length() && regex.charAt(j) == '^') {
+            j++;
+        }
+        if (j < regex.length() && regex.charAt(j) == ']') {
+            j++;
+        }
+        for (; j < regex.length(); j++) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == '[') {
+                j = skipClass(regex, j);
+            } else if (c == ']') {
+                return j;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * @param i Index of the opening '('
+     * @return Index of the matching ')', or the end of the pattern
+     */
+    private static int skipGroup(String regex, int i) {
+        for (int j = i + 1; j < regex.length(); j++) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j++;
+            } else if (c == '[') {
+                j = skipClass(regex, j);
+            } else if (c == '(') {
+                j = skipGroup(regex, j);
+            } else if (c == ')') {
+                return j;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * @return Distinct trigram keys of the content, ascending
+     */
+    static int[] trigrams(byte[] content) {
+        int[] keys = new int[Math.max(0, content.length - 2)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = trigram(content, i);
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    private static int trigram(byte[] bytes, int i) {
+        return fold(bytes[i]) << 16 | fold(bytes[i + 1]) << 8 | fold(bytes[i + 2]);
+    }
+
+    private static int fold(byte b) {
+        int c = b & 0xff;
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Blobs read for the next segment, with their trigrams as
+     * (key, ordinal) pairs packed into longs.
+     */
+    private static final class Batch {
+        private final int firstBlob;
+        private final List<Blob> blobs = new ArrayList<>();
+        private final Set<String> hashes = new HashSet<>();
+        private long[] pairs = new long[1024];
+        private int pairCount;
+
+        Batch(int firstBlob) {
+            this.firstBlob = firstBlob;
+        }
+
+        void add(String hash, String commitId, String path, File file) {
+            int ordinal = firstBlob + blobs.size();
+            byte kind = UNINDEXED;
+            if (file != null && file.isFile() && file.length() <= MAX_INDEXED_BYTES) {
+                if (BinaryDetector.isBinary(file, hash)) {
+                    kind = BINARY;
+                } else {
+                    try {
+                        int[] keys = trigrams(Files.readAllBytes(file.toPath()));
+                        if (pairCount + keys.length > pairs.length) {
+                            pairs = Arrays.copyOf(pairs, Math.max(pairs.length * 2, pairCount + keys.length));
+                        }
+                        for (int key : keys) {
+                            pairs[pairCount++] = (long) key << 32 | ordinal;
+                        }
+                        kind = INDEXED;
+                    } catch (IOException e) {
+                        System.err.println("Error indexing " + path + ": " + e.getMessage());
+                    }
+                }
+            }
+            blobs.add(new Blob(hash, commitId, path, kind));
+            hashes.add(hash);
+        }
+    }
+
+    /**
+     * Writes a batch as a new segment, then merges segments as needed.
+     */
+    private boolean flush(Batch batch, int commits) {
+        long[] pairs = batch.pairs;
+        Arrays.sort(pairs, 0, batch.pairCount);
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < batch.pairCount; i++) {
+            if (i == 0 || pairs[i] >>> 32 != pairs[i - 1] >>> 32) {
+                starts.add(i);
+            }
+        }
+        starts.add(batch.pairCount);
+        int[] keys = new int[starts.size() - 1];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (int) (pairs[starts.get(i)] >>> 32);
+        }
+        IntFunction<int[]> ordinals = i -> {
+            int[] list = new int[starts.get(i + 1) - starts.get(i)];
+            for (int j = 0; j < list.length; j++) {
+                list[j] = (int) pairs[starts.get(i) + j];
+            }
+            return list;
+        };
+
+        File file = segmentFile(batch.firstBlob);
+        if (!Segment.write(file, commits, batch.firstBlob, batch.blobs, keys, ordinals)) {
+            load();
+            return false;
+        }
+        Segment segment = Segment.open(file);
+        if (segment == null) {
+            load();
+            return false;
+        }
+        addSegment(segment);
+        return compact();
+    }
+
+    /**
+     * Merges the two newest segments while the newest holds at least half
+     * as many blobs as the one before it.
+     */
+    private boolean compact() {
+        while (segments.size() >= 2) {
+            Segment newer = segments.get(segments.size() - 1);
+            Segment older = segments.get(segments.size() - 2);
+            if (newer.blobCount * 2 < older.blobCount) {
+                break;
+            }
+
+            int[] keys = mergeKeys(older.keys(), newer.keys());
+            IntFunction<int[]> ordinals = i -> {
+                int[] first = older.postings(keys[i]);
+                int[] second = newer.postings(keys[i]);
+                int[] list = Arrays.copyOf(first, first.length + second.length);
+                System.arraycopy(second, 0, list, first.length, second.length);
+                return list;
+            };
+            List<Blob> merged = new ArrayList<>(blobs.subList(older.firstBlob, newer.firstBlob + newer.blobCount));
+            // Replaces the older segment's file; the newer one is deleted after
+            if (!Segment.write(older.file, newer.commitCount, older.firstBlob, merged, keys, ordinals)) {
+                return false;
+            }
+            Segment segment = Segment.open(older.file);
+            if (segment == null) {
+                load();
+                return false;
+            }
+            newer.file.delete();
+            segments.remove(segments.size() - 1);
+            segments.set(segments.size() - 1, segment);
+        }
+        return true;
+    }
+
+    private static int[] mergeKeys(int[] a, int[] b) {
+        int[] keys = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            int key = j >= b.length || (i < a.length && a[i] <= b[j]) ? a[i] : b[j];
+            keys[size++] = key;
+            if (i < a.length && a[i] == key) {
+                i++;
+            }
+            if (j < b.length && b[j] == key) {
+                j++;
+            }
+        }
+        return Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Loads the segments from disk. Segments are chained by blob ordinal;
+     * one already covered by an earlier segment (left over from a merge
+     * cut short) or not continuing the chain is deleted.
+     */
+    private void load() {
+        segments.clear();
+        blobs.clear();
+        hashes.clear();
+        commitCount = 0;
+
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            Segment segment = Segment.open(file);
+            if (segment == null || segment.firstBlob != blobs.size()) {
+                file.delete();
+                continue;
+            }
+            addSegment(segment);
+        }
+    }
+
+    private void addSegment(Segment segment) {
+        segments.add(segment);
+        blobs.addAll(segment.blobs);
+        for (Blob blob : segment.blobs) {
+            hashes.add(blob.hash);
+        }
+        commitCount = segment.commitCount;
+    }
+
+    private File segmentFile(int firstBlob) {
+        return new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, firstBlob, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * One memory-mapped segment file.
+     */
+    private static final class Segment {
+        private final File file;
+        private final ByteBuffer data;
+        private final int commitCount;
+        private final int firstBlob;
+        private final int blobCount;
+        private final int keyCount;
+        private final int keysStart;
+        private final int offsetsStart;
+        private final int postingsStart;
+        private final List<Blob> blobs;
+
+        private Segment(File file, ByteBuffer data, List<Blob> blobs) {
+            this.file = file;
+            this.data = data;
+            this.commitCount = data.getInt(8);
+            this.firstBlob = data.getInt(12);
+            this.blobCount = data.getInt(16);
+            this.keyCount = data.getInt(20);
+            this.keysStart = data.getInt(24);
+            this.offsetsStart = keysStart + keyCount * 4;
+            this.postingsStart = offsetsStart + (keyCount + 1) * 4;
+            this.blobs = blobs;
+        }
+
+        /**
+         * @return The segment, or null if the file is missing or invalid
+         */
+        static Segment open(File file) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                    System.err.println("Ignoring invalid content index segment: " + file.getPath());
+                    return null;
+                }
+                int blobCount = data.getInt(16);
+                long keyCount = data.getInt(20);
+                int keysStart = data.getInt(24);
+                long postingsStart = keysStart + (keyCount * 2 + 1) * 4;
+                if (blobCount < 0 || keyCount < 0 || keysStart < HEADER_SIZE || postingsStart > data.capacity()
+                        || postingsStart + data.getInt((int) postingsStart - 4) != data.capacity()) {
+                    System.err.println("Ignoring truncated content index segment: " + file.getPath());
+                    return null;
+                }
+
+                byte[] table = new byte[keysStart - HEADER_SIZE];
+                data.position(HEADER_SIZE);
+                data.get(table);
+                data.position(0);
+                List<Blob> blobs = new ArrayList<>(blobCount);
+                try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(table))) {
+                    for (int i = 0; i < blobCount; i++) {
+                        blobs.add(new Blob(in.readUTF(), in.readUTF(), in.readUTF(), in.readByte()));
+                    }
+                }
+                return new Segment(file, data, Collections.unmodifiableList(blobs));
+            } catch (IOException e) {
+                System.err.println("Error opening content index segment: " + e.getMessage());
+                return null;
+            }
+        }
+
+        int[] keys() {
+            int[] keys = new int[keyCount];
+            for (int i = 0; i < keyCount; i++) {
+                keys[i] = data.getInt(keysStart + i * 4);
+            }
+            return keys;
+        }
+
+        /**
+         * @return Ordinals of the blobs holding a trigram, ascending
+         */
+        int[] postings(int key) {
+            int low = 0;
+            int high = keyCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midKey = data.getInt(keysStart + mid * 4);
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    return decode(mid);
+                }
+            }
+            return new int[0];
+        }
+
+        private int[] decode(int index) {
+            int position = postingsStart + data.getInt(offsetsStart + index * 4);
+            int end = postingsStart + data.getInt(offsetsStart + (index + 1) * 4);
+            int[] ordinals = new int[end - position];
+            int size = 0;
+            int previous = firstBlob - 1;
+            while (position < end) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data.get(position++);
+                    gap |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += gap;
+                ordinals[size++] = previous;
+            }
+            return Arrays.copyOf(ordinals, size);
+        }
+
+        /**
+         * Writes a segment through a temporary file, replacing any file of
+         * the same name.
+         *
+         * @param ordinals Posting list of the key at each index of keys
+         */
+        static boolean write(File file, int commitCount, int firstBlob, List<Blob> blobs,
+                             int[] keys, IntFunction<int[]> ordinals) {
+            file.getParentFile().mkdirs();
+            File postingsTemp = new File(file.getPath() + ".postings");
+            File temp = new File(file.getPath() + ".tmp");
+            try {
+                int[] offsets = new int[keys.length + 1];
+                try (DataOutputStream postings = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(postingsTemp)))) {
+                    for (int i = 0; i < keys.length; i++) {
+                        offsets[i] = postings.size();
+                        int previous = firstBlob - 1;
+                        for (int ordinal : ordinals.apply(i)) {
+                            writeVarint(postings, ordinal - previous);
+                            previous = ordinal;
+                        }
+                    }
+                    offsets[keys.length] = postings.size();
+                }
+
+                ByteArrayOutputStream table = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(table)) {
+                    for (Blob blob : blobs) {
+                        out.writeUTF(blob.hash);
+                        out.writeUTF(blob.commitId);
+                        out.writeUTF(blob.path);
+                        out.writeByte(blob.kind);
+                    }
+                }
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(commitCount);
+                    out.writeInt(firstBlob);
+                    out.writeInt(blobs.size());
+                    out.writeInt(keys.length);
+                    out.writeInt(HEADER_SIZE + table.size());
+                    table.writeTo(out);
+                    for (int key : keys) {
+                        out.writeInt(key);
+                    }
+                    for (int offset : offsets) {
+                        out.writeInt(offset);
+                    }
+                    Files.copy(postingsTemp.toPath(), out);
+                }
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            } catch (IOException e) {
+                temp.delete();
+                System.err.println("Error writing content index: " + e.getMessage());
+                return false;
+            } finally {
+                postingsTemp.delete();
+            }
+        }
+
+        private static void writeVarint(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package com.azaala.vcs.search;
+
+import com.azaala.vcs.Commit;
+import com.azaala.vcs.LogQuery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over the commit log, which is ordered only by append:
+ * commit times in sorted order, and the commits of each author. A time
+ * range is found by binary search and an author by one pass over the
+ * distinct authors, so neither looks at any commit outside the result.
+ * Results are ordinals (positions in the commit log).
+ *
+ * File layout (memory-mapped):
+ * <pre>
+ *   header:   magic "HIDX", version, commit count, author count
+ *   times:    (epoch seconds, ordinal) per commit, sorted by time, then ordinal
+ *   authors:  (author count + 1) entries (name offset, postings offset,
+ *             commit count), sorted by name; the last entry ends the data
+ *   names:    author names (UTF-8)
+ *   postings: ordinals of each author's commits as varint gaps
+ * </pre>
+ * Commits without an author are left out of the author table.
+ * <p>
+ * Commits made after the file was written are appended to a tail file
+ * next to it rather than rewriting it, and read into memory on open:
+ * <pre>
+ *   header:  magic "HIDT", version, commit count of the file it extends
+ *   record:  epoch seconds, whether there is an author, author (UTF)
+ * </pre>
+ * Their ordinals follow the file's. The tail is scanned on each query, so
+ * callers rewrite the index once {@link #getAppendedCount()} grows.
+ */
+public class HistoryIndex {
+    private static final int MAGIC = 0x48494458; // "HIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TIME_ENTRY_SIZE = 12;
+    private static final int AUTHOR_ENTRY_SIZE = 12;
+    private static final int TAIL_MAGIC = 0x48494454; // "HIDT"
+    private static final int TAIL_VERSION = 1;
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int authorCount;
+    private final int authorsStart;
+    private final int namesStart;
+    private final int postingsStart;
+    private final List<Long> tailTimes = new ArrayList<>();
+    private final List<String> tailAuthors = new ArrayList<>();
+    private long tailLength;
+
+    private HistoryIndex(ByteBuffer data, int count, int authorCount) {
+        this.data = data;
+        this.count = count;
+        this.authorCount = authorCount;
+        this.authorsStart = HEADER_SIZE + count * TIME_ENTRY_SIZE;
+        this.namesStart = authorsStart + (authorCount + 1) * AUTHOR_ENTRY_SIZE;
+        this.postingsStart = namesStart + data.getInt(authorsStart + authorCount * AUTHOR_ENTRY_SIZE);
+    }
+
+    /**
+     * Opens an index file.
+     *
+     * @param file Index file
+     * @return The index, or null if the file is missing or invalid
+     */
+    public static HistoryIndex open(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                System.err.println("Ignoring invalid history index: " + file.getPath());
+                return null;
+            }
+            long count = data.getInt(8);
+            long authorCount = data.getInt(12);
+            long authorsEnd = HEADER_SIZE + count * TIME_ENTRY_SIZE + (authorCount + 1) * AUTHOR_ENTRY_SIZE;
+            if (count < 0 || authorCount < 0 || authorsEnd > data.capacity()
+                    || authorsEnd + data.getInt((int) authorsEnd - AUTHOR_ENTRY_SIZE)
+                       + data.getInt((int) authorsEnd - AUTHOR_ENTRY_SIZE + 4) != data.capacity()) {
+                System.err.println("Ignoring truncated history index: " + file.getPath());
+                return null;
+            }
+            HistoryIndex index = new HistoryIndex(data, (int) count, (int) authorCount);
+            index.readTail(tailFile(file));
+            return index;
+        } catch (IOException e) {
+            System.err.println("Error opening history index: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static File tailFile(File file) {
+        return new File(file.getPath() + "-tail");
+    }
+
+    /**
+     * Reads the commits appended since the file was written. A record cut
+     * short by an interrupted append is ignored, and is overwritten by the
+     * next one.
+     */
+    private void readTail(File file) {
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != TAIL_MAGIC || in.readInt() != TAIL_VERSION || in.readInt() != count) {
+                System.err.println("Ignoring stale history index tail: " + file.getPath());
+                return;
+            }
+            long length = 12;
+            long fileLength = file.length();
+            while (length < fileLength) {
+                long time;
+                String author = null;
+                try {
+                    time = in.readLong();
+                    if (in.readBoolean()) {
+                        author = in.readUTF();
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                tailTimes.add(time);
+                tailAuthors.add(author);
+                length += 9 + (author != null ? 2 + author.getBytes(StandardCharsets.UTF_8).length : 0);
+            }
+            tailLength = length;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable history index tail: " + e.getMessage());
+            tailTimes.clear();
+            tailAuthors.clear();
+            tailLength = 0;
+        }
+    }
+
+    /**
+     * Adds the commits made since the index was opened by appending them
+     * to the tail file. The index file itself is not rewritten.
+     *
+     * @param file Index file this index was opened from
+     * @param commits All commits, in log order
+     * @return The index with the new commits, or null if they could not
+     *         be written
+     */
+    public HistoryIndex append(File file, List<Commit> commits) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (tailLength == 0) {
+                out.writeInt(TAIL_MAGIC);
+                out.writeInt(TAIL_VERSION);
+                out.writeInt(count);
+            }
+            for (Commit commit : commits.subList(getCommitCount(), commits.size())) {
+                out.writeLong(commit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+                out.writeBoolean(commit.getAuthor() != null);
+                if (commit.getAuthor() != null) {
+                    out.writeUTF(commit.getAuthor());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to history index: " + e.getMessage());
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(tailFile(file).toPath(), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+            // Drop anything after the last whole record
+            channel.truncate(tailLength);
+            channel.position(tailLength);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending to history index: " + e.getMessage());
+            return null;
+        }
+        return open(file);
+    }
+
+    /**
+     * Writes the index of a commit log, replacing the file atomically.
+     *
+     * @param file Index file
+     * @param commits All commits, in log order
+     * @return true if written
+     */
+    public static boolean write(File file, List<Commit> commits) {
+        long[] times = new long[commits.size()];
+        TreeMap<String, List<Integer>> authors = new TreeMap<>(HistoryIndex::compareUtf8);
+        for (int ordinal = 0; ordinal < commits.size(); ordinal++) {
+            Commit commit = commits.get(ordinal);
+            times[ordinal] = commit.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            if (commit.getAuthor() != null) {
+                authors.computeIfAbsent(commit.getAuthor(), a -> new ArrayList<>()).add(ordinal);
+            }
+        }
+        int[] order = sortByTime(times);
+
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        ByteArrayOutputStream postings = new ByteArrayOutputStream();
+        List<int[]> entries = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> author : authors.entrySet()) {
+            entries.add(new int[]{names.size(), postings.size(), author.getValue().size()});
+            byte[] name = author.getKey().getBytes(StandardCharsets.UTF_8);
+            names.write(name, 0, name.length);
+            int previous = -1;
+            for (int ordinal : author.getValue()) {
+                writeVarint(postings, ordinal - previous);
+                previous = ordinal;
+            }
+        }
+        entries.add(new int[]{names.size(), postings.size(), 0});
+
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(commits.size());
+                out.writeInt(authors.size());
+                for (int ordinal : order) {
+                    out.writeLong(times[ordinal]);
+                    out.writeInt(ordinal);
+                }
+                for (int[] entry : entries) {
+                    out.writeInt(entry[0]);
+                    out.writeInt(entry[1]);
+                    out.writeInt(entry[2]);
+                }
+                names.writeTo(out);
+                postings.writeTo(out);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            // The rewritten index has every commit the tail had
+            Files.deleteIfExists(tailFile(file).toPath());
+            return true;
+        } catch (IOException e) {
+            temp.delete();
+            System.err.println("Error writing history index: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Orders ordinals by time, then ordinal. Times and ordinals are packed
+     * into longs so a primitive sort does the work.
+     */
+    private static int[] sortByTime(long[] times) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long time : times) {
+            min = Math.min(min, time);
+            max = Math.max(max, time);
+        }
+        int[] order = new int[times.length];
+        if (times.length > 0 && max - min >= Integer.MAX_VALUE) {
+            // Times too far apart to pack
+            Integer[] boxed = new Integer[times.length];
+            for (int i = 0; i < times.length; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (a, b) -> Long.compare(times[a], times[b]));
+            for (int i = 0; i < times.length; i++) {
+                order[i] = boxed[i];
+            }
+            return order;
+        }
+        long[] packed = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            packed[i] = (times[i] - min) << 32 | i;
+        }
+        Arrays.sort(packed);
+        for (int i = 0; i < times.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    /**
+     * @return Number of commits in the index
+     */
+    public int getCommitCount() {
+        return count + tailTimes.size();
+    }
+
+    /**
+     * @return Number of commits appended since the index was last written
+     *         in full
+     */
+    public int getAppendedCount() {
+        return tailTimes.size();
+    }
+
+    /**
+     * Finds the commits in a time range and by an author. Times are
+     * compared to the second, so commits a fraction of a second outside
+     * a bound may be included.
+     *
+     * @param since Earliest time, inclusive (null for no bound)
+     * @param until Latest time, inclusive (null for no bound)
+     * @param author Text the author must contain, ignoring case (null for all)
+     * @return Ordinals of matching commits, ascending (never null)
+     */
+    public int[] find(LocalDateTime since, LocalDateTime until, String author) {
+        int[] matches = null;
+        if (since != null || until != null) {
+            matches = between(since, until);
+        }
+        if (author != null) {
+            int[] byAuthor = byAuthor(author);
+            matches = matches == null ? byAuthor
+                : matches.length <= byAuthor.length ? MessageIndex.intersect(matches, byAuthor)
+                : MessageIndex.intersect(byAuthor, matches);
+        }
+        if (matches == null) {
+            matches = new int[getCommitCount()];
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] = i;
+            }
+        }
+        return matches;
+    }
+
+    private int[] between(LocalDateTime since, LocalDateTime until) {
+        long first = since != null ? since.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+        long last = until != null ? until.toEpochSecond(ZoneOffset.UTC) : Long.MAX_VALUE;
+        int from = since != null ? lowerBound(first) : 0;
+        int to = until != null ? lowerBound(last + 1) : count;
+        List<Integer> appended = new ArrayList<>();
+        for (int i = 0; i < tailTimes.size(); i++) {
+            long time = tailTimes.get(i);
+            if (time >= first && time <= last) {
+                appended.add(count + i);
+            }
+        }
+        int[] ordinals = new int[Math.max(0, to - from) + appended.size()];
+        for (int i = 0; i < to - from; i++) {
+            ordinals[i] = data.getInt(HEADER_SIZE + (from + i) * TIME_ENTRY_SIZE + 8);
+        }
+        // Appended ordinals are the highest, so they stay at the end
+        Arrays.sort(ordinals, 0, Math.max(0, to - from));
+        for (int i = 0; i < appended.size(); i++) {
+            ordinals[ordinals.length - appended.size() + i] = appended.get(i);
+        }
+        return ordinals;
+    }
+
+    /**
+     * @return Position of the first time entry at or after the given time
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getLong(HEADER_SIZE + mid * TIME_ENTRY_SIZE) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int[] byAuthor(String author) {
+        List<int[]> lists = new ArrayList<>();
+        int size = 0;
+        for (int index = 0; index < authorCount; index++) {
+            if (LogQuery.matchesAuthor(name(index), author)) {
+                int[] ordinals = decode(index);
+                lists.add(ordinals);
+                size += ordinals.length;
+            }
+        }
+        List<Integer> appended = new ArrayList<>();
+        for (int i = 0; i < tailAuthors.size(); i++) {
+            String name = tailAuthors.get(i);
+            if (name != null && LogQuery.matchesAuthor(name, author)) {
+                appended.add(count + i);
+            }
+        }
+        int[] union = new int[size + appended.size()];
+        int position = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, union, position, list.length);
+            position += list.length;
+        }
+        // Each commit has one author, so the lists do not overlap
+        Arrays.sort(union, 0, size);
+        for (int i = 0; i < appended.size(); i++) {
+            union[size + i] = appended.get(i);
+        }
+        return union;
+    }
+
+    private String name(int index) {
+        int start = namesStart + entry(index, 0);
+        byte[] bytes = new byte[namesStart + entry(index + 1, 0) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = data.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int[] decode(int index) {
+        int[] ordinals = new int[entry(index, 8)];
+        int position = postingsStart + entry(index, 4);
+        int previous = -1;
+        for (int i = 0; i < ordinals.length; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += gap;
+            ordinals[i] = previous;
+        }
+        return ordinals;
+    }
+
+    private int entry(int index, int field) {
+        return data.getInt(authorsStart + index * AUTHOR_ENTRY_SIZE + field);
+    }
+
+    private static int compareUtf8(String a, String b) {
+        byte[] x = a.getBytes(StandardCharsets.UTF_8);
+        byte[] y = b.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < x.length && i < y.length; i++) {
+            int cmp = (x[i] & 0xff) - (y[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return x.length - y.length;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
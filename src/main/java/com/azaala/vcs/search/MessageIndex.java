@@ -0,0 +1,592 @@
+package com.azaala.vcs.search;
+
+import com.azaala.vcs.Commit;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Inverted index over commit messages and summaries: each term maps to the
+ * ordinals (positions in the commit log) of the commits containing it.
+ * A query looks up a few posting lists instead of reading every commit.
+ *
+ * The index has two parts in data/search:
+ * <pre>
+ *   messages.idx   memory-mapped segment: header, term table sorted by term,
+ *                  term bytes, and posting lists as varint gaps
+ *   messages.tail  text lines "ordinal term term ...", one per commit
+ *                  added since the segment was written
+ * </pre>
+ * Adding a commit appends one line to the tail. Once the tail holds more
+ * than a tenth of the segment's commits (and at least MIN_MERGE_COMMITS),
+ * it is merged into a new segment term by term, copying existing posting
+ * lists as they are.
+ */
+public class MessageIndex {
+    private static final String SEGMENT_FILE = "messages.idx";
+    private static final String TAIL_FILE = "messages.tail";
+    private static final int MAGIC = 0x4d494458; // "MIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int TERM_ENTRY_SIZE = 12;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final int MIN_MERGE_COMMITS = 1024;
+    private static final int REBUILD_BATCH = 100_000;
+
+    private final File directory;
+    private Segment segment;
+    private final TreeMap<String, List<Integer>> tail = new TreeMap<>(Segment::compareUtf8);
+    private int tailCommits;
+
+    private MessageIndex(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the index in a directory, creating an empty one if needed.
+     *
+     * @param directory Index directory
+     * @return The index (never null; an unreadable index starts empty)
+     */
+    public static MessageIndex open(File directory) {
+        MessageIndex index = new MessageIndex(directory);
+        index.segment = Segment.open(new File(directory, SEGMENT_FILE));
+        index.loadTail();
+        return index;
+    }
+
+    /**
+     * @return Number of commits in the index
+     */
+    public synchronized int getCommitCount() {
+        return segment.count + tailCommits;
+    }
+
+    /**
+     * Brings the index up to date with the commit log: commits not yet
+     * indexed are added, and an index that does not match the log (more
+     * commits than the log has) is rebuilt.
+     *
+     * @param commits All commits, in log order
+     * @return true if the index is up to date, false if writing failed
+     */
+    public synchronized boolean update(List<Commit> commits) {
+        if (getCommitCount() > commits.size()) {
+            return rebuild(commits);
+        }
+        if (commits.size() - getCommitCount() >= MIN_MERGE_COMMITS) {
+            return indexFrom(commits, getCommitCount());
+        }
+        boolean ok = true;
+        for (int ordinal = getCommitCount(); ordinal < commits.size() && ok; ordinal++) {
+            ok = add(ordinal, commits.get(ordinal));
+        }
+        return ok;
+    }
+
+    /**
+     * Adds the next commit of the log to the index.
+     *
+     * @param ordinal Position of the commit in the log; must be the commit count
+     * @param commit The commit
+     * @return true if added, false if the ordinal is out of sequence or writing failed
+     */
+    public synchronized boolean add(int ordinal, Commit commit) {
+        if (ordinal != getCommitCount()) {
+            return false;
+        }
+        Set<String> terms = tokenize(indexedText(commit));
+        File tailFile = new File(directory, TAIL_FILE);
+        directory.mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tailFile, true), StandardCharsets.UTF_8)) {
+            writer.write(ordinal + (terms.isEmpty() ? "" : " " + String.join(" ", terms)) + "\n");
+        } catch (IOException e) {
+            System.err.println("Error updating message index: " + e.getMessage());
+            return false;
+        }
+        addToTail(ordinal, terms);
+
+        if (tailCommits >= Math.max(MIN_MERGE_COMMITS, segment.count / 10)) {
+            return mergeTail();
+        }
+        return true;
+    }
+
+    /**
+     * Finds the commits containing every term of a query. A term ending in
+     * '*' matches every term starting with it.
+     *
+     * @param query Search text
+     * @param limit Most results to return (0 or less for all)
+     * @return Ordinals of matching commits, newest first (never null)
+     */
+    public synchronized List<Integer> search(String query, int limit) {
+        List<Integer> results = new ArrayList<>();
+        List<int[]> postings = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            Set<String> terms = tokenize(prefix ? word.substring(0, word.length() - 1) : word);
+            for (String term : terms) {
+                postings.add(prefix && terms.size() == 1 ? prefixPostings(term) : postings(term));
+            }
+        }
+        if (postings.isEmpty()) {
+            return results;
+        }
+
+        // Intersect starting from the rarest term
+        postings.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] matches = postings.get(0);
+        for (int i = 1; i < postings.size() && matches.length > 0; i++) {
+            matches = intersect(matches, postings.get(i));
+        }
+        for (int i = matches.length - 1; i >= 0 && (limit <= 0 || results.size() < limit); i--) {
+            results.add(matches[i]);
+        }
+        return results;
+    }
+
+    private static String indexedText(Commit commit) {
+        String summary = commit.getSummary();
+        return commit.getMessage() + (summary != null ? "\n" + summary : "");
+    }
+
+    /**
+     * Splits text into lower-case terms of letters and digits.
+     *
+     * @param text Text to split
+     * @return Distinct terms in order of first appearance
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                int length = i - start;
+                if (length >= MIN_TERM_LENGTH && length <= MAX_TERM_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private int[] postings(String term) {
+        int[] stored = segment.postings(term);
+        List<Integer> recent = tail.get(term);
+        return recent == null ? stored : concat(stored, recent);
+    }
+
+    private int[] prefixPostings(String prefix) {
+        // Segment ordinals all come before tail ordinals, and each term's
+        // list is sorted, so sorting the union is enough
+        List<int[]> lists = new ArrayList<>(segment.prefixPostings(prefix));
+        for (Map.Entry<String, List<Integer>> entry : tail.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            lists.add(concat(new int[0], entry.getValue()));
+        }
+        int size = 0;
+        for (int[] list : lists) {
+            size += list.length;
+        }
+        int[] union = new int[size];
+        int position = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, union, position, list.length);
+            position += list.length;
+        }
+        Arrays.sort(union);
+        int distinct = 0;
+        for (int i = 0; i < union.length; i++) {
+            if (i == 0 || union[i] != union[i - 1]) {
+                union[distinct++] = union[i];
+            }
+        }
+        return Arrays.copyOf(union, distinct);
+    }
+
+    /**
+     * Intersects two ascending lists, galloping through the second, so it
+     * is fastest with the shorter list first.
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < a.length && j < b.length; i++) {
+            // Gallop through the longer list
+            int step = 1;
+            while (j + step < b.length && b[j + step] < a[i]) {
+                j += step;
+                step <<= 1;
+            }
+            while (j < b.length && b[j] < a[i]) {
+                j++;
+            }
+            if (j < b.length && b[j] == a[i]) {
+                result[size++] = a[i];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] concat(int[] stored, List<Integer> recent) {
+        int[] result = Arrays.copyOf(stored, stored.length + recent.size());
+        for (int i = 0; i < recent.size(); i++) {
+            result[stored.length + i] = recent.get(i);
+        }
+        return result;
+    }
+
+    private void addToTail(int ordinal, Set<String> terms) {
+        for (String term : terms) {
+            tail.computeIfAbsent(term, t -> new ArrayList<>()).add(ordinal);
+        }
+        tailCommits++;
+    }
+
+    /**
+     * Loads the tail, ignoring lines that do not continue the segment's
+     * sequence of ordinals (such as a line cut short by a crash).
+     */
+    private void loadTail() {
+        File tailFile = new File(directory, TAIL_FILE);
+        if (!tailFile.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(tailFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                try {
+                    if (Integer.parseInt(parts[0]) == getCommitCount()) {
+                        addToTail(getCommitCount(), new LinkedHashSet<>(Arrays.asList(parts).subList(1, parts.length)));
+                    }
+                } catch (NumberFormatException e) {
+                    // Partial line; skip it
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading message index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a new segment holding the segment and the tail, then empties
+     * the tail.
+     */
+    private boolean mergeTail() {
+        File segmentFile = new File(directory, SEGMENT_FILE);
+        if (!Segment.write(segmentFile, segment, tail, segment.count + tailCommits)) {
+            return false;
+        }
+        segment = Segment.open(segmentFile);
+        tail.clear();
+        tailCommits = 0;
+        new File(directory, TAIL_FILE).delete();
+        return true;
+    }
+
+    /**
+     * Indexes every commit from scratch.
+     */
+    private boolean rebuild(List<Commit> commits) {
+        segment = Segment.empty();
+        tail.clear();
+        tailCommits = 0;
+        new File(directory, TAIL_FILE).delete();
+        new File(directory, SEGMENT_FILE).delete();
+        return indexFrom(commits, 0);
+    }
+
+    /**
+     * Indexes the commits from an ordinal on straight into new segments,
+     * skipping the tail file, in batches so memory use stays bounded.
+     */
+    private boolean indexFrom(List<Commit> commits, int first) {
+        directory.mkdirs();
+        for (int ordinal = first; ordinal < commits.size(); ordinal++) {
+            addToTail(ordinal, tokenize(indexedText(commits.get(ordinal))));
+            if (tailCommits >= REBUILD_BATCH && !mergeTail()) {
+                return false;
+            }
+        }
+        return tailCommits == 0 || mergeTail();
+    }
+
+    /**
+     * The memory-mapped part of the index.
+     */
+    private static final class Segment {
+        private final ByteBuffer data;
+        private final int count;
+        private final int termCount;
+        private final int termBytesStart;
+        private final int postingsStart;
+
+        private Segment(ByteBuffer data, int count, int termCount) {
+            this.data = data;
+            this.count = count;
+            this.termCount = termCount;
+            this.termBytesStart = HEADER_SIZE + (termCount + 1) * TERM_ENTRY_SIZE;
+            this.postingsStart = data != null ? termBytesStart + data.getInt(HEADER_SIZE + termCount * TERM_ENTRY_SIZE) : 0;
+        }
+
+        static Segment empty() {
+            return new Segment(null, 0, 0);
+        }
+
+        static Segment open(File file) {
+            if (!file.isFile()) {
+                return empty();
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+                    System.err.println("Ignoring invalid message index: " + file.getPath());
+                    return empty();
+                }
+                int termCount = data.getInt(12);
+                long tableEnd = HEADER_SIZE + (termCount + 1L) * TERM_ENTRY_SIZE;
+                if (termCount < 0 || tableEnd > data.capacity()
+                        || tableEnd + data.getInt((int) tableEnd - TERM_ENTRY_SIZE)
+                           + data.getInt((int) tableEnd - TERM_ENTRY_SIZE + 4) != data.capacity()) {
+                    System.err.println("Ignoring truncated message index: " + file.getPath());
+                    return empty();
+                }
+                return new Segment(data, data.getInt(8), termCount);
+            } catch (IOException e) {
+                System.err.println("Error opening message index: " + e.getMessage());
+                return empty();
+            }
+        }
+
+        int[] postings(String term) {
+            int index = find(term.getBytes(StandardCharsets.UTF_8));
+            return index >= 0 ? decode(index) : new int[0];
+        }
+
+        List<int[]> prefixPostings(String prefix) {
+            List<int[]> lists = new ArrayList<>();
+            byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+            int index = find(key);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            for (; index < termCount && term(index).startsWith(prefix); index++) {
+                lists.add(decode(index));
+            }
+            return lists;
+        }
+
+        /**
+         * Binary search over the sorted terms.
+         *
+         * @return The term's index, or -(insertion point) - 1 if absent
+         */
+        private int find(byte[] key) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareTerm(mid, key);
+                if (cmp == 0) {
+                    return mid;
+                } else if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -low - 1;
+        }
+
+        private int compareTerm(int index, byte[] key) {
+            int start = termBytesStart + entry(index, 0);
+            int length = termBytesStart + entry(index + 1, 0) - start;
+            for (int i = 0; i < length && i < key.length; i++) {
+                int cmp = (data.get(start + i) & 0xff) - (key[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return length - key.length;
+        }
+
+        private String term(int index) {
+            int start = termBytesStart + entry(index, 0);
+            byte[] bytes = new byte[termBytesStart + entry(index + 1, 0) - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = data.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int[] decode(int index) {
+            int[] ordinals = new int[entry(index, 8)];
+            int position = postingsStart + entry(index, 4);
+            int previous = -1;
+            for (int i = 0; i < ordinals.length; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data.get(position++);
+                    gap |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += gap;
+                ordinals[i] = previous;
+            }
+            return ordinals;
+        }
+
+        private int entry(int index, int field) {
+            return data.getInt(HEADER_SIZE + index * TERM_ENTRY_SIZE + field);
+        }
+
+        /**
+         * Writes a segment holding an existing segment's postings followed
+         * by newer ones. Both term lists are sorted, so they are merged in
+         * one pass; an existing posting list is copied byte for byte and
+         * the newer ordinals are appended as gaps from its last ordinal.
+         */
+        static boolean write(File file, Segment old, TreeMap<String, List<Integer>> recent, int count) {
+            List<String> terms = new ArrayList<>();
+            ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+            File postingsTemp = new File(file.getPath() + ".postings");
+            List<int[]> entries = new ArrayList<>();
+            try (DataOutputStream postings = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(postingsTemp)))) {
+                int oldIndex = 0;
+                Iterator<Map.Entry<String, List<Integer>>> newer = recent.entrySet().iterator();
+                Map.Entry<String, List<Integer>> next = newer.hasNext() ? newer.next() : null;
+                while (oldIndex < old.termCount || next != null) {
+                    String oldTerm = oldIndex < old.termCount ? old.term(oldIndex) : null;
+                    int cmp = oldTerm == null ? 1 : next == null ? -1 : compareUtf8(oldTerm, next.getKey());
+                    String term = cmp <= 0 ? oldTerm : next.getKey();
+                    int start = postings.size();
+                    int docs = 0;
+                    int last = -1;
+                    if (cmp <= 0) {
+                        int from = old.postingsStart + old.entry(oldIndex, 4);
+                        int to = old.postingsStart + old.entry(oldIndex + 1, 4);
+                        for (int i = from; i < to; i++) {
+                            postings.write(old.data.get(i));
+                        }
+                        int[] ordinals = old.decode(oldIndex);
+                        docs = ordinals.length;
+                        last = ordinals.length > 0 ? ordinals[ordinals.length - 1] : -1;
+                        oldIndex++;
+                    }
+                    if (cmp >= 0) {
+                        for (int ordinal : next.getValue()) {
+                            writeVarint(postings, ordinal - last);
+                            last = ordinal;
+                        }
+                        docs += next.getValue().size();
+                        next = newer.hasNext() ? newer.next() : null;
+                    }
+                    entries.add(new int[]{termBytes.size(), start, docs});
+                    byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                    termBytes.write(bytes, 0, bytes.length);
+                    terms.add(term);
+                }
+                entries.add(new int[]{termBytes.size(), postings.size(), 0});
+            } catch (IOException e) {
+                postingsTemp.delete();
+                System.err.println("Error writing message index: " + e.getMessage());
+                return false;
+            }
+
+            File temp = new File(file.getPath() + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(count);
+                    out.writeInt(terms.size());
+                    for (int[] entry : entries) {
+                        out.writeInt(entry[0]);
+                        out.writeInt(entry[1]);
+                        out.writeInt(entry[2]);
+                    }
+                    termBytes.writeTo(out);
+                    Files.copy(postingsTemp.toPath(), out);
+                }
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            } catch (IOException e) {
+                temp.delete();
+                System.err.println("Error writing message index: " + e.getMessage());
+                return false;
+            } finally {
+                postingsTemp.delete();
+            }
+        }
+
+        /**
+         * Compares as the segment's term table is sorted: by UTF-8 bytes.
+         */
+        private static int compareUtf8(String a, String b) {
+            byte[] x = a.getBytes(StandardCharsets.UTF_8);
+            byte[] y = b.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < x.length && i < y.length; i++) {
+                int cmp = (x[i] & 0xff) - (y[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return x.length - y.length;
+        }
+
+        private static void writeVarint(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -28,6 +28,9 @@ CREATE TABLE IF NOT EXISTS commits
     author     VARCHAR(255) DEFAULT 'Unknown',
     timestamp  TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
     file_count INT          DEFAULT 0,
+    lines_added   INT       DEFAULT 0,
+    lines_deleted INT       DEFAULT 0,
+    bytes_changed BIGINT    DEFAULT 0,
     created_at TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
     FOREIGN KEY (repo_id) REFERENCES repositories (repo_id) ON DELETE CASCADE,
     INDEX idx_repo_id (repo_id),
@@ -92,6 +95,50 @@ CREATE TABLE IF NOT EXISTS activity_logs
   DEFAULT CHARSET = utf8mb4
   COLLATE = utf8mb4_unicode_ci;
 
+-- Analytics rollups: running totals added to on each commit.
+-- Directory paths in rollup_paths end with '/'.
+CREATE TABLE IF NOT EXISTS rollup_paths
+(
+    repo_id       BIGINT       NOT NULL,
+    path          VARCHAR(500) NOT NULL,
+    commit_count  INT    DEFAULT 0,
+    lines_added   BIGINT DEFAULT 0,
+    lines_deleted BIGINT DEFAULT 0,
+    bytes_changed BIGINT DEFAULT 0,
+    PRIMARY KEY (repo_id, path),
+    FOREIGN KEY (repo_id) REFERENCES repositories (repo_id) ON DELETE CASCADE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS rollup_authors
+(
+    repo_id       BIGINT       NOT NULL,
+    author        VARCHAR(255) NOT NULL,
+    commit_count  INT    DEFAULT 0,
+    lines_added   BIGINT DEFAULT 0,
+    lines_deleted BIGINT DEFAULT 0,
+    bytes_changed BIGINT DEFAULT 0,
+    PRIMARY KEY (repo_id, author),
+    FOREIGN KEY (repo_id) REFERENCES repositories (repo_id) ON DELETE CASCADE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS rollup_days
+(
+    repo_id       BIGINT NOT NULL,
+    day           DATE   NOT NULL,
+    commit_count  INT    DEFAULT 0,
+    lines_added   BIGINT DEFAULT 0,
+    lines_deleted BIGINT DEFAULT 0,
+    bytes_changed BIGINT DEFAULT 0,
+    PRIMARY KEY (repo_id, day),
+    FOREIGN KEY (repo_id) REFERENCES repositories (repo_id) ON DELETE CASCADE
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4
+  COLLATE = utf8mb4_unicode_ci;
+
 CREATE TABLE IF NOT EXISTS database_config
 (
     config_key   VARCHAR(100) PRIMARY KEY,